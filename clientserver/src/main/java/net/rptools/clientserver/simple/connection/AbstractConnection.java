@@ -17,16 +17,13 @@
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import net.rptools.clientserver.ActivityListener;
 import net.rptools.clientserver.simple.DisconnectHandler;
 import net.rptools.clientserver.simple.MessageHandler;
-import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
-import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -34,7 +31,7 @@ public abstract class AbstractConnection implements Connection {
   private static final Logger log = LogManager.getLogger(AbstractConnection.class);
 
   private final AtomicBoolean closed = new AtomicBoolean(false);
-  private final BlockingQueue<byte[]> outQueue = new LinkedBlockingQueue<>();
+  private final OutgoingMessageQueue outQueue = new OutgoingMessageQueue();
 
   private final List<DisconnectHandler> disconnectHandlers = new CopyOnWriteArrayList<>();
   private final List<ActivityListener> listeners = new CopyOnWriteArrayList<>();
@@ -53,33 +50,12 @@ protected final boolean isClosed() {
 
   protected abstract void onClose();
 
-  private byte[] compress(byte[] message) {
-    try {
-      ByteArrayOutputStream baos = new ByteArrayOutputStream(message.length);
-      OutputStream ios = new ZstdCompressorOutputStream(baos);
-      ios.write(message);
-      ios.close();
-      var compressedMessage = baos.toByteArray();
-      return compressedMessage;
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-  private byte[] inflate(byte[] compressedMessage) {
-    InputStream bytesIn = new ByteArrayInputStream(compressedMessage);
-    try {
-      InputStream ios = new ZstdCompressorInputStream(bytesIn);
-      var decompressed = ios.readAllBytes();
-      ios.close();
-      return decompressed;
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+  protected void addMessage(Object channel, byte[] message) {
+    addMessage(channel, CompressedMessage.of(null, message));
   }
 
-  protected void addMessage(Object channel, byte[] message) {
-    outQueue.add(compress(message));
+  protected void addMessage(Object channel, CompressedMessage message) {
+    outQueue.add(channel, message.getEncoded());
   }
 
   protected byte[] nextMessage() {
@@ -91,6 +67,24 @@ protected byte[] nextMessage() {
     }
   }
 
+  /**
+   * Waits for the next outgoing message.
+   *
+   * <p>Unlike {@link #nextMessage()} this blocks until a message is available, so callers must be
+   * interrupted when the connection is closed.
+   *
+   * @return The next message to send.
+   * @throws InterruptedException If the thread is interrupted while waiting.
+   */
+  protected byte[] takeMessage() throws InterruptedException {
+    return outQueue.take();
+  }
+
+  @Override
+  public Map<String, ChannelStatistics> getChannelStatistics() {
+    return outQueue.getStatistics();
+  }
+
   public final void addMessageHandler(MessageHandler handler) {
     messageHandlers.add(handler);
   }
@@ -111,26 +105,36 @@ protected void dispatchMessage(byte[] message) {
   }
 
   protected final void dispatchCompressedMessage(byte[] compressedMessage) {
-    var message = inflate(compressedMessage);
+    var message = CompressedMessage.decode(compressedMessage);
     dispatchMessage(message);
   }
 
+  /**
+   * Writes a length-prefixed frame to {@code out}.
+   *
+   * <p>The body is written in bulk, {@link ActivityListener#CHUNK_SIZE} bytes at a time, with a
+   * progress notification between chunks.
+   *
+   * @param out The stream to write to.
+   * @param message The frame body.
+   * @throws IOException If the stream could not be written to.
+   */
   protected final void writeMessage(OutputStream out, byte[] message) throws IOException {
     int length = message.length;
 
     notifyListeners(ActivityListener.Direction.Outbound, ActivityListener.State.Start, length, 0);
 
-    out.write(length >> 24);
-    out.write(length >> 16);
-    out.write(length >> 8);
-    out.write(length);
+    out.write(ByteBuffer.allocate(Integer.BYTES).putInt(length).array());
 
-    for (int i = 0; i < message.length; i++) {
-      out.write(message[i]);
+    int offset = 0;
+    while (offset < length) {
+      int count = Math.min(ActivityListener.CHUNK_SIZE, length - offset);
+      out.write(message, offset, count);
+      offset += count;
 
-      if (i != 0 && i % ActivityListener.CHUNK_SIZE == 0) {
+      if (offset < length) {
         notifyListeners(
-            ActivityListener.Direction.Outbound, ActivityListener.State.Progress, length, i);
+            ActivityListener.Direction.Outbound, ActivityListener.State.Progress, length, offset);
       }
     }
     out.flush();
@@ -138,26 +142,45 @@ protected final void writeMessage(OutputStream out, byte[] message) throws IOExc
         ActivityListener.Direction.Outbound, ActivityListener.State.Complete, length, length);
   }
 
+  /**
+   * Reads a length-prefixed frame from {@code in}.
+   *
+   * <p>The body is read in bulk, {@link ActivityListener#CHUNK_SIZE} bytes at a time, with a
+   * progress notification between chunks.
+   *
+   * @param in The stream to read from.
+   * @return The frame body.
+   * @throws IOException If the stream is closed or ends part way through a frame.
+   */
   protected final byte[] readMessage(InputStream in) throws IOException {
-    int b32 = in.read();
-    int b24 = in.read();
-    int b16 = in.read();
-    int b8 = in.read();
-
-    if (b32 < 0) {
+    var header = new byte[Integer.BYTES];
+    int headerRead = in.readNBytes(header, 0, header.length);
+    if (headerRead == 0) {
       throw new IOException("Stream closed");
     }
-    int length = (b32 << 24) + (b24 << 16) + (b16 << 8) + b8;
+    if (headerRead < header.length) {
+      throw new EOFException("Stream ended while reading message header");
+    }
+
+    int length = ByteBuffer.wrap(header).getInt();
+    if (length < 0) {
+      throw new IOException("Invalid message length: " + length);
+    }
 
     notifyListeners(ActivityListener.Direction.Inbound, ActivityListener.State.Start, length, 0);
 
     byte[] ret = new byte[length];
-    for (int i = 0; i < length; i++) {
-      ret[i] = (byte) in.read();
+    int offset = 0;
+    while (offset < length) {
+      int count = Math.min(ActivityListener.CHUNK_SIZE, length - offset);
+      if (in.readNBytes(ret, offset, count) < count) {
+        throw new EOFException("Stream ended while reading message body");
+      }
+      offset += count;
 
-      if (i != 0 && i % ActivityListener.CHUNK_SIZE == 0) {
+      if (offset < length) {
         notifyListeners(
-            ActivityListener.Direction.Inbound, ActivityListener.State.Progress, length, i);
+            ActivityListener.Direction.Inbound, ActivityListener.State.Progress, length, offset);
       }
     }
     notifyListeners(
@@ -0,0 +1,31 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.connection;
+
+/**
+ * A snapshot of the outgoing queue for one channel of a connection.
+ *
+ * @param priority The priority of the channel, see {@link PrioritizedChannel}.
+ * @param queueDepth The number of messages waiting to be sent.
+ * @param messagesSent The number of messages taken off the queue so far.
+ * @param averageLatencyNanos The average time messages spent queued.
+ * @param maxLatencyNanos The longest time a message spent queued.
+ */
+public record ChannelStatistics(
+    int priority,
+    int queueDepth,
+    long messagesSent,
+    long averageLatencyNanos,
+    long maxLatencyNanos) {}
@@ -0,0 +1,153 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.connection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.annotation.Nullable;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+
+/**
+ * A message payload together with its lazily computed wire form.
+ *
+ * <p>The wire form is computed at most once no matter how many connections the message is queued
+ * on, so a broadcast to N clients costs a single compression. Payloads smaller than {@link
+ * #COMPRESSION_THRESHOLD} are sent as-is since compressing them costs more than it saves. The
+ * receiving end tells the two apart by looking for the Zstandard frame magic number, see {@link
+ * #decode(byte[])}.
+ */
+public final class CompressedMessage {
+  /** Payloads smaller than this many bytes are sent without compression. */
+  public static final int COMPRESSION_THRESHOLD = 256;
+
+  /** The magic number that starts every Zstandard frame, in wire (little endian) order. */
+  private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD};
+
+  private final @Nullable String type;
+  private final byte[] payload;
+  private volatile byte[] encoded;
+
+  private CompressedMessage(@Nullable String type, byte[] payload) {
+    this.type = type;
+    this.payload = payload;
+  }
+
+  /**
+   * Wraps an uncompressed payload.
+   *
+   * @param type A label for the kind of message, used for compression statistics. May be {@code
+   *     null} if unknown.
+   * @param payload The uncompressed message bytes.
+   * @return The wrapped message.
+   */
+  public static CompressedMessage of(@Nullable String type, byte[] payload) {
+    return new CompressedMessage(type, payload);
+  }
+
+  public @Nullable String getType() {
+    return type;
+  }
+
+  /**
+   * @return The uncompressed payload.
+   */
+  public byte[] getPayload() {
+    return payload;
+  }
+
+  /**
+   * Gets the wire form of the message, compressing it on first use.
+   *
+   * @return The bytes to be framed and written to the connection.
+   */
+  public byte[] getEncoded() {
+    var result = encoded;
+    if (result == null) {
+      synchronized (this) {
+        result = encoded;
+        if (result == null) {
+          result = encode(payload);
+          CompressionStatistics.getInstance().record(type, payload.length, result.length);
+          encoded = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static boolean hasZstdMagic(byte[] data) {
+    if (data.length < ZSTD_MAGIC.length) {
+      return false;
+    }
+    for (int i = 0; i < ZSTD_MAGIC.length; ++i) {
+      if (data[i] != ZSTD_MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Converts a payload into its wire form.
+   *
+   * <p>Small payloads are returned unchanged unless they happen to start with the Zstandard magic
+   * number, in which case they are compressed anyway so that {@link #decode(byte[])} cannot
+   * mistake them for a compressed frame.
+   *
+   * @param payload The uncompressed message.
+   * @return The wire form of the message.
+   */
+  static byte[] encode(byte[] payload) {
+    if (payload.length < COMPRESSION_THRESHOLD && !hasZstdMagic(payload)) {
+      return payload;
+    }
+
+    try {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(payload.length);
+      OutputStream ios = new ZstdCompressorOutputStream(baos);
+      ios.write(payload);
+      ios.close();
+      return baos.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Converts a wire form produced by {@link #encode(byte[])} back into the payload.
+   *
+   * @param encoded The received message.
+   * @return The uncompressed message.
+   */
+  static byte[] decode(byte[] encoded) {
+    if (!hasZstdMagic(encoded)) {
+      return encoded;
+    }
+
+    InputStream bytesIn = new ByteArrayInputStream(encoded);
+    try {
+      InputStream ios = new ZstdCompressorInputStream(bytesIn);
+      var decompressed = ios.readAllBytes();
+      ios.close();
+      return decompressed;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.connection;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/** Counts the bytes sent before and after compression, per message type. */
+public final class CompressionStatistics {
+  private static final String UNKNOWN_TYPE = "<unknown>";
+  private static final CompressionStatistics instance = new CompressionStatistics();
+
+  /**
+   * A snapshot of the counters for one message type.
+   *
+   * @param messages The number of messages encoded.
+   * @param uncompressedBytes The total size of the payloads.
+   * @param compressedBytes The total size of the wire forms.
+   */
+  public record Counts(long messages, long uncompressedBytes, long compressedBytes) {}
+
+  private static final class Counters {
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+
+    private Counts snapshot() {
+      return new Counts(messages.sum(), uncompressedBytes.sum(), compressedBytes.sum());
+    }
+  }
+
+  private final Map<String, Counters> countersByType = new ConcurrentHashMap<>();
+
+  public static CompressionStatistics getInstance() {
+    return instance;
+  }
+
+  private CompressionStatistics() {}
+
+  void record(@Nullable String type, int uncompressedBytes, int compressedBytes) {
+    var counters =
+        countersByType.computeIfAbsent(type == null ? UNKNOWN_TYPE : type, t -> new Counters());
+    counters.messages.increment();
+    counters.uncompressedBytes.add(uncompressedBytes);
+    counters.compressedBytes.add(compressedBytes);
+  }
+
+  /**
+   * @return The current counters, sorted by message type.
+   */
+  public Map<String, Counts> snapshot() {
+    var result = new TreeMap<String, Counts>();
+    countersByType.forEach((type, counters) -> result.put(type, counters.snapshot()));
+    return result;
+  }
+
+  public void reset() {
+    countersByType.clear();
+  }
+}
@@ -15,6 +15,7 @@
 package net.rptools.clientserver.simple.connection;
 
 import java.io.IOException;
+import java.util.Map;
 import net.rptools.clientserver.ActivityListener;
 import net.rptools.clientserver.simple.DisconnectHandler;
 import net.rptools.clientserver.simple.MessageHandler;
@@ -30,6 +31,29 @@ default void sendMessage(byte[] message) {
 
   void sendMessage(Object channel, byte[] message);
 
+  /**
+   * Sends a message that may be shared with other connections.
+   *
+   * <p>Connections that compress their traffic should use {@link CompressedMessage#getEncoded()}
+   * so the compression work is shared with every other recipient of the same message.
+   *
+   * @param channel The channel to send the message on, or {@code null} for the default channel.
+   * @param message The message to send.
+   */
+  default void sendMessage(Object channel, CompressedMessage message) {
+    sendMessage(channel, message.getPayload());
+  }
+
+  /**
+   * Gets the state of the outgoing queue of each channel used so far.
+   *
+   * @return The statistics keyed by channel name, {@code "default"} for messages sent without a
+   *     channel. Empty if the connection does not queue its messages.
+   */
+  default Map<String, ChannelStatistics> getChannelStatistics() {
+    return Map.of();
+  }
+
   boolean isAlive();
 
   String getId();
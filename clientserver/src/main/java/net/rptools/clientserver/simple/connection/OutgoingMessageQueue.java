@@ -0,0 +1,174 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.connection;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+
+/**
+ * The outgoing messages of a connection, queued per channel.
+ *
+ * <p>Channels are served in strict priority order, see {@link PrioritizedChannel}. To keep a busy
+ * high priority channel from starving the others entirely, any message that has been waiting
+ * longer than {@link #MAX_WAIT_NANOS} is sent ahead of everything else.
+ */
+final class OutgoingMessageQueue {
+  /** Messages that have waited this long are sent regardless of their channel's priority. */
+  static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+  private static final String DEFAULT_CHANNEL_NAME = "default";
+
+  private record Entry(byte[] message, long sequence, long enqueuedAt) {}
+
+  private static final class Lane {
+    private final int priority;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private long messagesSent = 0;
+    private long totalLatencyNanos = 0;
+    private long maxLatencyNanos = 0;
+
+    private Lane(int priority) {
+      this.priority = priority;
+    }
+
+    private ChannelStatistics statistics() {
+      return new ChannelStatistics(
+          priority,
+          entries.size(),
+          messagesSent,
+          messagesSent == 0 ? 0 : totalLatencyNanos / messagesSent,
+          maxLatencyNanos);
+    }
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Map<String, Lane> lanes = new HashMap<>();
+  private int size = 0;
+  private long nextSequence = 0;
+
+  private static String channelName(@Nullable Object channel) {
+    return channel == null ? DEFAULT_CHANNEL_NAME : channel.toString();
+  }
+
+  private static int channelPriority(@Nullable Object channel) {
+    return channel instanceof PrioritizedChannel prioritized
+        ? prioritized.getPriority()
+        : PrioritizedChannel.DEFAULT_PRIORITY;
+  }
+
+  public void add(@Nullable Object channel, byte[] message) {
+    lock.lock();
+    try {
+      lanes
+          .computeIfAbsent(channelName(channel), name -> new Lane(channelPriority(channel)))
+          .entries
+          .add(new Entry(message, nextSequence++, System.nanoTime()));
+      ++size;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits up to {@code timeout} for a message.
+   *
+   * @return The next message, or {@code null} if none arrived in time.
+   */
+  public @Nullable byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long remaining = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (size == 0) {
+        if (remaining <= 0) {
+          return null;
+        }
+        remaining = notEmpty.awaitNanos(remaining);
+      }
+      return remove();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Waits as long as needed for a message. */
+  public byte[] take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (size == 0) {
+        notEmpty.await();
+      }
+      return remove();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return A snapshot of every channel that has been used, keyed by channel name.
+   */
+  public Map<String, ChannelStatistics> getStatistics() {
+    lock.lock();
+    try {
+      var result = new TreeMap<String, ChannelStatistics>();
+      lanes.forEach((name, lane) -> result.put(name, lane.statistics()));
+      return result;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Must be called with the lock held and at least one message queued. */
+  private byte[] remove() {
+    long now = System.nanoTime();
+    Lane best = null;
+    Lane oldestOverdue = null;
+    for (var lane : lanes.values()) {
+      var head = lane.entries.peek();
+      if (head == null) {
+        continue;
+      }
+
+      if (now - head.enqueuedAt() > MAX_WAIT_NANOS
+          && (oldestOverdue == null
+              || head.sequence() < oldestOverdue.entries.peek().sequence())) {
+        oldestOverdue = lane;
+      }
+      if (best == null
+          || lane.priority < best.priority
+          || (lane.priority == best.priority
+              && head.sequence() < best.entries.peek().sequence())) {
+        best = lane;
+      }
+    }
+
+    var lane = oldestOverdue != null ? oldestOverdue : best;
+    var entry = lane.entries.remove();
+    --size;
+
+    long latency = now - entry.enqueuedAt();
+    lane.messagesSent++;
+    lane.totalLatencyNanos += latency;
+    lane.maxLatencyNanos = Math.max(lane.maxLatencyNanos, latency);
+    return entry.message();
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.connection;
+
+/**
+ * A channel that can be passed to {@link Connection#sendMessage(Object, byte[])} to control how
+ * soon its messages are sent relative to other channels.
+ *
+ * <p>Each channel has its own queue. Messages on the same channel are always sent in order, but
+ * messages on different channels may be reordered. Messages sent without a channel, or on a
+ * channel that does not implement this interface, have {@link #DEFAULT_PRIORITY}.
+ */
+public interface PrioritizedChannel {
+  /** The priority of messages that are not sent on a {@code PrioritizedChannel}. */
+  int DEFAULT_PRIORITY = 0;
+
+  /**
+   * @return The priority of the channel. Channels with lower values are sent first.
+   */
+  int getPriority();
+}
@@ -17,6 +17,7 @@
 import java.io.*;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -28,20 +29,34 @@ public class SocketConnection extends AbstractConnection implements Connection {
   private static final Logger log = LogManager.getLogger(SocketConnection.class);
 
   private final String id;
-  private SendThread send;
-  private ReceiveThread receive;
+  private final ThreadFactory threadFactory;
+  private Thread send;
+  private Thread receive;
   private Socket socket;
   private String hostName;
   private int port;
 
   public SocketConnection(String id, String hostName, int port) {
     this.id = id;
+    this.threadFactory = Thread.ofPlatform().factory();
     this.hostName = hostName;
     this.port = port;
   }
 
   public SocketConnection(String id, Socket socket) {
+    this(id, socket, Thread.ofPlatform().factory());
+  }
+
+  /**
+   * Creates a connection over an already connected socket.
+   *
+   * @param id The ID of the connection.
+   * @param socket The connected socket.
+   * @param threadFactory Creates the threads the send and receive loops run on.
+   */
+  public SocketConnection(String id, Socket socket, ThreadFactory threadFactory) {
     this.id = id;
+    this.threadFactory = threadFactory;
     this.socket = socket;
 
     initialize(socket);
@@ -54,13 +69,19 @@ public String getId() {
 
   private void initialize(Socket socket) {
     this.socket = socket;
-    this.send = new SendThread(socket);
-    this.receive = new ReceiveThread(socket);
+    this.send = newThread("SocketConnection.SendThread", new SendLoop(socket));
+    this.receive = newThread("SocketConnection.ReceiveThread", new ReceiveLoop(socket));
 
     this.send.start();
     this.receive.start();
   }
 
+  private Thread newThread(String name, Runnable runnable) {
+    var thread = threadFactory.newThread(runnable);
+    thread.setName(name);
+    return thread;
+  }
+
   @Override
   public void open() throws IOException {
     initialize(new Socket(hostName, port));
@@ -71,6 +92,11 @@ public void sendMessage(Object channel, byte[] message) {
     addMessage(channel, message);
   }
 
+  @Override
+  public void sendMessage(Object channel, CompressedMessage message) {
+    addMessage(channel, message);
+  }
+
   @Override
   protected void onClose() {
     receive.interrupt();
@@ -94,13 +120,12 @@ public String getError() {
   }
 
   // /////////////////////////////////////////////////////////////////////////
-  // send thread
+  // send loop
   // /////////////////////////////////////////////////////////////////////////
-  private class SendThread extends Thread {
+  private class SendLoop implements Runnable {
     private final Socket socket;
 
-    public SendThread(Socket socket) {
-      setName("SocketConnection.SendThread");
+    public SendLoop(Socket socket) {
       this.socket = socket;
     }
 
@@ -116,10 +141,11 @@ public void run() {
         }
 
         while (!SocketConnection.this.isClosed() && SocketConnection.this.isAlive()) {
-          // Blocks for a time until a message is received.
-          byte[] message = SocketConnection.this.nextMessage();
-          if (message == null) {
-            // No message available. Thread may also have been interrupted as part of stopping.
+          // Blocks until a message is available. Closing the connection interrupts us.
+          byte[] message;
+          try {
+            message = SocketConnection.this.takeMessage();
+          } catch (InterruptedException e) {
             continue;
           }
 
@@ -137,13 +163,12 @@ public void run() {
   }
 
   // /////////////////////////////////////////////////////////////////////////
-  // receive thread
+  // receive loop
   // /////////////////////////////////////////////////////////////////////////
-  private class ReceiveThread extends Thread {
+  private class ReceiveLoop implements Runnable {
     private final Socket socket;
 
-    public ReceiveThread(Socket socket) {
-      setName("SocketConnection.ReceiveThread");
+    public ReceiveLoop(Socket socket) {
       this.socket = socket;
     }
 
@@ -152,7 +177,7 @@ public void run() {
       try {
         final InputStream in;
         try {
-          in = socket.getInputStream();
+          in = new BufferedInputStream(socket.getInputStream());
         } catch (IOException e) {
           log.error("Unable to get socket input stream", e);
           return;
@@ -213,6 +213,12 @@ public void sendMessage(Object channel, byte[] message) {
     addMessage(channel, message);
   }
 
+  @Override
+  public void sendMessage(Object channel, CompressedMessage message) {
+    log.debug(prefix() + "added message");
+    addMessage(channel, message);
+  }
+
   @Override
   public boolean isAlive() {
     if (peerConnection == null) {
@@ -22,6 +22,7 @@
 import java.util.Iterator;
 import java.util.Map;
 import javax.annotation.Nullable;
+import net.rptools.clientserver.simple.connection.CompressedMessage;
 import net.rptools.clientserver.simple.connection.Connection;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -65,20 +66,36 @@ public void removeConnection(Connection connection) {
   }
 
   public void broadcastMessage(byte[] message) {
+    broadcastMessage(CompressedMessage.of(null, message));
+  }
+
+  /**
+   * Sends a message to every client.
+   *
+   * <p>The same {@link CompressedMessage} instance is handed to every connection, so the message
+   * is compressed at most once regardless of the number of clients.
+   *
+   * @param message The message to send.
+   */
+  public void broadcastMessage(CompressedMessage message) {
     synchronized (clients) {
       for (Connection conn : clients.values()) {
-        conn.sendMessage(message);
+        conn.sendMessage(null, message);
       }
     }
   }
 
   public void broadcastMessage(String[] exclude, byte[] message) {
+    broadcastMessage(exclude, CompressedMessage.of(null, message));
+  }
+
+  public void broadcastMessage(String[] exclude, CompressedMessage message) {
     // Note: although we except an exclude array, reality is that it only has one element at most.
     // So don't bother setting up a hash set or anything, just loop to check if in the array.
     synchronized (clients) {
       for (Map.Entry<String, Connection> entry : clients.entrySet()) {
         if (!Arrays.asList(exclude).contains(entry.getKey())) {
-          entry.getValue().sendMessage(message);
+          entry.getValue().sendMessage(null, message);
         }
       }
     }
@@ -97,6 +114,15 @@ public void sendMessage(String id, Object channel, byte[] message) {
     }
   }
 
+  public void sendMessage(String id, Object channel, CompressedMessage message) {
+    synchronized (clients) {
+      var connection = clients.get(id);
+      if (connection != null) {
+        connection.sendMessage(channel, message);
+      }
+    }
+  }
+
   /** Looks for any clients that have disconnected, and removes them. */
   public Collection<Connection> reapClients() {
     log.debug("About to reap clients");
@@ -17,6 +17,7 @@
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import net.rptools.clientserver.simple.connection.SocketConnection;
 import org.apache.logging.log4j.LogManager;
@@ -29,11 +30,25 @@ public class SocketServer extends AbstractServer {
 
   private static final Logger log = LogManager.getLogger(SocketServer.class);
   private final int port;
+  private final ThreadFactory threadFactory;
   private ServerSocket socket;
-  private ListeningThread listeningThread;
+  private ListeningLoop listeningLoop;
+  private Thread listeningThread;
 
   public SocketServer(int port) {
+    this(port, Thread.ofPlatform().factory());
+  }
+
+  /**
+   * Creates a server whose listening loop, and the send and receive loops of every connection, run
+   * on threads from {@code threadFactory}.
+   *
+   * @param port The port to listen on, or 0 for any free port.
+   * @param threadFactory Creates the threads, e.g. {@code Thread.ofVirtual().factory()}.
+   */
+  public SocketServer(int port, ThreadFactory threadFactory) {
     this.port = port;
+    this.threadFactory = threadFactory;
   }
 
   @Override
@@ -42,13 +57,15 @@ public void start() throws IOException {
     // If the above throws, it will be as though we never started.
 
     socket = serverSocket;
-    listeningThread = new ListeningThread(this, socket);
+    listeningLoop = new ListeningLoop(this, socket);
+    listeningThread = threadFactory.newThread(listeningLoop);
+    listeningThread.setName("SocketServer.ListeningThread");
     listeningThread.start();
   }
 
   @Override
   public void close() {
-    listeningThread.suppressErrors();
+    listeningLoop.suppressErrors();
     log.debug("Server closing down");
 
     try {
@@ -57,7 +74,7 @@ public void close() {
       log.warn(e.toString());
     }
 
-    listeningThread.requestStop();
+    listeningLoop.requestStop();
     log.debug("Server stopping listening thread");
     try {
       listeningThread.join();
@@ -66,18 +83,25 @@ public void close() {
     }
   }
 
+  /**
+   * @return The port the server is listening on. Useful when started with port 0.
+   */
+  public int getLocalPort() {
+    return socket.getLocalPort();
+  }
+
   public String getError() {
     return null;
   }
 
   ////
   // Threads
-  private static class ListeningThread extends Thread {
+  private static class ListeningLoop implements Runnable {
     private final SocketServer server;
     private final ServerSocket socket;
 
-    private boolean stopRequested = false;
-    private boolean suppressErrors = false;
+    private volatile boolean stopRequested = false;
+    private volatile boolean suppressErrors = false;
 
     private int nextConnectionId = 0;
 
@@ -85,8 +109,7 @@ private synchronized String nextClientId(Socket socket) {
       return socket.getInetAddress().getHostAddress() + "-" + (nextConnectionId++);
     }
 
-    public ListeningThread(SocketServer server, ServerSocket socket) {
-      setName("SocketServer.ListeningThread");
+    public ListeningLoop(SocketServer server, ServerSocket socket) {
       this.server = server;
       this.socket = socket;
     }
@@ -110,7 +133,7 @@ public void run() {
           log.debug("Client connecting ...");
 
           String id = nextClientId(s);
-          SocketConnection conn = new SocketConnection(id, s);
+          SocketConnection conn = new SocketConnection(id, s, server.threadFactory);
           server.fireClientConnect(conn);
         } catch (IOException e) {
           if (!suppressErrors) {
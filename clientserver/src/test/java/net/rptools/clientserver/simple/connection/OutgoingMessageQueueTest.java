@@ -0,0 +1,125 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OutgoingMessageQueueTest {
+  private enum TestChannel implements PrioritizedChannel {
+    BULK;
+
+    @Override
+    public int getPriority() {
+      return 10;
+    }
+  }
+
+  private OutgoingMessageQueue queue;
+
+  @BeforeEach
+  public void setUp() {
+    queue = new OutgoingMessageQueue();
+  }
+
+  private static byte[] message(int id) {
+    return new byte[] {(byte) id};
+  }
+
+  private byte nextId() throws InterruptedException {
+    var message = queue.poll(0, TimeUnit.MILLISECONDS);
+    assertNotNull(message);
+    return message[0];
+  }
+
+  @Test
+  public void testFifoWithinChannel() throws InterruptedException {
+    for (int i = 0; i < 5; ++i) {
+      queue.add(TestChannel.BULK, message(i));
+    }
+
+    for (int i = 0; i < 5; ++i) {
+      assertEquals(i, nextId());
+    }
+    assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testDefaultChannelPreemptsBulk() throws InterruptedException {
+    queue.add(TestChannel.BULK, message(1));
+    queue.add(TestChannel.BULK, message(2));
+    queue.add(null, message(3));
+    queue.add(TestChannel.BULK, message(4));
+    queue.add(null, message(5));
+
+    assertEquals(3, nextId());
+    assertEquals(5, nextId());
+    assertEquals(1, nextId());
+    assertEquals(2, nextId());
+    assertEquals(4, nextId());
+  }
+
+  @Test
+  public void testEqualPriorityChannelsInterleaveByAge() throws InterruptedException {
+    queue.add(null, message(1));
+    queue.add("other", message(2));
+    queue.add(null, message(3));
+
+    assertEquals(1, nextId());
+    assertEquals(2, nextId());
+    assertEquals(3, nextId());
+  }
+
+  @Test
+  public void testStatistics() throws InterruptedException {
+    queue.add(TestChannel.BULK, message(1));
+    queue.add(TestChannel.BULK, message(2));
+    queue.add(null, message(3));
+    nextId();
+    nextId();
+
+    var statistics = queue.getStatistics();
+    var bulk = statistics.get(TestChannel.BULK.toString());
+    var standard = statistics.get("default");
+    assertEquals(10, bulk.priority());
+    assertEquals(1, bulk.queueDepth());
+    assertEquals(1, bulk.messagesSent());
+    assertEquals(PrioritizedChannel.DEFAULT_PRIORITY, standard.priority());
+    assertEquals(0, standard.queueDepth());
+    assertEquals(1, standard.messagesSent());
+    assertTrue(standard.maxLatencyNanos() >= standard.averageLatencyNanos());
+  }
+
+  @Test
+  public void testTakeWaitsForMessage() throws Exception {
+    var producer =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                return;
+              }
+              queue.add(null, message(7));
+            });
+    producer.start();
+
+    assertEquals(7, queue.take()[0]);
+    producer.join();
+  }
+}
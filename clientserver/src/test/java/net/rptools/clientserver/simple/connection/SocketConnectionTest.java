@@ -0,0 +1,210 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import net.rptools.clientserver.ActivityListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SocketConnectionTest {
+  private record Notification(
+      ActivityListener.Direction direction,
+      ActivityListener.State state,
+      int total,
+      int current) {}
+
+  private SocketConnection clientSide;
+  private SocketConnection serverSide;
+  private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    try (var serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      var host = serverSocket.getInetAddress().getHostAddress();
+      clientSide = new SocketConnection("client", host, serverSocket.getLocalPort());
+      clientSide.open();
+      serverSide = new SocketConnection("server", serverSocket.accept());
+    }
+    serverSide.addMessageHandler((id, message) -> received.add(message));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    clientSide.close();
+    serverSide.close();
+  }
+
+  private static byte[] randomBytes(Random random, int length) {
+    var bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testSmallMessage() throws InterruptedException {
+    var message = new byte[] {0, 1, 2, 3, 4};
+
+    clientSide.sendMessage(message);
+
+    assertArrayEquals(message, received.poll(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testProgressNotifications() throws InterruptedException {
+    var notifications = new CopyOnWriteArrayList<Notification>();
+    serverSide.addActivityListener(
+        (direction, state, total, current) ->
+            notifications.add(new Notification(direction, state, total, current)));
+    // Random data does not compress, so the frame is a little larger than the payload.
+    var message = randomBytes(new Random(42), 10 * ActivityListener.CHUNK_SIZE + 17);
+
+    clientSide.sendMessage(message);
+    assertArrayEquals(message, received.poll(10, TimeUnit.SECONDS));
+
+    var first = notifications.get(0);
+    var last = notifications.get(notifications.size() - 1);
+    int frameLength = first.total();
+    assertEquals(ActivityListener.State.Start, first.state());
+    assertEquals(0, first.current());
+    assertEquals(ActivityListener.State.Complete, last.state());
+    assertEquals(frameLength, last.current());
+
+    List<Notification> progress = notifications.subList(1, notifications.size() - 1);
+    assertEquals((frameLength - 1) / ActivityListener.CHUNK_SIZE, progress.size());
+    for (int i = 0; i < progress.size(); ++i) {
+      assertEquals(ActivityListener.Direction.Inbound, progress.get(i).direction());
+      assertEquals(ActivityListener.State.Progress, progress.get(i).state());
+      assertEquals((i + 1) * ActivityListener.CHUNK_SIZE, progress.get(i).current());
+    }
+  }
+
+  /** Exposes the framing of {@link AbstractConnection} without a socket. */
+  private static class FramingConnection extends AbstractConnection {
+    byte[] read(InputStream in) throws IOException {
+      return readMessage(in);
+    }
+
+    @Override
+    public void open() {}
+
+    @Override
+    public void sendMessage(Object channel, byte[] message) {}
+
+    @Override
+    public boolean isAlive() {
+      return true;
+    }
+
+    @Override
+    public String getId() {
+      return "framing";
+    }
+
+    @Override
+    public String getError() {
+      return null;
+    }
+
+    @Override
+    protected void onClose() {}
+  }
+
+  /** Hands out at most a few bytes per read, as a slow socket does. */
+  private static class TricklingInputStream extends FilterInputStream {
+    TricklingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return super.read(b, off, Math.min(len, 3));
+    }
+  }
+
+  private static byte[] frame(byte[] body) {
+    return ByteBuffer.allocate(Integer.BYTES + body.length).putInt(body.length).put(body).array();
+  }
+
+  @Test
+  public void testPartialReads() throws IOException {
+    var random = new Random(1234);
+    var first = randomBytes(random, 3 * ActivityListener.CHUNK_SIZE + 5);
+    var second = randomBytes(random, 11);
+    var frames = new ByteArrayOutputStream();
+    frames.write(frame(first));
+    frames.write(frame(second));
+    var in = new TricklingInputStream(new ByteArrayInputStream(frames.toByteArray()));
+    var connection = new FramingConnection();
+
+    assertArrayEquals(first, connection.read(in));
+    assertArrayEquals(second, connection.read(in));
+  }
+
+  @Test
+  public void testEmptyMessage() throws IOException {
+    var in = new ByteArrayInputStream(frame(new byte[0]));
+
+    assertArrayEquals(new byte[0], new FramingConnection().read(in));
+  }
+
+  @Test
+  public void testStreamClosedBetweenMessages() {
+    var in = new ByteArrayInputStream(new byte[0]);
+
+    var e = assertThrows(IOException.class, () -> new FramingConnection().read(in));
+    assertFalse(e instanceof EOFException);
+  }
+
+  @Test
+  public void testEofInHeader() {
+    var in = new ByteArrayInputStream(new byte[] {0, 0});
+
+    assertThrows(EOFException.class, () -> new FramingConnection().read(in));
+  }
+
+  @Test
+  public void testEofInBody() {
+    var truncated = Arrays.copyOf(frame(new byte[2 * ActivityListener.CHUNK_SIZE]), 100);
+    var in = new TricklingInputStream(new ByteArrayInputStream(truncated));
+
+    assertThrows(EOFException.class, () -> new FramingConnection().read(in));
+  }
+
+  @Test
+  public void testNegativeLength() {
+    var in = new ByteArrayInputStream(ByteBuffer.allocate(Integer.BYTES).putInt(-1).array());
+
+    assertThrows(IOException.class, () -> new FramingConnection().read(in));
+  }
+}
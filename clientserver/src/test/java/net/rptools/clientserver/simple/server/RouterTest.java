@@ -19,6 +19,7 @@
 
 import java.util.ArrayList;
 import java.util.List;
+import net.rptools.clientserver.simple.connection.CompressedMessage;
 import net.rptools.clientserver.simple.connection.Connection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -41,6 +42,10 @@ public void setUp() {
     }
   }
 
+  private static CompressedMessage payloadOf(byte[] message) {
+    return argThat(m -> m.getPayload() == message);
+  }
+
   @Test
   public void testGetConnection() {
     var connection = router.getConnection("connection-2");
@@ -54,9 +59,9 @@ public void testSendMessage() {
 
     router.sendMessage("connection-1", message);
 
-    verify(mockConnections.get(0), never()).sendMessage(any(), any());
+    verify(mockConnections.get(0), never()).sendMessage(any(), any(byte[].class));
     verify(mockConnections.get(1)).sendMessage(null, message);
-    verify(mockConnections.get(2), never()).sendMessage(any(), any());
+    verify(mockConnections.get(2), never()).sendMessage(any(), any(byte[].class));
   }
 
   @Test
@@ -66,9 +71,9 @@ public void testSendMessageWithChannel() {
 
     router.sendMessage("connection-1", channel, message);
 
-    verify(mockConnections.get(0), never()).sendMessage(any(), any());
+    verify(mockConnections.get(0), never()).sendMessage(any(), any(byte[].class));
     verify(mockConnections.get(1)).sendMessage(channel, message);
-    verify(mockConnections.get(2), never()).sendMessage(any(), any());
+    verify(mockConnections.get(2), never()).sendMessage(any(), any(byte[].class));
   }
 
   @Test
@@ -77,9 +82,9 @@ public void testSendToUnknown() {
 
     router.sendMessage("unknown", message);
 
-    verify(mockConnections.get(0), never()).sendMessage(any());
-    verify(mockConnections.get(1), never()).sendMessage(any());
-    verify(mockConnections.get(2), never()).sendMessage(any());
+    verify(mockConnections.get(0), never()).sendMessage(any(), any(byte[].class));
+    verify(mockConnections.get(1), never()).sendMessage(any(), any(byte[].class));
+    verify(mockConnections.get(2), never()).sendMessage(any(), any(byte[].class));
   }
 
   @Test
@@ -88,9 +93,20 @@ public void testSimpleBroadcast() {
 
     router.broadcastMessage(message);
 
-    verify(mockConnections.get(0)).sendMessage(message);
-    verify(mockConnections.get(1)).sendMessage(message);
-    verify(mockConnections.get(2)).sendMessage(message);
+    verify(mockConnections.get(0)).sendMessage(isNull(), payloadOf(message));
+    verify(mockConnections.get(1)).sendMessage(isNull(), payloadOf(message));
+    verify(mockConnections.get(2)).sendMessage(isNull(), payloadOf(message));
+  }
+
+  @Test
+  public void testBroadcastSharesMessage() {
+    var message = CompressedMessage.of("test", new byte[] {0, 1, 2, 3, 4});
+
+    router.broadcastMessage(message);
+
+    verify(mockConnections.get(0)).sendMessage(null, message);
+    verify(mockConnections.get(1)).sendMessage(null, message);
+    verify(mockConnections.get(2)).sendMessage(null, message);
   }
 
   @Test
@@ -99,9 +115,9 @@ public void testBroadcastWithExclude() {
 
     router.broadcastMessage(new String[] {mockConnections.get(1).getId()}, message);
 
-    verify(mockConnections.get(0)).sendMessage(message);
-    verify(mockConnections.get(1), never()).sendMessage(any());
-    verify(mockConnections.get(2)).sendMessage(message);
+    verify(mockConnections.get(0)).sendMessage(isNull(), payloadOf(message));
+    verify(mockConnections.get(1), never()).sendMessage(any(), any(CompressedMessage.class));
+    verify(mockConnections.get(2)).sendMessage(isNull(), payloadOf(message));
   }
 
   @Test
@@ -114,10 +130,10 @@ public void testRedundantAddConnection() {
 
     var message = new byte[] {0, 1, 2, 3, 4};
     router.broadcastMessage(message);
-    verify(mockConnections.get(0)).sendMessage(message);
-    verify(mockConnections.get(1)).sendMessage(message);
-    verify(mockConnections.get(2)).sendMessage(message);
-    verify(newConnection, never()).sendMessage(any());
+    verify(mockConnections.get(0)).sendMessage(isNull(), payloadOf(message));
+    verify(mockConnections.get(1)).sendMessage(isNull(), payloadOf(message));
+    verify(mockConnections.get(2)).sendMessage(isNull(), payloadOf(message));
+    verify(newConnection, never()).sendMessage(any(), any(CompressedMessage.class));
   }
 
   @Test
@@ -126,9 +142,9 @@ public void testRemoveConnection() {
 
     var message = new byte[] {0, 1, 2, 3, 4};
     router.broadcastMessage(message);
-    verify(mockConnections.get(0)).sendMessage(message);
-    verify(mockConnections.get(1), never()).sendMessage(any());
-    verify(mockConnections.get(2)).sendMessage(message);
+    verify(mockConnections.get(0)).sendMessage(isNull(), payloadOf(message));
+    verify(mockConnections.get(1), never()).sendMessage(any(), any(CompressedMessage.class));
+    verify(mockConnections.get(2)).sendMessage(isNull(), payloadOf(message));
   }
 
   @Test
@@ -138,9 +154,9 @@ public void testRedundantRemoveConnection() {
 
     var message = new byte[] {0, 1, 2, 3, 4};
     router.broadcastMessage(message);
-    verify(mockConnections.get(0)).sendMessage(message);
-    verify(mockConnections.get(1), never()).sendMessage(any());
-    verify(mockConnections.get(2)).sendMessage(message);
+    verify(mockConnections.get(0)).sendMessage(isNull(), payloadOf(message));
+    verify(mockConnections.get(1), never()).sendMessage(any(), any(CompressedMessage.class));
+    verify(mockConnections.get(2)).sendMessage(isNull(), payloadOf(message));
   }
 
   @Test
@@ -155,9 +171,9 @@ public void testReapClients() {
     assert reaped.contains(mockConnections.get(2));
 
     router.broadcastMessage(message);
-    verify(mockConnections.get(0), never()).sendMessage(any());
-    verify(mockConnections.get(1)).sendMessage(message);
-    verify(mockConnections.get(2), never()).sendMessage(any());
+    verify(mockConnections.get(0), never()).sendMessage(any(), any(CompressedMessage.class));
+    verify(mockConnections.get(1)).sendMessage(isNull(), payloadOf(message));
+    verify(mockConnections.get(2), never()).sendMessage(any(), any(CompressedMessage.class));
   }
 
   @Test
@@ -170,8 +186,8 @@ public void testRemoveAll() {
     assert removed.contains(mockConnections.get(2));
 
     router.broadcastMessage(message);
-    verify(mockConnections.get(0), never()).sendMessage(message);
-    verify(mockConnections.get(1), never()).sendMessage(message);
-    verify(mockConnections.get(2), never()).sendMessage(message);
+    verify(mockConnections.get(0), never()).sendMessage(any(), any(CompressedMessage.class));
+    verify(mockConnections.get(1), never()).sendMessage(any(), any(CompressedMessage.class));
+    verify(mockConnections.get(2), never()).sendMessage(any(), any(CompressedMessage.class));
   }
 }
@@ -0,0 +1,163 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.rptools.clientserver.simple.connection.Connection;
+import net.rptools.clientserver.simple.connection.SocketConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SocketServerTest {
+  private record Received(String id, byte[] message) {}
+
+  private SocketServer server;
+  private final Router router = new Router();
+  private final BlockingQueue<Received> serverReceived = new LinkedBlockingQueue<>();
+  private final List<SocketConnection> clients = new ArrayList<>();
+  private final List<BlockingQueue<byte[]>> clientReceived = new ArrayList<>();
+  private final AtomicInteger threadsCreated = new AtomicInteger();
+  private CountDownLatch connected;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    server =
+        new SocketServer(
+            0,
+            runnable -> {
+              threadsCreated.incrementAndGet();
+              return Thread.ofVirtual().unstarted(runnable);
+            });
+    server.addObserver(
+        conn -> {
+          conn.addMessageHandler((id, message) -> serverReceived.add(new Received(id, message)));
+          router.addConnection(conn);
+          connected.countDown();
+        });
+    server.start();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    clients.forEach(Connection::close);
+    router.removeAll().forEach(Connection::close);
+    server.close();
+  }
+
+  private void connectClients(int count) throws IOException, InterruptedException {
+    connected = new CountDownLatch(count);
+    var host = InetAddress.getLoopbackAddress().getHostAddress();
+    for (int i = 0; i < count; ++i) {
+      var client = new SocketConnection("client-" + i, host, server.getLocalPort());
+      var received = new LinkedBlockingQueue<byte[]>();
+      client.addMessageHandler((id, message) -> received.add(message));
+      client.open();
+      clients.add(client);
+      clientReceived.add(received);
+    }
+    assertTrue(connected.await(30, TimeUnit.SECONDS), "Not all clients connected");
+  }
+
+  private String serverSideId(int clientIndex) throws InterruptedException {
+    clients.get(clientIndex).sendMessage(new byte[] {(byte) clientIndex});
+    var received = serverReceived.poll(10, TimeUnit.SECONDS);
+    assertNotNull(received);
+    assertEquals(clientIndex, received.message()[0]);
+    return received.id();
+  }
+
+  @Test
+  public void testSendMessage() throws Exception {
+    connectClients(3);
+    var id = serverSideId(1);
+    var message = new byte[] {0, 1, 2, 3, 4};
+
+    router.sendMessage(id, message);
+
+    assertArrayEquals(message, clientReceived.get(1).poll(10, TimeUnit.SECONDS));
+    assertNull(clientReceived.get(0).poll(100, TimeUnit.MILLISECONDS));
+    assertNull(clientReceived.get(2).poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testBroadcastWithExclude() throws Exception {
+    connectClients(3);
+    var id = serverSideId(1);
+    var message = new byte[] {0, 1, 2, 3, 4};
+
+    router.broadcastMessage(new String[] {id}, message);
+
+    assertArrayEquals(message, clientReceived.get(0).poll(10, TimeUnit.SECONDS));
+    assertArrayEquals(message, clientReceived.get(2).poll(10, TimeUnit.SECONDS));
+    assertNull(clientReceived.get(1).poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testReapClients() throws Exception {
+    connectClients(3);
+    var id = serverSideId(1);
+
+    clients.get(1).close();
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (router.getConnection(id).isAlive() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+
+    var reaped = router.reapClients();
+    assertEquals(1, reaped.size());
+    assertEquals(id, reaped.iterator().next().getId());
+  }
+
+  @Test
+  public void testThreadsFromFactory() throws Exception {
+    connectClients(2);
+
+    // The listening thread, plus a send and a receive thread for each accepted connection.
+    assertEquals(1 + 2 * 2, threadsCreated.get());
+  }
+
+  @Test
+  public void testManyConnections() throws Exception {
+    final int clientCount = 200;
+    final int messagesPerClient = 20;
+    connectClients(clientCount);
+
+    for (int round = 0; round < messagesPerClient; ++round) {
+      for (var client : clients) {
+        client.sendMessage(new byte[] {(byte) round});
+      }
+    }
+    for (int i = 0; i < clientCount * messagesPerClient; ++i) {
+      assertNotNull(serverReceived.poll(30, TimeUnit.SECONDS), "Missing client message");
+    }
+
+    var broadcast = new byte[64 * 1024];
+    router.broadcastMessage(broadcast);
+    for (var received : clientReceived) {
+      assertArrayEquals(broadcast, received.poll(30, TimeUnit.SECONDS));
+    }
+  }
+}
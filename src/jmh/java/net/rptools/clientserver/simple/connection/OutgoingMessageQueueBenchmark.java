@@ -0,0 +1,72 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.connection;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Queues a burst of messages spread over channels of different priorities, as during a campaign
+ * load, and takes them back off in send order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutgoingMessageQueueBenchmark {
+  private record Channel(String name, int priority) implements PrioritizedChannel {
+    @Override
+    public int getPriority() {
+      return priority;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private static final Channel[] CHANNELS = {
+    new Channel("interactive", -10), new Channel("token", 0), new Channel("image", 10)
+  };
+
+  @Param({"1000", "10000"})
+  public int messageCount;
+
+  private final OutgoingMessageQueue queue = new OutgoingMessageQueue();
+  private final byte[] message = new byte[64];
+
+  @Benchmark
+  public void addAndTake(Blackhole blackhole) throws InterruptedException {
+    for (int i = 0; i < messageCount; i++) {
+      queue.add(CHANNELS[i % CHANNELS.length], message);
+    }
+    for (int i = 0; i < messageCount; i++) {
+      blackhole.consume(queue.take());
+    }
+  }
+}
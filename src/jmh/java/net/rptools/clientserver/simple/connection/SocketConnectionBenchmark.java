@@ -0,0 +1,101 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.clientserver.simple.connection;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pushes multi-megabyte messages between two {@link SocketConnection}s over a loopback socket,
+ * through the compression and framing that a campaign sent to a client goes through.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketConnectionBenchmark {
+  @Param({"1048576", "16777216"})
+  public int messageSize;
+
+  /** Campaign XML and protobuf compress well, image assets hardly at all. */
+  @Param({"true", "false"})
+  public boolean compressible;
+
+  private SocketConnection clientSide;
+  private SocketConnection serverSide;
+  private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+  private byte[] message;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    try (var serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      var host = serverSocket.getInetAddress().getHostAddress();
+      clientSide = new SocketConnection("client", host, serverSocket.getLocalPort());
+      clientSide.open();
+      serverSide = new SocketConnection("server", serverSocket.accept());
+    }
+    serverSide.addMessageHandler((id, message) -> received.add(message));
+
+    message = new byte[messageSize];
+    if (compressible) {
+      byte[] line =
+          "<token id=\"0123456789abcdef\" x=\"100\" y=\"200\" layer=\"TOKEN\"/>\n"
+              .getBytes(StandardCharsets.UTF_8);
+      for (int i = 0; i < messageSize; i++) {
+        message[i] = line[i % line.length];
+      }
+    } else {
+      new Random(4321).nextBytes(message);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    clientSide.close();
+    serverSide.close();
+  }
+
+  @Benchmark
+  public byte[] sendMessage() throws InterruptedException {
+    clientSide.sendMessage(null, message);
+    return received.take();
+  }
+
+  @Benchmark
+  public byte[] encodeAndDecode() {
+    return CompressedMessage.decode(CompressedMessage.encode(message));
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.rptools.parser.ParserException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Runs the macros from {@code MapToolLineParserTest} through {@link MapToolLineParser}, either
+ * reusing their compiled form from earlier runs or compiling them afresh each time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapToolLineParserBenchmark {
+  private static final String SOURCE = "benchmark";
+
+  private static final List<String> MACROS =
+      List.of(
+          "a var gives [r: a = 1]",
+          "a condition leads to [r: if(1 == 1, 1, 0)]",
+          "a d10 roll[h: d20roll = 1d10] is always a [r,if(d20roll == 20): "
+              + "output = \"Critical Hit\"; output = \"No Critical Hit\"]",
+          "a hidden evaluation gives nothing[h: if(1 == 1, 1, 0)]",
+          "expanded roll shows [e: if(1 == 1, 1, 0)]",
+          "a loop yields [r, count(3): \"hit\" ]",
+          "switched is [h:a=1][r,switch(a): case 0: 0; case 1: 1; case 2: 2; default: -1]",
+          "got [r: evalMacro('[r:\"evaluated\"]')]",
+          "[r: 1]",
+          "[r, code: {  1 }]",
+          "[r, if(1 == 1): \"true\"; \"false\"]",
+          "[r, if(1 == 1), code: {  [r:\"still\"] [r:\"true\"]};{  [\"always false\"]}]",
+          "[h: a = 3][h, switch(a), code:case 1: { [a = \"one\"] };case 2: { [a = \"two\"] };"
+              + "case 3: { [a = \"three\"] };default: { [a = \"default\"] }]");
+
+  private final MapToolLineParser parser = MapTool.getParser();
+
+  /** Whether macros keep their compiled form between runs. */
+  @Param({"true", "false"})
+  public boolean compiled;
+
+  @Benchmark
+  public void runMacros(Blackhole blackhole) throws ParserException {
+    for (var macro : MACROS) {
+      if (!compiled) {
+        MapToolLineParser.invalidateCompiledMacros(SOURCE);
+      }
+      var context = new MapToolMacroContext(SOURCE, SOURCE, true);
+      blackhole.consume(parser.parseLine(new MapToolVariableResolver(null), null, macro, context));
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.script.javascript;
+
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptException;
+import net.rptools.parser.ParserException;
+import org.graalvm.polyglot.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Runs 10,000 small scripts the way {@code js.eval} does, both anonymously and in a named context.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JSEvalBenchmark {
+  private static final int CALLS = 10_000;
+
+  private static final String CONTEXT_NAME = "benchmark";
+
+  private final JSScriptEngine engine = JSScriptEngine.getJSScriptEngine();
+
+  @Benchmark
+  public void anonymous(Blackhole blackhole) throws ScriptException {
+    for (int i = 0; i < CALLS; ++i) {
+      Value value = engine.evalAnonymous("let total = 0; for (let n = 0; n < 10; n++) total += n;");
+      blackhole.consume(value);
+    }
+  }
+
+  @Benchmark
+  public void namedContext(Blackhole blackhole) throws ScriptException, ParserException {
+    for (int i = 0; i < CALLS; ++i) {
+      Value value = engine.evalScript(CONTEXT_NAME, "[1, 2, 3].map(n => n * 2).join(',')", true);
+      blackhole.consume(value);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone.vbl;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.client.ui.zone.FogUtil;
+import net.rptools.maptool.model.topology.VisionResult;
+import net.rptools.maptool.model.topology.WallTopology;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.LinearRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares a vision sweep over the indexed {@link NodedTopology} with what collecting the segments
+ * from every wall used to cost before any sweeping was done.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodedTopologySweepBenchmark {
+  private static final int SPACING = 20;
+  private static final int ORIGIN_COUNT = 200;
+
+  @Param({"1000", "10000", "100000"})
+  public int segmentCount;
+
+  private WallTopology walls;
+  private NodedTopology noded;
+  private Coordinate[] origins;
+  private Envelope[] bounds;
+  private int next;
+
+  /**
+   * Builds a lattice of short walls that never touch one another, so that noding leaves them as
+   * they are.
+   */
+  static WallTopology lattice(int segmentCount) {
+    var walls = new WallTopology();
+    int side = (int) Math.ceil(Math.sqrt(segmentCount));
+    for (int i = 0; i < segmentCount; ++i) {
+      int x = (i % side) * SPACING;
+      int y = (i / side) * SPACING;
+      var horizontal = i % 2 == 0;
+      walls.string(
+          new Point2D.Double(x, y),
+          builder ->
+              builder.push(
+                  horizontal
+                      ? new Point2D.Double(x + SPACING / 2., y)
+                      : new Point2D.Double(x, y + SPACING / 2.)));
+    }
+    return walls;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    walls = lattice(segmentCount);
+    noded = NodedTopology.prepare(walls, List.of());
+    int side = (int) Math.ceil(Math.sqrt(segmentCount)) * SPACING;
+
+    var random = new Random(segmentCount);
+    origins = new Coordinate[ORIGIN_COUNT];
+    bounds = new Envelope[ORIGIN_COUNT];
+    for (int i = 0; i < ORIGIN_COUNT; ++i) {
+      origins[i] = new Coordinate(random.nextInt(side) + 0.5, random.nextInt(side) + 0.5);
+      bounds[i] = new Envelope(origins[i]);
+      bounds[i].expandBy(250);
+    }
+  }
+
+  @Benchmark
+  public LinearRing indexedSweep() {
+    int i = next++ % ORIGIN_COUNT;
+    return FogUtil.doVisionSweep(origins[i], bounds[i], noded);
+  }
+
+  @Benchmark
+  public VisionResult scanAllWalls() {
+    int i = next++ % ORIGIN_COUNT;
+    return walls.addSegments(origins[i], bounds[i], s -> {});
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone.vbl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.rptools.lib.GeometryUtil;
+import net.rptools.maptool.model.topology.WallTopology;
+import org.locationtech.jts.geom.Coordinate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares re-noding after one wall of a large map has moved with {@link NodedTopology#update}
+ * against a full {@link NodedTopology#prepare}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodedTopologyUpdateBenchmark {
+  @Param({"20000"})
+  public int segmentCount;
+
+  private NodedTopology noded;
+  private WallTopology moved;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var segments = new ArrayList<Coordinate[]>();
+    NodedTopologySweepBenchmark.lattice(segmentCount)
+        .getWalls()
+        .forEach(
+            wall -> {
+              var segment = wall.asSegment();
+              segments.add(new Coordinate[] {segment.p0, segment.p1});
+            });
+    noded = NodedTopology.prepare(toWalls(segments), List.of());
+
+    var segment = segments.get(segments.size() / 2);
+    segment[1] = new Coordinate(segment[1].x + 3, segment[1].y + 7);
+    moved = toWalls(segments);
+  }
+
+  private static WallTopology toWalls(List<Coordinate[]> segments) {
+    var walls = new WallTopology();
+    for (var segment : segments) {
+      walls.string(
+          GeometryUtil.coordinateToPoint2D(segment[0]),
+          builder -> builder.push(GeometryUtil.coordinateToPoint2D(segment[1])));
+    }
+    return walls;
+  }
+
+  @Benchmark
+  public NodedTopology fullPrepare() {
+    return NodedTopology.prepare(moved, List.of());
+  }
+
+  @Benchmark
+  public NodedTopology incrementalUpdate() {
+    return noded.update(moved, List.of());
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link AStarSearch} against the boxed {@link PriorityQueue} and {@link HashMap} approach
+ * it replaced, by solving generated mazes with 8-way movement.
+ *
+ * <p>The mazes are perfect mazes carved by a randomized depth-first search, with a few extra walls
+ * knocked out so there are competing routes and decrease-key operations actually happen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AStarSearchBenchmark {
+  private static final int[][] NEIGHBORS = {
+    {0, -1}, {1, 0}, {0, 1}, {-1, 0}, {1, -1}, {1, 1}, {-1, 1}, {-1, -1}
+  };
+
+  @Param({"63", "255", "1023"})
+  public int size;
+
+  private BitSet open;
+  private final AStarSearch search = new AStarSearch();
+
+  @Setup
+  public void setUp() {
+    open = carveMaze(size, new Random(size));
+  }
+
+  private static BitSet carveMaze(int size, Random random) {
+    final var open = new BitSet(size * size);
+    final var stack = new ArrayDeque<int[]>();
+    open.set(size + 1);
+    stack.push(new int[] {1, 1});
+    final int[][] steps = {{0, -2}, {2, 0}, {0, 2}, {-2, 0}};
+    while (!stack.isEmpty()) {
+      final var cell = stack.peek();
+      var carved = false;
+      for (int attempt = random.nextInt(4), i = 0; i < 4; ++i, ++attempt) {
+        final var step = steps[attempt % 4];
+        final var x = cell[0] + step[0];
+        final var y = cell[1] + step[1];
+        if (x > 0 && y > 0 && x < size - 1 && y < size - 1 && !open.get(y * size + x)) {
+          open.set((cell[1] + step[1] / 2) * size + cell[0] + step[0] / 2);
+          open.set(y * size + x);
+          stack.push(new int[] {x, y});
+          carved = true;
+          break;
+        }
+      }
+      if (!carved) {
+        stack.pop();
+      }
+    }
+    for (int i = 0; i < size * size / 50; ++i) {
+      final var x = 1 + random.nextInt(size - 2);
+      final var y = 1 + random.nextInt(size - 2);
+      open.set(y * size + x);
+    }
+    return open;
+  }
+
+  private boolean isOpen(int x, int y) {
+    return x >= 0 && y >= 0 && x < size && y < size && open.get(y * size + x);
+  }
+
+  private double h(int x, int y) {
+    final var dx = Math.abs(size - 2 - x);
+    final var dy = Math.abs(size - 2 - y);
+    return Math.max(dx, dy);
+  }
+
+  @Benchmark
+  public double indexedHeap() {
+    search.reset();
+    final var goalX = size - 2;
+    final var goalY = size - 2;
+    var start = search.add(1, 1, false);
+    search.setPath(start, -1, 0, 0, 0);
+    search.open(start);
+    while (search.hasOpen()) {
+      final var node = search.pollOpen();
+      final var x = search.x(node);
+      final var y = search.y(node);
+      if (x == goalX && y == goalY) {
+        return search.g(node);
+      }
+      for (final var step : NEIGHBORS) {
+        final var nx = x + step[0];
+        final var ny = y + step[1];
+        if (!isOpen(nx, ny)) {
+          continue;
+        }
+        final var g = search.g(node) + (step[0] != 0 && step[1] != 0 ? 1.5 : 1);
+        var neighbor = search.find(nx, ny, false);
+        if (neighbor < 0) {
+          neighbor = search.add(nx, ny, false);
+          search.setH(neighbor, h(nx, ny));
+          search.setPath(neighbor, node, g, g, g);
+          search.open(neighbor);
+        } else if (search.isOpen(neighbor) && g < search.g(neighbor)) {
+          search.setPath(neighbor, node, g, g, g);
+        }
+      }
+      search.close(node);
+    }
+    return -1;
+  }
+
+  private static final class BoxedNode {
+    final int x;
+    final int y;
+    double g;
+    double h;
+    BoxedNode parent;
+
+    BoxedNode(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+
+    double fCost() {
+      return g + h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof BoxedNode other && x == other.x && y == other.y;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * x + y;
+    }
+  }
+
+  @Benchmark
+  public double boxedPriorityQueue() {
+    final var goalX = size - 2;
+    final var goalY = size - 2;
+    final var openList = new PriorityQueue<>(Comparator.comparingDouble(BoxedNode::fCost));
+    final var openSet = new HashMap<BoxedNode, BoxedNode>();
+    final var closedSet = new HashSet<BoxedNode>();
+    final var start = new BoxedNode(1, 1);
+    openList.add(start);
+    openSet.put(start, start);
+    while (!openList.isEmpty()) {
+      final var node = openList.remove();
+      openSet.remove(node);
+      if (node.x == goalX && node.y == goalY) {
+        return node.g;
+      }
+      for (final var step : NEIGHBORS) {
+        final var neighbor = new BoxedNode(node.x + step[0], node.y + step[1]);
+        if (!isOpen(neighbor.x, neighbor.y) || closedSet.contains(neighbor)) {
+          continue;
+        }
+        neighbor.g = node.g + (step[0] != 0 && step[1] != 0 ? 1.5 : 1);
+        neighbor.h = h(neighbor.x, neighbor.y);
+        neighbor.parent = node;
+        final var oldNode = openSet.get(neighbor);
+        if (oldNode != null) {
+          if (neighbor.g < oldNode.g) {
+            openList.remove(oldNode);
+            oldNode.g = neighbor.g;
+            oldNode.parent = node;
+            openList.add(oldNode);
+          }
+          continue;
+        }
+        openList.add(neighbor);
+        openSet.put(neighbor, neighbor);
+      }
+      closedSet.add(node);
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares Jump Point Search against expanding every neighbor, the way {@link
+ * AStarSquareEuclideanWalker} does with terrain modifiers, on a 500x500 cell map.
+ *
+ * <p>The map is divided into rooms by walls with a doorway in each, and has some pillars scattered
+ * around. Paths run from one corner to the opposite one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JumpPointSearchBenchmark {
+  private static final int SIZE = 500;
+
+  /** The cost of a diagonal step, as for the 1-1-1 metric. */
+  private static final int DIAGONAL_COST = 1;
+
+  /** The width of each room, or 0 for a single open room. */
+  @Param({"0", "25"})
+  public int roomSize;
+
+  private BitSet blocked;
+  private JumpPoints grid;
+  private final AStarSearch search = new AStarSearch();
+
+  @Setup
+  public void setUp() {
+    final var random = new Random(SIZE);
+    blocked = new BitSet(SIZE * SIZE);
+    if (roomSize > 0) {
+      for (int wall = roomSize; wall < SIZE; wall += roomSize) {
+        for (int i = 0; i < SIZE; ++i) {
+          blocked.set(wall * SIZE + i);
+          blocked.set(i * SIZE + wall);
+        }
+        for (int door = roomSize / 2; door < SIZE; door += roomSize) {
+          blocked.clear(wall * SIZE + door);
+          blocked.clear(door * SIZE + wall);
+        }
+      }
+    }
+    for (int i = 0; i < SIZE * SIZE / 200; ++i) {
+      blocked.set(random.nextInt(SIZE * SIZE));
+    }
+    blocked.clear(0);
+    blocked.clear(SIZE * SIZE - 1);
+
+    grid =
+        new JumpPoints(
+            new JumpPoints.Grid() {
+              @Override
+              public boolean canEnter(int x, int y) {
+                return x >= 0 && y >= 0 && x < SIZE && y < SIZE && !blocked.get(y * SIZE + x);
+              }
+
+              @Override
+              public boolean isStepBlocked(int x, int y, int dx, int dy) {
+                return false;
+              }
+
+              @Override
+              public boolean isOpen(int x, int y) {
+                for (int dy = -1; dy <= 1; ++dy) {
+                  for (int dx = -1; dx <= 1; ++dx) {
+                    if (!canEnter(x + dx, y + dy)) {
+                      return false;
+                    }
+                  }
+                }
+                return true;
+              }
+            });
+  }
+
+  private double h(int x, int y) {
+    final var dx = SIZE - 1 - x;
+    final var dy = SIZE - 1 - y;
+    return DIAGONAL_COST * Math.min(dx, dy) + Math.abs(dx - dy);
+  }
+
+  private double cost(int dx, int dy) {
+    return dx != 0 && dy != 0 ? DIAGONAL_COST : 1;
+  }
+
+  private void reach(int from, int x, int y, double g) {
+    var node = search.find(x, y, false);
+    if (node < 0) {
+      node = search.add(x, y, false);
+      search.setH(node, h(x, y));
+      search.setPath(node, from, g, g, g);
+      search.open(node);
+    } else if (search.isOpen(node) && g < search.g(node)) {
+      search.setPath(node, from, g, g, g);
+    }
+  }
+
+  private int start() {
+    search.reset();
+    grid.reset();
+    final var start = search.add(0, 0, false);
+    search.open(start);
+    return start;
+  }
+
+  @Benchmark
+  public double everyNeighbor() {
+    start();
+    while (search.hasOpen()) {
+      final var node = search.pollOpen();
+      final var x = search.x(node);
+      final var y = search.y(node);
+      if (x == SIZE - 1 && y == SIZE - 1) {
+        return search.g(node);
+      }
+      for (final var d : JumpPoints.DIRECTIONS) {
+        if (grid.canStep(x, y, d[0], d[1])) {
+          reach(node, x + d[0], y + d[1], search.g(node) + cost(d[0], d[1]));
+        }
+      }
+      search.close(node);
+    }
+    return -1;
+  }
+
+  @Benchmark
+  public double jumpPoints() {
+    start();
+    while (search.hasOpen()) {
+      final var node = search.pollOpen();
+      final var x = search.x(node);
+      final var y = search.y(node);
+      if (x == SIZE - 1 && y == SIZE - 1) {
+        return search.g(node);
+      }
+      final var parent = search.parent(node);
+      final var directions =
+          parent < 0
+              ? JumpPoints.ALL_DIRECTIONS
+              : grid.successors(
+                  x, y, Integer.signum(x - search.x(parent)), Integer.signum(y - search.y(parent)));
+      for (int i = 0; i < JumpPoints.DIRECTIONS.length; ++i) {
+        if ((directions & (1 << i)) == 0) {
+          continue;
+        }
+        final var d = JumpPoints.DIRECTIONS[i];
+        final var steps = grid.jump(x, y, d[0], d[1], SIZE - 1, SIZE - 1);
+        if (steps > 0) {
+          reach(
+              node, x + steps * d[0], y + steps * d[1], search.g(node) + steps * cost(d[0], d[1]));
+        }
+      }
+      search.close(node);
+    }
+    return -1;
+  }
+}
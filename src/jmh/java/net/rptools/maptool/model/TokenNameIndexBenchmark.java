@@ -0,0 +1,89 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares looking tokens up by name through {@link Zone#resolveToken(String)} against the full
+ * scan it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenNameIndexBenchmark {
+  @Param({"5000"})
+  public int tokenCount;
+
+  private Zone zone;
+  private String[] names;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    zone = new Zone();
+    Grid grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+    for (int i = 0; i < tokenCount; ++i) {
+      Token token = new Token();
+      token.setName("Token " + i);
+      token.setGMName("GM " + i);
+      token.setZOrder(i);
+      zone.putToken(token);
+    }
+
+    names = new String[tokenCount];
+    for (int i = 0; i < tokenCount; ++i) {
+      names[i] = "TOKEN " + (i * 7919 % tokenCount);
+    }
+  }
+
+  private String nextName() {
+    next = (next + 1) % names.length;
+    return names[next];
+  }
+
+  @Benchmark
+  public Token scan() {
+    String name = nextName();
+    for (Token token : zone.getAllTokens()) {
+      if (name.equalsIgnoreCase(token.getName())) {
+        return token;
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public Token indexed() {
+    return zone.resolveToken(nextName());
+  }
+}
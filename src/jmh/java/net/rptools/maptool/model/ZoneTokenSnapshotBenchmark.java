@@ -0,0 +1,80 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.model.Zone.Layer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the shared token snapshots of {@link Zone#getAllTokens()} and {@link
+ * Zone#forEachToken} against the copy {@code getAllTokens()} used to make on every call. Run with
+ * {@code -prof gc} to see the allocation per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZoneTokenSnapshotBenchmark {
+  @Param({"2000"})
+  public int tokenCount;
+
+  private Zone zone;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    zone = new Zone();
+    Grid grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+    for (int i = 0; i < tokenCount; ++i) {
+      Token token = new Token();
+      token.setZOrder(i);
+      token.setLayer(i % 4 == 0 ? Layer.OBJECT : Layer.TOKEN);
+      zone.putToken(token);
+    }
+  }
+
+  @Benchmark
+  public List<Token> copying() {
+    return new ArrayList<>(zone.getAllTokens());
+  }
+
+  @Benchmark
+  public List<Token> snapshot() {
+    return zone.getAllTokens();
+  }
+
+  @Benchmark
+  public void forEachToken(Blackhole blackhole) {
+    zone.forEachToken(Layer.TOKEN, Token::isVisible, blackhole::consume);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.transfer;
+
+import com.google.protobuf.ByteString;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.rptools.lib.FileUtil;
+import net.rptools.lib.MD5Key;
+import net.rptools.maptool.server.proto.AssetChunkDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transfers a synthetic campaign's worth of assets from producers to consumers, once the way {@link
+ * AssetProducer} and {@link AssetConsumer} used to, reopening both files for every chunk, and once
+ * through the open channels they stream through now. Both run with the old fixed chunk size and
+ * the largest chunk size of {@link AdaptiveChunkSize}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssetTransferBenchmark {
+  @Param({"5120", "65536"})
+  public int chunkSize;
+
+  @Param({"100"})
+  public int assetCount;
+
+  @Param({"262144"})
+  public int assetSize;
+
+  private File dir;
+  private File[] sources;
+  private File destinationDir;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("transfer-benchmark").toFile();
+    destinationDir = new File(dir, "destination");
+    File sourceDir = new File(dir, "source");
+    sourceDir.mkdirs();
+
+    Random random = new Random(4321);
+    sources = new File[assetCount];
+    for (int i = 0; i < assetCount; i++) {
+      byte[] data = new byte[assetSize + i];
+      random.nextBytes(data);
+      sources[i] = new File(sourceDir, i + ".dat");
+      Files.write(sources[i].toPath(), data);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void clearDestination() {
+    FileUtil.delete(destinationDir);
+    destinationDir.mkdirs();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtil.delete(dir);
+  }
+
+  @Benchmark
+  public int reopenPerChunk() throws IOException {
+    int chunks = 0;
+    for (int i = 0; i < sources.length; i++) {
+      File destination = new File(destinationDir, i + ".part");
+      long length = sources[i].length();
+      for (long position = 0; position < length; position += chunkSize) {
+        int size = (int) Math.min(chunkSize, length - position);
+        byte[] data = new byte[size];
+        try (FileInputStream in = new FileInputStream(sources[i])) {
+          in.skip(position);
+          in.read(data, 0, size);
+        }
+        AssetChunkDto chunk =
+            AssetChunkDto.newBuilder()
+                .setId(Integer.toString(i))
+                .setData(ByteString.copyFrom(data))
+                .build();
+        try (FileOutputStream out = new FileOutputStream(destination, true)) {
+          out.write(chunk.getData().toByteArray());
+        }
+        chunks++;
+      }
+    }
+    return chunks;
+  }
+
+  @Benchmark
+  public int streamed() throws IOException {
+    int chunks = 0;
+    for (int i = 0; i < sources.length; i++) {
+      try (AssetProducer producer =
+              new AssetProducer(new MD5Key("asset" + i), "asset", sources[i]);
+          AssetConsumer consumer = new AssetConsumer(destinationDir, producer.getHeader())) {
+        while (!producer.isComplete()) {
+          consumer.update(producer.nextChunk(chunkSize));
+          chunks++;
+        }
+      }
+    }
+    return chunks;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import net.rptools.lib.FileUtil;
+import net.rptools.lib.io.PackedFile;
+import net.rptools.maptool.client.ui.Scale;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.util.PersistenceUtil.CampaignSnapshot;
+import net.rptools.maptool.util.PersistenceUtil.PersistedCampaign;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares saving and loading a large synthetic campaign as XStream XML content against the
+ * streamed protobuf format written by {@link PersistenceUtil#saveCampaignDto(CampaignSnapshot,
+ * PackedFile)}. Both saves start from the Campaign, so the protobuf save includes taking the
+ * snapshot.
+ *
+ * <p>Only the campaign itself is written; assets, add-on libraries and game data are the same for
+ * both formats and left out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CampaignFileBenchmark {
+  @Param({"xml", "protobuf"})
+  public String format;
+
+  @Param({"20"})
+  public int zoneCount;
+
+  @Param({"500"})
+  public int tokensPerZone;
+
+  private File dir;
+  private File savedFile;
+  private File loadedFile;
+  private PersistedCampaign persistedCampaign;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("campaign-benchmark").toFile();
+    savedFile = new File(dir, "saved.cmpgn");
+    loadedFile = new File(dir, "loaded.cmpgn");
+
+    var campaign = new Campaign();
+    for (int z = 0; z < zoneCount; z++) {
+      var zone = new Zone();
+      zone.setName("Zone " + z);
+      for (int t = 0; t < tokensPerZone; t++) {
+        var token = new Token();
+        token.setName("Token " + z + "-" + t);
+        token.setX(t * 50);
+        token.setY(z * 50);
+        token.setNotes("Notes for token " + t + " on zone " + z);
+        token.setGMNotes("GM notes for token " + t);
+        for (int p = 0; p < 10; p++) {
+          token.setProperty("Property" + p, Integer.toString(t * p));
+        }
+        zone.putToken(token);
+      }
+      campaign.putZone(zone);
+    }
+
+    persistedCampaign = new PersistedCampaign();
+    persistedCampaign.campaign = campaign;
+    persistedCampaign.currentZoneId = campaign.getZones().get(0).getId();
+    persistedCampaign.currentView = new Scale();
+
+    save(loadedFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtil.delete(dir);
+  }
+
+  @Benchmark
+  public File save() throws IOException {
+    savedFile.delete();
+    save(savedFile);
+    return savedFile;
+  }
+
+  @Benchmark
+  public PersistedCampaign load() throws IOException {
+    try (PackedFile pakFile = new PackedFile(loadedFile)) {
+      if ("xml".equals(format)) {
+        return (PersistedCampaign) pakFile.getContent();
+      }
+      return PersistenceUtil.loadCampaignDto(pakFile);
+    }
+  }
+
+  private void save(File file) throws IOException {
+    try (PackedFile pakFile = new PackedFile(file)) {
+      if ("xml".equals(format)) {
+        pakFile.setContent(persistedCampaign);
+      } else {
+        CampaignSnapshot snapshot =
+            PersistenceUtil.snapshotCampaign(
+                persistedCampaign.campaign,
+                persistedCampaign.currentZoneId,
+                persistedCampaign.currentView);
+        PersistenceUtil.saveCampaignDto(snapshot, pakFile);
+      }
+      pakFile.save();
+    }
+  }
+}
@@ -55,6 +55,9 @@ public Server createServer(@Nullable ServerConfig config) {
     }
 
     if (!config.getUseWebRTC()) {
+      if (config.getUseVirtualThreads()) {
+        return new SocketServer(config.getPort(), Thread.ofVirtual().factory());
+      }
       return new SocketServer(config.getPort());
     }
 
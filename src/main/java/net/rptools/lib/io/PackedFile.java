@@ -17,10 +17,10 @@
 import com.google.common.io.CharStreams;
 import com.thoughtworks.xstream.XStream;
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -35,6 +35,7 @@
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -42,10 +43,12 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
+import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -55,6 +58,9 @@
 import net.rptools.maptool.model.Asset;
 import net.rptools.maptool.model.AssetManager;
 import net.rptools.maptool.model.GUID;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -108,6 +114,9 @@ public class PackedFile implements AutoCloseable {
   private static final String PROPERTY_FILE = "properties.xml";
   private static final String CONTENT_FILE = "content.xml";
 
+  /** Extensions of files whose data is already compressed and so is stored as is. */
+  private static final Set<String> COMPRESSED_EXTENSIONS = Set.of("png", "jpg", "jpeg", "webp");
+
   private static final Logger log = LogManager.getLogger(PackedFile.class);
 
   private static File tmpDir =
@@ -124,6 +133,9 @@ public class PackedFile implements AutoCloseable {
   private Map<String, Object> propertyMap = new HashMap<String, Object>();
   private final Set<String> addedFileSet = new HashSet<String>();
   private final Set<String> removedFileSet = new HashSet<String>();
+  private final Set<String> reusedFileSet = new HashSet<String>();
+
+  private @Nullable File reusableFile; // Previous save whose entries can be carried over
 
   private ModelVersionManager versionManager;
 
@@ -145,6 +157,55 @@ public void setModelVersionManager(ModelVersionManager versionManager) {
     this.versionManager = versionManager;
   }
 
+  /**
+   * Sets a previously saved packed file whose entries can be carried over by {@link
+   * #reuseFile(String)}. Files added to this packed file that are byte for byte the same as the
+   * entry of the same path in the reusable file are also copied from it when saving, rather than
+   * being compressed again.
+   *
+   * @param reusableFile the previously saved file, or {@code null} for none
+   */
+  public void setReusableFile(@Nullable File reusableFile) {
+    if (reusableZFile != null) {
+      try {
+        reusableZFile.close();
+      } catch (IOException e) {
+        // ignore close exception
+      }
+      reusableZFile = null;
+    }
+    reusedFileSet.clear();
+    this.reusableFile = reusableFile;
+  }
+
+  /**
+   * Adds the path to the packed file with the data it has in the reusable file. The entry is copied
+   * as is when saving, without being decompressed and compressed again.
+   *
+   * @param path location within the ZIP file
+   * @return {@code true} if the reusable file has the path, otherwise the caller has to put the
+   *     file itself
+   * @throws IOException If an I/O error occurs reading the reusable file
+   * @see #setReusableFile(File)
+   */
+  public boolean reuseFile(String path) throws IOException {
+    if (reusableFile == null || !reusableFile.exists()) {
+      return false;
+    }
+    if (getReusableZipFile().getEntry(path) == null) {
+      return false;
+    }
+    File explodedFile = getExplodedFile(path);
+    if (explodedFile.exists()) {
+      explodedFile.delete();
+    }
+    reusedFileSet.add(path);
+    addedFileSet.remove(path);
+    removedFileSet.remove(path);
+    dirty = true;
+    return true;
+  }
+
   /**
    * Useful for configuring the xstream for object serialization
    *
@@ -293,14 +354,16 @@ public void save() throws IOException {
         saveTimer -> {
           // Create the new file
           File newFile = new File(tmpDir, new GUID() + ".pak");
-          ZipOutputStream zout =
-              new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(newFile)));
+          ZipArchiveOutputStream zout = new ZipArchiveOutputStream(newFile);
           zout.setLevel(Deflater.BEST_COMPRESSION); // fast compression
 
+          var original = openRawZipFile(file);
+          var reusable = openRawZipFile(reusableFile);
+
           try {
             saveTimer.start(CONTENT_FILE);
             if (hasFile(CONTENT_FILE)) {
-              saveEntry(zout, CONTENT_FILE);
+              saveEntry(zout, CONTENT_FILE, original, reusable);
             }
             saveTimer.stop(CONTENT_FILE);
 
@@ -308,9 +371,9 @@ public void save() throws IOException {
             if (getPropertyMap().isEmpty()) {
               removeFile(PROPERTY_FILE);
             } else {
-              zout.putNextEntry(new ZipEntry(PROPERTY_FILE));
+              zout.putArchiveEntry(new ZipArchiveEntry(PROPERTY_FILE));
               xstream.toXML(getPropertyMap(), zout);
-              zout.closeEntry();
+              zout.closeArchiveEntry();
             }
             saveTimer.stop(PROPERTY_FILE);
 
@@ -318,43 +381,44 @@ public void save() throws IOException {
             saveTimer.start("addFiles");
             addedFileSet.remove(CONTENT_FILE);
             for (String path : addedFileSet) {
-              saveEntry(zout, path);
+              saveEntry(zout, path, original, reusable);
             }
             saveTimer.stop("addFiles");
 
+            // Carry over the files reused from the previous save without recompressing them
+            saveTimer.start("reuseFiles");
+            for (String path : reusedFileSet) {
+              if (!CONTENT_FILE.equals(path) && !PROPERTY_FILE.equals(path)) {
+                copyRawEntry(zout, reusable, path);
+              }
+            }
+            saveTimer.stop("reuseFiles");
+
             // Copy the rest of the zip entries over
             saveTimer.start("copyFiles");
-            if (file.exists()) {
-              Enumeration<? extends ZipEntry> entries = zFile.entries();
+            if (original != null) {
+              Enumeration<ZipArchiveEntry> entries = original.getEntries();
               while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
+                ZipArchiveEntry entry = entries.nextElement();
                 if (!entry.isDirectory()
                     && !addedFileSet.contains(entry.getName())
                     && !removedFileSet.contains(entry.getName())
+                    && !reusedFileSet.contains(entry.getName())
                     && !CONTENT_FILE.equals(entry.getName())
                     && !PROPERTY_FILE.equals(entry.getName())) {
-                  zout.putNextEntry(entry);
-                  try (InputStream is = getFileAsInputStream(entry.getName())) {
-                    // When copying, always use an InputStream
-                    IOUtils.copy(is, zout);
-                  }
-                  zout.closeEntry();
+                  copyRawEntry(zout, original, entry.getName());
                 } else if (entry.isDirectory()) {
-                  zout.putNextEntry(entry);
-                  zout.closeEntry();
+                  zout.putArchiveEntry(new ZipArchiveEntry(entry.getName()));
+                  zout.closeArchiveEntry();
                 }
               }
             }
-            try {
-              if (zFile != null) zFile.close();
-            } catch (IOException e) {
-              // ignore close exception
-            }
-            zFile = null;
+            closeZipFiles();
+            IOUtils.closeQuietly(original, reusable);
             saveTimer.stop("copyFiles");
 
             saveTimer.start("close");
-            IOUtils.closeQuietly(zout);
+            zout.close();
             zout = null;
             saveTimer.stop("close");
 
@@ -383,14 +447,13 @@ public void save() throws IOException {
             if (backupFile.exists()) backupFile.delete();
             saveTimer.stop("finalize");
 
+            // Everything now lives in the saved file
+            reusedFileSet.clear();
             dirty = false;
           } finally {
             saveTimer.start("cleanup");
-            try {
-              if (zFile != null) zFile.close();
-            } catch (IOException e) {
-              // ignore close exception
-            }
+            closeZipFiles();
+            IOUtils.closeQuietly(original, reusable);
             if (newFile.exists()) newFile.delete();
             IOUtils.closeQuietly(zout);
             saveTimer.stop("cleanup");
@@ -398,13 +461,93 @@ public void save() throws IOException {
         });
   }
 
-  private void saveEntry(ZipOutputStream zout, String path) throws IOException {
-    zout.putNextEntry(new ZipEntry(path));
+  private void saveEntry(
+      ZipArchiveOutputStream zout,
+      String path,
+      @Nullable org.apache.commons.compress.archivers.zip.ZipFile original,
+      @Nullable org.apache.commons.compress.archivers.zip.ZipFile reusable)
+      throws IOException {
+    File explodedFile = getExplodedFile(path);
+    if (!explodedFile.exists()) {
+      // Never rewritten, so the previously compressed bytes are still good
+      copyRawEntry(zout, reusedFileSet.contains(path) ? reusable : original, path);
+      return;
+    }
+    // Content that serializes to the same bytes as last time doesn't need compressing again
+    for (var previous : Arrays.asList(reusable, original)) {
+      if (previous != null && isUnchanged(explodedFile, previous.getEntry(path))) {
+        copyRawEntry(zout, previous, path);
+        return;
+      }
+    }
+
+    ZipArchiveEntry entry = new ZipArchiveEntry(path);
+    if (isCompressed(path)) {
+      // Deflating image data costs a lot of time to save next to nothing
+      entry.setMethod(ZipEntry.STORED);
+    }
+    zout.putArchiveEntry(entry);
     try (InputStream is = getFileAsInputStream(path)) {
       // When copying, always use an InputStream
       IOUtils.copy(is, zout);
     }
-    zout.closeEntry();
+    zout.closeArchiveEntry();
+  }
+
+  /**
+   * Copies an entry from a previously saved zip file without decompressing it.
+   *
+   * @param zout the zip being written
+   * @param zipFile the previously saved zip file
+   * @param path the path of the entry to copy
+   * @throws IOException If an I/O error occurs or the entry is missing
+   */
+  private static void copyRawEntry(
+      ZipArchiveOutputStream zout,
+      @Nullable org.apache.commons.compress.archivers.zip.ZipFile zipFile,
+      String path)
+      throws IOException {
+    ZipArchiveEntry entry = zipFile == null ? null : zipFile.getEntry(path);
+    if (entry == null) {
+      throw new FileNotFoundException(path);
+    }
+    try (InputStream is = zipFile.getRawInputStream(entry)) {
+      zout.addRawArchiveEntry(entry, is);
+    }
+  }
+
+  private static boolean isUnchanged(File explodedFile, @Nullable ZipArchiveEntry previous)
+      throws IOException {
+    if (previous == null
+        || previous.getSize() != explodedFile.length()
+        || previous.getCrc() == ZipArchiveEntry.CRC_UNKNOWN) {
+      return false;
+    }
+    CRC32 crc = new CRC32();
+    try (InputStream is = new CheckedInputStream(new FileInputStream(explodedFile), crc)) {
+      IOUtils.consume(is);
+    }
+    return crc.getValue() == previous.getCrc();
+  }
+
+  /**
+   * Returns whether the data at the path is already compressed, judging by its extension, so that
+   * it can be stored as is.
+   *
+   * @param path path within the ZIP file
+   * @return true if the file is a PNG, JPEG or WebP image
+   */
+  private static boolean isCompressed(String path) {
+    String extension = FilenameUtils.getExtension(path).toLowerCase();
+    return COMPRESSED_EXTENSIONS.contains(extension);
+  }
+
+  private static @Nullable org.apache.commons.compress.archivers.zip.ZipFile openRawZipFile(
+      @Nullable File zipFile) throws IOException {
+    if (zipFile == null || !zipFile.exists()) {
+      return null;
+    }
+    return org.apache.commons.compress.archivers.zip.ZipFile.builder().setFile(zipFile).get();
   }
 
   /**
@@ -439,6 +582,7 @@ private File putFileImpl(String path) {
     // We just remember that we added it, then go look for it later...
     addedFileSet.add(path);
     removedFileSet.remove(path);
+    reusedFileSet.remove(path);
     dirty = true;
     return explodedFile;
   }
@@ -510,6 +654,7 @@ public void putFile(String path, URL url) throws IOException {
 
   public boolean hasFile(String path) throws IOException {
     if (removedFileSet.contains(path)) return false;
+    if (reusedFileSet.contains(path)) return true;
 
     File explodedFile = getExplodedFile(path);
     if (explodedFile.exists()) return true;
@@ -530,6 +675,28 @@ private ZipFile getZipFile() throws IOException {
     return zFile;
   }
 
+  private ZipFile reusableZFile = null;
+
+  private ZipFile getReusableZipFile() throws IOException {
+    if (reusableZFile == null) reusableZFile = new ZipFile(reusableFile);
+    return reusableZFile;
+  }
+
+  private void closeZipFiles() {
+    try {
+      if (zFile != null) zFile.close();
+    } catch (IOException e) {
+      // ignore close exception
+    }
+    zFile = null;
+    try {
+      if (reusableZFile != null) reusableZFile.close();
+    } catch (IOException e) {
+      // ignore close exception
+    }
+    reusableZFile = null;
+  }
+
   /**
    * Returns a POJO by reading the contents of the zip archive path specified and converting the XML
    * via the associated XStream object. (Because the XML is character data, this routine calls
@@ -676,6 +843,10 @@ public Asset getAsset(String path) throws IOException {
    * @throws IOException If an I/O error occurs
    */
   public LineNumberReader getFileAsReader(String path) throws IOException {
+    if (reusedFileSet.contains(path)) {
+      return new LineNumberReader(
+          new InputStreamReader(getFileAsInputStream(path), StandardCharsets.UTF_8));
+    }
     File explodedFile = getExplodedFile(path);
     if ((!file.exists() && !tmpFile.exists() && !explodedFile.exists())
         || removedFileSet.contains(path)) throw new FileNotFoundException(path);
@@ -709,6 +880,10 @@ public LineNumberReader getFileAsReader(String path) throws IOException {
    * @throws IOException If an I/O error occurs
    */
   public InputStream getFileAsInputStream(String path) throws IOException {
+    if (reusedFileSet.contains(path)) {
+      ZipFile zipFile = getReusableZipFile();
+      return zipFile.getInputStream(zipFile.getEntry(path));
+    }
     File explodedFile = getExplodedFile(path);
     if ((!file.exists() && !tmpFile.exists() && !explodedFile.exists())
         || removedFileSet.contains(path)) throw new FileNotFoundException(path);
@@ -725,18 +900,12 @@ public InputStream getFileAsInputStream(String path) throws IOException {
   }
 
   public void close() {
-    if (zFile != null) {
-      try {
-        zFile.close();
-      } catch (IOException e) {
-        // Ignore it
-      }
-      zFile = null;
-    }
+    closeZipFiles();
     if (tmpFile.exists()) FileUtil.delete(tmpFile);
     propertyMap.clear();
     addedFileSet.clear();
     removedFileSet.clear();
+    reusedFileSet.clear();
     propsLoaded = false;
     dirty = !file.exists();
   }
@@ -756,6 +925,7 @@ protected File getExplodedFile(String path) {
    */
   public Set<String> getPaths() throws IOException {
     Set<String> paths = new HashSet<String>(addedFileSet);
+    paths.addAll(reusedFileSet);
     paths.add(CONTENT_FILE);
     paths.add(PROPERTY_FILE);
     if (file.exists()) {
@@ -792,8 +962,9 @@ public URL getURL(String path) throws IOException {
       if (explodedFile.exists()) return explodedFile.toURI().toURL();
 
       // Otherwise it is in the zip file.
+      File zipFile = reusedFileSet.contains(path) ? reusableFile : file;
       if (!path.startsWith("/")) path = "/" + path;
-      String url = "jar:" + file.toURI().toURL().toExternalForm() + "!" + path;
+      String url = "jar:" + zipFile.toURI().toURL().toExternalForm() + "!" + path;
       return new URL(url);
     } catch (MalformedURLException e) {
       throw new IllegalArgumentException("Couldn't create a URL for path: '" + path + "'", e);
@@ -808,6 +979,7 @@ public URL getURL(String path) throws IOException {
   public void removeFile(String path) {
     removedFileSet.add(path);
     addedFileSet.remove(path);
+    reusedFileSet.remove(path);
     File explodedFile = getExplodedFile(path);
     if (explodedFile.exists()) {
       explodedFile.delete();
@@ -848,6 +1020,7 @@ public OutputStream getOutputStream(String path) throws IOException {
     }
     addedFileSet.add(path);
     removedFileSet.remove(path);
+    reusedFileSet.remove(path);
     dirty = true;
     return new FileOutputStream(explodedFile);
   }
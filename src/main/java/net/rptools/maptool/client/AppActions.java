@@ -80,6 +80,7 @@
 import net.rptools.maptool.server.ServerConfig;
 import net.rptools.maptool.server.ServerPolicy;
 import net.rptools.maptool.util.*;
+import net.rptools.maptool.util.PersistenceUtil.CampaignSnapshot;
 import net.rptools.maptool.util.PersistenceUtil.PersistedCampaign;
 import net.rptools.maptool.util.PersistenceUtil.PersistedMap;
 import org.apache.commons.io.FileUtils;
@@ -414,7 +415,7 @@ protected void executeAction() {
           /*
            * 3. Check all assets against the repository indices and build a new list from those that are not found.
            */
-          Map<MD5Key, Asset> missing =
+          Set<MD5Key> missing =
               AssetManager.findAllAssetsNotInRepositories(urd.getSelectedRepositories());
 
           /*
@@ -438,12 +439,15 @@ protected void executeAction() {
             ftp.setEnabled(true);
             ProgressBarList pbl = new ProgressBarList(MapTool.getFrame(), ftp, missing.size() + 1);
 
-            for (Map.Entry<MD5Key, Asset> entry : missing.entrySet()) {
-              String remote = entry.getKey().toString();
+            for (MD5Key key : missing) {
+              // Assets read on demand are only read now, once the upload has been confirmed
+              Asset asset = AssetManager.getAsset(key);
+              if (asset == null) {
+                continue;
+              }
+              String remote = key.toString();
               repoEntries.put(remote, new File(dir, remote).getPath());
-              ftp.addToQueue(
-                  new FTPTransferObject(
-                      Direction.FTP_PUT, entry.getValue().getData(), dir, remote));
+              ftp.addToQueue(new FTPTransferObject(Direction.FTP_PUT, asset.getData(), dir, remote));
             }
             // We're done with "missing", so empty it now.
             missing.clear();
@@ -2261,7 +2265,8 @@ protected void executeAction() {
                         serverProps.getRPToolsName(),
                         "localhost",
                         serverProps.getUseEasyConnect(),
-                        serverProps.getUseWebRtc());
+                        serverProps.getUseWebRtc(),
+                        AppPreferences.useVirtualThreadServer.get());
 
                 // Use the existing campaign
                 Campaign campaign = MapTool.getCampaign();
@@ -2744,16 +2749,21 @@ private static void doSaveCampaign(final File file, Runnable onSuccess) {
       MapTool.showError("msg.error.failedSaveCampaignLock");
       return;
     }
-    new CampaignSaver(file, onSuccess).execute();
+    // Only the snapshot has to happen here; the rest of the save doesn't block the UI
+    CampaignSnapshot snapshot = PersistenceUtil.snapshotCampaign(MapTool.getCampaign());
+    MapTool.getFrame().startDeterminateAction(PersistenceUtil.CAMPAIGN_SAVE_STEPS);
+    new CampaignSaver(snapshot, file, onSuccess).execute();
   }
 
   private static class CampaignSaver extends SwingWorker<Object, String> {
 
+    private final CampaignSnapshot snapshot;
     private File file;
     private Runnable onSuccess;
     private int maxWaitForLock = 30;
 
-    public CampaignSaver(File file, Runnable onSuccess) {
+    public CampaignSaver(CampaignSnapshot snapshot, File file, Runnable onSuccess) {
+      this.snapshot = snapshot;
       this.file = file;
       this.onSuccess = onSuccess;
     }
@@ -2761,34 +2771,28 @@ public CampaignSaver(File file, Runnable onSuccess) {
     @Override
     protected Object doInBackground() throws Exception {
 
-      AppState.acquireBackgroundTaskLock(maxWaitForLock);
-
-      publish(I18N.getText("msg.info.campaignSaving"));
-
-      try {
-        long start = System.currentTimeMillis();
-        PersistenceUtil.saveCampaign(MapTool.getCampaign(), file);
-
-        publish(I18N.getString("msg.info.campaignSaved"));
-
-        // Minimum display time so people can see the message
-        Thread.sleep(Math.max(0, 500 - (System.currentTimeMillis() - start)));
-
-      } finally {
-        AppState.releaseBackgroundTaskLock();
-      }
-
-      return null;
+      return AppState.runWithBackgroundTaskLock(
+          maxWaitForLock,
+          () -> {
+            publish(I18N.getText("msg.info.campaignSaving"));
+            PersistenceUtil.saveCampaign(
+                snapshot,
+                file,
+                work ->
+                    SwingUtilities.invokeLater(
+                        () -> MapTool.getFrame().updateDeterminateActionProgress(work)));
+            return null;
+          });
     }
 
     @Override
     protected void process(List<String> list) {
-      MapTool.getFrame().showFilledGlassPane(new StaticMessageDialog(list.get(list.size() - 1)));
+      MapTool.getFrame().setStatusMessage(list.get(list.size() - 1));
     }
 
     @Override
     protected void done() {
-      MapTool.getFrame().hideGlassPane();
+      MapTool.getFrame().endDeterminateAction();
 
       try {
         get();
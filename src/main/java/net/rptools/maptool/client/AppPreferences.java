@@ -63,6 +63,15 @@ public class AppPreferences {
   public static final Preference<Integer> autoSaveIncrement =
       IntegerType.create("autoSaveIncrement", 5);
 
+  public static final Preference<Boolean> incrementalCampaignSave =
+      BooleanType.create("incrementalCampaignSave", true);
+
+  public static final Preference<Boolean> saveCampaignAsXml =
+      BooleanType.create("saveCampaignAsXml", false);
+
+  public static final Preference<Boolean> readCampaignAssetsOnDemand =
+      BooleanType.create("readCampaignAssetsOnDemand", true);
+
   public static final Preference<Integer> chatAutoSaveTimeInMinutes =
       IntegerType.create("chatAutosaveTime", 0);
 
@@ -344,6 +353,24 @@ public class AppPreferences {
   public static final Preference<Integer> upnpDiscoveryTimeout =
       IntegerType.create("upnpDiscoveryTimeout", 5000);
 
+  public static final Preference<Boolean> useVirtualThreadServer =
+      BooleanType.create("useVirtualThreadServer", false);
+
+  /** Limit on the total rate the server sends assets at, in KiB per second. Zero for no limit. */
+  public static final Preference<Integer> assetTransferBandwidthLimit =
+      IntegerType.create("assetTransferBandwidthLimit", 0).validateIt(limit -> limit >= 0);
+
+  /**
+   * Size of the cache of decoded images in MiB. Zero to use a quarter of the maximum heap. Images
+   * for the current map are kept even if they exceed this.
+   */
+  public static final Preference<Integer> imageCacheSize =
+      IntegerType.create("imageCacheSize", 0).validateIt(size -> size >= 0);
+
+  /** Whether images evicted from the image cache are kept until the heap runs short. */
+  public static final Preference<Boolean> imageCacheSoftReferences =
+      BooleanType.create("imageCacheSoftReferences", true);
+
   public static final Preference<String> fileSyncPath = StringType.create("fileSyncPath", "");
 
   public static final Preference<Boolean> skipAutoUpdate =
@@ -388,6 +415,20 @@ public class AppPreferences {
   public static final Preference<Boolean> pathfindingBlockedByVbl =
       BooleanType.create("vblBlocksMove", true);
 
+  /**
+   * Plan long drags on square grids over clusters of cells. This is much quicker on large maps, but
+   * the paths found can be longer than the shortest one.
+   */
+  public static final Preference<Boolean> pathfindingOverClusters =
+      BooleanType.create("pathfindingOverClusters", false);
+
+  /**
+   * Use Jump Point Search on square grids when every step costs the same. It finds paths of the
+   * same cost, but is off until it is shown to be quicker than searching every neighbor.
+   */
+  public static final Preference<Boolean> pathfindingJumpPoints =
+      BooleanType.create("pathfindingJumpPoints", false);
+
   public static final Preference<String> defaultMacroEditorTheme =
       StringType.create("macroEditorTheme", "Default");
 
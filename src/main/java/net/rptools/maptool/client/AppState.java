@@ -17,6 +17,7 @@
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.File;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import org.apache.logging.log4j.LogManager;
@@ -232,6 +233,28 @@ public static void releaseBackgroundTaskLock() {
     backgroundTaskLock.unlock();
   }
 
+  /**
+   * Runs a task, such as a save, while holding the background task lock so that it never overlaps
+   * another one.
+   *
+   * @param waitSeconds how long to wait for a background task that is already running to finish.
+   * @param task the task to run.
+   * @return the result of the task.
+   * @param <T> the type of the result.
+   * @throws FailedToAcquireLockException if the other background task didn't finish in time, in
+   *     which case the task isn't run.
+   * @throws Exception if the task fails.
+   */
+  public static <T> T runWithBackgroundTaskLock(int waitSeconds, Callable<T> task)
+      throws Exception {
+    acquireBackgroundTaskLock(waitSeconds);
+    try {
+      return task.call();
+    } finally {
+      releaseBackgroundTaskLock();
+    }
+  }
+
   public static boolean isNotificationEnforced() {
     return enforceNotification;
   }
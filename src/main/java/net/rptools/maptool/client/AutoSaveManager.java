@@ -17,8 +17,8 @@
 import java.io.File;
 import javax.swing.*;
 import net.rptools.maptool.language.I18N;
-import net.rptools.maptool.model.Campaign;
 import net.rptools.maptool.util.PersistenceUtil;
+import net.rptools.maptool.util.PersistenceUtil.CampaignSnapshot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -92,54 +92,54 @@ private boolean executeAndContinue() {
     MapTool.getFrame().setStatusMessage(I18N.getString("AutoSaveManager.status.autoSaving"));
 
     long startCopy = System.currentTimeMillis();
-    // This occurs on the event dispatch thread, so it's ok to mess with the models.  (XXX Is this
-    // true?  What about
-    // updates coming in on the network?)
-    // We need to clone the campaign so that we can save in the background, but
-    // not have concurrency issues with the original model.
-    //
-    // NOTE: This is a cheesy way to clone the campaign, but it makes it so that I
-    // don't have to keep all the various models' clone methods updated on each change.
-    final Campaign campaign = new Campaign(MapTool.getCampaign());
+    // This occurs on the event dispatch thread, where the models (and the updates coming in on the
+    // network) are handled, so the campaign doesn't change while we take a snapshot of it. The
+    // snapshot is then saved in the background without holding up play.
+    final CampaignSnapshot snapshot = PersistenceUtil.snapshotCampaign(MapTool.getCampaign());
     log.info(
-        "Time to copy Campaign object (ms): "
+        "Time to snapshot Campaign object (ms): "
             + (System.currentTimeMillis() - startCopy)); // $NON-NLS-1$
 
-    new SaveWorker(campaign).execute();
+    MapTool.getFrame().startDeterminateAction(PersistenceUtil.CAMPAIGN_SAVE_STEPS);
+    new SaveWorker(snapshot).execute();
 
     return false;
   }
 
   private class SaveWorker extends SwingWorker<String, String> {
 
-    private Campaign campaign;
+    private final CampaignSnapshot snapshot;
 
-    private SaveWorker(Campaign campaign) {
-      this.campaign = campaign;
+    private SaveWorker(CampaignSnapshot snapshot) {
+      this.snapshot = snapshot;
     }
 
     @Override
     protected String doInBackground() throws Exception {
 
-      AppState.acquireBackgroundTaskLock(0);
-
-      try {
-        long startSave = System.currentTimeMillis();
-        log.info("Starting autosave..."); // $NON-NLS-1$
-        PersistenceUtil.saveCampaign(campaign, AUTOSAVE_FILE);
-        String msg =
-            I18N.getText(
-                "AutoSaveManager.status.autoSaveComplete", System.currentTimeMillis() - startSave);
-        log.info(msg);
-        return msg;
-
-      } finally {
-        AppState.releaseBackgroundTaskLock();
-      }
+      return AppState.runWithBackgroundTaskLock(
+          0,
+          () -> {
+            long startSave = System.currentTimeMillis();
+            log.info("Starting autosave..."); // $NON-NLS-1$
+            PersistenceUtil.saveCampaign(
+                snapshot,
+                AUTOSAVE_FILE,
+                work ->
+                    SwingUtilities.invokeLater(
+                        () -> MapTool.getFrame().updateDeterminateActionProgress(work)));
+            String msg =
+                I18N.getText(
+                    "AutoSaveManager.status.autoSaveComplete",
+                    System.currentTimeMillis() - startSave);
+            log.info(msg);
+            return msg;
+          });
     }
 
     @Override
     protected void done() {
+      MapTool.getFrame().endDeterminateAction();
 
       try {
         MapTool.getFrame().setStatusMessage(get());
@@ -14,6 +14,9 @@
  */
 package net.rptools.maptool.client;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.Subscribe;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import java.math.BigDecimal;
@@ -29,11 +32,17 @@
 import net.rptools.maptool.client.ui.htmlframe.HTMLFrameFactory.FrameType;
 import net.rptools.maptool.client.ui.macrobuttons.buttons.MacroButtonPrefs;
 import net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer;
+import net.rptools.maptool.events.MapToolEventBus;
 import net.rptools.maptool.language.I18N;
 import net.rptools.maptool.model.MacroButtonProperties;
 import net.rptools.maptool.model.Token;
 import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.library.AddOnsAddedEvent;
+import net.rptools.maptool.model.library.AddOnsRemovedEvent;
+import net.rptools.maptool.model.library.LibraryInfo;
 import net.rptools.maptool.model.library.LibraryManager;
+import net.rptools.maptool.model.zones.TokenEdited;
+import net.rptools.maptool.model.zones.TokensChanged;
 import net.rptools.parser.ParserException;
 import net.rptools.parser.function.Function;
 import org.apache.commons.lang.StringUtils;
@@ -78,6 +87,60 @@ public class MapToolLineParser {
   /** The maximum amount of loop iterations. */
   private int maxLoopIterations = DEFAULT_MAX_LOOP_ITERATIONS;
 
+  /** The most macros to keep compiled at once. */
+  private static final int MAX_COMPILED_MACROS = 2048;
+
+  /** Identifies macro text by the macro it came from and a hash of the text. */
+  private record CompiledMacroKey(String source, String name, int bodyHash) {}
+
+  /** Macro text that has been split into its inline rolls. */
+  private record CompiledMacro(String body, List<InlineRollMatch> rolls) {}
+
+  /**
+   * The macros that have been compiled. An entry is only used if its text matches the macro being
+   * run, so edits to a macro are picked up at once; entries for a library are dropped when it is
+   * edited or re-imported so they do not linger.
+   */
+  private static final Cache<CompiledMacroKey, CompiledMacro> COMPILED_MACROS =
+      CacheBuilder.newBuilder().maximumSize(MAX_COMPILED_MACROS).softValues().build();
+
+  static {
+    new MapToolEventBus().getMainEventBus().register(new CompiledMacroListener());
+  }
+
+  /** Drops compiled macros when the library they came from changes. */
+  private static final class CompiledMacroListener {
+    @Subscribe
+    private void onAddOnsAdded(AddOnsAddedEvent event) {
+      event.addOns().stream().map(LibraryInfo::namespace).forEach(this::invalidateLibrary);
+    }
+
+    @Subscribe
+    private void onAddOnsRemoved(AddOnsRemovedEvent event) {
+      event.addOns().stream().map(LibraryInfo::namespace).forEach(this::invalidateLibrary);
+    }
+
+    @Subscribe
+    private void onTokensChanged(TokensChanged event) {
+      event.tokens().forEach(this::invalidateLibrary);
+    }
+
+    @Subscribe
+    private void onTokenEdited(TokenEdited event) {
+      invalidateLibrary(event.token());
+    }
+
+    private void invalidateLibrary(Token token) {
+      if (token.getName().toLowerCase().startsWith("lib:")) {
+        invalidateCompiledMacros(token.getName());
+      }
+    }
+
+    private void invalidateLibrary(String namespace) {
+      invalidateCompiledMacros("lib:" + namespace);
+    }
+  }
+
   /** The dice rolls that occurred. */
   private List<Integer> lastRolled = new LinkedList<>();
 
@@ -158,13 +221,15 @@ private static class InlineRollMatch {
     final int end;
     final String match;
     final int optEnd;
+    final String opt;
+    final String roll;
+
+    /** The parsed roll options, once they have been needed. */
+    private volatile List<OptionInfo> options = null;
 
     @SuppressWarnings("unused")
     InlineRollMatch(int start, int end, String match) {
-      this.start = start;
-      this.end = end;
-      this.match = match;
-      this.optEnd = -1;
+      this(start, end, match, -1);
     }
 
     InlineRollMatch(int start, int end, String match, int optEnd) {
@@ -172,6 +237,13 @@ private static class InlineRollMatch {
       this.end = end;
       this.match = match;
       this.optEnd = optEnd;
+      if (optEnd > 0) {
+        this.opt = match.substring(1, optEnd - start);
+        this.roll = match.substring(optEnd + 1 - start, end - start);
+      } else {
+        this.opt = "";
+        this.roll = match.substring(1, end - start);
+      }
     }
 
     public int getStart() {
@@ -192,19 +264,27 @@ public int getOptEnd() {
     }
 
     public String getOpt() {
-      if (optEnd > 0) {
-        return match.substring(1, optEnd - start);
-      } else {
-        return "";
-      }
+      return opt;
     }
 
     public String getRoll() {
-      if (optEnd > 0) {
-        return match.substring(optEnd + 1 - start, end - start);
-      } else {
-        return match.substring(1, end - start);
+      return roll;
+    }
+
+    /**
+     * Gets the roll options, parsing them the first time they are asked for. Matches are kept with
+     * compiled macros, so the options are parsed once for all runs of the macro.
+     *
+     * @return the options of the roll.
+     * @throws OptionInfo.RollOptionException if the options could not be parsed.
+     */
+    public List<OptionInfo> getOptions() throws OptionInfo.RollOptionException {
+      var result = options;
+      if (result == null) {
+        result = OptionInfo.getRollOptionList(opt);
+        options = result;
       }
+      return result;
     }
   }
 
@@ -256,7 +336,7 @@ public String parseLine(
       resolverInitialized = resolver.initialize();
       StringBuilder builder = new StringBuilder();
       int start = 0;
-      List<InlineRollMatch> matches = this.locateInlineRolls(line);
+      List<InlineRollMatch> matches = compile(context, line);
 
       for (InlineRollMatch match : matches) {
         builder.append(line, start, match.getStart()); // add everything before the roll
@@ -295,7 +375,7 @@ public String parseLine(
             // Turn the opts string into a list of OptionInfo objects.
             List<OptionInfo> optionList = null;
             try {
-              optionList = OptionInfo.getRollOptionList(opts);
+              optionList = match.getOptions();
             } catch (OptionInfo.RollOptionException roe) {
               throw doError(roe.msg, opts, roll);
             }
@@ -1621,13 +1701,46 @@ public boolean isMacroTrusted() {
     return !contextStack.isEmpty() && contextStack.peek().isTrusted();
   }
 
+  /**
+   * Gets the inline rolls of a line, reusing those found the last time the same macro ran the same
+   * text.
+   *
+   * @param context The context of the macro the line belongs to.
+   * @param line The line to search for the rolls in.
+   * @return A list of the rolls, which must not be modified.
+   */
+  private static List<InlineRollMatch> compile(MapToolMacroContext context, String line) {
+    var key =
+        new CompiledMacroKey(
+            String.valueOf(context.getSource()).toLowerCase(),
+            String.valueOf(context.getName()),
+            line.hashCode());
+    var compiled = COMPILED_MACROS.getIfPresent(key);
+    if (compiled == null || !compiled.body().equals(line)) {
+      compiled = new CompiledMacro(line, List.copyOf(locateInlineRolls(line)));
+      COMPILED_MACROS.put(key, compiled);
+    }
+    return compiled.rolls();
+  }
+
+  /**
+   * Drops the compiled macros that came from a source, so that they are compiled again the next
+   * time they run.
+   *
+   * @param source The source of the macros, such as the name of a library.
+   */
+  public static void invalidateCompiledMacros(String source) {
+    var lowerCaseSource = source.toLowerCase();
+    COMPILED_MACROS.asMap().keySet().removeIf(key -> key.source().equals(lowerCaseSource));
+  }
+
   /**
    * Locate the inline rolls within the input line.
    *
    * @param line The line to search for the rolls in.
    * @return A list of the rolls.
    */
-  private List<InlineRollMatch> locateInlineRolls(String line) {
+  private static List<InlineRollMatch> locateInlineRolls(String line) {
     List<InlineRollMatch> matches = new ArrayList<InlineRollMatch>();
     ScanState scanState = ScanState.SEARCHING_FOR_ROLL;
     int startMatch = 0;
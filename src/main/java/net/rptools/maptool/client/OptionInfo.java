@@ -219,11 +219,11 @@ static List<OptionInfo> getRollOptionList(String optionString) throws RollOption
     if (optionString == null) return null;
 
     // check if already parsed
+    optionString = optionString.trim();
     List<OptionInfo> list = OPTION_INFO_CACHE.getIfPresent(optionString);
     if (list != null) return list;
 
     list = new ArrayList<>();
-    optionString = optionString.trim();
     int start = 0;
     int endOfString = optionString.length();
     boolean atEnd = false;
@@ -85,6 +85,9 @@ private static Ownership getOwnership(String strOwnership) {
 
   private static final FindTokenFunctions instance = new FindTokenFunctions();
 
+  /** The largest range, in cells, for which only the tokens around the source are considered. */
+  private static final int MAX_NARROWED_RANGE = 10000;
+
   /** Filter for all non image / non lib tokens. */
   private static class AllFilter implements Zone.Filter {
     private final boolean match;
@@ -599,7 +602,7 @@ private static Object getTokenList(
         metric = range.get("metric").getAsString();
       }
       List<Token> inrange = new LinkedList<Token>();
-      for (Token targetToken : tokenList) {
+      for (Token targetToken : getTokensNear(zone, token, tokenList, upto, useDistancePerCell)) {
         double distance = instance.getDistance(token, targetToken, useDistancePerCell, metric);
         if (distance <= upto && distance >= from && token != targetToken) {
           inrange.add(targetToken);
@@ -684,6 +687,49 @@ private static Object getTokenList(
     }
   }
 
+  /**
+   * Narrows the candidates of a range search to the tokens around the source token, so that the
+   * distance is only worked out for tokens that could be in range. Every metric counts at least one
+   * cell for each row or column crossed, so a token more than {@code upto} cells away in both
+   * directions can never match.
+   *
+   * @param zone the zone of the tokens
+   * @param token the token the range is measured from
+   * @param tokenList the tokens that matched the other conditions
+   * @param upto the largest distance to match
+   * @param useDistancePerCell whether {@code upto} is in map units rather than cells
+   * @return the tokens of {@code tokenList} that may be within range, in the same order
+   */
+  private static List<Token> getTokensNear(
+      Zone zone, Token token, List<Token> tokenList, int upto, boolean useDistancePerCell) {
+    double cells = upto;
+    if (useDistancePerCell) {
+      if (zone.getUnitsPerCell() <= 0) {
+        return tokenList;
+      }
+      cells /= zone.getUnitsPerCell();
+    }
+    if (cells > MAX_NARROWED_RANGE) {
+      return tokenList;
+    }
+
+    // Allow a cell either side for the cells the source and target tokens overhang.
+    Grid grid = zone.getGrid();
+    double cellSize = Math.max(grid.getSize(), Math.max(grid.getCellWidth(), grid.getCellHeight()));
+    int margin = (int) Math.ceil((Math.max(cells, 0) + 2) * cellSize);
+    Rectangle bounds = token.getBounds(zone);
+    bounds.grow(margin, margin);
+
+    Set<Token> near = new HashSet<Token>(zone.getTokensInBounds(bounds));
+    List<Token> candidates = new ArrayList<Token>();
+    for (Token candidate : tokenList) {
+      if (near.contains(candidate)) {
+        candidates.add(candidate);
+      }
+    }
+    return candidates;
+  }
+
   private static boolean booleanCheck(JsonObject jobj, String searchType) {
     JsonElement jel = jobj.get(searchType);
     if (jel.isJsonPrimitive()) {
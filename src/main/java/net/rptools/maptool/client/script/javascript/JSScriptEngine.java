@@ -14,6 +14,8 @@
  */
 package net.rptools.maptool.client.script.javascript;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.oracle.truffle.js.scriptengine.*;
 import java.util.*;
 import java.util.List;
@@ -31,6 +33,22 @@
 
 public class JSScriptEngine {
 
+  /** The most scripts to keep parsed sources of. */
+  private static final int MAX_CACHED_SOURCES = 1024;
+
+  /**
+   * The engine shared by every context, so that code compiled in one is reused by the others
+   * instead of each context warming up on its own.
+   */
+  private static final Engine engine = Engine.create();
+
+  /** Sources by script text. The engine keeps compiled code for as long as the source lives. */
+  private static final Cache<String, Source> sources =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SOURCES).softValues().build();
+
+  /** The classes of the API objects added to each context, found once on first use. */
+  private static Set<Class<?>> apiClasses;
+
   private static Context.Builder cbuilder;
   private static final JSScriptEngine jsScriptEngine = new JSScriptEngine();
   private static final Logger log = LogManager.getLogger(JSScriptEngine.class);
@@ -66,6 +84,7 @@ private JSScriptEngine() {
     HostAccess access = habuilder.build();
 
     cbuilder = Context.newBuilder("js");
+    cbuilder.engine(engine);
     cbuilder.allowHostAccess(access);
     cbuilder.option("js.ecmascript-version", "2021");
   }
@@ -131,10 +150,7 @@ public Context makeContext() {
     Context context = cbuilder.build();
     Value bindings = context.getBindings("js");
 
-    Reflections reflections = new Reflections("net.rptools.maptool.client.script.javascript.api");
-    Set<Class<?>> annotated = reflections.getTypesAnnotatedWith(MapToolJSAPIDefinition.class);
-
-    for (Class<?> apiClass : annotated) {
+    for (Class<?> apiClass : getApiClasses()) {
       try {
         if (MapToolJSAPIInterface.class.isAssignableFrom(apiClass)) {
           registerAPIObject(bindings, (MapToolJSAPIInterface) apiClass.newInstance());
@@ -148,6 +164,30 @@ public Context makeContext() {
     return context;
   }
 
+  private static synchronized Set<Class<?>> getApiClasses() {
+    if (apiClasses == null) {
+      Reflections reflections = new Reflections("net.rptools.maptool.client.script.javascript.api");
+      apiClasses = reflections.getTypesAnnotatedWith(MapToolJSAPIDefinition.class);
+    }
+    return apiClasses;
+  }
+
+  /**
+   * Gets the source of a script, reusing the one from the last time the script was run so that its
+   * compiled code can be reused too.
+   *
+   * @param script the script.
+   * @return the source of the script.
+   */
+  static Source getSource(String script) {
+    Source source = sources.getIfPresent(script);
+    if (source == null) {
+      source = Source.create("js", script);
+      sources.put(script, source);
+    }
+    return source;
+  }
+
   public static JSScriptEngine getJSScriptEngine() {
     return jsScriptEngine;
   }
@@ -184,7 +224,7 @@ public Value evalScript(JSContext context, String script, boolean trusted)
     }
     contextStack.push(context);
     try {
-      return context.context().eval("js", script);
+      return context.context().eval(getSource(script));
     } finally {
       contextStack.pop();
     }
@@ -204,17 +244,29 @@ public Object applyFunction(JSAPIRegisteredMacro macro, Object[] args) {
   }
 
   public Value evalAnonymous(String script) throws ScriptException {
+    return evalAnonymous(script, MapTool.getParser().isMacroTrusted());
+  }
 
+  /**
+   * Runs a script in a context of its own. Contexts are not reused between anonymous scripts, since
+   * a script can change the globals and built in objects that the next one would rely on. They are
+   * cheap to create, because they share the engine and the compiled code of their sources.
+   *
+   * @param script the body of the function to run.
+   * @param trusted whether the script is trusted.
+   * @return the value returned by the script.
+   */
+  Value evalAnonymous(String script, boolean trusted) {
     StringBuilder wrapped = new StringBuilder();
     wrapped
         .append("(function() { var args = MTScript.getMTScriptCallingArgs(); ")
         .append(script)
         .append("})();");
-    Context c = makeContext();
-    JSContext jc = new JSContext(MapTool.getParser().isMacroTrusted(), c, "<anonymous>");
+    Context context = makeContext();
+    JSContext jc = new JSContext(trusted, context, "<anonymous>");
     contextStack.push(jc);
     try {
-      return makeContext().eval("js", wrapped.toString());
+      return context.eval(getSource(wrapped.toString()));
     } finally {
       contextStack.pop();
     }
@@ -1581,12 +1581,13 @@ private void stopTokenDrag() {
    * @param renderer the ZoneRenderer
    */
   public void setCurrentZoneRenderer(ZoneRenderer renderer) {
-    // Flush first so that the new zone renderer can inject the newly needed images
+    // Pin first so that the images of other maps are evicted before those of the new zone
     if (renderer != null) {
       new MapToolEventBus().getMainEventBus().post(new ZoneLoading(renderer.getZone()));
 
-      ImageManager.flush(renderer.getZone().getAllAssetIds());
+      ImageManager.pinImages(renderer.getZone().getAllAssetIds());
     } else {
+      ImageManager.pinImages(Set.of());
       ImageManager.flush();
       // zoneRendererList.remove(currentRenderer);
     }
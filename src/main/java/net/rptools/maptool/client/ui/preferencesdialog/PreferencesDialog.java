@@ -277,6 +277,15 @@ public class PreferencesDialog extends JDialog {
   /** Checkbox for if the save reminder should be shown on exit, new campaign etc. */
   private final JCheckBox saveReminderCheckBox;
 
+  /** Checkbox for if saving a campaign only writes the parts that changed. */
+  private final JCheckBox incrementalCampaignSaveCheckBox;
+
+  /** Checkbox for if campaigns are saved as XML instead of the compact format. */
+  private final JCheckBox saveCampaignAsXmlCheckBox;
+
+  /** Checkbox for if a campaign's assets are read from the file as they are needed. */
+  private final JCheckBox readCampaignAssetsOnDemandCheckBox;
+
   /** Checkbox for if the dialog should be shown on new token creation. */
   private final JCheckBox showDialogOnNewToken;
 
@@ -303,6 +312,15 @@ public class PreferencesDialog extends JDialog {
   /** ComboBox for the render performance optimization level. */
   private final JComboBox<LocalizedComboItem> renderPerformanceComboBox;
 
+  /** Spinner for the size of the image cache, in MiB. */
+  private final JSpinner imageCacheSizeSpinner;
+
+  /** Checkbox for if images evicted from the image cache are kept behind soft references. */
+  private final JCheckBox imageCacheSoftReferencesCheckBox;
+
+  /** Checkbox for if long drags are planned over clusters of cells. */
+  private final JCheckBox pathfindingOverClustersCheckBox;
+
   /** Text field for the default username when not logged into a server. */
   private final JTextField defaultUsername;
 
@@ -322,6 +340,12 @@ public class PreferencesDialog extends JDialog {
   /** Text field for the UPnP discovery timeout. */
   private final JTextField upnpDiscoveryTimeoutTextField;
 
+  /** Checkbox for if the server handles each connection on a virtual thread. */
+  private final JCheckBox useVirtualThreadServerCheckBox;
+
+  /** Spinner for the limit on the rate the server sends assets at, in KiB per second. */
+  private final JSpinner assetTransferBandwidthLimitSpinner;
+
   /** Text field for the file synchronization path. */
   private final JTextField fileSyncPath;
 
@@ -587,9 +611,15 @@ public PreferencesDialog() {
     fillSelectionCheckBox = panel.getCheckBox("fillSelectionCheckBox");
     frameRateCapTextField = panel.getTextField("frameRateCapTextField");
     renderPerformanceComboBox = panel.getComboBox("renderPerformanceComboBox");
+    imageCacheSizeSpinner = panel.getSpinner("imageCacheSizeSpinner");
+    imageCacheSoftReferencesCheckBox = panel.getCheckBox("imageCacheSoftReferencesCheckBox");
+    pathfindingOverClustersCheckBox = panel.getCheckBox("pathfindingOverClustersCheckBox");
 
     defaultUsername = panel.getTextField("defaultUsername");
     autoSaveSpinner = panel.getSpinner("autoSaveSpinner");
+    incrementalCampaignSaveCheckBox = panel.getCheckBox("incrementalCampaignSaveCheckBox");
+    saveCampaignAsXmlCheckBox = panel.getCheckBox("saveCampaignAsXmlCheckBox");
+    readCampaignAssetsOnDemandCheckBox = panel.getCheckBox("readCampaignAssetsOnDemandCheckBox");
     duplicateTokenCombo = panel.getComboBox("duplicateTokenCombo");
     tokenNamingCombo = panel.getComboBox("tokenNamingCombo");
     newMapsHaveFOWCheckBox = panel.getCheckBox("newMapsHaveFOWCheckBox");
@@ -661,6 +691,8 @@ public PreferencesDialog() {
     lockMovement = panel.getCheckBox("lockMovement");
     showInitGainMessage = panel.getCheckBox("showInitGainMessage");
     upnpDiscoveryTimeoutTextField = panel.getTextField("upnpDiscoveryTimeoutTextField");
+    useVirtualThreadServerCheckBox = panel.getCheckBox("useVirtualThreadServerCheckBox");
+    assetTransferBandwidthLimitSpinner = panel.getSpinner("assetTransferBandwidthLimitSpinner");
     typingNotificationDuration = panel.getSpinner("typingNotificationDuration");
     allowExternalMacroAccessCheckBox = panel.getCheckBox("allowExternalMacroAccessCheckBox");
     fileSyncPath = panel.getTextField("fileSyncPath");
@@ -992,6 +1024,41 @@ public void focusLost(FocusEvent e) {
           int newInterval = (Integer) autoSaveSpinner.getValue();
           AppPreferences.autoSaveIncrement.set(newInterval);
         });
+    incrementalCampaignSaveCheckBox.addActionListener(
+        e ->
+            AppPreferences.incrementalCampaignSave.set(
+                incrementalCampaignSaveCheckBox.isSelected()));
+    saveCampaignAsXmlCheckBox.addActionListener(
+        e -> AppPreferences.saveCampaignAsXml.set(saveCampaignAsXmlCheckBox.isSelected()));
+    readCampaignAssetsOnDemandCheckBox.addActionListener(
+        e ->
+            AppPreferences.readCampaignAssetsOnDemand.set(
+                readCampaignAssetsOnDemandCheckBox.isSelected()));
+    imageCacheSizeSpinner.addChangeListener(
+        new ChangeListenerProxy() {
+          @Override
+          protected void storeSpinnerValue(int value) {
+            AppPreferences.imageCacheSize.set(value);
+          }
+        });
+    imageCacheSoftReferencesCheckBox.addActionListener(
+        e ->
+            AppPreferences.imageCacheSoftReferences.set(
+                imageCacheSoftReferencesCheckBox.isSelected()));
+    pathfindingOverClustersCheckBox.addActionListener(
+        e ->
+            AppPreferences.pathfindingOverClusters.set(
+                pathfindingOverClustersCheckBox.isSelected()));
+    useVirtualThreadServerCheckBox.addActionListener(
+        e ->
+            AppPreferences.useVirtualThreadServer.set(useVirtualThreadServerCheckBox.isSelected()));
+    assetTransferBandwidthLimitSpinner.addChangeListener(
+        new ChangeListenerProxy() {
+          @Override
+          protected void storeSpinnerValue(int value) {
+            AppPreferences.assetTransferBandwidthLimit.set(value);
+          }
+        });
     newMapsHaveFOWCheckBox.addActionListener(
         e -> AppPreferences.newMapsHaveFow.set(newMapsHaveFOWCheckBox.isSelected()));
     tokensPopupWarningWhenDeletedCheckBox.addActionListener(
@@ -1548,6 +1615,17 @@ private void setInitialState() {
     defaultUsername.setText(AppPreferences.defaultUserName.get());
     // initEnableServerSyncCheckBox.setSelected(AppPreferences.getInitEnableServerSync());
     autoSaveSpinner.setValue(AppPreferences.autoSaveIncrement.get());
+    incrementalCampaignSaveCheckBox.setSelected(AppPreferences.incrementalCampaignSave.get());
+    saveCampaignAsXmlCheckBox.setSelected(AppPreferences.saveCampaignAsXml.get());
+    readCampaignAssetsOnDemandCheckBox.setSelected(AppPreferences.readCampaignAssetsOnDemand.get());
+    imageCacheSizeSpinner.setModel(
+        new SpinnerNumberModel(AppPreferences.imageCacheSize.get().intValue(), 0, 65536, 64));
+    imageCacheSoftReferencesCheckBox.setSelected(AppPreferences.imageCacheSoftReferences.get());
+    pathfindingOverClustersCheckBox.setSelected(AppPreferences.pathfindingOverClusters.get());
+    useVirtualThreadServerCheckBox.setSelected(AppPreferences.useVirtualThreadServer.get());
+    assetTransferBandwidthLimitSpinner.setModel(
+        new SpinnerNumberModel(
+            AppPreferences.assetTransferBandwidthLimit.get().intValue(), 0, 1024 * 1024, 64));
     loadMRUcheckbox.setSelected(AppPreferences.loadMruCampaignAtStart.get());
     newMapsHaveFOWCheckBox.setSelected(AppPreferences.newMapsHaveFow.get());
     tokensPopupWarningWhenDeletedCheckBox.setSelected(AppPreferences.tokensWarnWhenDeleted.get());
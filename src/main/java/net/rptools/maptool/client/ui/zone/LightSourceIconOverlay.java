@@ -29,31 +29,33 @@ public class LightSourceIconOverlay implements ZoneOverlay {
   private BufferedImage lightSourceIcon = RessourceManager.getImage(Images.LIGHT_SOURCE);
 
   public void paintOverlay(ZoneRenderer renderer, Graphics2D g) {
+    renderer.getZone().forEachToken(token -> paintLightSourceIcon(renderer, g, token));
+  }
 
-    for (Token token : renderer.getZone().getAllTokens()) {
-
-      if (token.hasLightSources()) {
-        boolean foundNormalLight = false;
-        for (AttachedLightSource attachedLightSource : token.getLightSources()) {
-          LightSource lightSource = attachedLightSource.resolve(token, MapTool.getCampaign());
-          if (lightSource != null && lightSource.getType() == LightSource.Type.NORMAL) {
-            foundNormalLight = true;
-            break;
-          }
-        }
-        if (!foundNormalLight) {
-          continue;
-        }
-
-        Area area = renderer.getTokenBounds(token);
-        if (area == null) {
-          continue;
-        }
+  private void paintLightSourceIcon(ZoneRenderer renderer, Graphics2D g, Token token) {
+    if (!token.hasLightSources()) {
+      return;
+    }
 
-        int x = area.getBounds().x + (area.getBounds().width - lightSourceIcon.getWidth()) / 2;
-        int y = area.getBounds().y + (area.getBounds().height - lightSourceIcon.getHeight()) / 2;
-        g.drawImage(lightSourceIcon, x, y, null);
+    boolean foundNormalLight = false;
+    for (AttachedLightSource attachedLightSource : token.getLightSources()) {
+      LightSource lightSource = attachedLightSource.resolve(token, MapTool.getCampaign());
+      if (lightSource != null && lightSource.getType() == LightSource.Type.NORMAL) {
+        foundNormalLight = true;
+        break;
       }
     }
+    if (!foundNormalLight) {
+      return;
+    }
+
+    Area area = renderer.getTokenBounds(token);
+    if (area == null) {
+      return;
+    }
+
+    int x = area.getBounds().x + (area.getBounds().width - lightSourceIcon.getWidth()) / 2;
+    int y = area.getBounds().y + (area.getBounds().height - lightSourceIcon.getHeight()) / 2;
+    g.drawImage(lightSourceIcon, x, y, null);
   }
 }
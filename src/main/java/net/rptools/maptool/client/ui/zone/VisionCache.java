@@ -0,0 +1,223 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone;
+
+import java.awt.Point;
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * A least-recently-used cache of vision sweeps, shared by all tokens of a zone.
+ *
+ * <p>A sweep depends only on where it is seen from, the shape of the vision, and the topology, so
+ * tokens stacked on the same cell, or a token moved back to where it was, can reuse the same
+ * result instead of sweeping again. Results are keyed by the vision center and the exact outline
+ * of the vision shape, and are only valid for a single topology version. Once a newer version is
+ * seen, every older result is dropped since it can never be looked up again.
+ *
+ * <p>The cache is bounded by an estimate of the memory taken up by the keys and results. The
+ * cached areas are shared, so callers must not modify them.
+ */
+public final class VisionCache {
+  /**
+   * A snapshot of the cache's counters.
+   *
+   * @param hits The number of lookups that found a sweep.
+   * @param misses The number of lookups that did not find a sweep.
+   * @param evictions The number of sweeps evicted to stay within the budget.
+   * @param residentBytes The estimated size of all sweeps currently held.
+   * @param budgetBytes The size the cache tries to stay within.
+   */
+  public record Statistics(
+      long hits, long misses, long evictions, long residentBytes, long budgetBytes) {
+    /**
+     * @return the fraction of lookups that found a sweep, or 0 if there have been none
+     */
+    public double hitRate() {
+      final var lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+  }
+
+  /**
+   * Identifies a vision sweep independent of the token that asked for it.
+   *
+   * <p>The outline is stored as the raw path of the vision area, with each segment's type followed
+   * by its coordinates, so that equal keys are guaranteed to describe the same sweep.
+   */
+  public static final class Key {
+    private final Point center;
+    private final double[] outline;
+    private final int hashCode;
+
+    public Key(Point center, Area vision) {
+      this.center = new Point(center);
+      this.outline = outlineOf(vision);
+      this.hashCode = 31 * this.center.hashCode() + Arrays.hashCode(this.outline);
+    }
+
+    private static double[] outlineOf(Area vision) {
+      var outline = new double[64];
+      var length = 0;
+      final var coords = new double[6];
+      for (var it = vision.getPathIterator(null); !it.isDone(); it.next()) {
+        final var type = it.currentSegment(coords);
+        final var count =
+            switch (type) {
+              case PathIterator.SEG_MOVETO, PathIterator.SEG_LINETO -> 2;
+              case PathIterator.SEG_QUADTO -> 4;
+              case PathIterator.SEG_CUBICTO -> 6;
+              default -> 0;
+            };
+        if (length + 1 + count > outline.length) {
+          outline = Arrays.copyOf(outline, Math.max(outline.length * 2, length + 1 + count));
+        }
+        outline[length++] = type;
+        System.arraycopy(coords, 0, outline, length, count);
+        length += count;
+      }
+      return Arrays.copyOf(outline, length);
+    }
+
+    /**
+     * @return the estimated heap used by the key
+     */
+    long weight() {
+      return 64L + 8L * outline.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key other
+          && hashCode == other.hashCode
+          && center.equals(other.center)
+          && Arrays.equals(outline, other.outline);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private record Entry(Area visibleArea, long weight) {}
+
+  /** Ordered from least to most recently used. */
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final long budgetBytes;
+  private long topologyVersion = Long.MIN_VALUE;
+  private long residentBytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  /**
+   * @param budgetBytes the total estimated size of sweeps to keep
+   */
+  public VisionCache(long budgetBytes) {
+    this.budgetBytes = budgetBytes;
+  }
+
+  /**
+   * Estimates the heap used by an area's path.
+   *
+   * @param area the area
+   * @return the estimated size in bytes
+   */
+  public static long weightOf(Area area) {
+    long segments = 0;
+    for (var it = area.getPathIterator(null); !it.isDone(); it.next()) {
+      ++segments;
+    }
+    // Each segment is held as a curve object with a few doubles of coordinates and bounds.
+    return 64L + 80L * segments;
+  }
+
+  /**
+   * Looks up a sweep, marking it as most recently used.
+   *
+   * @param key the sweep parameters
+   * @param topologyVersion the version of the topology the sweep is needed for
+   * @return the visible area, or {@code null} if it is not cached
+   */
+  public synchronized @Nullable Area get(Key key, long topologyVersion) {
+    advanceTo(topologyVersion);
+    final var entry = this.topologyVersion == topologyVersion ? entries.get(key) : null;
+    if (entry == null) {
+      ++misses;
+      return null;
+    }
+    ++hits;
+    return entry.visibleArea();
+  }
+
+  /**
+   * Adds a sweep, evicting the least recently used sweeps if this takes the cache over budget.
+   *
+   * <p>Sweeps for an older topology version than the cache has already seen are ignored.
+   *
+   * @param key the sweep parameters
+   * @param topologyVersion the version of the topology the sweep was calculated against
+   * @param visibleArea the result of the sweep, which must not be modified afterwards
+   */
+  public synchronized void put(Key key, long topologyVersion, Area visibleArea) {
+    advanceTo(topologyVersion);
+    if (this.topologyVersion != topologyVersion) {
+      return;
+    }
+
+    final var weight = key.weight() + weightOf(visibleArea);
+    final var previous = entries.put(key, new Entry(visibleArea, weight));
+    if (previous != null) {
+      residentBytes -= previous.weight();
+    }
+    residentBytes += weight;
+    trim();
+  }
+
+  /** Removes every sweep. */
+  public synchronized void clear() {
+    entries.clear();
+    residentBytes = 0;
+  }
+
+  /**
+   * @return a snapshot of the cache's counters
+   */
+  public synchronized Statistics getStatistics() {
+    return new Statistics(hits, misses, evictions, residentBytes, budgetBytes);
+  }
+
+  private void advanceTo(long topologyVersion) {
+    if (topologyVersion > this.topologyVersion) {
+      clear();
+      this.topologyVersion = topologyVersion;
+    }
+  }
+
+  private void trim() {
+    final var iterator = entries.values().iterator();
+    while (residentBytes > budgetBytes && iterator.hasNext()) {
+      final var entry = iterator.next();
+      iterator.remove();
+      residentBytes -= entry.weight();
+      ++evictions;
+    }
+  }
+}
@@ -21,16 +21,20 @@
 import java.awt.geom.Area;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import net.rptools.maptool.client.AppUtil;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.ui.zone.Illumination.LumensLevel;
 import net.rptools.maptool.client.ui.zone.IlluminationModel.ContributedLight;
 import net.rptools.maptool.client.ui.zone.IlluminationModel.LightInfo;
 import net.rptools.maptool.client.ui.zone.Illuminator.LitArea;
+import net.rptools.maptool.client.ui.zone.vbl.NodedTopology;
 import net.rptools.maptool.events.MapToolEventBus;
 import net.rptools.maptool.model.*;
 import net.rptools.maptool.model.player.Player;
@@ -54,8 +58,35 @@ public class ZoneView {
    */
   private record IlluminationKey(Player.Role role, double multiplier) {}
 
+  /**
+   * The parameters of a token's vision sweep, gathered up front so that the sweep itself does not
+   * need to touch the zone or the token.
+   *
+   * @param center The point the token sees from.
+   * @param vision The area the token would see if there were no topology.
+   */
+  private record VisionSweep(Point center, Area vision) {
+    public Area calculate(NodedTopology topology) {
+      return FogUtil.calculateVisibility(center, vision, topology);
+    }
+
+    public VisionCache.Key key() {
+      return new VisionCache.Key(center, vision);
+    }
+  }
+
   private static final Logger log = LogManager.getLogger(ZoneView.class);
 
+  /**
+   * Runs the vision sweeps of several tokens side by side. The sweeps only read the prepared
+   * {@link NodedTopology}, which is immutable, so they are safe to run in parallel.
+   */
+  private static final ForkJoinPool visionPool =
+      new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+  /** The estimated memory that {@link #visionCache} may use. */
+  private static final long VISION_CACHE_BUDGET_BYTES = 32L * 1024 * 1024;
+
   /** The zone of the ZoneView. */
   private final Zone zone;
 
@@ -113,6 +144,26 @@ private void addLightSourceToken(Token token, Set<Player.Role> roles) {
    */
   private final Map<GUID, Area> tokenVisibleAreaCache = new HashMap<>();
 
+  /**
+   * The vision sweeps behind {@link #tokenVisibleAreaCache}, keyed by the sweep rather than the
+   * token. This lets tokens that see from the same place share a sweep, and keeps the sweep around
+   * when a token is flushed without its vision center or shape changing.
+   */
+  private final VisionCache visionCache = new VisionCache(VISION_CACHE_BUDGET_BYTES);
+
+  /**
+   * The sweeps running in the background on {@link #visionPool}, by the tokens waiting for them. A
+   * token that is flushed while its sweep runs is dropped from here, so the late result is ignored.
+   */
+  private final Map<GUID, VisionCache.Key> pendingVisionSweeps = new HashMap<>();
+
+  /**
+   * The areas that flushed tokens could see before, shown in place of {@link
+   * #tokenVisibleAreaCache} until their background sweeps are done. Only tokens on the map are
+   * kept, and each is dropped once its vision is known again.
+   */
+  private final Map<GUID, Area> previousTokenVisibleAreas = new HashMap<>();
+
   // endregion
 
   // region These fields cache information that is specific to certain illumination parameters. They
@@ -150,13 +201,19 @@ private void addLightSourceToken(Token token, Set<Player.Role> roles) {
   /** Holds the auras from lightSourceMap after they have been combined. */
   private final Map<PlayerView, List<DrawableLight>> drawableAuras = new HashMap<>();
 
+  /** Called on the EDT once background sweeps have changed what tokens can see. */
+  private final Runnable visionChangedListener;
+
   /**
    * Construct ZoneView from zone. Build lightSourceMap, and add ZoneView to Zone as listener.
    *
    * @param zone the Zone to add.
+   * @param visionChangedListener called on the EDT when background vision sweeps finish, so that
+   *     the new vision can be painted.
    */
-  public ZoneView(Zone zone) {
+  public ZoneView(Zone zone, Runnable visionChangedListener) {
     this.zone = zone;
+    this.visionChangedListener = visionChangedListener;
 
     updateLightSourcesFromTokens(zone.getAllTokens());
 
@@ -180,15 +237,21 @@ public Area getExposedArea(PlayerView view) {
         // tokens' exposed areas to build the soft FoW. Note that not all owned tokens may still
         // have sight (so weren't included in the PlayerView), but could still have previously
         // exposed areas.
-        exposed = new Area();
-        for (Token tok : zone.getTokensForLayers(Zone.Layer::supportsVision)) {
-          if (!AppUtil.playerOwns(tok)) {
+        Area ownedExposed = new Area();
+        for (Zone.Layer layer : Zone.Layer.values()) {
+          if (!layer.supportsVision()) {
             continue;
           }
-          ExposedAreaMetaData meta = zone.getExposedAreaMetaData(tok.getExposedAreaGUID());
-          Area exposedArea = meta.getExposedAreaHistory();
-          exposed.add(new Area(exposedArea));
+          zone.forEachToken(
+              layer,
+              AppUtil::playerOwns,
+              tok -> {
+                ExposedAreaMetaData meta = zone.getExposedAreaMetaData(tok.getExposedAreaGUID());
+                Area exposedArea = meta.getExposedAreaHistory();
+                ownedExposed.add(new Area(exposedArea));
+              });
         }
+        exposed = ownedExposed;
       }
 
       exposedAreaMap.put(view, exposed);
@@ -210,8 +273,10 @@ public Area getExposedArea(PlayerView view) {
         view,
         view2 -> {
           final var visibleArea = new Area();
-          getTokensForView(view2)
-              .map(token -> this.getVisibleArea(token, view2))
+          final var tokens = getTokensForView(view2).toList();
+          calculateTokenVisibleAreas(tokens);
+          tokens.stream()
+              .map(token -> this.getVisibleArea(token, view2, true))
               .forEach(visibleArea::add);
           return visibleArea;
         });
@@ -349,14 +414,18 @@ private Stream<Token> getTokensForView(PlayerView view) {
     final boolean isGMview = view.isGMView();
     final boolean checkOwnership =
         MapTool.getServerPolicy().isUseIndividualViews() || MapTool.isPersonalServer();
-    List<Token> tokenList =
-        view.isUsingTokenView()
-            ? view.getTokens()
-            : zone.getTokensFiltered(
-                t ->
-                    t.getLayer().supportsVision()
-                        && t.getHasSight()
-                        && (isGMview || t.isVisible()));
+    List<Token> tokenList;
+    if (view.isUsingTokenView()) {
+      tokenList = view.getTokens();
+    } else {
+      tokenList = new ArrayList<>();
+      for (Zone.Layer layer : Zone.Layer.values()) {
+        if (layer.supportsVision()) {
+          zone.forEachToken(
+              layer, t -> t.getHasSight() && (isGMview || t.isVisible()), tokenList::add);
+        }
+      }
+    }
 
     return tokenList.stream()
         .filter(
@@ -431,7 +500,7 @@ private Illumination getIllumination(IlluminationKey illuminationKey) {
       personalLights = new ArrayList<>();
 
       // Get the token's sight.
-      final var tokenVisibleArea = getTokenVisibleArea(token);
+      final var tokenVisibleArea = getTokenVisibleArea(token, true);
 
       if (zone.getVisionType() != Zone.VisionType.NIGHT) {
         // Treat the entire visible area like a light source of minimal lumens.
@@ -470,12 +539,12 @@ public Illumination getIllumination(PlayerView view) {
       final var baseIllumination = getIllumination(illuminationKey);
 
       final var extraLights = new ArrayList<LitArea>();
-      getTokensForView(view)
-          .forEach(
-              token -> {
-                final var personalLights = getPersonalTokenContributions(view.getRole(), token);
-                extraLights.addAll(Lists.transform(personalLights, ContributedLight::litArea));
-              });
+      final var tokens = getTokensForView(view).toList();
+      calculateTokenVisibleAreas(tokens);
+      for (final var token : tokens) {
+        final var personalLights = getPersonalTokenContributions(view.getRole(), token);
+        extraLights.addAll(Lists.transform(personalLights, ContributedLight::litArea));
+      }
 
       illumination = baseIllumination.withExtraLights(extraLights);
       illuminationsPerView.put(view, illumination);
@@ -504,11 +573,14 @@ public List<LumensLevel> getDisjointObscuredLumensLevels(PlayerView view) {
    * <p>The results are cached in {@link #tokenVisibleAreaCache}
    *
    * @param token The token to find the visible area for.
+   * @param allowPrevious Whether what the token could see before will do while its vision is
+   *     swept in the background. If not, the token's vision is calculated now.
    * @return The visible area for the token.
    */
-  private Area getTokenVisibleArea(@Nonnull Token token) {
+  private Area getTokenVisibleArea(@Nonnull Token token, boolean allowPrevious) {
     // Sanity
     if (!token.getHasSight()) {
+      previousTokenVisibleAreas.remove(token.getId());
       return new Area();
     }
 
@@ -521,26 +593,201 @@ private Area getTokenVisibleArea(@Nonnull Token token) {
     // Combine the player visible area with the available light sources
     var tokenVisibleArea = tokenVisibleAreaCache.get(token.getId());
 
+    if (allowPrevious
+        && tokenVisibleArea == null
+        && pendingVisionSweeps.containsKey(token.getId())) {
+      // Still being swept in the background, so keep showing what the token saw before.
+      final var previous = previousTokenVisibleAreas.get(token.getId());
+      return previous == null ? new Area() : new Area(previous);
+    }
+
     if (tokenVisibleArea == null) {
-      // Not cached yet.
-      Point p = FogUtil.calculateVisionCenter(token, zone);
-      Area visibleArea = sight.getVisionShape(token, zone);
-      visibleArea.transform(AffineTransform.getTranslateInstance(p.x, p.y));
-      tokenVisibleArea = FogUtil.calculateVisibility(p, visibleArea, zone.prepareNodedTopologies());
+      // Not cached yet, but another token may have had the same sweep.
+      final var topology = zone.prepareNodedTopologies();
+      final var topologyVersion = zone.getNodedTopologyVersion();
+      final var sweep = createVisionSweep(token, sight);
+      final var key = sweep.key();
+      tokenVisibleArea = visionCache.get(key, topologyVersion);
+      if (tokenVisibleArea == null) {
+        tokenVisibleArea = sweep.calculate(topology);
+        visionCache.put(key, topologyVersion, tokenVisibleArea);
+      }
       tokenVisibleAreaCache.put(token.getId(), tokenVisibleArea);
+      previousTokenVisibleAreas.remove(token.getId());
+      if (pendingVisionSweeps.remove(token.getId()) != null) {
+        // The background sweep's result is no longer needed, but anything built from the previous
+        // area still has to go.
+        forgetVisionBuiltFrom(token.getId());
+        visionChangedListener.run();
+      }
     }
 
     // TODO Instead of a defensive copy, we could include a very stern warning to not modify.
     return new Area(tokenVisibleArea);
   }
 
+  private VisionSweep createVisionSweep(Token token, SightType sight) {
+    Point p = FogUtil.calculateVisionCenter(token, zone);
+    Area visibleArea = sight.getVisionShape(token, zone);
+    visibleArea.transform(AffineTransform.getTranslateInstance(p.x, p.y));
+    return new VisionSweep(p, visibleArea);
+  }
+
+  /**
+   * Start filling in {@link #tokenVisibleAreaCache} for any of the tokens not already in it.
+   *
+   * <p>The vision sweeps run in the background on {@link #visionPool}, so that painting a map with
+   * many sighted tokens does not stall while each token's vision is calculated. Until a token's
+   * sweep is done, {@link #getVisibleArea(PlayerView)} keeps painting what the token could see
+   * before, while direct lookups through {@link #getVisibleArea(Token, PlayerView)} calculate it
+   * there and then. The results are put in the cache on the EDT, after which {@link
+   * #visionChangedListener} is told to repaint. Sweeps already in {@link #visionCache} are reused,
+   * and tokens that share a sweep only run it once.
+   *
+   * @param tokens The tokens that are about to have their visible areas looked up.
+   */
+  private void calculateTokenVisibleAreas(List<Token> tokens) {
+    // Prepare the topology now, so the sweeps only ever read it.
+    final var topology = zone.prepareNodedTopologies();
+    final var topologyVersion = zone.getNodedTopologyVersion();
+
+    final var idsBySweep = new LinkedHashMap<VisionCache.Key, List<GUID>>();
+    final var sweeps = new ArrayList<VisionSweep>();
+    for (final var token : tokens) {
+      if (!token.getHasSight()
+          || tokenVisibleAreaCache.containsKey(token.getId())
+          || pendingVisionSweeps.containsKey(token.getId())) {
+        continue;
+      }
+      SightType sight = MapTool.getCampaign().getSightType(token.getSightType());
+      if (sight == null) {
+        continue;
+      }
+      final var sweep = createVisionSweep(token, sight);
+      final var key = sweep.key();
+      final var ids = idsBySweep.get(key);
+      if (ids != null) {
+        ids.add(token.getId());
+        continue;
+      }
+      final var cached = visionCache.get(key, topologyVersion);
+      if (cached != null) {
+        tokenVisibleAreaCache.put(token.getId(), cached);
+        previousTokenVisibleAreas.remove(token.getId());
+        continue;
+      }
+      idsBySweep.put(key, new ArrayList<>(List.of(token.getId())));
+      sweeps.add(sweep);
+    }
+    if (sweeps.size() < 2 && idsBySweep.values().stream().allMatch(ids -> ids.size() < 2)) {
+      // Nothing to be gained, so leave it to getTokenVisibleArea().
+      return;
+    }
+
+    final var keys = new ArrayList<>(idsBySweep.keySet());
+    for (int i = 0; i < sweeps.size(); ++i) {
+      final var sweep = sweeps.get(i);
+      final var key = keys.get(i);
+      final var ids = idsBySweep.get(key);
+      for (final var id : ids) {
+        pendingVisionSweeps.put(id, key);
+      }
+      CompletableFuture.supplyAsync(() -> sweep.calculate(topology), visionPool)
+          .whenCompleteAsync(
+              (visibleArea, error) ->
+                  onVisionSweepDone(key, topologyVersion, ids, visibleArea, error),
+              EventQueue::invokeLater);
+    }
+  }
+
+  /**
+   * Put the result of a background vision sweep in the caches, for those of its tokens that are
+   * still waiting for it, and let {@link #visionChangedListener} know.
+   *
+   * @param key The sweep that was run.
+   * @param topologyVersion The version of the topology that the sweep ran against.
+   * @param ids The tokens that were waiting for the sweep when it started.
+   * @param visibleArea The result of the sweep, or {@code null} if it failed.
+   * @param error The reason the sweep failed, or {@code null} if it succeeded.
+   */
+  private void onVisionSweepDone(
+      VisionCache.Key key,
+      long topologyVersion,
+      List<GUID> ids,
+      @Nullable Area visibleArea,
+      @Nullable Throwable error) {
+    if (error != null) {
+      // Leave it for getTokenVisibleArea() to try again.
+      log.error("Unexpected error while calculating vision for tokens {}", ids, error);
+    } else {
+      visionCache.put(key, topologyVersion, visibleArea);
+    }
+
+    var anyChanged = false;
+    for (final var id : ids) {
+      // Compare by identity, since a flushed token may be waiting on an equal sweep of newer
+      // topology.
+      if (pendingVisionSweeps.get(id) != key) {
+        continue;
+      }
+      pendingVisionSweeps.remove(id);
+      previousTokenVisibleAreas.remove(id);
+      if (visibleArea != null) {
+        tokenVisibleAreaCache.put(id, visibleArea);
+      }
+      forgetVisionBuiltFrom(id);
+      anyChanged = true;
+    }
+    if (anyChanged) {
+      visionChangedListener.run();
+    }
+  }
+
+  /**
+   * Drop everything that was built from what a token could see before its vision was swept, so
+   * that it is built again from the new visible area.
+   *
+   * @param id The token whose visible area has changed.
+   */
+  private void forgetVisionBuiltFrom(GUID id) {
+    for (final var cache : tokenVisionCachePerView.values()) {
+      cache.remove(id);
+    }
+    contributedPersonalLightsByToken.remove(id);
+    illuminationsPerView.clear();
+    exposedAreaMap.clear();
+    visibleAreaMap.clear();
+    drawableLights.clear();
+  }
+
+  /**
+   * Get the hit rate and memory use of the vision sweeps shared between tokens.
+   *
+   * @return a snapshot of the vision cache's counters.
+   */
+  public VisionCache.Statistics getVisionCacheStatistics() {
+    return visionCache.getStatistics();
+  }
+
   /**
    * Return the token visible area from tokenVisionCache. If null, create it.
    *
+   * <p>If the token's vision is being swept in the background, it is calculated now instead, so
+   * the result is always what the token can currently see.
+   *
    * @param token the token to get the visible area of.
    * @return the visible area of a token, including the effect of other lights.
    */
   public Area getVisibleArea(@Nonnull Token token, PlayerView view) {
+    return getVisibleArea(token, view, false);
+  }
+
+  private Area getVisibleArea(@Nonnull Token token, PlayerView view, boolean allowPrevious) {
+    if (!allowPrevious && pendingVisionSweeps.containsKey(token.getId())) {
+      // Settle the token's vision first, so that nothing built from the previous area is used.
+      getTokenVisibleArea(token, false);
+    }
+
     // Cache ?
     Map<GUID, Area> tokenVisionCache =
         tokenVisionCachePerView.computeIfAbsent(view, v -> new HashMap<>());
@@ -550,7 +797,7 @@ public Area getVisibleArea(@Nonnull Token token, PlayerView view) {
     }
 
     // Not cached, so need to calculate the area.
-    tokenVisibleArea = getTokenVisibleArea(token);
+    tokenVisibleArea = getTokenVisibleArea(token, allowPrevious);
 
     // Very important that we don't use the general view, but only the view from the token's
     // perspective.
@@ -720,7 +967,16 @@ public void flush() {
     illuminationModels.clear();
 
     contributedPersonalLightsByToken.clear();
+    // Keep showing the old vision while it is swept again. Tokens that are not on the map, such as
+    // the clones used to expose a path, are never painted so nothing is kept for them.
+    tokenVisibleAreaCache.forEach(
+        (id, area) -> {
+          if (zone.getToken(id) != null) {
+            previousTokenVisibleAreas.put(id, area);
+          }
+        });
     tokenVisibleAreaCache.clear();
+    pendingVisionSweeps.clear();
 
     tokenVisionCachePerView.clear();
     illuminationsPerView.clear();
@@ -750,7 +1006,11 @@ public void flush(Token token) {
     for (final var cache : tokenVisionCachePerView.values()) {
       cache.remove(token.getId());
     }
-    tokenVisibleAreaCache.remove(token.getId());
+    final var visibleArea = tokenVisibleAreaCache.remove(token.getId());
+    if (visibleArea != null && zone.getToken(token.getId()) != null) {
+      previousTokenVisibleAreas.put(token.getId(), visibleArea);
+    }
+    pendingVisionSweeps.remove(token.getId());
 
     // TODO Split logic for light and sight, since the sight portion is entirely duplicated.
     final var modelsWithToken =
@@ -842,6 +1102,11 @@ private void onTokensRemoved(TokensRemoved event) {
       return;
     }
 
+    for (var token : event.tokens()) {
+      pendingVisionSweeps.remove(token.getId());
+      previousTokenVisibleAreas.remove(token.getId());
+    }
+
     // The tokens don't exist anymore, so they should not be considered light sources.
     boolean anyLightingChanges = false;
     for (var lightSet : lightSourceMap.values()) {
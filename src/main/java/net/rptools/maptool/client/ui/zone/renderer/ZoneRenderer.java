@@ -165,7 +165,7 @@ public ZoneRenderer(Zone zone) {
       throw new IllegalArgumentException("Zone cannot be null");
     }
     this.zone = zone;
-    zoneView = new ZoneView(zone);
+    zoneView = new ZoneView(zone, this::flushFog);
     setZoneScale(new Scale());
 
     drawableRenderers =
@@ -961,7 +961,7 @@ public void renderZone(Graphics2D g2d, PlayerView view) {
       renderDrawableOverlay(g2d, drawableRenderers.get(Layer.BACKGROUND), view, drawables);
       timer.stop("drawableBackground");
       // }
-      List<Token> background = zone.getTokensOnLayer(Layer.BACKGROUND, false);
+      List<Token> background = getTokensToRender(Layer.BACKGROUND);
       if (!background.isEmpty()) {
         timer.start("tokensBackground");
         renderTokens(g2d, background, view);
@@ -984,7 +984,7 @@ public void renderZone(Graphics2D g2d, PlayerView view) {
 
     if (shouldRenderLayer(Zone.Layer.OBJECT, view)) {
       // ... Images on the object layer are always ABOVE the grid.
-      List<Token> stamps = zone.getTokensOnLayer(Layer.OBJECT, false);
+      List<Token> stamps = getTokensToRender(Layer.OBJECT);
       if (!stamps.isEmpty()) {
         timer.start("tokensStamp");
         renderTokens(g2d, stamps, view);
@@ -1035,14 +1035,14 @@ public void renderZone(Graphics2D g2d, PlayerView view) {
         renderDrawableOverlay(g2d, drawableRenderers.get(Layer.GM), view, drawables);
         timer.stop("drawableGM");
         // }
-        List<Token> stamps = zone.getTokensOnLayer(Layer.GM, false);
+        List<Token> stamps = getTokensToRender(Layer.GM);
         if (!stamps.isEmpty()) {
           timer.start("tokensGM");
           renderTokens(g2d, stamps, view);
           timer.stop("tokensGM");
         }
       }
-      List<Token> tokens = zone.getTokensOnLayer(Layer.TOKEN, false);
+      List<Token> tokens = getTokensToRender(Layer.TOKEN);
       if (!tokens.isEmpty()) {
         timer.start("tokens");
         renderTokens(g2d, tokens, view);
@@ -2069,6 +2069,32 @@ protected Shape getSquareFacingArrow(int angle, int size) {
     return gp.createTransformedShape(AffineTransform.getScaleInstance(getScale(), getScale()));
   }
 
+  /**
+   * Finds the tokens on a layer that may be on screen, other than those that are always visible.
+   * The bounds looked in are widened by a couple of cells to catch rotated and offset images that
+   * overhang their footprints; {@link #renderTokens} still culls whatever ends up off screen.
+   *
+   * @param layer the layer to render
+   * @return the tokens around the viewport, ordered by Z
+   */
+  private List<Token> getTokensToRender(Layer layer) {
+    ZonePoint topLeft = new ScreenPoint(0, 0).convertToZone(this);
+    ZonePoint bottomRight = new ScreenPoint(getWidth(), getHeight()).convertToZone(this);
+    Rectangle bounds =
+        new Rectangle(
+            topLeft.x, topLeft.y, bottomRight.x - topLeft.x + 1, bottomRight.y - topLeft.y + 1);
+    int margin = 2 * zone.getGrid().getSize();
+    bounds.grow(margin, margin);
+
+    List<Token> tokens = zone.getTokensInBounds(l -> l == layer, bounds);
+    for (int i = 0; i < tokens.size(); ++i) {
+      if (tokens.get(i).isAlwaysVisible()) {
+        return tokens.stream().filter(t -> !t.isAlwaysVisible()).toList();
+      }
+    }
+    return tokens;
+  }
+
   protected void renderTokens(Graphics2D g, List<Token> tokenList, PlayerView view) {
     renderTokens(g, tokenList, view, false);
   }
@@ -14,10 +14,16 @@
  */
 package net.rptools.maptool.client.ui.zone.vbl;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import net.rptools.lib.CodeTimer;
 import net.rptools.lib.GeometryUtil;
 import net.rptools.maptool.model.Zone;
@@ -28,6 +34,8 @@
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.index.strtree.STRtree;
 import org.locationtech.jts.noding.NodedSegmentString;
 import org.locationtech.jts.noding.snapround.SnapRoundingNoder;
 
@@ -36,11 +44,73 @@
  *
  * <p>The result will contain a copy of every part of the original topologies, modified to add nodes
  * at any intersection points. This makes it acceptable for use with vision sweeps.
+ *
+ * <p>The prepared parts are spatially indexed so that each vision sweep only has to look at the
+ * segments within its bounds, rather than every segment on the map.
  */
 public class NodedTopology {
+  /**
+   * How close two parts have to be for the noding of one to depend on the other. Snap rounding
+   * only adds nodes for vertices and intersections within a pixel of a segment, so anything further
+   * than a couple of pixels away is independent.
+   */
+  private static final double INTERACTION_DISTANCE =
+      2 / GeometryUtil.getPrecisionModel().getScale();
+
+  /**
+   * When more than this fraction of the parts would have to be re-noded, it is cheaper to just
+   * node everything again than to work out which parts can be kept.
+   */
+  private static final double MAX_INCREMENTAL_FRACTION = 0.5;
+
+  private record MaskKey(Zone.TopologyType type, Polygon polygon) {}
+
+  /**
+   * A single wall or mask from the input topology.
+   *
+   * @param key Identifies equal inputs across preparations.
+   * @param type The mask type, or {@code null} for walls.
+   * @param strings The strings to node. A wall is a single string, while a mask is its boundary
+   *     followed by its holes.
+   * @param envelope The envelope of all the strings.
+   */
+  private record Input(
+      Object key, @Nullable Zone.TopologyType type, Coordinate[][] strings, Envelope envelope) {
+    public Input(Object key, @Nullable Zone.TopologyType type, Coordinate[][] strings) {
+      this(key, type, strings, envelopeOf(strings));
+    }
+
+    private static Envelope envelopeOf(Coordinate[][] strings) {
+      var envelope = new Envelope();
+      for (var string : strings) {
+        for (var coordinate : string) {
+          envelope.expandToInclude(coordinate);
+        }
+      }
+      return envelope;
+    }
+
+    public Envelope interactionEnvelope() {
+      var result = new Envelope(envelope);
+      result.expandBy(INTERACTION_DISTANCE);
+      return result;
+    }
+  }
+
+  /**
+   * An input along with its noded result.
+   *
+   * @param input The input.
+   * @param noded The noded version of each of the input strings.
+   * @param mask The prepared mask, or {@code null} for walls.
+   */
+  private record Part(Input input, Coordinate[][] noded, @Nullable MaskTopology mask) {}
+
+  private final List<Part> parts;
   private final List<Topology> preparedParts;
 
-  private NodedTopology(List<Topology> preparedParts) {
+  private NodedTopology(List<Part> parts, List<Topology> preparedParts) {
+    this.parts = parts;
     this.preparedParts = preparedParts;
   }
 
@@ -70,117 +140,271 @@ public VisionResult getSegments(Coordinate origin, Envelope bounds, Consumer<Coo
    * @return The merged and noded topology.
    */
   public static NodedTopology prepare(WallTopology walls, List<MaskTopology> legacyMasks) {
+    return prepare(walls, legacyMasks, null);
+  }
+
+  /**
+   * Merge a set of topologies into a single noded collection, reusing as much of this one as
+   * possible.
+   *
+   * <p>Only the walls and masks that have changed since this topology was prepared, along with
+   * those close enough to them to be affected, are noded again. The result is the same as calling
+   * {@link #prepare(WallTopology, List)}, but is much quicker when only a small part of a large map
+   * has changed.
+   *
+   * @param walls The input walls.
+   * @param legacyMasks The legacy masks.
+   * @return The merged and noded topology.
+   */
+  public NodedTopology update(WallTopology walls, List<MaskTopology> legacyMasks) {
+    return prepare(walls, legacyMasks, this);
+  }
+
+  private static NodedTopology prepare(
+      WallTopology walls, List<MaskTopology> legacyMasks, @Nullable NodedTopology previous) {
+    var parts = new ArrayList<Part>();
     var preparedTopologies = new ArrayList<Topology>();
 
     CodeTimer.using(
         "NodedTopology#prepare()",
         timer -> {
-          var tempMasks = new ArrayList<TempMask>();
-
-          var strings = new ArrayList<NodedSegmentString>();
+          var inputs = new ArrayList<Input>();
 
           timer.start("collect walls");
-          var tempWalls = new TempWalls(walls);
-          strings.addAll(tempWalls.walls);
+          walls
+              .getWalls()
+              .forEach(
+                  wall -> {
+                    var segment = wall.asSegment();
+                    inputs.add(
+                        new Input(
+                            List.of(segment.p0, segment.p1),
+                            null,
+                            new Coordinate[][] {{segment.p0, segment.p1}}));
+                  });
           timer.stop("collect walls");
 
           timer.start("collect masks");
           for (var mask : legacyMasks) {
-            var tempMask = new TempMask(mask);
-            tempMasks.add(tempMask);
-            strings.add(tempMask.boundary);
-            strings.addAll(Arrays.asList(tempMask.holes));
+            var polygon = mask.getPolygon();
+            var strings = new Coordinate[1 + polygon.getNumInteriorRing()][];
+            strings[0] = polygon.getExteriorRing().getCoordinates();
+            for (var i = 0; i < polygon.getNumInteriorRing(); ++i) {
+              strings[1 + i] = polygon.getInteriorRingN(i).getCoordinates();
+            }
+            inputs.add(new Input(new MaskKey(mask.getType(), polygon), mask.getType(), strings));
           }
           timer.stop("collect masks");
 
-          var noder = new SnapRoundingNoder(GeometryUtil.getPrecisionModel());
+          timer.start("find changes");
+          // Inputs that can keep their previous noding are mapped to their previous part.
+          var reusable = new IdentityHashMap<Input, Part>();
+          var toNode = Collections.newSetFromMap(new IdentityHashMap<Input, Boolean>());
+          if (previous == null) {
+            toNode.addAll(inputs);
+          } else {
+            findChanges(previous, inputs, reusable, toNode);
+          }
+          timer.stop("find changes");
 
           timer.start("compute nodes");
-          noder.computeNodes(strings);
+          var noded = node(inputs, toNode);
           timer.stop("compute nodes");
 
-          // At this point, each string in `strings` has extra nodes added. These aren't part of its
-          // points, because that would make too much sense. Instead, we go through each and grab
-          // the complete set of nodes to make new strings.
-
-          var factory = GeometryUtil.getGeometryFactory();
+          for (var input : inputs) {
+            var part = reusable.get(input);
+            if (part == null) {
+              part = new Part(input, noded.get(input), null);
+            }
+            parts.add(part);
+          }
 
           timer.start("prepare walls");
           {
-            var preparedWalls = new WallTopology();
-            for (var wallString : tempWalls.walls) {
-              // String length will be at least 2.
-              var originalWall = (WallTopology.Wall) wallString.getData();
-              timer.start("get noded coordinates");
-              var coordinates = wallString.getNodedCoordinates();
-              timer.stop("get noded coordinates");
-              if (coordinates.length < 2) {
-                // This happens when we encounter a wall with vertices at the same location.
+            var preparedWalls = new IndexedWalls();
+            for (var part : parts) {
+              if (part.input().type() != null) {
                 continue;
               }
-
-              timer.start("build noded string");
-              preparedWalls.string(
-                  GeometryUtil.coordinateToPoint2D(coordinates[0]),
-                  builder -> {
-                    for (var i = 1; i < coordinates.length; ++i) {
-                      builder.push(GeometryUtil.coordinateToPoint2D(coordinates[i]));
-                    }
-                  });
-              timer.stop("build noded string");
+              var coordinates = part.noded()[0];
+              // This is empty when we encounter a wall with vertices at the same location.
+              for (var i = 1; i < coordinates.length; ++i) {
+                preparedWalls.add(coordinates[i - 1], coordinates[i]);
+              }
             }
+            timer.start("build index");
+            preparedWalls.build();
+            timer.stop("build index");
             preparedTopologies.add(preparedWalls);
           }
           timer.stop("prepare walls");
 
           timer.start("prepare masks");
-          for (var tempMask : tempMasks) {
-            var newBoundary = factory.createLinearRing(tempMask.boundary.getNodedCoordinates());
-            var newHoles = new LinearRing[tempMask.holes.length];
-            for (var i = 0; i < newHoles.length; ++i) {
-              newHoles[i] = factory.createLinearRing(tempMask.holes[i].getNodedCoordinates());
+          var factory = GeometryUtil.getGeometryFactory();
+          for (var i = 0; i < parts.size(); ++i) {
+            var part = parts.get(i);
+            var type = part.input().type();
+            if (type == null) {
+              continue;
+            }
+            if (part.mask() == null) {
+              var newBoundary = factory.createLinearRing(part.noded()[0]);
+              var newHoles = new LinearRing[part.noded().length - 1];
+              for (var j = 0; j < newHoles.length; ++j) {
+                newHoles[j] = factory.createLinearRing(part.noded()[1 + j]);
+              }
+              // Even though this is conceptually the same topology, it is distinct.
+              var mask =
+                  MaskTopology.create(type, factory.createPolygon(newBoundary, newHoles)).indexed();
+              part = new Part(part.input(), part.noded(), mask);
+              parts.set(i, part);
             }
-            // Make a new GUID. Even though this is conceptually the same topology, it is distinct.
-            preparedTopologies.add(
-                MaskTopology.create(tempMask.type, factory.createPolygon(newBoundary, newHoles)));
+            preparedTopologies.add(part.mask());
           }
           timer.stop("prepare masks");
         });
 
-    return new NodedTopology(preparedTopologies);
+    return new NodedTopology(parts, preparedTopologies);
   }
 
-  private static final class TempWalls {
-    public final List<NodedSegmentString> walls;
-
-    public TempWalls(WallTopology walls) {
-      this.walls = new ArrayList<>();
-      walls
-          .getWalls()
-          .forEach(
-              wall -> {
-                var segment = wall.asSegment();
-                var string =
-                    new NodedSegmentString(new Coordinate[] {segment.p0, segment.p1}, wall);
-                this.walls.add(string);
-              });
+  /**
+   * Works out which of {@code inputs} must be noded again, and which can reuse a part of {@code
+   * previous}.
+   *
+   * <p>An input has to be noded again if it is new, or if it is close enough to a new or removed
+   * input that its nodes may have changed. All other inputs are unchanged and can be reused as is.
+   *
+   * @param previous The previously prepared topology.
+   * @param inputs The new inputs.
+   * @param reusable Receives the inputs that can be reused, mapped to the part to reuse.
+   * @param toNode Receives the inputs that need to be noded again.
+   */
+  private static void findChanges(
+      NodedTopology previous, List<Input> inputs, Map<Input, Part> reusable, Set<Input> toNode) {
+    var unmatched = new HashMap<Object, ArrayDeque<Part>>();
+    for (var part : previous.parts) {
+      unmatched.computeIfAbsent(part.input().key(), key -> new ArrayDeque<>()).add(part);
+    }
+
+    var changedAreas = new ArrayList<Envelope>();
+    var index = new STRtree();
+    for (var input : inputs) {
+      var matches = unmatched.get(input.key());
+      var match = matches == null ? null : matches.poll();
+      if (match == null) {
+        toNode.add(input);
+        changedAreas.add(input.interactionEnvelope());
+      } else {
+        reusable.put(input, match);
+        index.insert(input.envelope(), input);
+      }
+    }
+    for (var removed : unmatched.values()) {
+      for (var part : removed) {
+        changedAreas.add(part.input().interactionEnvelope());
+      }
+    }
+
+    for (var area : changedAreas) {
+      index.query(
+          area,
+          item -> {
+            var input = (Input) item;
+            if (reusable.remove(input) != null) {
+              toNode.add(input);
+            }
+          });
+    }
+
+    if (toNode.size() > MAX_INCREMENTAL_FRACTION * inputs.size()) {
+      reusable.clear();
+      toNode.addAll(inputs);
     }
   }
 
-  private static final class TempMask {
-    public final Zone.TopologyType type;
-    public final NodedSegmentString boundary;
-    public final NodedSegmentString[] holes;
-
-    public TempMask(MaskTopology mask) {
-      this.type = mask.getType();
-      this.boundary =
-          new NodedSegmentString(mask.getPolygon().getExteriorRing().getCoordinates(), null);
-      this.holes = new NodedSegmentString[mask.getPolygon().getNumInteriorRing()];
-      for (var i = 0; i < holes.length; ++i) {
-        this.holes[i] =
-            new NodedSegmentString(mask.getPolygon().getInteriorRingN(i).getCoordinates(), null);
+  /**
+   * Nodes the inputs in {@code toNode}.
+   *
+   * <p>Only the inputs close enough to affect the result are included in the noding, so the result
+   * is the same as noding all the inputs at once.
+   *
+   * @param inputs All the inputs.
+   * @param toNode The inputs whose noded strings are needed.
+   * @return The noded strings of each input in {@code toNode}.
+   */
+  private static Map<Input, Coordinate[][]> node(List<Input> inputs, Set<Input> toNode) {
+    var neighbours = Collections.newSetFromMap(new IdentityHashMap<Input, Boolean>());
+    if (toNode.size() < inputs.size()) {
+      var index = new STRtree();
+      for (var input : inputs) {
+        if (!toNode.contains(input)) {
+          index.insert(input.envelope(), input);
+        }
       }
+      for (var input : toNode) {
+        index.query(input.interactionEnvelope(), item -> neighbours.add((Input) item));
+      }
+    }
+
+    var strings = new ArrayList<NodedSegmentString>();
+    var stringsByInput = new IdentityHashMap<Input, NodedSegmentString[]>();
+    for (var input : inputs) {
+      if (!toNode.contains(input) && !neighbours.contains(input)) {
+        continue;
+      }
+      var inputStrings = new NodedSegmentString[input.strings().length];
+      for (var i = 0; i < inputStrings.length; ++i) {
+        inputStrings[i] = new NodedSegmentString(input.strings()[i], input);
+        strings.add(inputStrings[i]);
+      }
+      stringsByInput.put(input, inputStrings);
+    }
+
+    var noder = new SnapRoundingNoder(GeometryUtil.getPrecisionModel());
+    noder.computeNodes(strings);
+
+    // At this point, each string in `strings` has extra nodes added. These aren't part of its
+    // points, because that would make too much sense. Instead, we go through each and grab the
+    // complete set of nodes to make new strings.
+    var result = new IdentityHashMap<Input, Coordinate[][]>();
+    for (var input : toNode) {
+      var inputStrings = stringsByInput.get(input);
+      var noded = new Coordinate[inputStrings.length][];
+      for (var i = 0; i < noded.length; ++i) {
+        noded[i] = inputStrings[i].getNodedCoordinates();
+      }
+      if (input.type() == null && noded[0].length < 2) {
+        // This happens when we encounter a wall with vertices at the same location.
+        noded[0] = new Coordinate[0];
+      }
+      result.put(input, noded);
+    }
+    return result;
+  }
+
+  /**
+   * The noded wall segments, bulk-loaded into an {@link STRtree}.
+   *
+   * <p>Vision only cares about the segments themselves, not how they connect, so there is no need
+   * to rebuild a {@link WallTopology} graph here.
+   */
+  private static final class IndexedWalls implements Topology {
+    private final STRtree tree = new STRtree();
+
+    public void add(Coordinate p0, Coordinate p1) {
+      tree.insert(new Envelope(p0, p1), new Coordinate[] {p0, p1});
+    }
+
+    /** Finish building the tree so that it can be safely queried from any thread. */
+    public void build() {
+      tree.build();
+    }
+
+    @Override
+    public VisionResult addSegments(
+        Coordinate origin, Envelope bounds, Consumer<Coordinate[]> sink) {
+      tree.query(bounds, item -> sink.accept((Coordinate[]) item));
+      return VisionResult.Possible;
     }
   }
 }
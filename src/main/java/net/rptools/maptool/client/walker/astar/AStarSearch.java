@@ -0,0 +1,302 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import java.util.Arrays;
+
+/**
+ * The bookkeeping for an A* search over grid cells, kept in primitive arrays.
+ *
+ * <p>Each node is a cell together with the parity of 1-2-1 diagonal moves taken to reach it, and is
+ * identified by a small integer. Nodes are looked up by their coordinates packed into a {@code
+ * long}, using a {@link LongIntMap}, and the open list is a binary heap that knows where each
+ * node sits in it. That allows a node's cost to be lowered in O(log n) rather than removing it from
+ * the heap by a linear scan.
+ *
+ * <p>A search can be {@link #reset()} and reused, which keeps the arrays from previous searches
+ * instead of allocating new nodes.
+ */
+final class AStarSearch {
+  private static final byte OPEN = 1;
+  private static final byte CLOSED = 2;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private int size = 0;
+  private int[] xs = new int[INITIAL_CAPACITY];
+  private int[] ys = new int[INITIAL_CAPACITY];
+  private boolean[] odd = new boolean[INITIAL_CAPACITY];
+  private byte[] state = new byte[INITIAL_CAPACITY];
+  private int[] parent = new int[INITIAL_CAPACITY];
+  private double[] g = new double[INITIAL_CAPACITY];
+  private double[] h = new double[INITIAL_CAPACITY];
+  private double[] distanceTraveled = new double[INITIAL_CAPACITY];
+  private double[] distanceTraveledWithoutTerrain = new double[INITIAL_CAPACITY];
+
+  /** The position of each node in {@link #heap}, or -1 if it is not in the heap. */
+  private int[] heapIndex = new int[INITIAL_CAPACITY];
+
+  private int heapSize = 0;
+  private int[] heap = new int[INITIAL_CAPACITY];
+
+  /** Maps packed node keys to node ids. */
+  private final LongIntMap ids = new LongIntMap(INITIAL_CAPACITY);
+
+  /**
+   * Packs a node's identity into a single value.
+   *
+   * <p>The y coordinate loses its top bit to make room for the parity, which only matters for cells
+   * more than a billion cells from the origin.
+   */
+  static long pack(int x, int y, boolean isOddStepOfOneTwoOneMovement) {
+    return ((long) x << 32)
+        | ((long) (y << 1) & 0xFFFFFFFFL)
+        | (isOddStepOfOneTwoOneMovement ? 1 : 0);
+  }
+
+  /** Forgets every node, keeping the storage for the next search. */
+  void reset() {
+    size = 0;
+    heapSize = 0;
+    ids.clear();
+  }
+
+  /**
+   * @return the number of nodes that have been reached so far.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Finds a node.
+   *
+   * @return the node's id, or -1 if it has not been reached.
+   */
+  int find(int x, int y, boolean isOddStepOfOneTwoOneMovement) {
+    return ids.get(pack(x, y, isOddStepOfOneTwoOneMovement));
+  }
+
+  /**
+   * Adds a node that has not been reached before. It is neither open nor closed.
+   *
+   * @return the id of the new node.
+   */
+  int add(int x, int y, boolean isOddStepOfOneTwoOneMovement) {
+    if (size == xs.length) {
+      grow();
+    }
+
+    final var id = size++;
+    xs[id] = x;
+    ys[id] = y;
+    odd[id] = isOddStepOfOneTwoOneMovement;
+    state[id] = 0;
+    parent[id] = -1;
+    heapIndex[id] = -1;
+    g[id] = 0;
+    h[id] = 0;
+    distanceTraveled[id] = 0;
+    distanceTraveledWithoutTerrain[id] = 0;
+    ids.put(pack(x, y, isOddStepOfOneTwoOneMovement), id);
+    return id;
+  }
+
+  private void grow() {
+    final var capacity = 2 * xs.length;
+    xs = Arrays.copyOf(xs, capacity);
+    ys = Arrays.copyOf(ys, capacity);
+    odd = Arrays.copyOf(odd, capacity);
+    state = Arrays.copyOf(state, capacity);
+    parent = Arrays.copyOf(parent, capacity);
+    g = Arrays.copyOf(g, capacity);
+    h = Arrays.copyOf(h, capacity);
+    distanceTraveled = Arrays.copyOf(distanceTraveled, capacity);
+    distanceTraveledWithoutTerrain = Arrays.copyOf(distanceTraveledWithoutTerrain, capacity);
+    heapIndex = Arrays.copyOf(heapIndex, capacity);
+    heap = Arrays.copyOf(heap, capacity);
+  }
+
+  // region Node data
+
+  int x(int node) {
+    return xs[node];
+  }
+
+  int y(int node) {
+    return ys[node];
+  }
+
+  boolean isOddStepOfOneTwoOneMovement(int node) {
+    return odd[node];
+  }
+
+  /**
+   * @return the node this one was reached from, or -1 for the start node.
+   */
+  int parent(int node) {
+    return parent[node];
+  }
+
+  double g(int node) {
+    return g[node];
+  }
+
+  double h(int node) {
+    return h[node];
+  }
+
+  double fCost(int node) {
+    return g[node] + h[node];
+  }
+
+  double distanceTraveled(int node) {
+    return distanceTraveled[node];
+  }
+
+  double distanceTraveledWithoutTerrain(int node) {
+    return distanceTraveledWithoutTerrain[node];
+  }
+
+  boolean isOpen(int node) {
+    return state[node] == OPEN;
+  }
+
+  boolean isClosed(int node) {
+    return state[node] == CLOSED;
+  }
+
+  /**
+   * Sets how a node was reached.
+   *
+   * @param node The node to update.
+   * @param parent The node it was reached from, or -1.
+   * @param g The cost of the path to the node.
+   * @param distanceTraveled The distance of the path to the node, accounting for terrain.
+   * @param distanceTraveledWithoutTerrain The distance of the path to the node, ignoring terrain.
+   */
+  void setPath(
+      int node,
+      int parent,
+      double g,
+      double distanceTraveled,
+      double distanceTraveledWithoutTerrain) {
+    this.parent[node] = parent;
+    this.g[node] = g;
+    this.distanceTraveled[node] = distanceTraveled;
+    this.distanceTraveledWithoutTerrain[node] = distanceTraveledWithoutTerrain;
+    if (heapIndex[node] >= 0) {
+      // The cost can only have gone down, since we only ever replace a path with a cheaper one.
+      siftUp(heapIndex[node]);
+    }
+  }
+
+  void setH(int node, double h) {
+    this.h[node] = h;
+  }
+
+  /** Marks a node as never needing to be visited again. */
+  void close(int node) {
+    state[node] = CLOSED;
+  }
+
+  // endregion
+
+  // region Open list
+
+  boolean hasOpen() {
+    return heapSize > 0;
+  }
+
+  int openCount() {
+    return heapSize;
+  }
+
+  /** Adds a node to the open list. Its costs must already be set. */
+  void open(int node) {
+    state[node] = OPEN;
+    heap[heapSize] = node;
+    heapIndex[node] = heapSize;
+    siftUp(heapSize++);
+  }
+
+  /**
+   * Removes the open node with the lowest f cost. The node is neither open nor closed afterwards.
+   *
+   * @return the removed node.
+   */
+  int pollOpen() {
+    final var node = heap[0];
+    heapIndex[node] = -1;
+    state[node] = 0;
+    if (--heapSize > 0) {
+      heap[0] = heap[heapSize];
+      heapIndex[heap[0]] = 0;
+      siftDown(0);
+    }
+    return node;
+  }
+
+  /** Empties the open list, e.g. to give up on a search. */
+  void clearOpen() {
+    for (int i = 0; i < heapSize; ++i) {
+      heapIndex[heap[i]] = -1;
+      state[heap[i]] = 0;
+    }
+    heapSize = 0;
+  }
+
+  private void siftUp(int index) {
+    final var node = heap[index];
+    final var f = fCost(node);
+    while (index > 0) {
+      final var parentIndex = (index - 1) >>> 1;
+      final var parentNode = heap[parentIndex];
+      if (fCost(parentNode) <= f) {
+        break;
+      }
+      heap[index] = parentNode;
+      heapIndex[parentNode] = index;
+      index = parentIndex;
+    }
+    heap[index] = node;
+    heapIndex[node] = index;
+  }
+
+  private void siftDown(int index) {
+    final var node = heap[index];
+    final var f = fCost(node);
+    while (true) {
+      var child = 2 * index + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && fCost(heap[child + 1]) < fCost(heap[child])) {
+        ++child;
+      }
+      final var childNode = heap[child];
+      if (fCost(childNode) >= f) {
+        break;
+      }
+      heap[index] = childNode;
+      heapIndex[childNode] = index;
+      index = child;
+    }
+    heap[index] = node;
+    heapIndex[node] = index;
+  }
+
+  // endregion
+}
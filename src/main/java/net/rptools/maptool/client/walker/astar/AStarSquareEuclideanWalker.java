@@ -14,7 +14,10 @@
  */
 package net.rptools.maptool.client.walker.astar;
 
+import java.awt.geom.Rectangle2D;
 import java.util.Arrays;
+import java.util.List;
+import net.rptools.maptool.client.AppPreferences;
 import net.rptools.maptool.client.walker.WalkerMetric;
 import net.rptools.maptool.model.CellPoint;
 import net.rptools.maptool.model.Zone;
@@ -39,6 +42,32 @@ public class AStarSquareEuclideanWalker extends AbstractAStarWalker {
 
   private double diagonalMultiplier = 1;
 
+  /**
+   * Finds jump points for metrics where every straight step and every diagonal step cost the same.
+   * It is used instead of expanding each neighbor when {@link #searchesByJumpPoints()}.
+   */
+  private final JumpPoints jumpPoints =
+      new JumpPoints(
+          new JumpPoints.Grid() {
+            @Override
+            public boolean canEnter(int x, int y) {
+              return AStarSquareEuclideanWalker.this.canEnter(x, y, jumpPointBounds);
+            }
+
+            @Override
+            public boolean isStepBlocked(int x, int y, int dx, int dy) {
+              return AStarSquareEuclideanWalker.this.isStepBlocked(x, y, dx, dy);
+            }
+
+            @Override
+            public boolean isOpen(int x, int y) {
+              return AStarSquareEuclideanWalker.this.isOpen(x, y, jumpPointBounds);
+            }
+          });
+
+  private Rectangle2D jumpPointBounds = new Rectangle2D.Double();
+  private boolean useJumpPoints = false;
+
   public AStarSquareEuclideanWalker(Zone zone, WalkerMetric metric) {
     super(zone);
 
@@ -79,9 +108,10 @@ protected double getDiagonalMultiplier(int[] neighborArray) {
     else return 1;
   }
 
-  private double metricDistance(AStarCellPoint current, CellPoint goal) {
-    int xDist = current.position.x - goal.x;
-    int yDist = current.position.y - goal.y;
+  private double metricDistance(
+      int x, int y, boolean isOddStepOfOneTwoOneMovement, CellPoint goal) {
+    int xDist = x - goal.x;
+    int yDist = y - goal.y;
 
     double distance;
     int crossProductTieBreaker;
@@ -94,15 +124,15 @@ private double metricDistance(AStarCellPoint current, CellPoint goal) {
       default:
       case ONE_ONE_ONE:
       case ONE_TWO_ONE:
-        xDist = Math.abs(current.position.x - goal.x);
-        yDist = Math.abs(current.position.y - goal.y);
+        xDist = Math.abs(x - goal.x);
+        yDist = Math.abs(y - goal.y);
 
         final int remainingDiagonals = Math.min(xDist, yDist);
         final int remainingStraights = Math.abs(xDist - yDist);
         // The floor operation does 1-2-1 for the remaining path; we need to adjust that according
         // to the prior path.
         final int evenOddDiagonalAdjustment =
-            (current.isOddStepOfOneTwoOneMovement() && remainingDiagonals % 2 != 0 ? 1 : 0);
+            (isOddStepOfOneTwoOneMovement && remainingDiagonals % 2 != 0 ? 1 : 0);
         distance =
             evenOddDiagonalAdjustment
                 + Math.floor(diagonalMultiplier * remainingDiagonals)
@@ -113,8 +143,7 @@ private double metricDistance(AStarCellPoint current, CellPoint goal) {
 
     // break ties to prefer better looking paths that are along the straight line from the
     // starting point to the goal
-    if ((goal.x > current.position.x && goal.y > current.position.y)
-        || (goal.x < current.position.x && goal.y < current.position.y)) {
+    if ((goal.x > x && goal.y > y) || (goal.x < x && goal.y < y)) {
       crossProductTieBreaker = Math.abs(xDist * crossY - crossX * yDist);
     } else {
       crossProductTieBreaker = Math.abs(xDist * crossY + crossX * yDist);
@@ -126,13 +155,126 @@ private double metricDistance(AStarCellPoint current, CellPoint goal) {
     return distance;
   }
 
+  /**
+   * Checks whether the metric allows Jump Point Search. The 1-2-1 metric does not, since the cost
+   * of a diagonal step depends on the steps before it. Nor does Manhattan: a diagonal step costs as
+   * much as the two straight steps around it, and with that many equally short paths the pruning
+   * can discard every one of the shortest.
+   */
+  private boolean supportsJumpPoints() {
+    return metric == WalkerMetric.ONE_ONE_ONE;
+  }
+
+  /**
+   * Checks whether the next search uses Jump Point Search. It must be enabled by {@link
+   * AppPreferences#pathfindingJumpPoints}, and there must be no terrain modifiers to change the
+   * cost of a step.
+   *
+   * @return {@code true} if jump points are used instead of expanding every neighbor.
+   */
+  boolean searchesByJumpPoints() {
+    return AppPreferences.pathfindingJumpPoints.get()
+        && supportsJumpPoints()
+        && !hasTerrainModifiers();
+  }
+
+  /** Clusters are supported for every metric except 1-2-1, where the cost of a step varies. */
+  @Override
+  boolean supportsClusters() {
+    return metric != WalkerMetric.ONE_TWO_ONE;
+  }
+
+  @Override
+  void prepareSearch(CellPoint start, CellPoint goal, Rectangle2D pathfindingBounds) {
+    useJumpPoints = searchesByJumpPoints();
+    jumpPointBounds = pathfindingBounds;
+    jumpPoints.reset();
+  }
+
+  private double stepCost(boolean isOddStepOfOneTwoOneMovement, int dx, int dy) {
+    if (dx == 0 || dy == 0 || isOddStepOfOneTwoOneMovement) {
+      return 1;
+    }
+    return Math.ceil(diagonalMultiplier);
+  }
+
+  @Override
+  void expand(int node, CellPoint goal, Rectangle2D pathfindingBounds) {
+    if (!useJumpPoints) {
+      super.expand(node, goal, pathfindingBounds);
+      return;
+    }
+
+    final int x = search.x(node);
+    final int y = search.y(node);
+    final boolean isOdd = search.isOddStepOfOneTwoOneMovement(node);
+    final int parent = search.parent(node);
+    final int directions =
+        parent < 0
+            ? JumpPoints.ALL_DIRECTIONS
+            : jumpPoints.successors(
+                x, y, Integer.signum(x - search.x(parent)), Integer.signum(y - search.y(parent)));
+
+    for (int i = 0; i < JumpPoints.DIRECTIONS.length; ++i) {
+      if ((directions & (1 << i)) == 0) {
+        continue;
+      }
+      final int dx = JumpPoints.DIRECTIONS[i][0];
+      final int dy = JumpPoints.DIRECTIONS[i][1];
+      final int steps = jumpPoints.jump(x, y, dx, dy, goal.x, goal.y);
+      if (steps == 0) {
+        continue;
+      }
+
+      final double cost = steps * stepCost(isOdd, dx, dy);
+      final double distance = steps * (dx != 0 && dy != 0 ? diagonalMultiplier : 1);
+      reach(
+          node,
+          x + steps * dx,
+          y + steps * dy,
+          isOdd,
+          search.g(node) + cost,
+          search.distanceTraveled(node) + cost,
+          search.distanceTraveledWithoutTerrain(node) + distance,
+          goal);
+    }
+  }
+
+  @Override
+  void addPathCells(int node, List<CellPoint> path) {
+    super.addPathCells(node, path);
+
+    final int parent = search.parent(node);
+    if (!useJumpPoints || parent < 0) {
+      return;
+    }
+
+    // Fill in the cells that were jumped over, which lie on a straight line back to the parent.
+    final int steps =
+        Math.max(
+            Math.abs(search.x(node) - search.x(parent)),
+            Math.abs(search.y(node) - search.y(parent)));
+    final int dx = Integer.signum(search.x(node) - search.x(parent));
+    final int dy = Integer.signum(search.y(node) - search.y(parent));
+    final double cost = stepCost(search.isOddStepOfOneTwoOneMovement(parent), dx, dy);
+    final double distance = dx != 0 && dy != 0 ? diagonalMultiplier : 1;
+    for (int step = steps - 1; step > 0; --step) {
+      path.add(
+          new CellPoint(
+              search.x(parent) + step * dx,
+              search.y(parent) + step * dy,
+              search.distanceTraveled(parent) + step * cost,
+              search.distanceTraveledWithoutTerrain(parent) + step * distance));
+    }
+  }
+
   @Override
   public int[][] getNeighborMap(int x, int y) {
     return neighborMap;
   }
 
   @Override
-  protected double hScore(AStarCellPoint p1, CellPoint p2) {
-    return metricDistance(p1, p2);
+  protected double hScore(int x, int y, boolean isOddStepOfOneTwoOneMovement, CellPoint goal) {
+    return metricDistance(x, y, isOddStepOfOneTwoOneMovement, goal);
   }
 }
@@ -14,7 +14,6 @@
  */
 package net.rptools.maptool.client.walker.astar;
 
-import com.google.common.eventbus.Subscribe;
 import java.awt.Color;
 import java.awt.EventQueue;
 import java.awt.Rectangle;
@@ -23,39 +22,32 @@
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
-import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import net.rptools.lib.GeometryUtil;
+import net.rptools.maptool.client.AppPreferences;
 import net.rptools.maptool.client.DeveloperOptions;
 import net.rptools.maptool.client.MapTool;
-import net.rptools.maptool.client.ui.zone.vbl.MovementBlockingTopology;
 import net.rptools.maptool.client.walker.AbstractZoneWalker;
-import net.rptools.maptool.events.MapToolEventBus;
 import net.rptools.maptool.model.CellPoint;
 import net.rptools.maptool.model.GUID;
 import net.rptools.maptool.model.Label;
 import net.rptools.maptool.model.Token;
 import net.rptools.maptool.model.TokenFootprint;
 import net.rptools.maptool.model.Zone;
-import net.rptools.maptool.model.zones.MaskTopologyChanged;
-import net.rptools.maptool.model.zones.WallTopologyChanged;
+import net.rptools.maptool.model.ZonePoint;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.locationtech.jts.algorithm.ConvexHull;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
@@ -63,8 +55,6 @@
 import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 
 public abstract class AbstractAStarWalker extends AbstractZoneWalker {
-  private record TerrainModifier(Token.TerrainModifierOperation operation, double value) {}
-
   private static boolean isInteger(double d) {
     return (int) d == d;
   }
@@ -77,13 +67,59 @@ private static boolean isInteger(double d) {
   private Area fowExposedArea = new Area();
   private double cell_cost = zone.getUnitsPerCell();
   private double distance = -1;
-  private final AtomicBoolean invalidatedTopology = new AtomicBoolean(true);
-  private @Nonnull MovementBlockingTopology preparedTopology = new MovementBlockingTopology();
+  private @Nullable NavigationGrid navigation = null;
   private PreparedGeometry fowExposedAreaGeometry = null;
   private TokenFootprint footprint = new TokenFootprint();
-  private Map<CellPoint, Map<CellPoint, Boolean>> vblBlockedMovesByGoal = new ConcurrentHashMap<>();
   private Map<CellPoint, Map<CellPoint, Boolean>> fowBlockedMovesByGoal = new ConcurrentHashMap<>();
-  private final Map<CellPoint, List<TerrainModifier>> terrainCells = new HashMap<>();
+
+  /** The nodes of the most recent search, kept so later searches can reuse the storage. */
+  final AStarSearch search = new AStarSearch();
+
+  /**
+   * Plans long paths over clusters of cells. It keeps what it learns between the searches of a
+   * drag, for as long as the walker's view of the map stays the same.
+   */
+  private final HierarchicalPathfinder hierarchy =
+      new HierarchicalPathfinder(
+          new HierarchicalPathfinder.Grid() {
+            @Override
+            public boolean canStand(int x, int y) {
+              return AbstractAStarWalker.this.canStand(x, y);
+            }
+
+            @Override
+            public boolean isStepBlocked(int x, int y, int dx, int dy) {
+              return AbstractAStarWalker.this.isStepBlocked(x, y, dx, dy);
+            }
+
+            @Override
+            public double[] costsWithin(int x, int y, int minX, int minY, int size) {
+              return AbstractAStarWalker.this.costsWithin(x, y, minX, minY, size);
+            }
+
+            @Override
+            public List<CellPoint> findPath(
+                CellPoint start, CellPoint goal, int minX, int minY, int size) {
+              return AbstractAStarWalker.this.findPath(
+                  start, goal, getCellBounds(minX, minY, size, size));
+            }
+
+            @Override
+            public double estimate(int x, int y, CellPoint goal) {
+              return hScore(x, y, false, goal);
+            }
+          });
+
+  /**
+   * Everything that decides where the token can go and at what cost. The FoW area is compared as
+   * the same instance, since it is only replaced when it changes.
+   */
+  private record ClusterState(
+      NavigationGrid navigation,
+      long version,
+      Area fowExposedArea,
+      TokenFootprint footprint,
+      Set<Token.TerrainModifierOperation> terrainModifiersIgnored) {}
 
   /**
    * The IDs of all debugging labels, so we can remove them again later. Only access this on the
@@ -94,47 +130,11 @@ private static boolean isInteger(double d) {
 
   public AbstractAStarWalker(Zone zone) {
     super(zone);
-
-    // Get tokens on map that may affect movement
-    for (Token token : zone.getTokensWithTerrainModifiers()) {
-      // log.info("Token: " + token.getName() + ", " + token.getTerrainModifier());
-      Set<CellPoint> cells = token.getOccupiedCells(zone.getGrid());
-      for (CellPoint cell : cells) {
-        terrainCells
-            .computeIfAbsent(cell, ignored -> new ArrayList<>())
-            .add(
-                new TerrainModifier(
-                    token.getTerrainModifierOperation(), token.getTerrainModifier()));
-      }
-    }
-
-    new MapToolEventBus().getMainEventBus().register(this);
   }
 
   @Override
   public void close() {
-    new MapToolEventBus().getMainEventBus().unregister(this);
-  }
-
-  private void onTopologyChanged() {
-    // This event is not called on the walker thread, so needs synchronization.
-    invalidatedTopology.set(true);
-  }
-
-  @Subscribe
-  private void onTopologyChanged(WallTopologyChanged event) {
-    if (event.zone() != zone) {
-      return;
-    }
-    onTopologyChanged();
-  }
-
-  @Subscribe
-  private void onTopologyChanged(MaskTopologyChanged event) {
-    if (event.zone() != zone) {
-      return;
-    }
-    onTopologyChanged();
+    // Nothing to release, since the navigation grid is shared with the zone's other walkers.
   }
 
   /**
@@ -153,10 +153,46 @@ private void onTopologyChanged(MaskTopologyChanged event) {
    */
   protected abstract int[][] getNeighborMap(int x, int y);
 
-  protected abstract double hScore(AStarCellPoint p1, CellPoint p2);
+  /**
+   * Estimates the remaining cost from a node to the goal.
+   *
+   * @param x The x cell position of the node.
+   * @param y The y cell position of the node.
+   * @param isOddStepOfOneTwoOneMovement If the movement is 1-2-1 and an odd path was taken so far.
+   * @param goal The goal of the search.
+   * @return the estimated cost, which must not exceed the actual cost.
+   */
+  protected abstract double hScore(
+      int x, int y, boolean isOddStepOfOneTwoOneMovement, CellPoint goal);
 
   protected abstract double getDiagonalMultiplier(int[] neighborArray);
 
+  /**
+   * Checks whether long paths can be planned over clusters of cells. That needs cells that form
+   * square clusters, and step costs that do not depend on the steps before them.
+   *
+   * @return {@code true} if {@link HierarchicalPathfinder} can be used.
+   */
+  boolean supportsClusters() {
+    return false;
+  }
+
+  /**
+   * Checks whether the path between two cells is planned over clusters of cells instead of being
+   * searched for directly. Planned paths can be longer than the shortest one, so this is only done
+   * when {@link AppPreferences#pathfindingOverClusters} is set.
+   *
+   * @param start The start of the path.
+   * @param goal The goal of the path.
+   * @return {@code true} if {@link HierarchicalPathfinder} is used for the path.
+   */
+  boolean plansOverClusters(CellPoint start, CellPoint goal) {
+    return AppPreferences.pathfindingOverClusters.get()
+        && restrictMovement
+        && supportsClusters()
+        && HierarchicalPathfinder.isWorthwhile(start, goal);
+  }
+
   public double getDistance() {
     if (distance < 0) {
       return 0;
@@ -166,15 +202,8 @@ public double getDistance() {
   }
 
   public Map<CellPoint, Set<CellPoint>> getBlockedMoves() {
-    final Map<CellPoint, Set<CellPoint>> result = new HashMap<>();
-    for (var entry : vblBlockedMovesByGoal.entrySet()) {
-      result.put(
-          entry.getKey(),
-          entry.getValue().entrySet().stream()
-              .filter(Map.Entry::getValue)
-              .map(Map.Entry::getKey)
-              .collect(Collectors.toSet()));
-    }
+    final Map<CellPoint, Set<CellPoint>> result =
+        navigation == null ? new HashMap<>() : navigation.getBlockedSteps();
     for (var entry : fowBlockedMovesByGoal.entrySet()) {
       result.put(
           entry.getKey(),
@@ -193,57 +222,32 @@ public void setFootprint(TokenFootprint footprint) {
 
   @Override
   protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
-    crossX = start.x - goal.x;
-    crossY = start.y - goal.y;
-
-    Queue<AStarCellPoint> openList =
-        new PriorityQueue<>(Comparator.comparingDouble(AStarCellPoint::fCost));
-    Map<AStarCellPoint, AStarCellPoint> openSet = new HashMap<>(); // For faster lookups
-    Set<AStarCellPoint> closedSet = new HashSet<>();
-
-    // Current fail safe... bail out after 10 seconds of searching just in case, shouldn't hang UI
-    // as this is off the AWT thread
     long timeOut = System.currentTimeMillis();
-    double estimatedTimeoutNeeded = 10000;
-
-    // if (start.equals(end))
-    // log.info("NO WORK!");
-
-    var startNode = new AStarCellPoint(start, !isInteger(start.distanceTraveledWithoutTerrain));
-    openList.add(startNode);
-    openSet.put(startNode, startNode);
-
-    AStarCellPoint currentNode = null;
 
     // Get current VBL for map...
     // Using JTS because AWT Area can only intersect with Area and we want to use simple lines here.
     // Render VBL to Geometry class once and store.
     // Note: zoneRenderer will be null if map is not visible to players.
+    var topologyTypes =
+        MapTool.getServerPolicy().getVblBlocksMove()
+            ? EnumSet.allOf(Zone.TopologyType.class)
+            : EnumSet.of(Zone.TopologyType.MBL);
+    navigation =
+        NavigationGrid.forZone(zone, topologyTypes, keyToken == null ? null : keyToken.getId());
+    navigation.update(zone);
+
     Area newFowExposedArea = new Area();
     final var zoneRenderer = MapTool.getFrame().getZoneRenderer(zone);
     if (zoneRenderer != null) {
       final var zoneView = zoneRenderer.getZoneView();
-
-      if (invalidatedTopology.compareAndSet(true, false)) {
-        // The move cache may no longer accurately reflect the VBL limitations.
-        this.vblBlockedMovesByGoal.clear();
-
-        var topologyTypes =
-            MapTool.getServerPolicy().getVblBlocksMove()
-                ? EnumSet.allOf(Zone.TopologyType.class)
-                : EnumSet.of(Zone.TopologyType.MBL);
-        this.preparedTopology =
-            new MovementBlockingTopology(
-                zone.getWalls(),
-                zone.getMasks(topologyTypes, keyToken == null ? null : keyToken.getId()));
-      }
-
       var view = zoneRenderer.getPlayerView();
       newFowExposedArea =
           zone.hasFog() && !view.isGMView() ? zoneView.getExposedArea(view) : new Area();
     }
 
-    if (!Objects.equals(newFowExposedArea, fowExposedArea)) {
+    // Area only compares shapes through equals(Area), so check for the same instance first to skip
+    // that comparison in the usual case.
+    if (newFowExposedArea != fowExposedArea && !newFowExposedArea.equals(fowExposedArea)) {
       // The move cache may no longer accurately reflect the FOW limitations.
       this.fowBlockedMovesByGoal.clear();
 
@@ -270,6 +274,74 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
           debugLabels.clear();
         });
 
+    Rectangle2D pathfindingBounds = this.getPathfindingBounds(start, goal);
+
+    List<CellPoint> returnedCellPointList = null;
+    if (plansOverClusters(start, goal)) {
+      hierarchy.setState(
+          new ClusterState(
+              navigation,
+              navigation.getVersion(),
+              fowExposedArea,
+              footprint,
+              Set.copyOf(terrainModifiersIgnored)));
+      crossX = start.x - goal.x;
+      crossY = start.y - goal.y;
+      returnedCellPointList = hierarchy.findPath(start, goal, toCells(pathfindingBounds));
+    }
+    if (returnedCellPointList == null) {
+      returnedCellPointList = findPath(start, goal, pathfindingBounds);
+    }
+
+    // We don't need to "calculate" distance after the fact as it's already stored as the G cost...
+    if (!returnedCellPointList.isEmpty()) {
+      distance =
+          returnedCellPointList.get(returnedCellPointList.size() - 1).getDistanceTraveled(zone);
+    } else { // if path finding was interrupted because of timeout
+      distance = 0;
+      goal.setAStarCanceled(true);
+
+      returnedCellPointList = new ArrayList<>();
+      returnedCellPointList.add(start);
+      returnedCellPointList.add(goal);
+    }
+
+    timeOut = (System.currentTimeMillis() - timeOut);
+    if (timeOut > 500) {
+      log.debug("Time to calculate A* path warning: " + timeOut + "ms");
+    }
+
+    return returnedCellPointList;
+  }
+
+  /**
+   * Searches for the cheapest path between two cells.
+   *
+   * @param start The start of the path.
+   * @param goal The goal of the path.
+   * @param pathfindingBounds The bounds outside of which no optimal path can go.
+   * @return the cells of the path from start to goal, or an empty list if none was found.
+   */
+  List<CellPoint> findPath(CellPoint start, CellPoint goal, Rectangle2D pathfindingBounds) {
+    crossX = start.x - goal.x;
+    crossY = start.y - goal.y;
+
+    search.reset();
+
+    // Current fail safe... bail out after 10 seconds of searching just in case, shouldn't hang UI
+    // as this is off the AWT thread
+    long timeOut = System.currentTimeMillis();
+    double estimatedTimeoutNeeded = 10000;
+
+    // if (start.equals(end))
+    // log.info("NO WORK!");
+
+    var startNode = search.add(start.x, start.y, !isInteger(start.distanceTraveledWithoutTerrain));
+    search.setPath(startNode, -1, 0, start.distanceTraveled, start.distanceTraveledWithoutTerrain);
+    search.open(startNode);
+
+    int currentNode = -1;
+
     // Timeout quicker for GM cause reasons
     if (MapTool.getPlayer().isGM()) {
       estimatedTimeoutNeeded = estimatedTimeoutNeeded / 2;
@@ -277,53 +349,29 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
 
     // log.info("A* Path timeout estimate: " + estimatedTimeoutNeeded);
 
-    Rectangle2D pathfindingBounds = this.getPathfindingBounds(start, goal);
+    prepareSearch(start, goal, pathfindingBounds);
 
     log.debug("Starting pathfinding");
     log.debug("Pathfinding bounds are {}", pathfindingBounds);
-    while (!openList.isEmpty()) {
-      log.debug("Open list has {} elements", openList.size());
+    while (search.hasOpen()) {
+      log.debug("Open list has {} elements", search.openCount());
 
       if (System.currentTimeMillis() > timeOut + estimatedTimeoutNeeded) {
         log.info("Timing out after " + estimatedTimeoutNeeded);
         break;
       }
 
-      currentNode = openList.remove();
-      log.debug("Current node is {}", currentNode.position);
-      openSet.remove(currentNode);
-      if (currentNode.position.equals(goal)) {
+      currentNode = search.pollOpen();
+      log.debug("Current node is [{},{}]", search.x(currentNode), search.y(currentNode));
+      if (search.x(currentNode) == goal.x && search.y(currentNode) == goal.y) {
         log.debug("Achieved our goal at {}", goal);
         break;
       }
 
-      for (AStarCellPoint currentNeighbor :
-          getNeighbors(currentNode, closedSet, pathfindingBounds)) {
-        currentNeighbor.h = hScore(currentNeighbor, goal);
-        showDebugInfo(currentNeighbor);
-
-        if (openSet.containsKey(currentNeighbor)) {
-          // check if it is cheaper to get here the way that we just came, versus the previous path
-          AStarCellPoint oldNode = openSet.get(currentNeighbor);
-          if (currentNeighbor.g < oldNode.g) {
-            // We're about to modify the node cost, so we have to reinsert the node.
-            openList.remove(oldNode);
-
-            oldNode.replaceG(currentNeighbor);
-            oldNode.parent = currentNode;
-
-            openList.add(oldNode);
-          }
-          continue;
-        }
-
-        openList.add(currentNeighbor);
-        openSet.put(currentNeighbor, currentNeighbor);
-        log.debug("Added neighbor to open set: {}", currentNeighbor.position);
-      }
+      expand(currentNode, goal, pathfindingBounds);
 
-      closedSet.add(currentNode);
-      currentNode = null;
+      search.close(currentNode);
+      currentNode = -1;
 
       /*
         We now calculate paths off the main UI thread but only one at a time.
@@ -332,39 +380,22 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
       */
       if (Thread.interrupted()) {
         log.debug("Pathfinding cancelled");
-        openList.clear();
+        search.clearOpen();
       }
     }
 
-    if (currentNode == null) {
+    if (currentNode < 0) {
       log.debug("Failed pathfinding");
     } else {
       log.debug("Completed pathfinding at {}", goal);
     }
 
     List<CellPoint> returnedCellPointList = new LinkedList<>();
-    while (currentNode != null) {
-      returnedCellPointList.add(currentNode.position);
-      currentNode = currentNode.parent;
+    while (currentNode >= 0) {
+      addPathCells(currentNode, returnedCellPointList);
+      currentNode = search.parent(currentNode);
     }
-
-    // We don't need to "calculate" distance after the fact as it's already stored as the G cost...
-    if (!returnedCellPointList.isEmpty()) {
-      distance = returnedCellPointList.get(0).getDistanceTraveled(zone);
-    } else { // if path finding was interrupted because of timeout
-      distance = 0;
-      goal.setAStarCanceled(true);
-
-      returnedCellPointList.add(goal);
-      returnedCellPointList.add(start);
-    }
-
     Collections.reverse(returnedCellPointList);
-    timeOut = (System.currentTimeMillis() - timeOut);
-    if (timeOut > 500) {
-      log.debug("Time to calculate A* path warning: " + timeOut + "ms");
-    }
-
     return returnedCellPointList;
   }
 
@@ -388,7 +419,7 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
    */
   protected Rectangle2D getPathfindingBounds(CellPoint start, CellPoint goal) {
     // Bounding box must contain all VBL/MBL ...
-    var vblEnvelope = preparedTopology.getEnvelope();
+    var vblEnvelope = navigation.getTopology().getEnvelope();
 
     Rectangle2D pathfindingBounds =
         new Rectangle2D.Double(
@@ -399,8 +430,9 @@ protected Rectangle2D getPathfindingBounds(CellPoint start, CellPoint goal) {
 
     pathfindingBounds = pathfindingBounds.createUnion(fowExposedArea.getBounds());
     // ... and the footprints of all terrain tokens ...
-    for (var cellPoint : terrainCells.keySet()) {
-      pathfindingBounds = pathfindingBounds.createUnion(zone.getGrid().getBounds(cellPoint));
+    var terrainBounds = navigation.getTerrainBounds();
+    if (terrainBounds != null) {
+      pathfindingBounds = pathfindingBounds.createUnion(terrainBounds);
     }
     // ... and the original token position ...
     pathfindingBounds = pathfindingBounds.createUnion(zone.getGrid().getBounds(start));
@@ -418,10 +450,56 @@ protected Rectangle2D getPathfindingBounds(CellPoint start, CellPoint goal) {
     return pathfindingBounds;
   }
 
-  protected List<AStarCellPoint> getNeighbors(
-      AStarCellPoint node, Set<AStarCellPoint> closedSet, Rectangle2D pathfindingBounds) {
-    List<AStarCellPoint> neighbors = new ArrayList<>();
-    int[][] neighborMap = getNeighborMap(node.position.x, node.position.y);
+  /**
+   * Called once the start node is open and the bounds are known, before any node is expanded.
+   *
+   * @param start The start of the path.
+   * @param goal The goal of the path.
+   * @param pathfindingBounds The bounds outside of which no optimal path can go.
+   */
+  void prepareSearch(CellPoint start, CellPoint goal, Rectangle2D pathfindingBounds) {}
+
+  /**
+   * Adds the cells of a path node to a path that is being built from the goal back to the start.
+   *
+   * @param node The node to add.
+   * @param path The path so far, which ends at the node's successor.
+   */
+  void addPathCells(int node, List<CellPoint> path) {
+    path.add(
+        new CellPoint(
+            search.x(node),
+            search.y(node),
+            search.distanceTraveled(node),
+            search.distanceTraveledWithoutTerrain(node)));
+  }
+
+  /**
+   * Reaches every neighbor of a node. Neighbors that have not been reached before are opened, and
+   * open neighbors take the path through the node if it is cheaper than their current one.
+   * Neighbors that can never be entered are closed.
+   *
+   * @param node The node to expand.
+   * @param goal The goal of the search.
+   * @param pathfindingBounds The bounds outside of which no optimal path can go.
+   */
+  void expand(int node, CellPoint goal, Rectangle2D pathfindingBounds) {
+    expandNeighbors(node, goal, pathfindingBounds);
+  }
+
+  /**
+   * Reaches every neighbor of a node, one step at a time.
+   *
+   * @param node The node to expand.
+   * @param goal The goal of the search, or {@code null} to find the cost of every cell.
+   * @param pathfindingBounds The bounds outside of which no optimal path can go.
+   * @see #expand(int, CellPoint, Rectangle2D)
+   */
+  private void expandNeighbors(int node, @Nullable CellPoint goal, Rectangle2D pathfindingBounds) {
+    final var position = new CellPoint(search.x(node), search.y(node));
+    final var isInBounds = zone.getGrid().getBounds(position).intersects(pathfindingBounds);
+    final var occupiedCells = restrictMovement ? footprint.getOccupiedCells(position) : null;
+    int[][] neighborMap = getNeighborMap(position.x, position.y);
 
     // Find all the neighbors.
     for (int[] neighborArray : neighborMap) {
@@ -434,48 +512,49 @@ protected List<AStarCellPoint> getNeighbors(
       double diagonalMultiplier = getDiagonalMultiplier(neighborArray);
       boolean invertEvenOddDiagonals = !isInteger(diagonalMultiplier);
 
-      AStarCellPoint neighbor =
-          new AStarCellPoint(
-              node.position.x + neighborArray[0],
-              node.position.y + neighborArray[1],
-              node.isOddStepOfOneTwoOneMovement ^ invertEvenOddDiagonals);
-      log.debug("Checking neighbor: {}", neighbor.position);
-      if (closedSet.contains(neighbor)) {
-        log.debug("Rejected neighbor for being in the closed set: {}", neighbor.position);
+      final int x = position.x + neighborArray[0];
+      final int y = position.y + neighborArray[1];
+      final boolean isOdd = search.isOddStepOfOneTwoOneMovement(node) ^ invertEvenOddDiagonals;
+      log.debug("Checking neighbor: [{},{}]", x, y);
+
+      var neighbor = search.find(x, y, isOdd);
+      if (neighbor == node) {
+        // Staying put never helps.
+        continue;
+      }
+      if (neighbor >= 0 && search.isClosed(neighbor)) {
+        log.debug("Rejected neighbor for being in the closed set: [{},{}]", x, y);
         continue;
       }
 
-      if (!zone.getGrid().getBounds(node.position).intersects(pathfindingBounds)) {
-        log.debug("Rejected neighbor for being out of bounds: {}", neighbor.position);
+      if (!isInBounds) {
+        log.debug("Rejected neighbor for being out of bounds: [{},{}]", x, y);
         // This position is too far out to possibly be part of the optimal path.
-        closedSet.add(neighbor);
+        close(x, y, isOdd);
         continue;
       }
 
-      // Add the cell we're coming from
-      neighbor.parent = node;
-
       // Don't count VBL or Terrain Modifiers
       if (restrictMovement) {
-        if (tokenFootprintIntersectsVBL(neighbor.position)) {
+        final var neighborPosition = new CellPoint(x, y);
+        if (tokenFootprintIntersectsVBL(neighborPosition)) {
           // The token would overlap VBL if moved to this position, so it is not a valid position.
-          closedSet.add(neighbor);
-          log.debug("Rejected neighbor for being inside MBL: {}", neighbor.position);
+          close(x, y, isOdd);
+          log.debug("Rejected neighbor for being inside MBL: {}", neighborPosition);
           continue;
         }
 
-        Set<CellPoint> occupiedCells = footprint.getOccupiedCells(node.position);
         for (CellPoint cellPoint : occupiedCells) {
           // Check whether moving the occupied cell to its new location would be prohibited by VBL.
           var cellNeighbor =
               new CellPoint(cellPoint.x + neighborArray[0], cellPoint.y + neighborArray[1]);
           if (vblBlocksMovement(cellPoint, cellNeighbor)) {
             blockNode = true;
-            log.debug("MBL blocked movement to neighbor: {}", neighbor.position);
+            log.debug("MBL blocked movement to neighbor: {}", neighborPosition);
             break;
           }
           if (fowBlocksMovement(cellPoint, cellNeighbor)) {
-            log.debug("FOW blocked movement to neighbor to {}", neighbor.position);
+            log.debug("FOW blocked movement to neighbor to {}", neighborPosition);
             blockNode = true;
             break;
           }
@@ -486,35 +565,33 @@ protected List<AStarCellPoint> getNeighbors(
         }
 
         // Check for terrain modifiers
-        for (TerrainModifier terrainModifier :
-            terrainCells.getOrDefault(neighbor.position, Collections.emptyList())) {
-          if (!terrainModifiersIgnored.contains(terrainModifier.operation)) {
-            switch (terrainModifier.operation) {
-              case MULTIPLY:
-                terrainMultiplier += terrainModifier.value;
-                break;
-              case ADD:
-                terrainAdder += terrainModifier.value;
-                break;
-              case BLOCK:
-                // Terrain blocking applies equally regardless of even/odd diagonals.
-                closedSet.add(new AStarCellPoint(neighbor.position, false));
-                closedSet.add(new AStarCellPoint(neighbor.position, true));
-                blockNode = true;
-                continue;
-              case FREE:
-                terrainIsFree = true;
-                break;
-              case NONE:
-                break;
-            }
+        final int terrain = navigation.terrainFlags(x, y);
+        if (terrain != 0) {
+          if ((terrain & NavigationGrid.TERRAIN_MULTIPLY) != 0
+              && !terrainModifiersIgnored.contains(Token.TerrainModifierOperation.MULTIPLY)) {
+            terrainMultiplier = navigation.terrainMultiplier(x, y);
+          }
+          if ((terrain & NavigationGrid.TERRAIN_ADD) != 0
+              && !terrainModifiersIgnored.contains(Token.TerrainModifierOperation.ADD)) {
+            terrainAdder = navigation.terrainAdder(x, y);
+          }
+          if ((terrain & NavigationGrid.TERRAIN_FREE) != 0
+              && !terrainModifiersIgnored.contains(Token.TerrainModifierOperation.FREE)) {
+            terrainIsFree = true;
+          }
+          if ((terrain & NavigationGrid.TERRAIN_BLOCK) != 0
+              && !terrainModifiersIgnored.contains(Token.TerrainModifierOperation.BLOCK)) {
+            // Terrain blocking applies equally regardless of even/odd diagonals.
+            close(x, y, false);
+            close(x, y, true);
+            blockNode = true;
           }
         }
       }
       terrainAdder = terrainAdder / cell_cost;
 
       if (blockNode) {
-        log.debug("Terrain blocked movement to neighbor to {}", neighbor.position);
+        log.debug("Terrain blocked movement to neighbor to [{},{}]", x, y);
         continue;
       }
 
@@ -526,94 +603,265 @@ protected List<AStarCellPoint> getNeighbors(
 
       terrainMultiplier = Math.abs(terrainMultiplier); // net negative multipliers screw with the AI
 
+      final double g;
+      final double distanceTraveled;
+      final double distanceTraveledWithoutTerrain;
       if (terrainIsFree) {
-        neighbor.g = node.g;
-        neighbor.position.distanceTraveled = node.position.distanceTraveled;
+        g = search.g(node);
+        distanceTraveled = search.distanceTraveled(node);
+        distanceTraveledWithoutTerrain = 0;
       } else {
-        neighbor.position.distanceTraveledWithoutTerrain =
-            node.position.distanceTraveledWithoutTerrain + diagonalMultiplier;
+        distanceTraveledWithoutTerrain =
+            search.distanceTraveledWithoutTerrain(node) + diagonalMultiplier;
+
+        final double stepCost =
+            isOdd
+                ? terrainAdder + terrainMultiplier
+                : terrainAdder + terrainMultiplier * Math.ceil(diagonalMultiplier);
+        g = search.g(node) + stepCost;
+        distanceTraveled = search.distanceTraveled(node) + stepCost;
+      }
+
+      reach(node, x, y, isOdd, g, distanceTraveled, distanceTraveledWithoutTerrain, goal);
+    }
+  }
+
+  /**
+   * Reaches a cell from a node, opening it if it has not been reached before, or giving it the path
+   * through the node if that is cheaper than the one it has.
+   *
+   * @param node The node the cell is reached from.
+   * @param x The x cell position reached.
+   * @param y The y cell position reached.
+   * @param isOdd If the movement is 1-2-1 and an odd path was taken so far.
+   * @param g The cost of the path to the cell.
+   * @param distanceTraveled The distance of the path to the cell, accounting for terrain.
+   * @param distanceTraveledWithoutTerrain The distance of the path to the cell, ignoring terrain.
+   * @param goal The goal of the search, or {@code null} if there is none.
+   */
+  void reach(
+      int node,
+      int x,
+      int y,
+      boolean isOdd,
+      double g,
+      double distanceTraveled,
+      double distanceTraveledWithoutTerrain,
+      @Nullable CellPoint goal) {
+    var neighbor = search.find(x, y, isOdd);
+    if (neighbor < 0) {
+      neighbor = search.add(x, y, isOdd);
+      search.setH(neighbor, goal == null ? 0 : hScore(x, y, isOdd, goal));
+      search.setPath(neighbor, node, g, distanceTraveled, distanceTraveledWithoutTerrain);
+      search.open(neighbor);
+      showDebugInfo(neighbor);
+      log.debug("Added neighbor to open set: [{},{}]", x, y);
+    } else if (search.isOpen(neighbor) && g < search.g(neighbor)) {
+      // It is cheaper to get here the way that we just came, versus the previous path.
+      search.setPath(neighbor, node, g, distanceTraveled, distanceTraveledWithoutTerrain);
+      showDebugInfo(neighbor);
+    }
+  }
 
-        if (neighbor.isOddStepOfOneTwoOneMovement()) {
-          neighbor.g = node.g + terrainAdder + terrainMultiplier;
+  /**
+   * Checks whether the token can stand in a cell, ignoring terrain modifiers.
+   *
+   * @param x The x cell position.
+   * @param y The y cell position.
+   * @param pathfindingBounds The bounds outside of which no optimal path can go.
+   * @return {@code true} if the cell is in bounds and the token's footprint would not overlap MBL.
+   */
+  boolean canEnter(int x, int y, Rectangle2D pathfindingBounds) {
+    if (!zone.getGrid().getBounds(new CellPoint(x, y)).intersects(pathfindingBounds)) {
+      return false;
+    }
+    return canStand(x, y);
+  }
 
-          neighbor.position.distanceTraveled =
-              node.position.distanceTraveled + terrainAdder + terrainMultiplier;
-        } else {
-          neighbor.g = node.g + terrainAdder + terrainMultiplier * Math.ceil(diagonalMultiplier);
+  /**
+   * Checks whether the token can stand in a cell, ignoring terrain modifiers and bounds.
+   *
+   * @param x The x cell position.
+   * @param y The y cell position.
+   * @return {@code true} if the token's footprint would not overlap MBL.
+   */
+  boolean canStand(int x, int y) {
+    return !restrictMovement || !tokenFootprintIntersectsVBL(new CellPoint(x, y));
+  }
 
-          neighbor.position.distanceTraveled =
-              node.position.distanceTraveled
-                  + terrainAdder
-                  + terrainMultiplier * Math.ceil(diagonalMultiplier);
-        }
+  /**
+   * Finds the cheapest cost of reaching each cell of a square window from a cell inside it. Only
+   * the cells inside the window's outer ring are expanded, so paths cannot leave the window.
+   *
+   * @param x The x cell position to start from.
+   * @param y The y cell position to start from.
+   * @param minX The x cell position of the window's first column.
+   * @param minY The y cell position of the window's first row.
+   * @param size The width and height of the window, in cells.
+   * @return the costs, row by row, with infinity for cells that cannot be reached.
+   */
+  double[] costsWithin(int x, int y, int minX, int minY, int size) {
+    final var innerBounds = getCellBounds(minX + 1, minY + 1, size - 2, size - 2);
+
+    search.reset();
+    final var startNode = search.add(x, y, false);
+    search.setPath(startNode, -1, 0, 0, 0);
+    search.open(startNode);
+    while (search.hasOpen()) {
+      final var node = search.pollOpen();
+      final var nodeX = search.x(node) - minX;
+      final var nodeY = search.y(node) - minY;
+      if (nodeX > 0 && nodeX < size - 1 && nodeY > 0 && nodeY < size - 1) {
+        expandNeighbors(node, null, innerBounds);
       }
+      search.close(node);
+    }
 
-      log.debug("Accepted neighbor: {}", neighbor.position);
-      neighbors.add(neighbor);
+    final var costs = new double[size * size];
+    for (int row = 0; row < size; ++row) {
+      for (int column = 0; column < size; ++column) {
+        final var node = search.find(minX + column, minY + row, false);
+        // Cells that could never be entered are closed without ever being given a path.
+        final var isReached = node == startNode || (node >= 0 && search.parent(node) >= 0);
+        costs[row * size + column] = isReached ? search.g(node) : Double.POSITIVE_INFINITY;
+      }
     }
+    return costs;
+  }
 
-    return neighbors;
+  /**
+   * @return the bounds of a block of cells in zone coordinates.
+   */
+  private Rectangle2D getCellBounds(int minX, int minY, int width, int height) {
+    final var grid = zone.getGrid();
+    final var bounds = new Rectangle(grid.getBounds(new CellPoint(minX, minY)));
+    bounds.add(grid.getBounds(new CellPoint(minX + width - 1, minY + height - 1)));
+    return bounds;
   }
 
-  private boolean tokenFootprintIntersectsVBL(CellPoint position) {
-    var points =
-        footprint.getOccupiedCells(position).stream()
-            .map(
-                cellPoint -> {
-                  var bounds = zone.getGrid().getBounds(cellPoint);
-                  return new Coordinate(bounds.getCenterX(), bounds.getCenterY());
-                })
-            .toArray(Coordinate[]::new);
-    Geometry footprintGeometry = new ConvexHull(points, geometryFactory).getConvexHull();
+  /**
+   * @return the block of cells that covers some bounds in zone coordinates.
+   */
+  private Rectangle toCells(Rectangle2D bounds) {
+    final var grid = zone.getGrid();
+    final var min = grid.convert(new ZonePoint((int) bounds.getMinX(), (int) bounds.getMinY()));
+    final var max = grid.convert(new ZonePoint((int) bounds.getMaxX(), (int) bounds.getMaxY()));
+    return new Rectangle(min.x, min.y, max.x - min.x + 1, max.y - min.y + 1);
+  }
 
-    return preparedTopology.intersects(footprintGeometry);
+  /**
+   * Checks whether MBL or hard FoW stops the token stepping from a cell to a neighbor.
+   *
+   * @param x The x cell position to step from.
+   * @param y The y cell position to step from.
+   * @param dx The x offset of the neighbor.
+   * @param dy The y offset of the neighbor.
+   * @return {@code true} if any cell of the token's footprint would be blocked.
+   */
+  boolean isStepBlocked(int x, int y, int dx, int dy) {
+    if (!restrictMovement) {
+      return false;
+    }
+    for (CellPoint cellPoint : footprint.getOccupiedCells(new CellPoint(x, y))) {
+      var cellNeighbor = new CellPoint(cellPoint.x + dx, cellPoint.y + dy);
+      if (vblBlocksMovement(cellPoint, cellNeighbor)
+          || fowBlocksMovement(cellPoint, cellNeighbor)) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  private boolean vblBlocksMovement(CellPoint start, CellPoint goal) {
-    Map<CellPoint, Boolean> blockedMoves =
-        vblBlockedMovesByGoal.computeIfAbsent(goal, pos -> new HashMap<>());
-    Boolean test = blockedMoves.get(start);
-    // if it's null then the test for that direction hasn't been set yet otherwise just return the
-    // previous result
-    if (test != null) {
-      return test;
+  /**
+   * Checks whether the token can stand in a cell and in each of its neighbors, and step freely
+   * between them. This is a single check over the area around the cell, so it can be much cheaper
+   * than checking each step, but it may answer {@code false} for a cell that is in fact open.
+   *
+   * @param x The x cell position.
+   * @param y The y cell position.
+   * @param pathfindingBounds The bounds outside of which no optimal path can go.
+   * @return {@code true} if nothing around the cell could block the token.
+   */
+  boolean isOpen(int x, int y, Rectangle2D pathfindingBounds) {
+    final var grid = zone.getGrid();
+    final var area = new Rectangle(grid.getBounds(new CellPoint(x, y)));
+    for (int dy = -1; dy <= 1; ++dy) {
+      for (int dx = -1; dx <= 1; ++dx) {
+        final var position = new CellPoint(x + dx, y + dy);
+        final var occupiedCells =
+            restrictMovement ? footprint.getOccupiedCells(position) : Set.of(position);
+        for (CellPoint cellPoint : occupiedCells) {
+          area.add(grid.getBounds(cellPoint));
+        }
+      }
+    }
+    if (!pathfindingBounds.contains(area)) {
+      return false;
+    }
+    if (!restrictMovement) {
+      return true;
     }
 
-    Rectangle startBounds = zone.getGrid().getBounds(start);
-    Rectangle goalBounds = zone.getGrid().getBounds(goal);
+    final var geometry =
+        geometryFactory.toGeometry(
+            new Envelope(area.getMinX(), area.getMaxX(), area.getMinY(), area.getMaxY()));
+    return !navigation.getTopology().intersects(geometry)
+        && (fowExposedAreaGeometry == null || fowExposedAreaGeometry.covers(geometry));
+  }
 
-    if (goalBounds.isEmpty() || startBounds.isEmpty()) {
+  /**
+   * @return {@code true} if any terrain modifier on the map would change the cost of a path.
+   */
+  boolean hasTerrainModifiers() {
+    if (!restrictMovement) {
       return false;
     }
-
-    // If the goal center point is in vbl, allow to maintain path through vbl (should be GM only?)
-    /*
-    if (vbl.contains(goal.toPoint())) {
-      // Allow GM to move through VBL
-       return !MapTool.getPlayer().isGM();
+    for (var operation : navigation.getTerrainOperations()) {
+      if (operation != Token.TerrainModifierOperation.NONE
+          && !terrainModifiersIgnored.contains(operation)) {
+        return true;
+      }
     }
-    */
+    return false;
+  }
 
-    // NEW WAY - use polygon test
-    double x1 = startBounds.getCenterX();
-    double y1 = startBounds.getCenterY();
-    double x2 = goalBounds.getCenterX();
-    double y2 = goalBounds.getCenterY();
-    LineString centerRay =
-        geometryFactory.createLineString(
-            new Coordinate[] {new Coordinate(x1, y1), new Coordinate(x2, y2)});
+  /** Marks a node as closed, whether or not it has been reached yet. */
+  private void close(int x, int y, boolean isOddStepOfOneTwoOneMovement) {
+    var node = search.find(x, y, isOddStepOfOneTwoOneMovement);
+    if (node < 0) {
+      node = search.add(x, y, isOddStepOfOneTwoOneMovement);
+    }
+    search.close(node);
+  }
 
-    boolean blocksMovement;
-    try {
-      blocksMovement = preparedTopology.intersects(centerRay);
-    } catch (Exception e) {
-      log.info("clipped.intersects oh oh: ", e);
-      return true;
+  private boolean tokenFootprintIntersectsVBL(CellPoint position) {
+    var occupiedCells = footprint.getOccupiedCells(position);
+    // The footprint's hull takes in the center of each occupied cell, and for a single cell it is
+    // nothing more than that.
+    for (CellPoint cellPoint : occupiedCells) {
+      if (navigation.isCellBlocked(cellPoint.x, cellPoint.y)) {
+        return true;
+      }
+    }
+    if (occupiedCells.size() == 1) {
+      return false;
     }
 
-    blockedMoves.put(start, blocksMovement);
+    var points =
+        occupiedCells.stream()
+            .map(
+                cellPoint -> {
+                  var bounds = zone.getGrid().getBounds(cellPoint);
+                  return new Coordinate(bounds.getCenterX(), bounds.getCenterY());
+                })
+            .toArray(Coordinate[]::new);
+    Geometry footprintGeometry = new ConvexHull(points, geometryFactory).getConvexHull();
 
-    return blocksMovement;
+    return navigation.getTopology().intersects(footprintGeometry);
+  }
+
+  private boolean vblBlocksMovement(CellPoint start, CellPoint goal) {
+    return navigation.isStepBlocked(start.x, start.y, goal.x - start.x, goal.y - start.y);
   }
 
   private boolean fowBlocksMovement(CellPoint start, CellPoint goal) {
@@ -659,15 +907,15 @@ private boolean fowBlocksMovement(CellPoint start, CellPoint goal) {
     return blocksMovement;
   }
 
-  protected void showDebugInfo(AStarCellPoint node) {
+  private void showDebugInfo(int node) {
     if (!DeveloperOptions.Toggle.ShowAiDebugging.isEnabled()) {
       return;
     }
 
     final int basis = zone.getGrid().getSize() / 10;
-    final int xOffset = basis * (node.isOddStepOfOneTwoOneMovement ? 7 : 3);
+    final int xOffset = basis * (search.isOddStepOfOneTwoOneMovement(node) ? 7 : 3);
 
-    Rectangle cellBounds = zone.getGrid().getBounds(node.position);
+    Rectangle cellBounds = zone.getGrid().getBounds(new CellPoint(search.x(node), search.y(node)));
     DecimalFormat f = new DecimalFormat("##.00");
 
     Label gScore = new Label();
@@ -675,26 +923,27 @@ protected void showDebugInfo(AStarCellPoint node) {
     Label fScore = new Label();
     Label parent = new Label();
 
-    gScore.setLabel(f.format(node.g));
+    gScore.setLabel(f.format(search.g(node)));
     gScore.setX(cellBounds.x + xOffset);
     gScore.setY(cellBounds.y + 1 * basis);
 
-    hScore.setLabel(f.format(node.h));
+    hScore.setLabel(f.format(search.h(node)));
     hScore.setX(cellBounds.x + xOffset);
     hScore.setY(cellBounds.y + 3 * basis);
 
-    fScore.setLabel(f.format(node.fCost()));
+    fScore.setLabel(f.format(search.fCost(node)));
     fScore.setX(cellBounds.x + xOffset);
     fScore.setY(cellBounds.y + 5 * basis);
     fScore.setForegroundColor(Color.RED);
 
-    if (node.parent != null) {
+    final var parentNode = search.parent(node);
+    if (parentNode >= 0) {
       parent.setLabel(
           String.format(
               "(%d, %d | %s)",
-              node.parent.position.x,
-              node.parent.position.y,
-              node.parent.isOddStepOfOneTwoOneMovement() ? "O" : "E"));
+              search.x(parentNode),
+              search.y(parentNode),
+              search.isOddStepOfOneTwoOneMovement(parentNode) ? "O" : "E"));
     } else {
       parent.setLabel("(none)");
     }
@@ -0,0 +1,411 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import net.rptools.maptool.model.CellPoint;
+
+/**
+ * Plans long paths over clusters of cells, so that dragging a token across a large map does not
+ * search every cell between the token and the pointer each time the pointer moves.
+ *
+ * <p>The grid is split into square clusters. Wherever the token can step straight across the
+ * border between two clusters, an entrance is placed on both sides of it: one in the middle of each
+ * short run of open border cells, and one at each end of a long run. A path is planned from
+ * entrance to entrance, using the costs of crossing each cluster found by searching only that
+ * cluster, and then each leg of the plan is searched for in full.
+ *
+ * <p>The paths found this way are not always the shortest, since they must pass through the
+ * entrances, but they are rarely much longer. Clusters are only built once a plan reaches them, and
+ * they are kept along with the searched legs until the walker's view of the grid changes.
+ */
+final class HierarchicalPathfinder {
+  /** The width and height of a cluster, in cells. */
+  static final int CLUSTER_SIZE = 16;
+
+  /** The width and height of a cluster together with the ring of cells around it. */
+  private static final int WINDOW_SIZE = CLUSTER_SIZE + 2;
+
+  /** Runs of open border cells at least this long get an entrance at each end. */
+  private static final int LONG_RUN = 6;
+
+  private static final int MAX_CACHED_LEGS = 4096;
+
+  private static final int[][] SIDES = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+  /** The questions the pathfinder asks about the grid it plans over. */
+  interface Grid {
+    /**
+     * @return {@code true} if the token can stand in the cell.
+     */
+    boolean canStand(int x, int y);
+
+    /**
+     * @return {@code true} if the token cannot step from the cell to its neighbor at (dx, dy).
+     */
+    boolean isStepBlocked(int x, int y, int dx, int dy);
+
+    /**
+     * Finds the cheapest cost of reaching each cell of a square window from a cell inside it. Only
+     * the cells inside the window's outer ring may be passed through, though the ring itself can be
+     * reached.
+     *
+     * @return the costs, row by row, with infinity for cells that cannot be reached.
+     */
+    double[] costsWithin(int x, int y, int minX, int minY, int size);
+
+    /**
+     * Finds the cheapest path between two cells of a square window, staying within the window.
+     *
+     * @return the cells of the path from start to goal, or an empty list if none was found.
+     */
+    List<CellPoint> findPath(CellPoint start, CellPoint goal, int minX, int minY, int size);
+
+    /**
+     * @return an estimate of the cost from the cell to the goal, which must not exceed the actual
+     *     cost.
+     */
+    double estimate(int x, int y, CellPoint goal);
+  }
+
+  /** The border on the east or south side of a cluster. */
+  private record Border(int clusterX, int clusterY, boolean isVertical) {}
+
+  private record Leg(
+      int fromX,
+      int fromY,
+      int toX,
+      int toY,
+      double distanceTraveled,
+      double distanceTraveledWithoutTerrain) {}
+
+  private final Grid grid;
+  private final AStarSearch search = new AStarSearch();
+
+  /** The offsets along each border at which it has entrances, in increasing order. */
+  private final Map<Border, int[]> entrances = new HashMap<>();
+
+  /** The packed cells of the entrances inside each cluster, by packed cluster position. */
+  private final Map<Long, long[]> clusterNodes = new HashMap<>();
+
+  /** The costs from each entrance to the cells around it, by packed cell. */
+  private final Map<Long, double[]> costs = new HashMap<>();
+
+  private final Map<Leg, List<CellPoint>> legs =
+      new LinkedHashMap<Leg, List<CellPoint>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Leg, List<CellPoint>> eldest) {
+          return size() > MAX_CACHED_LEGS;
+        }
+      };
+
+  private @Nullable Object state = null;
+
+  HierarchicalPathfinder(Grid grid) {
+    this.grid = grid;
+  }
+
+  /**
+   * Checks whether two cells are far enough apart for planning over clusters to pay off.
+   *
+   * @return {@code true} if at least one whole cluster lies between the cells' clusters.
+   */
+  static boolean isWorthwhile(CellPoint start, CellPoint goal) {
+    return Math.max(
+            Math.abs(cluster(start.x) - cluster(goal.x)),
+            Math.abs(cluster(start.y) - cluster(goal.y)))
+        >= 2;
+  }
+
+  /**
+   * Forgets the clusters and legs if the grid has changed since they were found.
+   *
+   * @param state Identifies where the token can go and at what cost. Whenever it is not equal to
+   *     the previous state, everything learned about the grid is thrown away.
+   */
+  void setState(Object state) {
+    if (state.equals(this.state)) {
+      return;
+    }
+    this.state = state;
+    entrances.clear();
+    clusterNodes.clear();
+    costs.clear();
+    legs.clear();
+  }
+
+  /**
+   * Finds a path between two cells by way of the cluster entrances.
+   *
+   * @param start The start of the path.
+   * @param goal The goal of the path.
+   * @param cellBounds The cells outside of which no path should go.
+   * @return the cells of the path from start to goal, an empty list if the search was cancelled,
+   *     or {@code null} if no path could be planned through the entrances.
+   */
+  @Nullable
+  List<CellPoint> findPath(CellPoint start, CellPoint goal, Rectangle cellBounds) {
+    final var plan = plan(start, goal, cellBounds);
+    if (plan == null) {
+      return null;
+    }
+
+    final List<CellPoint> path = new ArrayList<>();
+    var legStart = start;
+    for (var legGoal : plan) {
+      final var leg = refine(legStart, legGoal);
+      if (leg.isEmpty()) {
+        // Every leg was already known to be passable, so the search must have been cut short.
+        return leg;
+      }
+      path.addAll(path.isEmpty() ? leg : leg.subList(1, leg.size()));
+      legStart = leg.get(leg.size() - 1);
+    }
+    return path;
+  }
+
+  /**
+   * Plans a path over the entrances between clusters.
+   *
+   * @return the entrances the path passes through followed by the goal, or {@code null} if there is
+   *     no such path.
+   */
+  private @Nullable List<CellPoint> plan(CellPoint start, CellPoint goal, Rectangle cellBounds) {
+    search.reset();
+    final var startNode = search.add(start.x, start.y, false);
+    search.setPath(startNode, -1, 0, 0, 0);
+    search.open(startNode);
+
+    final int goalClusterX = cluster(goal.x);
+    final int goalClusterY = cluster(goal.y);
+    int goalNode = -1;
+    while (search.hasOpen()) {
+      if (Thread.currentThread().isInterrupted()) {
+        // Leave the interruption for the caller to notice.
+        return null;
+      }
+
+      final int node = search.pollOpen();
+      final int x = search.x(node);
+      final int y = search.y(node);
+      if (x == goal.x && y == goal.y) {
+        goalNode = node;
+        break;
+      }
+      search.close(node);
+
+      final int clusterX = cluster(x);
+      final int clusterY = cluster(y);
+      final int minX = clusterX * CLUSTER_SIZE - 1;
+      final int minY = clusterY * CLUSTER_SIZE - 1;
+      final var nodeCosts =
+          costs.computeIfAbsent(
+              pack(x, y), key -> grid.costsWithin(x, y, minX, minY, WINDOW_SIZE));
+
+      // Across the cluster to its other entrances ...
+      for (long other : nodesOf(clusterX, clusterY)) {
+        reach(node, (int) (other >> 32), (int) other, nodeCosts, minX, minY, goal, cellBounds);
+      }
+      // ... over the borders to the neighboring clusters ...
+      for (int[] side : SIDES) {
+        if (isEntrance(x, y, side[0], side[1])) {
+          reach(node, x + side[0], y + side[1], nodeCosts, minX, minY, goal, cellBounds);
+        }
+      }
+      // ... and on to the goal once it is near.
+      if (clusterX == goalClusterX && clusterY == goalClusterY) {
+        reach(node, goal.x, goal.y, nodeCosts, minX, minY, goal, cellBounds);
+      }
+    }
+
+    if (goalNode < 0) {
+      return null;
+    }
+    final var plan = new ArrayList<CellPoint>();
+    for (int node = goalNode; node != startNode; node = search.parent(node)) {
+      plan.add(new CellPoint(search.x(node), search.y(node)));
+    }
+    Collections.reverse(plan);
+    return plan;
+  }
+
+  private void reach(
+      int node,
+      int x,
+      int y,
+      double[] nodeCosts,
+      int minX,
+      int minY,
+      CellPoint goal,
+      Rectangle cellBounds) {
+    if (!cellBounds.contains(x, y)) {
+      return;
+    }
+    final double cost = nodeCosts[(y - minY) * WINDOW_SIZE + (x - minX)];
+    if (Double.isInfinite(cost)) {
+      return;
+    }
+
+    final double g = search.g(node) + cost;
+    var neighbor = search.find(x, y, false);
+    if (neighbor < 0) {
+      neighbor = search.add(x, y, false);
+      search.setH(neighbor, grid.estimate(x, y, goal));
+      search.setPath(neighbor, node, g, g, 0);
+      search.open(neighbor);
+    } else if (search.isOpen(neighbor) && g < search.g(neighbor)) {
+      search.setPath(neighbor, node, g, g, 0);
+    }
+  }
+
+  /**
+   * Searches for one leg of a planned path, within the cluster the leg starts in.
+   *
+   * @return the cells of the leg, or an empty list if the search was cut short.
+   */
+  private List<CellPoint> refine(CellPoint start, CellPoint goal) {
+    final var key =
+        new Leg(
+            start.x,
+            start.y,
+            goal.x,
+            goal.y,
+            start.distanceTraveled,
+            start.distanceTraveledWithoutTerrain);
+    var leg = legs.get(key);
+    if (leg == null) {
+      leg =
+          grid.findPath(
+              start,
+              goal,
+              cluster(start.x) * CLUSTER_SIZE - 1,
+              cluster(start.y) * CLUSTER_SIZE - 1,
+              WINDOW_SIZE);
+      if (!leg.isEmpty()) {
+        legs.put(key, leg);
+      }
+    }
+    return leg;
+  }
+
+  private boolean isEntrance(int x, int y, int dx, int dy) {
+    final int border;
+    final int offset;
+    final int[] offsets;
+    if (dx != 0) {
+      border = dx > 0 ? CLUSTER_SIZE - 1 : 0;
+      offset = Math.floorMod(y, CLUSTER_SIZE);
+      if (Math.floorMod(x, CLUSTER_SIZE) != border) {
+        return false;
+      }
+      offsets = entrancesOf(new Border(cluster(x) + Math.min(dx, 0), cluster(y), true));
+    } else {
+      border = dy > 0 ? CLUSTER_SIZE - 1 : 0;
+      offset = Math.floorMod(x, CLUSTER_SIZE);
+      if (Math.floorMod(y, CLUSTER_SIZE) != border) {
+        return false;
+      }
+      offsets = entrancesOf(new Border(cluster(x), cluster(y) + Math.min(dy, 0), false));
+    }
+    return Arrays.binarySearch(offsets, offset) >= 0;
+  }
+
+  private long[] nodesOf(int clusterX, int clusterY) {
+    return clusterNodes.computeIfAbsent(
+        pack(clusterX, clusterY), key -> findNodes(clusterX, clusterY));
+  }
+
+  private long[] findNodes(int clusterX, int clusterY) {
+    final int minX = clusterX * CLUSTER_SIZE;
+    final int minY = clusterY * CLUSTER_SIZE;
+    final int maxX = minX + CLUSTER_SIZE - 1;
+    final int maxY = minY + CLUSTER_SIZE - 1;
+
+    // Entrances in a corner lie on two borders, but are only one node.
+    final Set<Long> nodes = new LinkedHashSet<>();
+    for (int offset : entrancesOf(new Border(clusterX, clusterY, true))) {
+      nodes.add(pack(maxX, minY + offset));
+    }
+    for (int offset : entrancesOf(new Border(clusterX - 1, clusterY, true))) {
+      nodes.add(pack(minX, minY + offset));
+    }
+    for (int offset : entrancesOf(new Border(clusterX, clusterY, false))) {
+      nodes.add(pack(minX + offset, maxY));
+    }
+    for (int offset : entrancesOf(new Border(clusterX, clusterY - 1, false))) {
+      nodes.add(pack(minX + offset, minY));
+    }
+    return nodes.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private int[] entrancesOf(Border border) {
+    return entrances.computeIfAbsent(border, this::findEntrances);
+  }
+
+  private int[] findEntrances(Border border) {
+    // Step across the border from its west or north side, moving along it as we go.
+    final int dx = border.isVertical() ? 1 : 0;
+    final int dy = 1 - dx;
+    final int x = border.clusterX() * CLUSTER_SIZE + dx * (CLUSTER_SIZE - 1);
+    final int y = border.clusterY() * CLUSTER_SIZE + dy * (CLUSTER_SIZE - 1);
+
+    final var result = new int[CLUSTER_SIZE];
+    int count = 0;
+    int runStart = -1;
+    for (int offset = 0; offset <= CLUSTER_SIZE; ++offset) {
+      if (offset < CLUSTER_SIZE && canCross(x + offset * dy, y + offset * dx, dx, dy)) {
+        if (runStart < 0) {
+          runStart = offset;
+        }
+        continue;
+      }
+      if (runStart >= 0) {
+        if (offset - runStart < LONG_RUN) {
+          result[count++] = (runStart + offset - 1) / 2;
+        } else {
+          result[count++] = runStart;
+          result[count++] = offset - 1;
+        }
+        runStart = -1;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private boolean canCross(int x, int y, int dx, int dy) {
+    return grid.canStand(x, y)
+        && grid.canStand(x + dx, y + dy)
+        && !grid.isStepBlocked(x, y, dx, dy)
+        && !grid.isStepBlocked(x + dx, y + dy, -dx, -dy);
+  }
+
+  private static int cluster(int cell) {
+    return Math.floorDiv(cell, CLUSTER_SIZE);
+  }
+
+  private static long pack(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
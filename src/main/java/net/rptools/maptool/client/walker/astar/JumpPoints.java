@@ -0,0 +1,243 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+/**
+ * Finds jump points for Jump Point Search over a square grid with 8-way movement.
+ *
+ * <p>Jump Point Search relies on every step costing the same as any other step in the same
+ * direction, so that of all the equally good orderings of a path only one needs to be explored.
+ * Instead of opening every neighbor of a node, the search follows each direction for as long as no
+ * other route could be cut off, and only opens the cell where that stops. In open rooms this skips
+ * almost all of the cells that plain A* would put on the open list.
+ *
+ * <p>Unlike the textbook algorithm, movement here can be blocked by topology lying between two
+ * cells that can both be entered. So a neighbor is only pruned if the alternative route to it is
+ * actually free of blocked steps; otherwise the neighbor is forced and is searched as well.
+ * Diagonal steps must cost at least as much as a straight step and less than two.
+ *
+ * <p>Whether cells can be entered and whether steps are blocked is remembered until {@link
+ * #reset()}, since each cell is looked at from several directions.
+ */
+final class JumpPoints {
+  /** Decides which cells can be entered and which steps between cells are allowed. */
+  interface Grid {
+    /**
+     * @return whether a token can stand in the cell.
+     */
+    boolean canEnter(int x, int y);
+
+    /**
+     * @return whether a token in the cell is stopped from stepping to the neighbor by (dx, dy).
+     */
+    boolean isStepBlocked(int x, int y, int dx, int dy);
+
+    /**
+     * A quick check that a token can enter the cell and every neighbor, and step from the cell to
+     * each neighbor. This lets open areas be crossed without checking each step on its own.
+     *
+     * @return {@code true} if the cell is known to be open, {@code false} if it might not be.
+     */
+    boolean isOpen(int x, int y);
+  }
+
+  /** The eight directions, with a direction's index being its bit in direction masks. */
+  static final int[][] DIRECTIONS = {
+    {0, -1}, {1, 0}, {0, 1}, {-1, 0}, {1, -1}, {1, 1}, {-1, 1}, {-1, -1}
+  };
+
+  /** The direction mask holding every direction. */
+  static final int ALL_DIRECTIONS = 0xFF;
+
+  /** Maps (dy + 1) * 3 + (dx + 1) to the index in {@link #DIRECTIONS}. */
+  private static final int[] DIRECTION_INDEX = {7, 0, 4, 3, -1, 1, 6, 2, 5};
+
+  private static final int ENTER_KNOWN = 1;
+  private static final int ENTER = 1 << 1;
+  private static final int STEP_KNOWN_SHIFT = 2;
+  private static final int STEP_BLOCKED_SHIFT = 10;
+  private static final int OPEN_KNOWN = 1 << 18;
+  private static final int OPEN = 1 << 19;
+
+  private final Grid grid;
+
+  /** What is known so far about each cell. */
+  private final LongIntMap cells = new LongIntMap(1024);
+
+  JumpPoints(Grid grid) {
+    this.grid = grid;
+  }
+
+  /**
+   * @return the index in {@link #DIRECTIONS} of the step (dx, dy).
+   */
+  static int directionIndex(int dx, int dy) {
+    return DIRECTION_INDEX[(dy + 1) * 3 + (dx + 1)];
+  }
+
+  static int directionBit(int dx, int dy) {
+    return 1 << directionIndex(dx, dy);
+  }
+
+  /** Forgets everything learned about the grid. */
+  void reset() {
+    cells.clear();
+  }
+
+  private int flags(long key) {
+    final var flags = cells.get(key);
+    return flags < 0 ? 0 : flags;
+  }
+
+  boolean canEnter(int x, int y) {
+    final var key = AStarSearch.pack(x, y, false);
+    var flags = flags(key);
+    if ((flags & ENTER_KNOWN) == 0) {
+      flags |= ENTER_KNOWN | (grid.canEnter(x, y) ? ENTER : 0);
+      cells.put(key, flags);
+    }
+    return (flags & ENTER) != 0;
+  }
+
+  private boolean isOpen(int x, int y) {
+    final var key = AStarSearch.pack(x, y, false);
+    var flags = flags(key);
+    if ((flags & OPEN_KNOWN) == 0) {
+      flags |= OPEN_KNOWN | (grid.isOpen(x, y) ? OPEN : 0);
+      cells.put(key, flags);
+    }
+    return (flags & OPEN) != 0;
+  }
+
+  /**
+   * @return whether a token can move from the cell to the neighbor by (dx, dy).
+   */
+  boolean canStep(int x, int y, int dx, int dy) {
+    if (!canEnter(x, y) || !canEnter(x + dx, y + dy)) {
+      return false;
+    }
+
+    final var key = AStarSearch.pack(x, y, false);
+    var flags = flags(key);
+    final var index = directionIndex(dx, dy);
+    if ((flags & (1 << (STEP_KNOWN_SHIFT + index))) == 0) {
+      flags |= 1 << (STEP_KNOWN_SHIFT + index);
+      if (grid.isStepBlocked(x, y, dx, dy)) {
+        flags |= 1 << (STEP_BLOCKED_SHIFT + index);
+      }
+      cells.put(key, flags);
+    }
+    return (flags & (1 << (STEP_BLOCKED_SHIFT + index))) == 0;
+  }
+
+  /**
+   * Decides which directions to search from a jump point.
+   *
+   * @param x The x cell position of the jump point.
+   * @param y The y cell position of the jump point.
+   * @param dx The x direction of the last step taken to reach the cell, or 0.
+   * @param dy The y direction of the last step taken to reach the cell, or 0.
+   * @return a mask of indices into {@link #DIRECTIONS}.
+   */
+  int successors(int x, int y, int dx, int dy) {
+    if (dx == 0 && dy == 0) {
+      return ALL_DIRECTIONS;
+    }
+    var directions = directionBit(dx, dy) | forcedDirections(x, y, dx, dy);
+    if (dx != 0 && dy != 0) {
+      directions |= directionBit(dx, 0) | directionBit(0, dy);
+    }
+    return directions;
+  }
+
+  /**
+   * Follows a direction from a cell until reaching a jump point.
+   *
+   * @return the number of steps to the jump point, or 0 if there is none in that direction.
+   */
+  int jump(int x, int y, int dx, int dy, int goalX, int goalY) {
+    final var isDiagonal = dx != 0 && dy != 0;
+    for (int steps = 1; canStep(x, y, dx, dy); ++steps) {
+      x += dx;
+      y += dy;
+      if ((x == goalX && y == goalY) || forcedDirections(x, y, dx, dy) != 0) {
+        return steps;
+      }
+      if (isDiagonal
+          && (jump(x, y, dx, 0, goalX, goalY) > 0 || jump(x, y, 0, dy, goalX, goalY) > 0)) {
+        return steps;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Finds the neighbors of a cell, reached by a step of (dx, dy), that can only be reached as
+   * cheaply by going through the cell.
+   *
+   * @return a mask of the directions from the cell to those neighbors.
+   */
+  private int forcedDirections(int x, int y, int dx, int dy) {
+    final var px = x - dx;
+    final var py = y - dy;
+    var forced = 0;
+
+    if (dx != 0 && dy != 0) {
+      if (isOpen(px, py) && isOpen(x, y) && isOpen(px, y) && isOpen(x, py)) {
+        return 0;
+      }
+      // The cells beside the previous one are better reached straight from it, and the ones beyond
+      // them by going straight on.
+      final var canReachX = canStep(px, py, dx, 0);
+      final var canReachY = canStep(px, py, 0, dy);
+      if (canStep(x, y, -dx, 0) && !canReachY) {
+        forced |= directionBit(-dx, 0);
+      }
+      if (canStep(x, y, 0, -dy) && !canReachX) {
+        forced |= directionBit(0, -dy);
+      }
+      if (canStep(x, y, -dx, dy) && !(canReachY && canStep(px, y, 0, dy))) {
+        forced |= directionBit(-dx, dy);
+      }
+      if (canStep(x, y, dx, -dy) && !(canReachX && canStep(x, py, dx, 0))) {
+        forced |= directionBit(dx, -dy);
+      }
+      return forced;
+    }
+
+    if (isOpen(px, py) && isOpen(x, y) && isOpen(x + dy, y + dx) && isOpen(x - dy, y - dx)) {
+      return 0;
+    }
+    for (int side = -1; side <= 1; side += 2) {
+      // A perpendicular to the direction of travel.
+      final var qx = side * dy;
+      final var qy = side * dx;
+      // The cell to the side is better reached diagonally from the previous cell, the one
+      // diagonally ahead by going on from there, and the one diagonally behind straight from the
+      // previous cell.
+      final var canReachSide = canStep(px, py, dx + qx, dy + qy);
+      if (canStep(x, y, qx, qy) && !canReachSide) {
+        forced |= directionBit(qx, qy);
+      }
+      if (canStep(x, y, dx + qx, dy + qy) && !(canReachSide && canStep(x + qx, y + qy, dx, dy))) {
+        forced |= directionBit(dx + qx, dy + qy);
+      }
+      if (canStep(x, y, qx - dx, qy - dy) && !canStep(px, py, qx, qy)) {
+        forced |= directionBit(qx - dx, qy - dy);
+      }
+    }
+    return forced;
+  }
+}
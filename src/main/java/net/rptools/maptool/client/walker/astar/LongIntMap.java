@@ -0,0 +1,107 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from {@code long} keys to non-negative {@code int} values, so that
+ * cells can be looked up by their packed coordinates without boxing.
+ */
+final class LongIntMap {
+  private int size = 0;
+  private long[] keys;
+
+  /** The value for each slot, or -1 if the slot is empty. */
+  private int[] values;
+
+  /**
+   * @param expectedSize the number of entries to make room for up front
+   */
+  LongIntMap(int expectedSize) {
+    final var capacity = Integer.highestOneBit(Math.max(4, 2 * expectedSize - 1)) << 1;
+    keys = new long[capacity];
+    values = new int[capacity];
+    Arrays.fill(values, -1);
+  }
+
+  private static int slotOf(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @param key the key to look up
+   * @return the value, or -1 if there is none
+   */
+  int get(long key) {
+    final var mask = keys.length - 1;
+    for (int slot = slotOf(key, mask); ; slot = (slot + 1) & mask) {
+      final var value = values[slot];
+      if (value < 0 || keys[slot] == key) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * @param key the key to set
+   * @param value the value, which must not be negative
+   */
+  void put(long key, int value) {
+    if (2 * (size + 1) > keys.length) {
+      rehash(2 * keys.length);
+    }
+
+    final var mask = keys.length - 1;
+    var slot = slotOf(key, mask);
+    while (values[slot] >= 0) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    ++size;
+  }
+
+  /** Removes every entry, keeping the storage. */
+  void clear() {
+    if (size > 0) {
+      Arrays.fill(values, -1);
+      size = 0;
+    }
+  }
+
+  private void rehash(int capacity) {
+    final var oldKeys = keys;
+    final var oldValues = values;
+    keys = new long[capacity];
+    values = new int[capacity];
+    Arrays.fill(values, -1);
+    size = 0;
+    for (int slot = 0; slot < oldKeys.length; ++slot) {
+      if (oldValues[slot] >= 0) {
+        put(oldKeys[slot], oldValues[slot]);
+      }
+    }
+  }
+}
@@ -0,0 +1,655 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import com.google.common.eventbus.Subscribe;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import net.rptools.lib.GeometryUtil;
+import net.rptools.maptool.client.ui.zone.vbl.MovementBlockingTopology;
+import net.rptools.maptool.events.MapToolEventBus;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Token.TerrainModifierOperation;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.Zone.TopologyType;
+import net.rptools.maptool.model.zones.GridChanged;
+import net.rptools.maptool.model.zones.MaskTopologyChanged;
+import net.rptools.maptool.model.zones.TokenEdited;
+import net.rptools.maptool.model.zones.TokensAdded;
+import net.rptools.maptool.model.zones.TokensChanged;
+import net.rptools.maptool.model.zones.TokensRemoved;
+import net.rptools.maptool.model.zones.WallTopologyChanged;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+/**
+ * What the A* walkers need to know about a zone: which cells and steps between cells are blocked
+ * by topology, and what the terrain modifiers there add up to. Searches look these up in packed
+ * arrays instead of testing geometry for every move.
+ *
+ * <p>Cells are grouped into square chunks, each filled in the first time a search looks at it. A
+ * chunk that no topology comes near is known to be clear in one test. Otherwise each cell remembers
+ * whether its center and the step to each neighbor is blocked once that has been tested. When walls
+ * or masks change, only the chunks near the ones that were added or removed are dropped. Terrain
+ * modifiers are summed per cell in chunks of their own, and are updated a token at a time.
+ *
+ * <p>A grid is shared by every walker on the zone that is blocked by the same topology, whatever
+ * its metric and footprint. Lookups may be made from several walker threads at once, while {@link
+ * #update(Zone)} brings the grid up to date with the zone one thread at a time. A search that is
+ * already running when another one updates the grid may see a mix of the old and new topology.
+ */
+public final class NavigationGrid {
+  private static final Logger log = LogManager.getLogger(NavigationGrid.class);
+
+  /** The number of grids kept for each zone, one for each token that can't block itself. */
+  private static final int GRIDS_PER_ZONE = 8;
+
+  private static final int CHUNK_SHIFT = 4;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private static final int CELL_KNOWN = 1;
+  private static final int CELL_BLOCKED = 1 << 1;
+  private static final int STEP_KNOWN_SHIFT = 2;
+  private static final int STEP_BLOCKED_SHIFT = 10;
+
+  /** Set in {@link #terrainFlags(int, int)} if a terrain modifier blocks the cell. */
+  static final int TERRAIN_BLOCK = 1;
+
+  /** Set in {@link #terrainFlags(int, int)} if a terrain modifier makes the cell free to enter. */
+  static final int TERRAIN_FREE = 1 << 1;
+
+  /** Set in {@link #terrainFlags(int, int)} if terrain modifiers multiply the cost of the cell. */
+  static final int TERRAIN_MULTIPLY = 1 << 2;
+
+  /** Set in {@link #terrainFlags(int, int)} if terrain modifiers add to the cost of the cell. */
+  static final int TERRAIN_ADD = 1 << 3;
+
+  private record Key(Set<TopologyType> topologyTypes, @Nullable GUID excludedTokenId) {}
+
+  private record TokenTerrain(
+      TerrainModifierOperation operation, double value, Set<CellPoint> cells) {}
+
+  /**
+   * A version of the zone's walls and masks. The version is increased each time they change, so
+   * that chunks can tell which topology they were filled in from.
+   */
+  private record TopologyVersion(MovementBlockingTopology topology, long version) {}
+
+  private static final class TopologyChunk {
+    final int x;
+    final int y;
+
+    /** The area within which topology could block a step from one of the chunk's cells. */
+    final Envelope envelope;
+
+    /** The flags of each cell, or {@code null} if no topology comes near the chunk. */
+    final @Nullable int[] cells;
+
+    /**
+     * The topology the chunk is known to be right for. It is moved on to newer topology whenever
+     * the walls and masks that changed are nowhere near the chunk.
+     */
+    volatile TopologyVersion topology;
+
+    TopologyChunk(int x, int y, Envelope envelope, boolean isClear, TopologyVersion topology) {
+      this.x = x;
+      this.y = y;
+      this.envelope = envelope;
+      this.cells = isClear ? null : new int[CHUNK_SIZE * CHUNK_SIZE];
+      this.topology = topology;
+    }
+  }
+
+  /**
+   * The summed terrain modifiers of a chunk's cells. A chunk is never changed once searches can
+   * see it; updates are made to a copy that then replaces it.
+   */
+  private static final class TerrainChunk {
+    final byte[] flags;
+    final double[] multipliers;
+    final double[] adders;
+
+    TerrainChunk() {
+      this.flags = new byte[CHUNK_SIZE * CHUNK_SIZE];
+      this.multipliers = new double[CHUNK_SIZE * CHUNK_SIZE];
+      this.adders = new double[CHUNK_SIZE * CHUNK_SIZE];
+    }
+
+    TerrainChunk(TerrainChunk other) {
+      this.flags = other.flags.clone();
+      this.multipliers = other.multipliers.clone();
+      this.adders = other.adders.clone();
+    }
+  }
+
+  /** Marks grids as out of date when their zone changes. */
+  private static final class ChangeListener {
+    @Subscribe
+    private void onTopologyChanged(WallTopologyChanged event) {
+      gridsFor(event.zone()).forEach(NavigationGrid::invalidateTopology);
+    }
+
+    @Subscribe
+    private void onTopologyChanged(MaskTopologyChanged event) {
+      gridsFor(event.zone()).forEach(NavigationGrid::invalidateTopology);
+    }
+
+    @Subscribe
+    private void onGridChanged(GridChanged event) {
+      gridsFor(event.zone()).forEach(NavigationGrid::invalidate);
+    }
+
+    @Subscribe
+    private void onTokensAdded(TokensAdded event) {
+      gridsFor(event.zone()).forEach(grid -> grid.invalidateTerrain(event.tokens()));
+    }
+
+    @Subscribe
+    private void onTokensRemoved(TokensRemoved event) {
+      gridsFor(event.zone()).forEach(grid -> grid.invalidateTerrain(event.tokens()));
+    }
+
+    @Subscribe
+    private void onTokensChanged(TokensChanged event) {
+      gridsFor(event.zone()).forEach(grid -> grid.invalidateTerrain(event.tokens()));
+    }
+
+    @Subscribe
+    private void onTokenEdited(TokenEdited event) {
+      gridsFor(event.zone()).forEach(grid -> grid.invalidateTerrain(List.of(event.token())));
+    }
+  }
+
+  private static final Map<Zone, Map<Key, NavigationGrid>> gridsByZone = new WeakHashMap<>();
+  private static @Nullable ChangeListener changeListener = null;
+
+  /**
+   * Gets the grid shared by walkers on a zone that are blocked by the same topology.
+   *
+   * @param zone The zone to navigate.
+   * @param topologyTypes The types of mask topology that block movement.
+   * @param excludedTokenId The token whose own topology does not block it, if any.
+   * @return the shared grid, which needs an {@link #update(Zone)} before each search.
+   */
+  public static synchronized NavigationGrid forZone(
+      Zone zone, Set<TopologyType> topologyTypes, @Nullable GUID excludedTokenId) {
+    if (changeListener == null) {
+      changeListener = new ChangeListener();
+      new MapToolEventBus().getMainEventBus().register(changeListener);
+    }
+
+    var grids =
+        gridsByZone.computeIfAbsent(
+            zone,
+            z ->
+                new LinkedHashMap<Key, NavigationGrid>(GRIDS_PER_ZONE, 0.75f, true) {
+                  @Override
+                  protected boolean removeEldestEntry(Map.Entry<Key, NavigationGrid> eldest) {
+                    return size() > GRIDS_PER_ZONE;
+                  }
+                });
+    return grids.computeIfAbsent(
+        new Key(Set.copyOf(topologyTypes), excludedTokenId),
+        key -> new NavigationGrid(key.topologyTypes(), key.excludedTokenId()));
+  }
+
+  private static synchronized List<NavigationGrid> gridsFor(Zone zone) {
+    var grids = gridsByZone.get(zone);
+    return grids == null ? List.of() : new ArrayList<>(grids.values());
+  }
+
+  private static int cellIndex(int x, int y) {
+    return ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+  }
+
+  private final Set<TopologyType> topologyTypes;
+  private final @Nullable GUID excludedTokenId;
+  private final GeometryFactory geometryFactory = GeometryUtil.getGeometryFactory();
+
+  private final AtomicBoolean isStale = new AtomicBoolean(true);
+  private final AtomicBoolean isTopologyStale = new AtomicBoolean(true);
+  private final Set<GUID> staleTerrainTokens = ConcurrentHashMap.newKeySet();
+
+  private volatile @Nullable Grid grid = null;
+  private volatile TopologyVersion topology =
+      new TopologyVersion(new MovementBlockingTopology(), 0);
+
+  /** The walls and masks that {@link #topology} was built from. */
+  private Set<Geometry> topologyInputs = Set.of();
+
+  private final Map<Long, TopologyChunk> topologyChunks = new ConcurrentHashMap<>();
+
+  private final Map<GUID, TokenTerrain> terrainByToken = new ConcurrentHashMap<>();
+  private final Map<Long, TerrainChunk> terrainChunks = new ConcurrentHashMap<>();
+  private volatile @Nullable Rectangle2D terrainBounds = null;
+  private volatile Set<TerrainModifierOperation> terrainOperations = Set.of();
+
+  private volatile long version = 0;
+
+  NavigationGrid(Set<TopologyType> topologyTypes, @Nullable GUID excludedTokenId) {
+    this.topologyTypes = topologyTypes;
+    this.excludedTokenId = excludedTokenId;
+  }
+
+  /** Forgets everything about the zone, as when its grid changes. */
+  void invalidate() {
+    isStale.set(true);
+  }
+
+  /** Notes that the zone's walls or masks may have changed. */
+  void invalidateTopology() {
+    isTopologyStale.set(true);
+  }
+
+  /**
+   * Notes that some tokens may have been added, removed, moved or had their terrain modifier
+   * changed. Only tokens that have or had a terrain modifier are looked at again.
+   *
+   * @param tokens The tokens that may have changed.
+   */
+  void invalidateTerrain(Collection<Token> tokens) {
+    for (var token : tokens) {
+      if (token.getTerrainModifierOperation() != TerrainModifierOperation.NONE
+          || terrainByToken.containsKey(token.getId())) {
+        staleTerrainTokens.add(token.getId());
+      }
+    }
+  }
+
+  /**
+   * Identifies the state of the grid. The version only ever increases, and changes whenever the
+   * answer to any lookup may have changed.
+   *
+   * @return the version of the grid
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Catches up with any changes to the zone's grid, topology or terrain since the last update.
+   *
+   * @param zone The zone that the grid was gotten for.
+   */
+  public synchronized void update(Zone zone) {
+    var zoneGrid = zone.getGrid();
+    if (isStale.getAndSet(false) || zoneGrid != grid) {
+      grid = zoneGrid;
+      topologyChunks.clear();
+      // Chunks being filled in for the old grid are not to be kept.
+      topology = new TopologyVersion(topology.topology(), topology.version() + 1);
+      staleTerrainTokens.clear();
+      terrainByToken.clear();
+      terrainChunks.clear();
+      terrainBounds = null;
+      terrainOperations = Set.of();
+      for (var token : zone.getTokensWithTerrainModifiers()) {
+        staleTerrainTokens.add(token.getId());
+      }
+      ++version;
+    }
+
+    if (isTopologyStale.getAndSet(false)) {
+      updateTopology(zone);
+    }
+    if (!staleTerrainTokens.isEmpty()) {
+      updateTerrain(zone, zoneGrid);
+    }
+  }
+
+  private void updateTopology(Zone zone) {
+    var walls = zone.getWalls();
+    var masks = zone.getMasks(topologyTypes, excludedTokenId);
+
+    var inputs = new HashSet<Geometry>();
+    for (var mask : masks) {
+      inputs.add(mask.getPolygon());
+    }
+    walls.getWalls().forEach(wall -> inputs.add(wall.asSegment().toGeometry(geometryFactory)));
+
+    // Only places near a wall or mask that was added or removed can be affected.
+    var changed = new Envelope();
+    for (var input : inputs) {
+      if (!topologyInputs.contains(input)) {
+        changed.expandToInclude(input.getEnvelopeInternal());
+      }
+    }
+    for (var input : topologyInputs) {
+      if (!inputs.contains(input)) {
+        changed.expandToInclude(input.getEnvelopeInternal());
+      }
+    }
+    topologyInputs = inputs;
+    if (changed.isNull()) {
+      return;
+    }
+
+    // Chunks near the change are dropped, as are any that a search filled in from older topology
+    // while this update ran. The rest are still right, so are moved on to the new topology. A
+    // search that fills in a chunk from the old topology after this is caught by its version.
+    var previous = topology;
+    var next =
+        new TopologyVersion(new MovementBlockingTopology(walls, masks), previous.version() + 1);
+    topologyChunks
+        .values()
+        .removeIf(chunk -> chunk.topology != previous || chunk.envelope.intersects(changed));
+    for (var chunk : topologyChunks.values()) {
+      chunk.topology = next;
+    }
+    topology = next;
+    ++version;
+  }
+
+  private void updateTerrain(Zone zone, Grid zoneGrid) {
+    var affectedCells = new HashSet<CellPoint>();
+    for (var iterator = staleTerrainTokens.iterator(); iterator.hasNext(); ) {
+      var tokenId = iterator.next();
+      iterator.remove();
+
+      var previous = terrainByToken.remove(tokenId);
+      if (previous != null) {
+        affectedCells.addAll(previous.cells());
+      }
+      var token = zone.getToken(tokenId);
+      if (token != null
+          && token.getTerrainModifierOperation() != TerrainModifierOperation.NONE) {
+        var terrain =
+            new TokenTerrain(
+                token.getTerrainModifierOperation(),
+                token.getTerrainModifier(),
+                token.getOccupiedCells(zoneGrid));
+        terrainByToken.put(tokenId, terrain);
+        affectedCells.addAll(terrain.cells());
+      }
+    }
+
+    // Sum up the affected cells again from scratch, in copies of their chunks so that searches
+    // never see a cell part way through.
+    var updatedChunks = new HashMap<Long, TerrainChunk>();
+    for (var cell : affectedCells) {
+      var chunk = updatedTerrainChunk(updatedChunks, cell);
+      var index = cellIndex(cell.x, cell.y);
+      chunk.flags[index] = 0;
+      chunk.multipliers[index] = 0;
+      chunk.adders[index] = 0;
+    }
+    Rectangle2D bounds = null;
+    var operations = EnumSet.noneOf(TerrainModifierOperation.class);
+    for (var terrain : terrainByToken.values()) {
+      operations.add(terrain.operation());
+      for (var cell : terrain.cells()) {
+        var cellBounds = zoneGrid.getBounds(cell);
+        if (bounds == null) {
+          bounds = new Rectangle2D.Double();
+          bounds.setRect(cellBounds);
+        } else {
+          bounds.add(cellBounds);
+        }
+        if (affectedCells.contains(cell)) {
+          addTerrain(updatedTerrainChunk(updatedChunks, cell), cell, terrain);
+        }
+      }
+    }
+    terrainChunks.putAll(updatedChunks);
+    terrainBounds = bounds;
+    terrainOperations = Collections.unmodifiableSet(operations);
+    ++version;
+  }
+
+  private TerrainChunk updatedTerrainChunk(Map<Long, TerrainChunk> updatedChunks, CellPoint cell) {
+    return updatedChunks.computeIfAbsent(
+        AStarSearch.pack(cell.x >> CHUNK_SHIFT, cell.y >> CHUNK_SHIFT, false),
+        key -> {
+          var chunk = terrainChunks.get(key);
+          return chunk == null ? new TerrainChunk() : new TerrainChunk(chunk);
+        });
+  }
+
+  private void addTerrain(TerrainChunk chunk, CellPoint cell, TokenTerrain terrain) {
+    var index = cellIndex(cell.x, cell.y);
+    switch (terrain.operation()) {
+      case MULTIPLY -> {
+        chunk.flags[index] |= TERRAIN_MULTIPLY;
+        chunk.multipliers[index] += terrain.value();
+      }
+      case ADD -> {
+        chunk.flags[index] |= TERRAIN_ADD;
+        chunk.adders[index] += terrain.value();
+      }
+      case BLOCK -> chunk.flags[index] |= TERRAIN_BLOCK;
+      case FREE -> chunk.flags[index] |= TERRAIN_FREE;
+      case NONE -> {}
+    }
+  }
+
+  /**
+   * @return the walls and masks that block movement.
+   */
+  public MovementBlockingTopology getTopology() {
+    return topology.topology();
+  }
+
+  private TopologyChunk topologyChunk(int x, int y) {
+    final var current = topology;
+    final var chunkX = x >> CHUNK_SHIFT;
+    final var chunkY = y >> CHUNK_SHIFT;
+    final var key = AStarSearch.pack(chunkX, chunkY, false);
+    var chunk = topologyChunks.get(key);
+    if (chunk == null || chunk.topology != current) {
+      final var envelope = chunkEnvelope(chunkX, chunkY);
+      final var isClear = !current.topology().intersects(geometryFactory.toGeometry(envelope));
+      final var filled = new TopologyChunk(chunkX, chunkY, envelope, isClear, current);
+      // Keep whichever chunk is for the newer topology, should another thread get there first.
+      chunk =
+          topologyChunks.merge(
+              key,
+              filled,
+              (existing, ignored) ->
+                  existing.topology.version() >= current.version() ? existing : filled);
+      if (chunk.topology != current) {
+        // The topology changed again meanwhile. Answer from the chunk just filled in, as if the
+        // search had got here before the change.
+        chunk = filled;
+      }
+    }
+    return chunk;
+  }
+
+  private Envelope chunkEnvelope(int chunkX, int chunkY) {
+    final var zoneGrid = grid;
+    final var x = chunkX << CHUNK_SHIFT;
+    final var y = chunkY << CHUNK_SHIFT;
+    final var bounds = new Rectangle(zoneGrid.getBounds(new CellPoint(x, y)));
+    bounds.add(zoneGrid.getBounds(new CellPoint(x + CHUNK_MASK, y)));
+    bounds.add(zoneGrid.getBounds(new CellPoint(x, y + CHUNK_MASK)));
+    bounds.add(zoneGrid.getBounds(new CellPoint(x + CHUNK_MASK, y + CHUNK_MASK)));
+    // Steps from the cells at the edge go as far as the centers of the cells around the chunk.
+    final var margin = 2 * zoneGrid.getSize();
+    return new Envelope(
+        bounds.getMinX() - margin,
+        bounds.getMaxX() + margin,
+        bounds.getMinY() - margin,
+        bounds.getMaxY() + margin);
+  }
+
+  private Coordinate center(int x, int y) {
+    final var bounds = grid.getBounds(new CellPoint(x, y));
+    return new Coordinate(bounds.getCenterX(), bounds.getCenterY());
+  }
+
+  /**
+   * @return whether topology touches the center of the cell.
+   */
+  public boolean isCellBlocked(int x, int y) {
+    final var chunk = topologyChunk(x, y);
+    final var cells = chunk.cells;
+    if (cells == null) {
+      return false;
+    }
+
+    final var index = cellIndex(x, y);
+    var flags = cells[index];
+    if ((flags & CELL_KNOWN) == 0) {
+      final var isBlocked =
+          chunk.topology.topology().intersects(geometryFactory.createPoint(center(x, y)));
+      // Another thread may write the same cell at the same time. Whichever write is lost, the
+      // known and blocked bits for a test are lost together, so the test is just done again.
+      flags |= CELL_KNOWN | (isBlocked ? CELL_BLOCKED : 0);
+      cells[index] = flags;
+    }
+    return (flags & CELL_BLOCKED) != 0;
+  }
+
+  /**
+   * Checks whether topology lies on the line between the center of a cell and the center of a
+   * neighbor.
+   *
+   * @param x The x cell position to step from.
+   * @param y The y cell position to step from.
+   * @param dx The x offset of the neighbor, from -1 to 1.
+   * @param dy The y offset of the neighbor, from -1 to 1.
+   * @return {@code true} if the step is blocked.
+   */
+  public boolean isStepBlocked(int x, int y, int dx, int dy) {
+    final var chunk = topologyChunk(x, y);
+    final var cells = chunk.cells;
+    if (cells == null) {
+      return false;
+    }
+
+    final var index = cellIndex(x, y);
+    final var direction = JumpPoints.directionIndex(dx, dy);
+    var flags = cells[index];
+    if ((flags & (1 << (STEP_KNOWN_SHIFT + direction))) == 0) {
+      final var start = grid.getBounds(new CellPoint(x, y));
+      final var goal = grid.getBounds(new CellPoint(x + dx, y + dy));
+      if (start.isEmpty() || goal.isEmpty()) {
+        return false;
+      }
+
+      final boolean isBlocked;
+      try {
+        isBlocked =
+            chunk.topology.topology().intersects(
+                geometryFactory.createLineString(
+                    new Coordinate[] {
+                      new Coordinate(start.getCenterX(), start.getCenterY()),
+                      new Coordinate(goal.getCenterX(), goal.getCenterY())
+                    }));
+      } catch (Exception e) {
+        log.info("clipped.intersects oh oh: ", e);
+        return true;
+      }
+      flags |= 1 << (STEP_KNOWN_SHIFT + direction);
+      if (isBlocked) {
+        flags |= 1 << (STEP_BLOCKED_SHIFT + direction);
+      }
+      cells[index] = flags;
+    }
+    return (flags & (1 << (STEP_BLOCKED_SHIFT + direction))) != 0;
+  }
+
+  /**
+   * Lists the steps found to be blocked so far, for debugging.
+   *
+   * @return the cells that can't be stepped to from each cell.
+   */
+  public Map<CellPoint, Set<CellPoint>> getBlockedSteps() {
+    final var result = new HashMap<CellPoint, Set<CellPoint>>();
+    for (var chunk : topologyChunks.values()) {
+      if (chunk.cells == null) {
+        continue;
+      }
+      for (int index = 0; index < chunk.cells.length; ++index) {
+        final var flags = chunk.cells[index];
+        final var x = (chunk.x << CHUNK_SHIFT) | (index & CHUNK_MASK);
+        final var y = (chunk.y << CHUNK_SHIFT) | (index >> CHUNK_SHIFT);
+        for (int direction = 0; direction < JumpPoints.DIRECTIONS.length; ++direction) {
+          if ((flags & (1 << (STEP_BLOCKED_SHIFT + direction))) != 0) {
+            final var step = JumpPoints.DIRECTIONS[direction];
+            result
+                .computeIfAbsent(new CellPoint(x + step[0], y + step[1]), goal -> new HashSet<>())
+                .add(new CellPoint(x, y));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the operations of all terrain modifiers on the zone.
+   */
+  public Set<TerrainModifierOperation> getTerrainOperations() {
+    return terrainOperations;
+  }
+
+  /**
+   * @return the bounds of all cells with terrain modifiers, or {@code null} if there are none.
+   */
+  public @Nullable Rectangle2D getTerrainBounds() {
+    return terrainBounds;
+  }
+
+  private @Nullable TerrainChunk terrainChunk(int x, int y) {
+    return terrainChunks.get(AStarSearch.pack(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT, false));
+  }
+
+  /**
+   * @return the {@code TERRAIN_} flags of the terrain modifiers on the cell, or 0 if it has none.
+   */
+  public int terrainFlags(int x, int y) {
+    final var chunk = terrainChunk(x, y);
+    return chunk == null ? 0 : chunk.flags[cellIndex(x, y)];
+  }
+
+  /**
+   * @return the sum of the cell's multiplying terrain modifiers.
+   */
+  public double terrainMultiplier(int x, int y) {
+    final var chunk = terrainChunk(x, y);
+    return chunk == null ? 0 : chunk.multipliers[cellIndex(x, y)];
+  }
+
+  /**
+   * @return the sum of the cell's adding terrain modifiers.
+   */
+  public double terrainAdder(int x, int y) {
+    final var chunk = terrainChunk(x, y);
+    return chunk == null ? 0 : chunk.adders[cellIndex(x, y)];
+  }
+}
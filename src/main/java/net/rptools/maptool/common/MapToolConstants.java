@@ -14,8 +14,22 @@
  */
 package net.rptools.maptool.common;
 
+import net.rptools.clientserver.simple.connection.PrioritizedChannel;
+
 public class MapToolConstants {
-  public enum Channel {
-    IMAGE
+  public enum Channel implements PrioritizedChannel {
+    /** Asset transfers. Bulk traffic that must not hold up interactive messages. */
+    IMAGE(10);
+
+    private final int priority;
+
+    Channel(int priority) {
+      this.priority = priority;
+    }
+
+    @Override
+    public int getPriority() {
+      return priority;
+    }
   }
 }
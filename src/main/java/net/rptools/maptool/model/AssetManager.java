@@ -14,6 +14,8 @@
  */
 package net.rptools.maptool.model;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -37,8 +39,11 @@
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import net.rptools.lib.FileUtil;
 import net.rptools.lib.MD5Key;
 import net.rptools.maptool.client.AppUtil;
@@ -68,6 +73,16 @@ public class AssetManager {
   private static final Map<MD5Key, Asset> assetMap =
       Collections.synchronizedMap(new HashMap<MD5Key, Asset>());
 
+  /**
+   * Assets whose data can be read again from the persistent cache or a campaign file, so they are
+   * released when memory runs low rather than held on to like those in {@link #assetMap}.
+   */
+  private static final Cache<MD5Key, Asset> releasableAssetMap =
+      CacheBuilder.newBuilder().softValues().build();
+
+  /** Readers for the assets whose data is only read once something asks for it. */
+  private static final Map<MD5Key, Supplier<Asset>> deferredAssetMap = new ConcurrentHashMap<>();
+
   /** Location of the cache on the filesystem */
   private static File cacheDir;
 
@@ -206,15 +221,25 @@ public static boolean hasAsset(Asset asset) {
 
   /**
    * Determine if the asset manager has the asset. This does not tell you if the asset is done
-   * downloading.
+   * downloading. An asset registered with {@link #putDeferredAsset(MD5Key, Supplier)} only counts
+   * once its data has been read, see {@link #isAssetDeferred(MD5Key)}.
    *
    * @param key the key
    * @return true if the asset manager has the key
    */
   public static boolean hasAsset(MD5Key key) {
-    return assetMap.containsKey(key)
-        || assetIsInPersistentCache(key)
-        || assetHasLocalReference(key);
+    return hasAssetInMemory(key) || assetIsInPersistentCache(key) || assetHasLocalReference(key);
+  }
+
+  /**
+   * Determines if the asset can be read on demand, having been registered with {@link
+   * #putDeferredAsset(MD5Key, Supplier)}. Its data may or may not have been read yet.
+   *
+   * @param key MD5 sum associated with asset
+   * @return True if the asset is deferred, false otherwise
+   */
+  public static boolean isAssetDeferred(MD5Key key) {
+    return deferredAssetMap.containsKey(key);
   }
 
   /**
@@ -224,7 +249,98 @@ public static boolean hasAsset(MD5Key key) {
    * @return True if the asset is loaded, false otherwise
    */
   public static boolean hasAssetInMemory(MD5Key key) {
-    return assetMap.containsKey(key);
+    return getAssetInMemory(key) != null;
+  }
+
+  /**
+   * Returns the asset if its data is in memory.
+   *
+   * @param key MD5 sum associated with asset
+   * @return The asset, or null if it isn't loaded or has been released
+   */
+  private static @Nullable Asset getAssetInMemory(@Nullable MD5Key key) {
+    if (key == null) {
+      return null;
+    }
+    Asset asset = assetMap.get(key);
+    return asset != null ? asset : releasableAssetMap.getIfPresent(key);
+  }
+
+  /**
+   * Keeps the asset in memory, unless its data already is.
+   *
+   * @param asset Asset to keep
+   * @param releasable True if the data can be read again, so may be released when memory runs low
+   */
+  private static void keepInMemory(Asset asset, boolean releasable) {
+    MD5Key key = asset.getMD5Key();
+    synchronized (assetMap) {
+      var oldAsset = getAssetInMemory(key);
+      if (oldAsset != null && oldAsset.getData() != null && oldAsset.getData().length > 0) {
+        return;
+      }
+      if (releasable && asset.getData().length > 0) {
+        assetMap.remove(key);
+        releasableAssetMap.put(key, asset);
+      } else {
+        assetMap.put(key, asset);
+      }
+    }
+  }
+
+  /**
+   * Lets the asset be released when memory runs low, now that its data can be read again.
+   *
+   * @param asset Asset that was written to the persistent cache
+   */
+  private static void makeReleasable(Asset asset) {
+    synchronized (assetMap) {
+      if (assetMap.remove(asset.getMD5Key(), asset)) {
+        releasableAssetMap.put(asset.getMD5Key(), asset);
+      }
+    }
+  }
+
+  /** Releases the assets whose data can be read again, as happens when memory runs low. */
+  // Package level for testing
+  static void releaseAssets() {
+    releasableAssetMap.invalidateAll();
+  }
+
+  /**
+   * Registers an asset without reading its data. The reader is called the first time the asset is
+   * asked for, and again should the data have been released since. Listeners are notified once the
+   * data has been read, as if it had been added with {@link #putAsset(Asset)}.
+   *
+   * @param key MD5 sum associated with asset
+   * @param reader Reads the asset, returning null if it can't
+   */
+  public static void putDeferredAsset(MD5Key key, Supplier<Asset> reader) {
+    if (!REQUIRED_ASSETS.contains(key)) {
+      deferredAssetMap.put(key, reader);
+    }
+  }
+
+  /**
+   * Reads an asset registered with {@link #putDeferredAsset(MD5Key, Supplier)}.
+   *
+   * @param id MD5 of the asset requested
+   * @return The asset, or null if it isn't deferred or couldn't be read
+   */
+  private static @Nullable Asset getDeferredAsset(MD5Key id) {
+    Supplier<Asset> reader = deferredAssetMap.get(id);
+    if (reader == null) {
+      return null;
+    }
+
+    Asset asset = reader.get();
+    if (asset == null || !asset.getMD5Key().equals(id)) {
+      log.error("Could not read deferred asset " + id);
+      return null;
+    }
+
+    putAsset(asset);
+    return asset;
   }
 
   /**
@@ -249,12 +365,7 @@ public static void putAsset(Asset asset) {
       }
     }
 
-    synchronized (assetMap) {
-      var oldAsset = assetMap.get(asset.getMD5Key());
-      if (oldAsset == null || oldAsset.getData() == null || oldAsset.getData().length == 0) {
-        assetMap.put(asset.getMD5Key(), asset);
-      }
-    }
+    keepInMemory(asset, deferredAssetMap.containsKey(asset.getMD5Key()));
 
     // Invalid images are represented by empty assets.
     // Don't persist those
@@ -327,13 +438,17 @@ public static Asset getAsset(MD5Key id) {
       log.error(I18N.getText("msg.error.errorResolvingCacheDir", id, e));
     }
 
-    Asset asset = assetMap.get(assetId);
+    Asset asset = getAssetInMemory(assetId);
 
     if (asset == null && usePersistentCache && assetIsInPersistentCache(assetId)) {
       // Guaranteed that asset is in the cache.
       asset = getFromPersistentCache(assetId);
     }
 
+    if (asset == null && assetId != null) {
+      asset = getDeferredAsset(assetId);
+    }
+
     if (asset == null && assetHasLocalReference(assetId)) {
 
       File imageFile = getLocalReference(assetId);
@@ -394,6 +509,8 @@ private static MD5Key sanitizeAssetId(MD5Key md5Key) throws IOException {
   public static void removeAsset(MD5Key id) {
     if (!REQUIRED_ASSETS.contains(id)) {
       assetMap.remove(id);
+      releasableAssetMap.invalidate(id);
+      deferredAssetMap.remove(id);
     }
   }
 
@@ -480,12 +597,7 @@ private static Asset getFromPersistentCache(MD5Key id) {
         return null;
       }
 
-      synchronized (assetMap) {
-        var oldAsset = assetMap.get(id);
-        if (oldAsset == null || oldAsset.getData() == null || oldAsset.getData().length == 0) {
-          assetMap.put(id, asset);
-        }
-      }
+      keepInMemory(asset, true);
 
       return asset;
     } catch (IOException ioe) {
@@ -566,7 +678,9 @@ private static void putInPersistentCache(final Asset asset) {
       return;
     }
 
-    if (!assetIsInPersistentCache(asset)) {
+    if (assetIsInPersistentCache(asset)) {
+      makeReleasable(asset);
+    } else {
       final File assetFile = getAssetCacheFile(asset);
 
       assetWriterThreadPool.submit(
@@ -580,6 +694,7 @@ private static void putInPersistentCache(final Asset asset) {
 
               // Now that the data is in a file, we move it to its final resting place.
               operation.commit();
+              makeReleasable(asset);
             } catch (IOException ioe) {
               log.error("Could not persist asset while writing image data", ioe);
             } catch (NullPointerException npe) {
@@ -754,6 +869,41 @@ public static Asset getAssetAndWait(final MD5Key assetId) {
     return asset;
   }
 
+  /**
+   * Returns the persistent cache file of an asset, such as to send the asset from, first writing
+   * the asset there should it not be yet. This is the case for assets read from a campaign file on
+   * demand, which are only written to the cache once something asks for them.
+   *
+   * @param id MD5 sum of the asset
+   * @return The assets cache file, which doesn't exist if the asset isn't available
+   */
+  public static File getAssetCacheFileAndWait(MD5Key id) {
+    if (usePersistentCache && !assetIsInPersistentCache(id)) {
+      Asset asset = getAsset(id);
+      // Reading the asset hands it to the writer, which may not have got to it yet
+      waitForPersistentCacheWrites();
+      if (asset != null && asset.getData().length > 0 && !assetIsInPersistentCache(id)) {
+        putInPersistentCache(asset);
+        waitForPersistentCacheWrites();
+      }
+    }
+    return getAssetCacheFile(id);
+  }
+
+  /**
+   * Waits for the assets handed to the writer so far to be in the persistent cache. The writer has
+   * a single thread, so once an empty task has run every write submitted before it is done.
+   */
+  private static void waitForPersistentCacheWrites() {
+    try {
+      assetWriterThreadPool.submit(() -> {}).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      log.error("Could not wait for assets to be written to the persistent cache", e);
+    }
+  }
+
   /**
    * Return the assets cache file, if any
    *
@@ -856,17 +1006,18 @@ public static byte[] updateRepositoryMap(String repo, Map<String, String> add) {
   }
 
   /**
-   * Constructs a set of all assets in the given list of repositories, then builds a map of <code>
-   * MD5Key</code> and <code>Asset</code> for all assets that do not appear in that set.
+   * Constructs a set of all assets in the given list of repositories, then builds a set of the
+   * <code>MD5Key</code>s of all known assets that do not appear in that set.
    *
    * <p>This provides the calling function with a list of all assets currently in use by the
    * campaign that do not appear in one of the listed repositories. It's entirely possible that the
-   * asset is in a different repository or in none at all.
+   * asset is in a different repository or in none at all. No asset data is read, so the caller
+   * should get each asset with {@link #getAsset(MD5Key)} as it needs it.
    *
    * @param repos list of repositories to exclude
-   * @return Map of all known assets that are NOT in the specified repositories
+   * @return Set of the keys of all known assets that are NOT in the specified repositories
    */
-  public static Map<MD5Key, Asset> findAllAssetsNotInRepositories(List<String> repos) {
+  public static Set<MD5Key> findAllAssetsNotInRepositories(List<String> repos) {
     // For performance reasons, we calculate the size of the Set in advance...
     int size = 0;
     for (String repo : repos) {
@@ -881,20 +1032,14 @@ public static Map<MD5Key, Asset> findAllAssetsNotInRepositories(List<String> rep
       }
     }
 
-    /*
-     * The 'aggregate' now holds the sum total of all asset keys that are in repositories. Now we go through the 'assetMap' and copy over <K,V> pairs that are NOT in 'aggregate' to our 'missing'
-     * Map.
-     *
-     * Unfortunately, the repository is a Map<String, String> while the return value is going to be a Map<MD5Key, Asset>, which means each individual entry needs to be checked and references
-     * copied. If both were the same data type, converting both to Set<String> would allow for an addAll() and removeAll() and be done with it!
-     */
-    Map<MD5Key, Asset> missing =
-        new HashMap<MD5Key, Asset>(Math.min(assetMap.size(), aggregate.size()));
-
-    for (var entry : assetMap.entrySet()) {
-      if (aggregate.contains(entry.getKey()) == false) // Not in any repository so add it.
-      missing.put(entry.getKey(), entry.getValue());
+    // Released and deferred assets are still known, their data is read back when needed.
+    Set<MD5Key> missing;
+    synchronized (assetMap) {
+      missing = new HashSet<>(assetMap.keySet());
     }
+    missing.addAll(releasableAssetMap.asMap().keySet());
+    missing.addAll(deferredAssetMap.keySet());
+    missing.removeAll(aggregate);
     return missing;
   }
 
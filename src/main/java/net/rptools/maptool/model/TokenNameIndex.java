@@ -0,0 +1,144 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.rptools.maptool.util.StringUtil;
+
+/**
+ * An index of the tokens of a zone by name and by GM name, ignoring case.
+ *
+ * <p>Several tokens may share a name, in which case the first in z-order is returned, the same as
+ * a scan over the z-ordered token list would.
+ *
+ * <p>The index holds a copy of each token's names as they were when the token was last put, so it
+ * must be updated whenever a token is added, changed, or removed.
+ */
+final class TokenNameIndex {
+  private record Names(@Nullable String name, @Nullable String gmName) {}
+
+  private final Map<GUID, Names> names = new HashMap<>();
+  private final Map<String, List<Token>> byName = new HashMap<>();
+  private final Map<String, List<Token>> byGMName = new HashMap<>();
+
+  /**
+   * Creates an index of all the tokens currently in the zone.
+   *
+   * @param tokens the tokens of the zone
+   */
+  TokenNameIndex(Iterable<Token> tokens) {
+    for (Token token : tokens) {
+      update(token);
+    }
+  }
+
+  /**
+   * Folds the case of a name so that two names are equal exactly when {@link
+   * String#equalsIgnoreCase(String)} says they are.
+   *
+   * @param name the name
+   * @return the folded name
+   */
+  static String fold(String name) {
+    var builder = new StringBuilder(name.length());
+    name.codePoints()
+        .map(c -> Character.toLowerCase(Character.toUpperCase(c)))
+        .forEach(builder::appendCodePoint);
+    return builder.toString();
+  }
+
+  private static void add(Map<String, List<Token>> map, @Nullable String key, Token token) {
+    if (key != null) {
+      map.computeIfAbsent(key, k -> new ArrayList<>(1)).add(token);
+    }
+  }
+
+  private static void remove(Map<String, List<Token>> map, @Nullable String key, GUID id) {
+    if (key == null) {
+      return;
+    }
+    var tokens = map.get(key);
+    if (tokens != null) {
+      tokens.removeIf(t -> t.getId().equals(id));
+      if (tokens.isEmpty()) {
+        map.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Adds a token, or updates its names if it is already indexed.
+   *
+   * @param token the token
+   */
+  void update(Token token) {
+    GUID id = token.getId();
+    remove(id);
+
+    String name = token.getName() == null ? null : fold(token.getName());
+    String gmName = StringUtil.isEmpty(token.getGMName()) ? null : fold(token.getGMName());
+    add(byName, name, token);
+    add(byGMName, gmName, token);
+    names.put(id, new Names(name, gmName));
+  }
+
+  /**
+   * Removes a token, if it is indexed.
+   *
+   * @param id the id of the token
+   */
+  void remove(GUID id) {
+    var previous = names.remove(id);
+    if (previous != null) {
+      remove(byName, previous.name(), id);
+      remove(byGMName, previous.gmName(), id);
+    }
+  }
+
+  private static @Nullable Token first(@Nullable List<Token> tokens) {
+    if (tokens == null) {
+      return null;
+    }
+    Token first = null;
+    for (Token token : tokens) {
+      if (first == null || Zone.TOKEN_Z_ORDER_COMPARATOR.compare(token, first) < 0) {
+        first = token;
+      }
+    }
+    return first;
+  }
+
+  /**
+   * @param name the name to look for
+   * @return the first token in z-order with the name, ignoring case, or {@code null} if none
+   */
+  @Nullable
+  Token getTokenByName(@Nullable String name) {
+    return name == null ? null : first(byName.get(fold(name)));
+  }
+
+  /**
+   * @param gmName the GM name to look for
+   * @return the first token in z-order with the GM name, ignoring case, or {@code null} if none
+   */
+  @Nullable
+  Token getTokenByGMName(@Nullable String gmName) {
+    return gmName == null ? null : first(byGMName.get(fold(gmName)));
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import net.rptools.maptool.model.Zone.Layer;
+
+/**
+ * An index of the tokens of a zone by layer and by location.
+ *
+ * <p>Each layer has its own spatial hash: the zone is divided into square cells of {@link
+ * #CELL_SIZE} and each token is listed in every cell its bounds overlap. Tokens so large that they
+ * would be listed in more than {@link #MAX_CELLS_PER_TOKEN} cells are instead kept aside and
+ * checked on every query.
+ *
+ * <p>The index holds a copy of each token's bounds as they were when the token was last put, so it
+ * must be updated whenever a token is added, changed, or removed, and rebuilt if the grid changes.
+ */
+final class TokenSpatialIndex {
+  /** The width and height of each cell, in zone coordinates. */
+  static final int CELL_SIZE = 256;
+
+  private static final int MAX_CELLS_PER_TOKEN = 256;
+
+  private record Entry(Token token, Layer layer, Rectangle bounds, boolean oversized) {}
+
+  private static final class LayerIndex {
+    private final Set<GUID> tokens = new HashSet<>();
+    private final Map<Long, Set<GUID>> cells = new HashMap<>();
+    private final Set<GUID> oversized = new HashSet<>();
+  }
+
+  private final Zone zone;
+  private final Map<GUID, Entry> entries = new HashMap<>();
+  private final Map<Layer, LayerIndex> layers = new EnumMap<>(Layer.class);
+
+  /**
+   * Creates an index of all the tokens currently in the zone.
+   *
+   * @param zone the zone, used to work out the token bounds
+   * @param tokens the tokens of the zone
+   */
+  TokenSpatialIndex(Zone zone, Iterable<Token> tokens) {
+    this.zone = zone;
+    for (Layer layer : Layer.values()) {
+      layers.put(layer, new LayerIndex());
+    }
+    for (Token token : tokens) {
+      update(token);
+    }
+  }
+
+  private static long cellKey(int column, int row) {
+    return ((long) column << 32) | (row & 0xFFFFFFFFL);
+  }
+
+  private static int cellOf(int coordinate) {
+    return Math.floorDiv(coordinate, CELL_SIZE);
+  }
+
+  /**
+   * Adds a token, or moves it if it is already indexed.
+   *
+   * @param token the token
+   */
+  void update(Token token) {
+    GUID id = token.getId();
+    remove(id);
+
+    Layer layer = token.getLayer();
+    Rectangle bounds = token.getBounds(zone);
+    int minColumn = cellOf(bounds.x);
+    int maxColumn = cellOf(bounds.x + bounds.width);
+    int minRow = cellOf(bounds.y);
+    int maxRow = cellOf(bounds.y + bounds.height);
+    long cellCount = (long) (maxColumn - minColumn + 1) * (maxRow - minRow + 1);
+    boolean oversized = cellCount > MAX_CELLS_PER_TOKEN;
+
+    var index = layers.get(layer);
+    index.tokens.add(id);
+    if (oversized) {
+      index.oversized.add(id);
+    } else {
+      for (int column = minColumn; column <= maxColumn; ++column) {
+        for (int row = minRow; row <= maxRow; ++row) {
+          index.cells.computeIfAbsent(cellKey(column, row), k -> new HashSet<>()).add(id);
+        }
+      }
+    }
+    entries.put(id, new Entry(token, layer, bounds, oversized));
+  }
+
+  /**
+   * Removes a token, if it is indexed.
+   *
+   * @param id the id of the token
+   */
+  void remove(GUID id) {
+    var entry = entries.remove(id);
+    if (entry == null) {
+      return;
+    }
+
+    var index = layers.get(entry.layer());
+    index.tokens.remove(id);
+    if (entry.oversized()) {
+      index.oversized.remove(id);
+      return;
+    }
+
+    Rectangle bounds = entry.bounds();
+    for (int column = cellOf(bounds.x); column <= cellOf(bounds.x + bounds.width); ++column) {
+      for (int row = cellOf(bounds.y); row <= cellOf(bounds.y + bounds.height); ++row) {
+        long key = cellKey(column, row);
+        var cell = index.cells.get(key);
+        if (cell != null) {
+          cell.remove(id);
+          if (cell.isEmpty()) {
+            index.cells.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the tokens on the matching layers. The result is in no particular order.
+   *
+   * @param layerFilter the layers to look at
+   * @return the tokens
+   */
+  List<Token> getTokens(Predicate<Layer> layerFilter) {
+    var result = new ArrayList<Token>();
+    layers.forEach(
+        (layer, index) -> {
+          if (layerFilter.test(layer)) {
+            for (GUID id : index.tokens) {
+              result.add(entries.get(id).token());
+            }
+          }
+        });
+    return result;
+  }
+
+  /**
+   * Finds the tokens on the matching layers whose bounds intersect a rectangle. The result is in
+   * no particular order.
+   *
+   * @param layerFilter the layers to look at
+   * @param bounds the area to look in, in zone coordinates
+   * @return the tokens
+   */
+  List<Token> getTokens(Predicate<Layer> layerFilter, Rectangle bounds) {
+    int minColumn = cellOf(bounds.x);
+    int maxColumn = cellOf(bounds.x + bounds.width);
+    int minRow = cellOf(bounds.y);
+    int maxRow = cellOf(bounds.y + bounds.height);
+    long cellCount = (long) (maxColumn - minColumn + 1) * (maxRow - minRow + 1);
+
+    var result = new ArrayList<Token>();
+    for (var layerEntry : layers.entrySet()) {
+      if (!layerFilter.test(layerEntry.getKey())) {
+        continue;
+      }
+      var index = layerEntry.getValue();
+
+      Iterable<GUID> candidates;
+      if (cellCount > index.cells.size()) {
+        // Cheaper to check every token than to visit every cell of a large area
+        candidates = index.tokens;
+      } else {
+        var found = new HashSet<>(index.oversized);
+        for (int column = minColumn; column <= maxColumn; ++column) {
+          for (int row = minRow; row <= maxRow; ++row) {
+            var cell = index.cells.get(cellKey(column, row));
+            if (cell != null) {
+              found.addAll(cell);
+            }
+          }
+        }
+        candidates = found;
+      }
+
+      for (GUID id : candidates) {
+        var entry = entries.get(id);
+        if (entry.bounds().intersects(bounds)) {
+          result.add(entry.token());
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -14,12 +14,14 @@
  */
 package net.rptools.maptool.model;
 
+import com.google.common.eventbus.Subscribe;
 import com.google.protobuf.StringValue;
 import java.awt.Color;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
@@ -68,7 +70,6 @@
 import net.rptools.maptool.server.Mapper;
 import net.rptools.maptool.server.proto.DrawnElementListDto;
 import net.rptools.maptool.server.proto.ZoneDto;
-import net.rptools.maptool.util.StringUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -83,6 +84,23 @@ public class Zone {
 
   private static final Logger log = LogManager.getLogger(Zone.class);
 
+  /**
+   * Drops the token index of a zone whose grid changes in place, such as through {@link
+   * Grid#setSize(int)} or {@link Grid#setOffset(int, int)}, since token bounds depend on the grid.
+   */
+  private static final class GridChangeListener {
+    @Subscribe
+    private void onGridChanged(GridChanged event) {
+      if (event.zone() != null) {
+        event.zone().tokenIndex = null;
+      }
+    }
+  }
+
+  static {
+    new MapToolEventBus().getMainEventBus().register(new GridChangeListener());
+  }
+
   /** The vision type (OFF, DAY, NIGHT). */
   public enum VisionType {
     OFF(),
@@ -357,6 +375,31 @@ public enum TopologyType {
   /** Token list ordered by Z. */
   private final List<Token> tokenOrderedList = new LinkedList<Token>();
 
+  /**
+   * Tokens by layer and location. Built on first use and kept up to date wherever the token events
+   * are fired.
+   */
+  private transient @Nullable TokenSpatialIndex tokenIndex;
+
+  /** Tokens by name and GM name. Built and kept up to date the same way as {@link #tokenIndex}. */
+  private transient @Nullable TokenNameIndex tokenNameIndex;
+
+  /** A copy of the tokens, along with the {@link #tokenModCount} it was copied at. */
+  private record TokenSnapshot<T>(long modCount, T tokens) {}
+
+  /**
+   * Counts the changes to the tokens. Bumped after each change is made, so that a snapshot copied
+   * while the tokens were changing is never served once the change is done. Tokens are only ever
+   * changed by one thread at a time.
+   */
+  private transient volatile long tokenModCount;
+
+  /** Immutable copy of {@link #tokenOrderedList}, shared by all callers until the tokens change. */
+  private transient volatile @Nullable TokenSnapshot<List<Token>> tokenSnapshot;
+
+  /** Immutable copies of the tokens on each layer, ordered by Z. Dropped with the snapshot. */
+  private transient volatile @Nullable TokenSnapshot<Map<Layer, List<Token>>> layerSnapshots;
+
   private InitiativeList initiativeList = new InitiativeList(this);
 
   /** The global exposed area. */
@@ -393,6 +436,15 @@ public enum TopologyType {
 
   private transient @Nullable NodedTopology nodedTopology;
 
+  /**
+   * Whether the topology has changed since {@link #nodedTopology} was prepared. It is kept rather
+   * than discarded so that it can be updated incrementally.
+   */
+  private transient boolean nodedTopologyStale;
+
+  /** Counts the times {@link #nodedTopology} has been prepared, so results can be tied to it. */
+  private transient long nodedTopologyVersion;
+
   // The 'board' layer, at the very bottom of the layer stack.
   // Itself has two sub-layers:
   // The top one is an optional texture, typically a pre-drawn map.
@@ -727,6 +779,8 @@ public void setVisible(boolean isVisible) {
   public void setGrid(Grid grid) {
     this.grid = grid;
     grid.setZone(this);
+    // Token bounds depend on the grid
+    tokenIndex = null;
     new MapToolEventBus().getMainEventBus().post(new GridChanged(this));
   }
 
@@ -992,7 +1046,7 @@ public List<MaskTopology> getMasks(Set<TopologyType> types, @Nullable GUID exclu
 
   public void replaceWalls(WallTopology walls) {
     this.walls = walls;
-    this.nodedTopology = null;
+    this.nodedTopologyStale = true;
     new MapToolEventBus().getMainEventBus().post(new WallTopologyChanged(this));
   }
 
@@ -1003,14 +1057,29 @@ public void replaceWalls(WallTopology walls) {
    * @return
    */
   public NodedTopology prepareNodedTopologies() {
-    if (nodedTopology == null) {
+    if (nodedTopology == null || nodedTopologyStale) {
       var legacyMasks = getMasks(EnumSet.allOf(TopologyType.class), null);
-      nodedTopology = NodedTopology.prepare(walls, legacyMasks);
+      nodedTopology =
+          nodedTopology == null
+              ? NodedTopology.prepare(walls, legacyMasks)
+              : nodedTopology.update(walls, legacyMasks);
+      nodedTopologyStale = false;
+      ++nodedTopologyVersion;
     }
 
     return nodedTopology;
   }
 
+  /**
+   * Identifies the topology last returned by {@link #prepareNodedTopologies()}. The version only
+   * ever increases, and changes whenever the prepared topology is replaced.
+   *
+   * @return the version of the prepared topology
+   */
+  public long getNodedTopologyVersion() {
+    return nodedTopologyVersion;
+  }
+
   public Area getMaskTopology(TopologyType topologyType) {
     return switch (topologyType) {
       case WALL_VBL -> topology;
@@ -1045,7 +1114,7 @@ public void updateMaskTopology(Area area, boolean erase, TopologyType topologyTy
 
     // MBL doesn't affect vision, so no need to invalidate the noding.
     if (topologyType != TopologyType.MBL) {
-      nodedTopology = null;
+      nodedTopologyStale = true;
     }
     new MapToolEventBus().getMainEventBus().post(new MaskTopologyChanged(this));
   }
@@ -1056,7 +1125,7 @@ public void tokenMaskTopologyChanged(Collection<TopologyType> types) {
         || types.contains(TopologyType.HILL_VBL)
         || types.contains(TopologyType.PIT_VBL)
         || types.contains(TopologyType.COVER_VBL)) {
-      nodedTopology = null;
+      nodedTopologyStale = true;
     }
     new MapToolEventBus().getMainEventBus().post(new MaskTopologyChanged(this));
   }
@@ -1082,6 +1151,10 @@ public Area getTokenMaskTopology(TopologyType type, @Nullable GUID excluding) {
    * @param token the token that changed
    */
   public void tokenChanged(Token token) {
+    // The token was changed in place, so its location or layer may be out of date
+    if (tokenMap.containsKey(token.getId())) {
+      updateTokenIndexes(token);
+    }
     new MapToolEventBus()
         .getMainEventBus()
         .post(new TokensChanged(this, Collections.singletonList(token)));
@@ -1383,6 +1456,7 @@ public int getSmallestZOrder() {
   /** Sort the tokens by their ZOrder */
   public void sortZOrder() {
     tokenOrderedList.sort(TOKEN_Z_ORDER_COMPARATOR);
+    invalidateTokenSnapshots();
   }
 
   ///////////////////////////////////////////////////////////////////////////
@@ -1517,6 +1591,7 @@ public void putToken(Token token) {
     tokenOrderedList.remove(token);
     tokenOrderedList.add(token);
     tokenOrderedList.sort(TOKEN_Z_ORDER_COMPARATOR);
+    updateTokenIndexes(token);
 
     if (newToken) {
       new MapToolEventBus()
@@ -1568,6 +1643,7 @@ public void putTokens(List<Token> tokens) {
     tokenOrderedList.removeAll(tokens);
     tokenOrderedList.addAll(tokens);
     tokenOrderedList.sort(TOKEN_Z_ORDER_COMPARATOR);
+    tokens.forEach(this::updateTokenIndexes);
 
     if (!addedTokens.isEmpty()) {
       new MapToolEventBus().getMainEventBus().post(new TokensAdded(this, addedTokens));
@@ -1586,6 +1662,7 @@ public void removeToken(GUID id) {
     Token token = tokenMap.remove(id);
     if (token != null) {
       tokenOrderedList.remove(token);
+      removeFromTokenIndexes(id);
       new MapToolEventBus()
           .getMainEventBus()
           .post(new TokensRemoved(this, Collections.singletonList(token)));
@@ -1604,6 +1681,7 @@ public void removeTokens(List<GUID> ids) {
         Token token = tokenMap.remove(id);
         if (token != null) {
           tokenOrderedList.remove(token);
+          removeFromTokenIndexes(id);
           removedTokens.add(token);
         }
       }
@@ -1613,6 +1691,42 @@ public void removeTokens(List<GUID> ids) {
     }
   }
 
+  /** Drops the snapshots. Must be called after the change to the tokens has been made. */
+  private void invalidateTokenSnapshots() {
+    tokenModCount++;
+    tokenSnapshot = null;
+    layerSnapshots = null;
+  }
+
+  /** Updates the indexes and drops the snapshots after a token is added or changed. */
+  private void updateTokenIndexes(Token token) {
+    invalidateTokenSnapshots();
+    if (tokenIndex != null) {
+      tokenIndex.update(token);
+    }
+    if (tokenNameIndex != null) {
+      tokenNameIndex.update(token);
+    }
+  }
+
+  /** Updates the indexes and drops the snapshots after a token is removed. */
+  private void removeFromTokenIndexes(GUID id) {
+    invalidateTokenSnapshots();
+    if (tokenIndex != null) {
+      tokenIndex.remove(id);
+    }
+    if (tokenNameIndex != null) {
+      tokenNameIndex.remove(id);
+    }
+  }
+
+  private TokenNameIndex getTokenNameIndex() {
+    if (tokenNameIndex == null) {
+      tokenNameIndex = new TokenNameIndex(tokenOrderedList);
+    }
+    return tokenNameIndex;
+  }
+
   public Token getToken(GUID id) {
     return tokenMap.get(id);
   }
@@ -1622,12 +1736,7 @@ public Token getToken(GUID id) {
    * @return the first token with a given name. The name is matched case-insensitively.
    */
   public Token getTokenByName(String name) {
-    for (Token token : getAllTokens()) {
-      if (name.equalsIgnoreCase(token.getName())) {
-        return token;
-      }
-    }
-    return null;
+    return getTokenNameIndex().getTokenByName(name);
   }
 
   /**
@@ -1660,15 +1769,7 @@ public Token resolveToken(String identifier) {
    * @return the first token with a given GM name. The name is matched case-insensitively.
    */
   public Token getTokenByGMName(String name) {
-    for (Token token : getAllTokens()) {
-      if (StringUtil.isEmpty(token.getGMName())) {
-        continue;
-      }
-      if (token.getGMName().equalsIgnoreCase(name)) {
-        return token;
-      }
-    }
-    return null;
+    return getTokenNameIndex().getTokenByGMName(name);
   }
 
   public List<DrawnElement> getAllDrawnElements() {
@@ -1704,8 +1805,75 @@ public int getTokenCount() {
     return tokenOrderedList.size();
   }
 
+  /**
+   * Returns all tokens ordered by Z. The list is immutable and is shared between callers until the
+   * tokens change, so calling this repeatedly does not copy the tokens each time.
+   *
+   * @return a snapshot of the tokens in the zone
+   */
   public List<Token> getAllTokens() {
-    return List.copyOf(tokenOrderedList);
+    // Read the count before copying. Should the tokens change meanwhile, the count stored with the
+    // copy is already out of date and the next call copies again.
+    long modCount = tokenModCount;
+    var snapshot = tokenSnapshot;
+    if (snapshot != null && snapshot.modCount() == modCount) {
+      return snapshot.tokens();
+    }
+    var tokens = List.copyOf(tokenOrderedList);
+    tokenSnapshot = new TokenSnapshot<>(modCount, tokens);
+    return tokens;
+  }
+
+  private List<Token> getLayerSnapshot(Layer layer) {
+    long modCount = tokenModCount;
+    var snapshots = layerSnapshots;
+    if (snapshots != null && snapshots.modCount() == modCount) {
+      return snapshots.tokens().get(layer);
+    }
+    var byLayer = new EnumMap<Layer, List<Token>>(Layer.class);
+    for (Layer l : Layer.values()) {
+      byLayer.put(l, new ArrayList<>());
+    }
+    for (Token token : getAllTokens()) {
+      byLayer.get(token.getLayer()).add(token);
+    }
+    byLayer.replaceAll((l, tokens) -> List.copyOf(tokens));
+    layerSnapshots = new TokenSnapshot<>(modCount, byLayer);
+    return byLayer.get(layer);
+  }
+
+  /**
+   * Performs an action for every token, in Z order, without copying the token list.
+   *
+   * <p>The tokens are those in the zone when iteration starts. It is safe for the action to add or
+   * remove tokens, though it will not see the effect.
+   *
+   * @param action The action to perform.
+   */
+  public void forEachToken(Consumer<Token> action) {
+    var tokens = getAllTokens();
+    for (int i = 0; i < tokens.size(); ++i) {
+      action.accept(tokens.get(i));
+    }
+  }
+
+  /**
+   * Performs an action for every matching token on a layer, in Z order, without copying the token
+   * list.
+   *
+   * @param layer The layer to look at.
+   * @param filter Which tokens to perform the action for.
+   * @param action The action to perform.
+   * @see #forEachToken(Consumer)
+   */
+  public void forEachToken(Layer layer, Predicate<Token> filter, Consumer<Token> action) {
+    var tokens = getLayerSnapshot(layer);
+    for (int i = 0; i < tokens.size(); ++i) {
+      var token = tokens.get(i);
+      if (filter.test(token)) {
+        action.accept(token);
+      }
+    }
   }
 
   public Set<MD5Key> getAllAssetIds() {
@@ -1743,14 +1911,19 @@ public Set<MD5Key> getAllAssetIds() {
   }
 
   public List<Token> getTokensFiltered(Filter filter) {
-    ArrayList<Token> copy = new ArrayList<Token>(getTokenCount());
+    var tokens = getAllTokens();
+    ArrayList<Token> copy = null;
 
-    for (Token token : tokenOrderedList) {
+    for (int i = 0; i < tokens.size(); ++i) {
+      var token = tokens.get(i);
       if (filter.matchToken(token)) {
+        if (copy == null) {
+          copy = new ArrayList<Token>();
+        }
         copy.add(token);
       }
     }
-    return Collections.unmodifiableList(copy);
+    return copy == null ? List.of() : Collections.unmodifiableList(copy);
   }
 
   public List<Token> getTokensOnLayer(Layer layer) {
@@ -1758,8 +1931,46 @@ public List<Token> getTokensOnLayer(Layer layer) {
   }
 
   public List<Token> getTokensOnLayer(Layer layer, boolean getAlwaysVisible) {
-    return getTokensFiltered(
-        t -> t.getLayer() == layer && (getAlwaysVisible || !t.isAlwaysVisible()));
+    var tokens = getLayerSnapshot(layer);
+    if (!getAlwaysVisible) {
+      for (int i = 0; i < tokens.size(); ++i) {
+        if (tokens.get(i).isAlwaysVisible()) {
+          return tokens.stream().filter(t -> !t.isAlwaysVisible()).toList();
+        }
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Finds the tokens whose bounds intersect an area, without scanning every token in the zone.
+   *
+   * @param bounds The area to look in, in zone coordinates.
+   * @return The tokens on any layer that intersect the area, ordered by Z.
+   */
+  public List<Token> getTokensInBounds(Rectangle bounds) {
+    return getTokensInBounds(layer -> true, bounds);
+  }
+
+  /**
+   * Finds the tokens on the matching layers whose bounds intersect an area, without scanning every
+   * token in the zone.
+   *
+   * @param layerFilter The predicate to match desired layers.
+   * @param bounds The area to look in, in zone coordinates.
+   * @return The tokens that intersect the area, ordered by Z.
+   */
+  public List<Token> getTokensInBounds(Predicate<Layer> layerFilter, Rectangle bounds) {
+    var tokens = getTokenIndex().getTokens(layerFilter, bounds);
+    tokens.sort(TOKEN_Z_ORDER_COMPARATOR);
+    return Collections.unmodifiableList(tokens);
+  }
+
+  private TokenSpatialIndex getTokenIndex() {
+    if (tokenIndex == null) {
+      tokenIndex = new TokenSpatialIndex(this, tokenOrderedList);
+    }
+    return tokenIndex;
   }
 
   /**
@@ -1772,7 +1983,9 @@ public List<Token> getTokensOnLayer(Layer layer, boolean getAlwaysVisible) {
    * @return A list of all tokens for the given layers.
    */
   public List<Token> getTokensForLayers(Predicate<Layer> layerFilter) {
-    return getTokensFiltered(t -> layerFilter.test(t.getLayer()));
+    var tokens = getTokenIndex().getTokens(layerFilter);
+    tokens.sort(TOKEN_Z_ORDER_COMPARATOR);
+    return Collections.unmodifiableList(tokens);
   }
 
   public List<Token> getPlayerTokens() {
@@ -16,28 +16,71 @@
 
 import java.awt.geom.Area;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import net.rptools.lib.GeometryUtil;
 import net.rptools.maptool.client.ui.zone.vbl.Facing;
 import net.rptools.maptool.model.Zone.TopologyType;
 import org.locationtech.jts.algorithm.Orientation;
 import org.locationtech.jts.algorithm.RayCrossingCounter;
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.Location;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.index.strtree.STRtree;
 
 public final class MaskTopology implements Topology {
+  /**
+   * An index over one ring of the polygon, so that vision only has to look at the faces near it.
+   */
+  private static final class RingIndex {
+    /** Face {@code i} runs from vertex {@code i - 1} to vertex {@code i}. */
+    private final STRtree faces = new STRtree();
+
+    private final IndexedPointInAreaLocator locator;
+
+    private RingIndex(LinearRing ring) {
+      var vertices = ring.getCoordinateSequence();
+      for (int i = 1; i < vertices.size(); ++i) {
+        faces.insert(new Envelope(vertices.getCoordinate(i - 1), vertices.getCoordinate(i)), i);
+      }
+      faces.build();
+
+      locator =
+          new IndexedPointInAreaLocator(GeometryUtil.getGeometryFactory().createPolygon(ring));
+      // Force the locator to build its index now rather than on some other thread.
+      locator.locate(ring.getCoordinateN(0));
+    }
+
+    /**
+     * @return the faces whose envelopes intersect {@code bounds}, in ring order
+     */
+    private int[] query(Envelope bounds) {
+      var result = faces.query(bounds).stream().mapToInt(item -> (Integer) item).toArray();
+      Arrays.sort(result);
+      return result;
+    }
+  }
+
   private final TopologyType type;
   private final Polygon polygon;
 
-  private MaskTopology(TopologyType type, Polygon polygon) {
+  /**
+   * Indexes for the exterior ring followed by each hole, or {@code null} if this mask is not
+   * indexed.
+   */
+  private final @Nullable RingIndex[] ringIndexes;
+
+  private MaskTopology(TopologyType type, Polygon polygon, @Nullable RingIndex[] ringIndexes) {
     this.type = type;
     this.polygon = polygon;
+    this.ringIndexes = ringIndexes;
   }
 
   public static MaskTopology create(TopologyType type, Polygon polygon) {
@@ -58,7 +101,29 @@ public static MaskTopology create(TopologyType type, Polygon polygon) {
     }
     polygon = GeometryUtil.getGeometryFactory().createPolygon(boundary, holes);
 
-    return new MaskTopology(type, polygon);
+    return new MaskTopology(type, polygon, null);
+  }
+
+  /**
+   * Creates a copy of this mask with a spatial index over its rings.
+   *
+   * <p>Building the index costs time up front, but {@link #addSegments(Coordinate, Envelope,
+   * Consumer)} then only has to look at the faces within the bounds instead of walking every ring.
+   * This is worth it for masks that will be used for many vision calculations, such as those in a
+   * {@link net.rptools.maptool.client.ui.zone.vbl.NodedTopology}.
+   *
+   * @return the indexed mask
+   */
+  public MaskTopology indexed() {
+    if (ringIndexes != null) {
+      return this;
+    }
+    var indexes = new RingIndex[1 + polygon.getNumInteriorRing()];
+    indexes[0] = new RingIndex(polygon.getExteriorRing());
+    for (int i = 0; i < polygon.getNumInteriorRing(); ++i) {
+      indexes[1 + i] = new RingIndex(polygon.getInteriorRingN(i));
+    }
+    return new MaskTopology(type, polygon, indexes);
   }
 
   public static List<MaskTopology> createFromLegacy(TopologyType type, Area area) {
@@ -84,17 +149,26 @@ public Polygon getPolygon() {
 
   @Override
   public VisionResult addSegments(Coordinate origin, Envelope bounds, Consumer<Coordinate[]> sink) {
+    var envelope = polygon.getEnvelopeInternal();
+    if (!envelope.intersects(bounds) && !envelope.contains(origin)) {
+      // The origin is outside the mask and none of its faces are close enough to matter.
+      return VisionResult.Possible;
+    }
+
     // Convenience for adding rings to the result.
     BiConsumer<LinearRing, Facing> add =
         (ring, facing) ->
-            getFacingSegments(ring.getCoordinateSequence(), facing, origin, bounds, sink);
+            getFacingSegments(
+                ring.getCoordinateSequence(),
+                getFaces(ring, bounds),
+                facing,
+                origin,
+                bounds,
+                sink);
 
     // This might look weird to have separate switches for inside and out, but it's much
     // cleaner.
-    boolean isInside =
-        Location.EXTERIOR
-            != RayCrossingCounter.locatePointInRing(
-                origin, polygon.getExteriorRing().getCoordinateSequence());
+    boolean isInside = Location.EXTERIOR != locate(polygon.getExteriorRing(), origin);
 
     if (!isInside) {
       switch (type) {
@@ -125,9 +199,7 @@ public VisionResult addSegments(Coordinate origin, Envelope bounds, Consumer<Coo
       int holeIndex = -1;
       for (var i = 0; i < polygon.getNumInteriorRing(); ++i) {
         // Holes are open, i.e., do not contain their boundary.
-        var location =
-            RayCrossingCounter.locatePointInRing(
-                origin, polygon.getInteriorRingN(i).getCoordinateSequence());
+        var location = locate(polygon.getInteriorRingN(i), origin);
         if (Location.INTERIOR == location) {
           holeIndex = i;
           break;
@@ -186,8 +258,41 @@ public VisionResult addSegments(Coordinate origin, Envelope bounds, Consumer<Coo
     return VisionResult.Possible;
   }
 
+  private @Nullable RingIndex getRingIndex(LinearRing ring) {
+    if (ringIndexes == null) {
+      return null;
+    }
+    if (ring == polygon.getExteriorRing()) {
+      return ringIndexes[0];
+    }
+    for (int i = 0; i < polygon.getNumInteriorRing(); ++i) {
+      if (ring == polygon.getInteriorRingN(i)) {
+        return ringIndexes[1 + i];
+      }
+    }
+    return null;
+  }
+
+  private Location locate(LinearRing ring, Coordinate point) {
+    var index = getRingIndex(ring);
+    if (index == null) {
+      return RayCrossingCounter.locatePointInRing(point, ring.getCoordinateSequence());
+    }
+    return index.locator.locate(point);
+  }
+
+  /**
+   * @return the faces of the ring that may be within {@code bounds}, or {@code null} to check
+   *     every face
+   */
+  private @Nullable int[] getFaces(LinearRing ring, Envelope bounds) {
+    var index = getRingIndex(ring);
+    return index == null ? null : index.query(bounds);
+  }
+
   private static void getFacingSegments(
       CoordinateSequence vertices,
+      @Nullable int[] faces,
       Facing facing,
       Coordinate origin,
       Envelope bounds,
@@ -205,9 +310,19 @@ private static void getFacingSegments(
     final Coordinate current = new Coordinate();
 
     List<Coordinate> currentSegmentPoints = new ArrayList<>();
-    for (int i = 1; i < vertices.size(); ++i) {
+    int faceCount = faces == null ? vertices.size() - 1 : faces.length;
+    int previousFace = -1;
+    for (int f = 0; f < faceCount; ++f) {
       assert currentSegmentPoints.size() == 0 || currentSegmentPoints.size() >= 2;
 
+      final int i = faces == null ? f + 1 : faces[f];
+      if (i != previousFace + 1 && !currentSegmentPoints.isEmpty()) {
+        // Faces were skipped by the index, so the segment is broken as if they had been excluded.
+        emitSegment(currentSegmentPoints, requiredOrientation, sink);
+        currentSegmentPoints.clear();
+      }
+      previousFace = i;
+
       vertices.getCoordinate(i - 1, previous);
       vertices.getCoordinate(i, current);
 
@@ -225,22 +340,23 @@ private static void getFacingSegments(
         currentSegmentPoints.add(new Coordinate(current));
       } else if (!currentSegmentPoints.isEmpty()) {
         // Since we're skipping this face, the segment is broken and we must start a new one.
-        var string = currentSegmentPoints;
-        if (requiredOrientation != Orientation.COUNTERCLOCKWISE) {
-          string = string.reversed();
-        }
-        sink.accept(string.toArray(Coordinate[]::new));
+        emitSegment(currentSegmentPoints, requiredOrientation, sink);
         currentSegmentPoints.clear();
       }
     }
 
     assert currentSegmentPoints.size() == 0 || currentSegmentPoints.size() >= 2;
     if (!currentSegmentPoints.isEmpty()) {
-      var string = currentSegmentPoints;
-      if (requiredOrientation != Orientation.COUNTERCLOCKWISE) {
-        string = string.reversed();
-      }
-      sink.accept(string.toArray(Coordinate[]::new));
+      emitSegment(currentSegmentPoints, requiredOrientation, sink);
+    }
+  }
+
+  private static void emitSegment(
+      List<Coordinate> points, int requiredOrientation, Consumer<Coordinate[]> sink) {
+    var string = points;
+    if (requiredOrientation != Orientation.COUNTERCLOCKWISE) {
+      string = string.reversed();
     }
+    sink.accept(string.toArray(Coordinate[]::new));
   }
 }
@@ -0,0 +1,131 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+import net.rptools.maptool.common.MapToolConstants;
+import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.UpdateAssetTransferMsg;
+import net.rptools.maptool.transfer.AssetTransferManager;
+import net.rptools.maptool.transfer.BandwidthLimiter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Sends asset chunks to every connection concurrently.
+ *
+ * <p>Each connection with outstanding transfers gets its own virtual thread, which exits once the
+ * connection's transfers are done. All connections share one {@link BandwidthLimiter}.
+ */
+class AssetTransferScheduler {
+  private static final Logger log = LogManager.getLogger(AssetTransferScheduler.class);
+
+  /** How long to wait for a client to drain its queue before trying again. */
+  private static final long BACKLOG_WAIT_MILLIS = 10;
+
+  /** Sends a chunk message to a connection. */
+  interface Sender {
+    void send(String connectionId, Object channel, Message message);
+  }
+
+  private final Map<String, AssetTransferManager> managers;
+  private final ToIntFunction<String> pendingChunks;
+  private final Sender sender;
+  private final BandwidthLimiter bandwidthLimiter;
+  private final Map<String, Thread> workers = new ConcurrentHashMap<>();
+  private volatile boolean stopped = false;
+
+  /**
+   * @param managers the transfer manager of each connection
+   * @param pendingChunks gets the number of chunks still queued for a connection
+   * @param sender sends the chunks
+   * @param bandwidthLimiter the limit shared by all connections
+   */
+  AssetTransferScheduler(
+      Map<String, AssetTransferManager> managers,
+      ToIntFunction<String> pendingChunks,
+      Sender sender,
+      BandwidthLimiter bandwidthLimiter) {
+    this.managers = managers;
+    this.pendingChunks = pendingChunks;
+    this.sender = sender;
+    this.bandwidthLimiter = bandwidthLimiter;
+  }
+
+  /**
+   * Makes sure a connection's transfers are being served. Call after adding a producer.
+   *
+   * @param connectionId the connection with new work
+   */
+  void schedule(String connectionId) {
+    if (stopped) {
+      return;
+    }
+    workers.computeIfAbsent(
+        connectionId,
+        id ->
+            Thread.ofVirtual()
+                .name("AssetTransferScheduler-" + id)
+                .start(() -> serve(id)));
+  }
+
+  /** Stops all transfers. Workers finish the chunk they are on and exit. */
+  void shutdown() {
+    stopped = true;
+    workers.values().forEach(Thread::interrupt);
+  }
+
+  private void serve(String connectionId) {
+    try {
+      while (!stopped) {
+        var manager = managers.get(connectionId);
+        if (manager == null || !manager.hasProducers()) {
+          break;
+        }
+        var chunkSize = manager.getChunkSize();
+        if (!chunkSize.update(pendingChunks.applyAsInt(connectionId))) {
+          // The client hasn't caught up with what we already sent it.
+          Thread.sleep(BACKLOG_WAIT_MILLIS);
+          continue;
+        }
+
+        var chunk = manager.nextChunk(chunkSize.get());
+        if (chunk != null) {
+          bandwidthLimiter.acquire(chunk.getData().size());
+          var msg = UpdateAssetTransferMsg.newBuilder().setChunk(chunk);
+          sender.send(
+              connectionId,
+              MapToolConstants.Channel.IMAGE,
+              Message.newBuilder().setUpdateAssetTransferMsg(msg).build());
+        }
+      }
+    } catch (InterruptedException e) {
+      // Shutting down.
+    } catch (Exception e) {
+      log.warn("Couldn't retrieve AssetChunk for " + connectionId, e);
+    } finally {
+      workers.remove(connectionId);
+    }
+
+    // A producer may have been added after we last looked but before we removed ourselves, in
+    // which case schedule() would have seen us and not started a new worker.
+    var manager = managers.get(connectionId);
+    if (manager != null && manager.hasProducers()) {
+      schedule(connectionId);
+    }
+  }
+}
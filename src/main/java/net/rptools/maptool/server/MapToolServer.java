@@ -18,19 +18,20 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import javax.swing.SwingUtilities;
 import net.rptools.clientserver.ConnectionFactory;
 import net.rptools.clientserver.simple.DisconnectHandler;
 import net.rptools.clientserver.simple.MessageHandler;
+import net.rptools.clientserver.simple.connection.CompressedMessage;
+import net.rptools.clientserver.simple.connection.CompressionStatistics;
 import net.rptools.clientserver.simple.connection.Connection;
 import net.rptools.clientserver.simple.server.Router;
 import net.rptools.clientserver.simple.server.Server;
 import net.rptools.clientserver.simple.server.ServerObserver;
 import net.rptools.maptool.client.AppConstants;
+import net.rptools.maptool.client.AppPreferences;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.MapToolRegistry;
 import net.rptools.maptool.client.ui.StaticMessageDialog;
@@ -46,9 +47,9 @@
 import net.rptools.maptool.server.proto.PlayerConnectedMsg;
 import net.rptools.maptool.server.proto.PlayerDisconnectedMsg;
 import net.rptools.maptool.server.proto.SetCampaignMsg;
-import net.rptools.maptool.server.proto.UpdateAssetTransferMsg;
 import net.rptools.maptool.transfer.AssetProducer;
 import net.rptools.maptool.transfer.AssetTransferManager;
+import net.rptools.maptool.transfer.BandwidthLimiter;
 import net.rptools.maptool.util.UPnPUtil;
 import net.tsc.servicediscovery.ServiceAnnouncer;
 import org.apache.logging.log4j.LogManager;
@@ -59,7 +60,6 @@
  */
 public class MapToolServer {
   private static final Logger log = LogManager.getLogger(MapToolServer.class);
-  private static final int ASSET_CHUNK_SIZE = 5 * 1024;
 
   public enum State {
     New,
@@ -78,7 +78,7 @@ public enum State {
 
   private final Map<String, AssetTransferManager> assetManagerMap =
       Collections.synchronizedMap(new HashMap<String, AssetTransferManager>());
-  private final AssetProducerThread assetProducerThread;
+  private final AssetTransferScheduler assetTransferScheduler;
 
   private final boolean useUPnP;
   private final ServiceAnnouncer announcer;
@@ -114,7 +114,12 @@ public MapToolServer(
     // Make sure the server has a different copy than the client.
     this.campaign = new Campaign(campaign);
 
-    assetProducerThread = new AssetProducerThread();
+    assetTransferScheduler =
+        new AssetTransferScheduler(
+            assetManagerMap,
+            this::pendingAssetChunks,
+            this::sendMessage,
+            new BandwidthLimiter(AppPreferences.assetTransferBandwidthLimit.get() * 1024L));
 
     currentState = State.New;
 
@@ -281,8 +286,12 @@ private void releaseClientConnection(Connection connection) {
     connection.removeDisconnectHandler(onConnectionDisconnected);
 
     connection.close();
+    log.debug("Send queues of {}: {}", connection.getId(), connection.getChannelStatistics());
     router.removeConnection(connection);
-    assetManagerMap.remove(connection.getId());
+    var assetManager = assetManagerMap.remove(connection.getId());
+    if (assetManager != null) {
+      assetManager.flush();
+    }
 
     // Notify everyone else about the disconnection.
     var player = playerMap.remove(connection.getId().toUpperCase());
@@ -297,7 +306,29 @@ private void releaseClientConnection(Connection connection) {
 
   public void addAssetProducer(String connectionId, AssetProducer producer) {
     AssetTransferManager manager = assetManagerMap.get(connectionId);
+    if (manager == null) {
+      // The client disconnected while its request was being served
+      producer.close();
+      return;
+    }
     manager.addProducer(producer);
+    assetTransferScheduler.schedule(connectionId);
+  }
+
+  /**
+   * Gets the number of asset messages still waiting to be sent to a connection.
+   *
+   * @param connectionId the connection to check
+   * @return the number of queued messages on the image channel
+   */
+  private int pendingAssetChunks(String connectionId) {
+    var connection = router.getConnection(connectionId);
+    if (connection == null) {
+      return 0;
+    }
+    var statistics =
+        connection.getChannelStatistics().get(MapToolConstants.Channel.IMAGE.toString());
+    return statistics == null ? 0 : statistics.queueDepth();
   }
 
   public boolean isPlayerConnected(String playerId) {
@@ -343,14 +374,16 @@ public void stop() {
       connection.close();
     }
 
-    assetManagerMap.clear();
+    synchronized (assetManagerMap) {
+      assetManagerMap.values().forEach(AssetTransferManager::flush);
+      assetManagerMap.clear();
+    }
+    logCompressionStatistics();
 
     if (heartbeatThread != null) {
       heartbeatThread.shutdown();
     }
-    if (assetProducerThread != null) {
-      assetProducerThread.shutdown();
-    }
+    assetTransferScheduler.shutdown();
 
     if (announcer != null) {
       announcer.stop();
@@ -421,24 +454,22 @@ public void start() throws IOException {
     if (announcer != null) {
       announcer.start();
     }
-
-    assetProducerThread.start();
   }
 
   public void sendMessage(String id, Message message) {
     log.debug("{} sent to {}: {}", getName(), id, message.getMessageTypeCase());
-    router.sendMessage(id, message.toByteArray());
+    router.sendMessage(id, null, toCompressedMessage(message));
   }
 
   public void sendMessage(String id, Object channel, Message message) {
     log.debug(
         "{} sent to {}: {} ({})", getName(), id, message.getMessageTypeCase(), channel.toString());
-    router.sendMessage(id, channel, message.toByteArray());
+    router.sendMessage(id, channel, toCompressedMessage(message));
   }
 
   public void broadcastMessage(Message message) {
     log.debug("{} broadcast: {}", getName(), message.getMessageTypeCase());
-    router.broadcastMessage(message.toByteArray());
+    router.broadcastMessage(toCompressedMessage(message));
   }
 
   public void broadcastMessage(String[] exclude, Message message) {
@@ -447,7 +478,27 @@ public void broadcastMessage(String[] exclude, Message message) {
         getName(),
         message.getMessageTypeCase(),
         String.join(",", exclude));
-    router.broadcastMessage(exclude, message.toByteArray());
+    router.broadcastMessage(exclude, toCompressedMessage(message));
+  }
+
+  private static CompressedMessage toCompressedMessage(Message message) {
+    return CompressedMessage.of(message.getMessageTypeCase().name(), message.toByteArray());
+  }
+
+  private static void logCompressionStatistics() {
+    if (!log.isDebugEnabled()) {
+      return;
+    }
+    CompressionStatistics.getInstance()
+        .snapshot()
+        .forEach(
+            (type, counts) ->
+                log.debug(
+                    "Compression of {}: {} messages, {} bytes before, {} bytes after",
+                    type,
+                    counts.messages(),
+                    counts.uncompressedBytes(),
+                    counts.compressedBytes()));
   }
 
   private class HeartbeatThread extends Thread {
@@ -533,50 +584,4 @@ public void shutdown() {
       interrupt();
     }
   }
-
-  ////
-  // CLASSES
-  private class AssetProducerThread extends Thread {
-    private final AtomicBoolean stop = new AtomicBoolean(false);
-
-    public AssetProducerThread() {
-      setName("AssetProducerThread");
-    }
-
-    @Override
-    public void run() {
-      while (!stop.get()) {
-        Entry<String, AssetTransferManager> entryForException = null;
-        try {
-          boolean lookForMore = false;
-          for (Entry<String, AssetTransferManager> entry : assetManagerMap.entrySet()) {
-            entryForException = entry;
-            var chunk = entry.getValue().nextChunk(ASSET_CHUNK_SIZE);
-            if (chunk != null) {
-              lookForMore = true;
-              var msg = UpdateAssetTransferMsg.newBuilder().setChunk(chunk);
-              sendMessage(
-                  entry.getKey(),
-                  MapToolConstants.Channel.IMAGE,
-                  Message.newBuilder().setUpdateAssetTransferMsg(msg).build());
-            }
-          }
-          if (lookForMore) {
-            continue;
-          }
-          // Sleep for a bit
-          synchronized (this) {
-            Thread.sleep(500);
-          }
-        } catch (Exception e) {
-          log.warn("Couldn't retrieve AssetChunk for " + entryForException.getKey(), e);
-          // keep on going
-        }
-      }
-    }
-
-    public void shutdown() {
-      stop.set(true);
-    }
-  }
 }
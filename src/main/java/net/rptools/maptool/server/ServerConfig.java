@@ -25,6 +25,7 @@ public class ServerConfig {
   private final String hostName;
   private final boolean useEasyConnect;
   private final boolean useWebRTC;
+  private final boolean useVirtualThreads;
 
   public ServerConfig(
       String hostPlayerId,
@@ -35,6 +36,28 @@ public ServerConfig(
       String hostName,
       boolean useEasyConnect,
       boolean useWebRTC) {
+    this(
+        hostPlayerId,
+        gmPassword,
+        playerPassword,
+        port,
+        serverName,
+        hostName,
+        useEasyConnect,
+        useWebRTC,
+        false);
+  }
+
+  public ServerConfig(
+      String hostPlayerId,
+      String gmPassword,
+      String playerPassword,
+      int port,
+      String serverName,
+      String hostName,
+      boolean useEasyConnect,
+      boolean useWebRTC,
+      boolean useVirtualThreads) {
     this.hostPlayerId = hostPlayerId;
     this.gmPassword = gmPassword;
     this.playerPassword = playerPassword;
@@ -43,6 +66,7 @@ public ServerConfig(
     this.hostName = hostName;
     this.useEasyConnect = useEasyConnect;
     this.useWebRTC = useWebRTC;
+    this.useVirtualThreads = useVirtualThreads;
   }
 
   public String getHostPlayerId() {
@@ -80,4 +104,11 @@ public boolean getUseEasyConnect() {
   public boolean getUseWebRTC() {
     return useWebRTC;
   }
+
+  /**
+   * @return {@code true} if a socket server should run its connections on virtual threads.
+   */
+  public boolean getUseVirtualThreads() {
+    return useVirtualThreads;
+  }
 }
@@ -16,11 +16,15 @@
 
 import static net.rptools.maptool.server.proto.Message.MessageTypeCase.HEARTBEAT_MSG;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.awt.EventQueue;
 import java.awt.geom.Area;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import net.rptools.clientserver.simple.MessageHandler;
 import net.rptools.lib.MD5Key;
@@ -44,6 +48,7 @@
 import net.rptools.maptool.model.zones.ZoneRemoved;
 import net.rptools.maptool.server.proto.*;
 import net.rptools.maptool.transfer.AssetProducer;
+import net.rptools.maptool.util.PersistenceUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -60,6 +65,18 @@ public class ServerMessageHandler implements MessageHandler {
   private final MapToolServer server;
   private static final Logger log = LogManager.getLogger(ServerMessageHandler.class);
 
+  /** The number of asset requests served at once. */
+  private static final int ASSET_REQUEST_THREADS = 2;
+
+  /**
+   * Serves the assets clients ask for. An asset may first have to be read from the campaign file
+   * and written to the persistent cache, which shouldn't hold up the messages behind the request.
+   */
+  private static final ExecutorService assetRequestThreadPool =
+      Executors.newFixedThreadPool(
+          ASSET_REQUEST_THREADS,
+          new ThreadFactoryBuilder().setNameFormat("asset-request-%d").setDaemon(true).build());
+
   public ServerMessageHandler(MapToolServer server) {
     this.server = server;
   }
@@ -587,7 +604,8 @@ private void handle(String id, GetZoneMsg msg) {
   }
 
   private void handle(String id, GetAssetMsg msg) {
-    getAsset(id, new MD5Key(msg.getAssetId()));
+    var assetID = new MD5Key(msg.getAssetId());
+    assetRequestThreadPool.execute(() -> getAsset(id, assetID));
   }
 
   private void handle(ExposePcAreaMsg msg) {
@@ -760,12 +778,16 @@ private void getAsset(String id, MD5Key assetID) {
     if (assetID == null) {
       return;
     }
+    // Assets of a campaign that was just loaded may still be on their way into the asset manager
+    PersistenceUtil.waitForCampaignAsset(assetID);
     try {
+      // Assets read from the campaign file on demand may not be in the persistent cache yet
+      File assetFile = AssetManager.getAssetCacheFileAndWait(assetID);
       AssetProducer producer =
           new AssetProducer(
               assetID,
               AssetManager.getAssetInfo(assetID).getProperty(AssetManager.NAME),
-              AssetManager.getAssetCacheFile(assetID));
+              assetFile);
       var msg = StartAssetTransferMsg.newBuilder().setHeader(producer.getHeader().toDto());
       server.sendMessage(
           id,
@@ -0,0 +1,60 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.transfer;
+
+/**
+ * Picks asset chunk sizes to suit the link they are sent over.
+ *
+ * <p>The size doubles whenever every chunk produced so far has already been sent, and halves when
+ * chunks start piling up. Chunks are not produced at all while {@link #MAX_PENDING_CHUNKS} or more
+ * are still waiting, which keeps a slow client from pulling whole assets into memory.
+ */
+public class AdaptiveChunkSize {
+  public static final int MIN_CHUNK_SIZE = 5 * 1024;
+  public static final int MAX_CHUNK_SIZE = 64 * 1024;
+  public static final int MAX_PENDING_CHUNKS = 4;
+
+  private int size = MIN_CHUNK_SIZE;
+  private boolean backlogged = false;
+
+  /**
+   * Updates the chunk size given how many chunks are still waiting to be sent.
+   *
+   * @param pendingChunks the number of chunks produced but not yet sent
+   * @return true if another chunk should be produced now, false if the link needs to catch up
+   */
+  public synchronized boolean update(int pendingChunks) {
+    if (pendingChunks >= MAX_PENDING_CHUNKS) {
+      if (!backlogged) {
+        backlogged = true;
+        size = Math.max(size / 2, MIN_CHUNK_SIZE);
+      }
+      return false;
+    }
+
+    backlogged = false;
+    if (pendingChunks == 0) {
+      size = Math.min(size * 2, MAX_CHUNK_SIZE);
+    }
+    return true;
+  }
+
+  /**
+   * @return the size of the next chunk to produce
+   */
+  public synchronized int get() {
+    return size;
+  }
+}
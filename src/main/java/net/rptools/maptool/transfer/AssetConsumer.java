@@ -14,21 +14,28 @@
  */
 package net.rptools.maptool.transfer;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import net.rptools.lib.MD5Key;
 import net.rptools.maptool.server.proto.AssetChunkDto;
 
 /**
  * Receiving end of AssetProducer
  *
+ * <p>The destination file is opened on the first call to {@link #update(AssetChunkDto)} and stays
+ * open until the transfer is complete or {@link #close()} is called.
+ *
  * @author trevor
  */
-public class AssetConsumer {
+public class AssetConsumer implements Closeable {
   private File destinationDir;
   private AssetHeader header;
   private long currentPosition;
+  private FileChannel channel;
 
   /**
    * Create a new asset consumer, it will prepare a place to receive the incoming data chunks. When
@@ -75,12 +82,33 @@ public String getName() {
    *     exist but cannot be created, or cannot be opened for any other reason
    */
   public void update(AssetChunkDto chunk) throws IOException {
-    File file = getFilename();
-    byte[] data = chunk.getData().toByteArray();
-    try (FileOutputStream out = new FileOutputStream(file, true)) {
-      out.write(data);
+    if (channel == null) {
+      channel =
+          FileChannel.open(
+              getFilename().toPath(),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND);
+    }
+
+    // Write straight from the chunk's backing buffers rather than copying them out first.
+    for (ByteBuffer buffer : chunk.getData().asReadOnlyByteBufferList()) {
+      while (buffer.hasRemaining()) {
+        currentPosition += channel.write(buffer);
+      }
+    }
+    if (isComplete()) {
+      close();
+    }
+  }
+
+  /** Releases the destination file. Safe to call more than once. */
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
     }
-    currentPosition += data.length;
   }
 
   /**
@@ -15,8 +15,9 @@
 package net.rptools.maptool.transfer;
 
 import com.google.protobuf.ByteString;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import net.rptools.lib.MD5Key;
 import net.rptools.maptool.server.proto.AssetChunkDto;
@@ -25,14 +26,19 @@
  * Creates data chunks for transferring binary data. Assumes large datasets (otherwise it would be a
  * direct transfer) so expects the data to be streamed from a file
  *
+ * <p>The file is opened on the first call to {@link #nextChunk(int)}, shared with any other
+ * producer of the same asset, and released once the last chunk has been produced or {@link
+ * #close()} is called.
+ *
  * @author trevor
  */
-public class AssetProducer {
+public class AssetProducer implements Closeable {
   private MD5Key id;
   private String name;
   private File assetFile;
   private long length;
   private long currentPosition = 0;
+  private SharedAssetFiles.Handle data;
 
   public AssetProducer(MD5Key id, String name, File assetFile) {
     if (!assetFile.exists() || assetFile.isDirectory()) {
@@ -62,16 +68,24 @@ public AssetChunkDto nextChunk(int size) throws IOException {
     if (currentPosition + size > length) {
       size = (int) (length - currentPosition);
     }
-    byte[] data = new byte[size];
-    try (FileInputStream in = new FileInputStream(assetFile)) {
-      in.skip(currentPosition);
-      in.read(data, 0, size);
+    if (data == null) {
+      data = SharedAssetFiles.acquire(id, assetFile);
+    }
+
+    ByteString chunkData;
+    try {
+      chunkData = data.read(currentPosition, size);
+    } catch (EOFException e) {
+      close();
+      throw new EOFException(assetFile + " is shorter than expected");
     }
+
+    var chunk = AssetChunkDto.newBuilder().setId(id.toString()).setData(chunkData).build();
     currentPosition += size;
-    return AssetChunkDto.newBuilder()
-        .setId(id.toString())
-        .setData(ByteString.copyFrom(data))
-        .build();
+    if (isComplete()) {
+      close();
+    }
+    return chunk;
   }
 
   /**
@@ -82,4 +96,13 @@ public AssetChunkDto nextChunk(int size) throws IOException {
   public boolean isComplete() {
     return currentPosition >= length;
   }
+
+  /** Releases the asset file. Safe to call more than once. */
+  @Override
+  public void close() {
+    if (data != null) {
+      data.close();
+      data = null;
+    }
+  }
 }
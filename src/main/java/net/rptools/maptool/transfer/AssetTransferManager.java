@@ -14,6 +14,7 @@
  */
 package net.rptools.maptool.transfer;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -23,18 +24,50 @@
 import java.util.concurrent.CopyOnWriteArrayList;
 import net.rptools.lib.MD5Key;
 import net.rptools.maptool.server.proto.AssetChunkDto;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 public class AssetTransferManager {
+  private static final Logger log = LogManager.getLogger(AssetTransferManager.class);
+
+  /**
+   * How many producers are interleaved at a time. Producers hold their asset's data while active,
+   * so this bounds memory use when a client requests many assets at once.
+   */
+  public static final int MAX_ACTIVE_PRODUCERS = 4;
+
   private final Map<MD5Key, AssetConsumer> consumerMap = new HashMap<>();
   private final List<ConsumerListener> consumerListenerList = new CopyOnWriteArrayList<>();
   private final List<AssetProducer> producerList = new LinkedList<>();
+  private final AdaptiveChunkSize chunkSize = new AdaptiveChunkSize();
 
   /** Clear out all existing consumers and producers */
   public synchronized void flush() {
+    for (AssetConsumer consumer : consumerMap.values()) {
+      closeQuietly(consumer);
+    }
+    for (AssetProducer producer : producerList) {
+      closeQuietly(producer);
+    }
     consumerMap.clear();
     producerList.clear();
   }
 
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      log.warn("Unable to close asset transfer file", e);
+    }
+  }
+
+  /**
+   * @return the chunk size to use when producing chunks for this manager's connection
+   */
+  public AdaptiveChunkSize getChunkSize() {
+    return chunkSize;
+  }
+
   /**
    * Add a new producer to the chunk queue. Assumes that the header has already been transferred to
    * the consumer. Producer chunks can then be retrieved via nextChunk()
@@ -45,6 +78,13 @@ public synchronized void addProducer(AssetProducer producer) {
     producerList.add(producer);
   }
 
+  /**
+   * @return true if any producer still has chunks to send
+   */
+  public synchronized boolean hasProducers() {
+    return !producerList.isEmpty();
+  }
+
   /**
    * Get the next chunk from the available producers
    *
@@ -57,9 +97,16 @@ public synchronized AssetChunkDto nextChunk(int size) throws IOException {
       return null;
     }
     AssetProducer producer = producerList.remove(0);
-    AssetChunkDto chunk = producer.nextChunk(size);
+    AssetChunkDto chunk;
+    try {
+      chunk = producer.nextChunk(size);
+    } catch (IOException e) {
+      // The producer has already been dropped from the list, so release its file.
+      closeQuietly(producer);
+      throw e;
+    }
     if (!producer.isComplete()) {
-      producerList.add(producer);
+      producerList.add(Math.min(MAX_ACTIVE_PRODUCERS - 1, producerList.size()), producer);
     }
     return chunk;
   }
@@ -0,0 +1,64 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.transfer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads asset transfers out so that, between them, they stay under a fixed number of bytes per
+ * second.
+ *
+ * <p>Each caller reserves the next free slot for its bytes and sleeps until that slot comes
+ * around, so concurrent transfers share the bandwidth in the order they asked for it.
+ */
+public class BandwidthLimiter {
+  private final long bytesPerSecond;
+  private long nextFreeNanos = System.nanoTime();
+
+  /**
+   * @param bytesPerSecond the limit, or zero or less for no limit
+   */
+  public BandwidthLimiter(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  public boolean isLimited() {
+    return bytesPerSecond > 0;
+  }
+
+  /**
+   * Waits until {@code bytes} more bytes can be sent without exceeding the limit.
+   *
+   * @param bytes the number of bytes about to be sent
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void acquire(int bytes) throws InterruptedException {
+    if (!isLimited()) {
+      return;
+    }
+
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      // Don't let an idle period build up credit, or the next burst would blow through the limit.
+      long start = Math.max(nextFreeNanos, now);
+      nextFreeNanos = start + TimeUnit.SECONDS.toNanos(bytes) / bytesPerSecond;
+      waitNanos = start - now;
+    }
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+}
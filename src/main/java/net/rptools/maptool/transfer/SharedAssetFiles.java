@@ -0,0 +1,247 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.transfer;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import net.rptools.lib.MD5Key;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The open files of assets being transferred, shared between all producers of the same asset.
+ *
+ * <p>When several clients download the same asset at once, the file is opened once and every
+ * producer reads its chunks through the same channel with positional reads. A chunk read for one
+ * producer is kept until the other producers of the asset have read it too, so the disk is read
+ * once however many clients ask for the asset. The channel is closed when the last producer
+ * releases it.
+ */
+final class SharedAssetFiles {
+  private static final Logger log = LogManager.getLogger(SharedAssetFiles.class);
+
+  /**
+   * The most chunks of one asset kept for producers that haven't read them yet. Producers that
+   * fall behind, or read with a different chunk size, read from the disk again instead.
+   */
+  static final int MAX_SHARED_CHUNKS = 32;
+
+  private record ChunkKey(long position, int size) {}
+
+  private static final class SharedChunk {
+    private final CompletableFuture<ByteString> data = new CompletableFuture<>();
+    private int readersLeft;
+
+    private SharedChunk(int readersLeft) {
+      this.readersLeft = readersLeft;
+    }
+  }
+
+  private static final class Entry {
+    private final MD5Key id;
+    private final FileChannel channel;
+    private int references = 0;
+
+    /** The open handles, guarded by the entry. */
+    private final List<Handle> handles = new ArrayList<>();
+
+    /** Chunks that other producers have still to read, oldest first. Guarded by the entry. */
+    private final LinkedHashMap<ChunkKey, SharedChunk> chunks = new LinkedHashMap<>();
+
+    private Entry(MD5Key id, FileChannel channel) {
+      this.id = id;
+      this.channel = channel;
+    }
+
+    private ByteString read(Handle reader, long position, int size) throws IOException {
+      var key = new ChunkKey(position, size);
+      SharedChunk chunk;
+      boolean readHere;
+      synchronized (this) {
+        chunk = chunks.get(key);
+        readHere = chunk == null;
+        if (readHere) {
+          // Only the producers that haven't got this far yet will want the chunk
+          int readersLeft = 0;
+          for (Handle handle : handles) {
+            if (handle != reader && handle.nextPosition <= position) {
+              readersLeft++;
+            }
+          }
+          chunk = new SharedChunk(readersLeft);
+          if (chunk.readersLeft > 0) {
+            chunks.put(key, chunk);
+            if (chunks.size() > MAX_SHARED_CHUNKS) {
+              Iterator<SharedChunk> oldest = chunks.values().iterator();
+              oldest.next();
+              oldest.remove();
+            }
+          }
+        } else if (--chunk.readersLeft == 0) {
+          chunks.remove(key);
+        }
+        reader.nextPosition = position + size;
+      }
+
+      if (readHere) {
+        try {
+          chunk.data.complete(readFromDisk(position, size));
+        } catch (IOException e) {
+          chunk.data.completeExceptionally(e);
+          synchronized (this) {
+            chunks.remove(key, chunk);
+          }
+          throw e;
+        }
+      }
+      try {
+        return chunk.data.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof IOException ioe) {
+          throw ioe;
+        }
+        throw e;
+      }
+    }
+
+    /**
+     * Positional reads do not move the channel's position, so any number of producers can read
+     * through the same channel at once.
+     */
+    private ByteString readFromDisk(long position, int size) throws IOException {
+      ByteBuffer data = ByteBuffer.allocate(size);
+      while (data.hasRemaining()) {
+        if (channel.read(data, position + data.position()) < 0) {
+          throw new EOFException("Asset " + id + " is shorter than expected");
+        }
+      }
+      data.flip();
+      // The buffer is never touched again, so it is safe to hand it over without copying.
+      return UnsafeByteOperations.unsafeWrap(data);
+    }
+  }
+
+  /** A reference to a shared asset file. Must be closed when no longer needed. */
+  static final class Handle implements Closeable {
+    private final Entry entry;
+    private boolean closed = false;
+
+    /** Where the next chunk read through this handle starts. Guarded by the entry. */
+    private long nextPosition = 0;
+
+    private Handle(Entry entry) {
+      this.entry = entry;
+    }
+
+    /**
+     * Reads part of the asset, from the disk or from a chunk another producer has just read.
+     *
+     * @param position the offset of the first byte
+     * @param size the number of bytes
+     * @return part of the asset
+     * @throws EOFException if the file ends before {@code size} bytes were read
+     * @throws IOException if the file cannot be read
+     */
+    ByteString read(long position, int size) throws IOException {
+      return entry.read(this, position, size);
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        release(this);
+      }
+    }
+  }
+
+  private static final Map<MD5Key, Entry> entries = new HashMap<>();
+
+  private SharedAssetFiles() {}
+
+  /**
+   * Gets a handle to the file of an asset, opening it if no one else has.
+   *
+   * @param id the asset
+   * @param file the file holding the asset's data
+   * @return the handle, which must be closed when done
+   * @throws IOException if the file cannot be opened
+   */
+  static synchronized Handle acquire(MD5Key id, File file) throws IOException {
+    var entry = entries.get(id);
+    if (entry == null) {
+      entry = new Entry(id, FileChannel.open(file.toPath(), StandardOpenOption.READ));
+      entries.put(id, entry);
+    }
+    entry.references++;
+    var handle = new Handle(entry);
+    synchronized (entry) {
+      entry.handles.add(handle);
+    }
+    return handle;
+  }
+
+  private static synchronized void release(Handle handle) {
+    var entry = handle.entry;
+    synchronized (entry) {
+      entry.handles.remove(handle);
+    }
+    if (--entry.references == 0) {
+      entries.remove(entry.id);
+      try {
+        entry.channel.close();
+      } catch (IOException e) {
+        log.warn("Could not close the file of asset " + entry.id, e);
+      }
+    }
+  }
+
+  /**
+   * @return the number of open handles for an asset, for tests
+   */
+  static synchronized int referenceCount(MD5Key id) {
+    var entry = entries.get(id);
+    return entry == null ? 0 : entry.references;
+  }
+
+  /**
+   * @return the number of chunks of an asset kept for producers that have still to read them, for
+   *     tests
+   */
+  static synchronized int sharedChunkCount(MD5Key id) {
+    var entry = entries.get(id);
+    if (entry == null) {
+      return 0;
+    }
+    synchronized (entry) {
+      return entry.chunks.size();
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import net.rptools.lib.MD5Key;
+import org.apache.commons.collections4.map.AbstractReferenceMap;
+import org.apache.commons.collections4.map.ReferenceMap;
+
+/**
+ * A least-recently-used cache of decoded images, bounded by the number of bytes the images take up
+ * rather than by the number of images.
+ *
+ * <p>Images can be pinned, e.g. those used by the current map. Pinned images are never evicted,
+ * even if they alone exceed the budget, since evicting them would only cause them to be decoded
+ * again on the next repaint.
+ *
+ * <p>If enabled, evicted images are kept behind soft references so that they can be recovered
+ * without decoding as long as the garbage collector has not needed the memory.
+ */
+public final class ImageCache {
+  /**
+   * A snapshot of the cache's counters.
+   *
+   * @param hits The number of lookups that found an image, including those recovered from soft
+   *     references.
+   * @param softHits The number of hits that were recovered from soft references.
+   * @param misses The number of lookups that did not find an image.
+   * @param evictions The number of images evicted to stay within the budget.
+   * @param residentBytes The estimated size of all images currently held.
+   * @param budgetBytes The size the cache tries to stay within.
+   */
+  public record Statistics(
+      long hits,
+      long softHits,
+      long misses,
+      long evictions,
+      long residentBytes,
+      long budgetBytes) {}
+
+  private record Entry(BufferedImage image, long weight) {}
+
+  /** Ordered from least to most recently used. */
+  private final LinkedHashMap<MD5Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Map<MD5Key, BufferedImage> softEntries =
+      new ReferenceMap<>(
+          AbstractReferenceMap.ReferenceStrength.HARD, AbstractReferenceMap.ReferenceStrength.SOFT);
+
+  private final Set<MD5Key> pinned = new HashSet<>();
+  private long budgetBytes;
+  private boolean useSoftReferences;
+  private long residentBytes = 0;
+  private long hits = 0;
+  private long softHits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  /**
+   * @param budgetBytes the total size of images to keep, which pinned images may exceed
+   * @param useSoftReferences whether to keep evicted images behind soft references
+   */
+  public ImageCache(long budgetBytes, boolean useSoftReferences) {
+    this.budgetBytes = budgetBytes;
+    this.useSoftReferences = useSoftReferences;
+  }
+
+  /**
+   * Estimates the heap used by an image's pixels.
+   *
+   * @param image the image
+   * @return the estimated size in bytes
+   */
+  public static long weightOf(BufferedImage image) {
+    long bytesPerPixel = Math.max(1, (image.getColorModel().getPixelSize() + 7) / 8);
+    return (long) image.getWidth() * image.getHeight() * bytesPerPixel;
+  }
+
+  /**
+   * Looks up an image, marking it as most recently used.
+   *
+   * @param key the asset id of the image
+   * @return the image, or {@code null} if it is not cached
+   */
+  public synchronized @Nullable BufferedImage get(MD5Key key) {
+    var entry = entries.get(key);
+    if (entry != null) {
+      ++hits;
+      return entry.image();
+    }
+
+    var image = useSoftReferences ? softEntries.remove(key) : null;
+    if (image != null) {
+      ++hits;
+      ++softHits;
+      put(key, image, weightOf(image));
+      return image;
+    }
+
+    ++misses;
+    return null;
+  }
+
+  /**
+   * Checks for an image without counting a hit or miss, or changing its recency.
+   *
+   * @param key the asset id of the image
+   * @return whether the image is held by the cache, not counting soft references
+   */
+  public synchronized boolean contains(MD5Key key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * Adds an image, evicting the least recently used images if this takes the cache over budget.
+   *
+   * @param key the asset id of the image
+   * @param image the image
+   * @param weight the size of the image in bytes, or 0 for images shared with other keys
+   */
+  public synchronized void put(MD5Key key, BufferedImage image, long weight) {
+    var previous = entries.put(key, new Entry(image, weight));
+    if (previous != null) {
+      residentBytes -= previous.weight();
+    }
+    residentBytes += weight;
+    softEntries.remove(key);
+    trim();
+  }
+
+  /**
+   * Removes an image, including any soft reference to it.
+   *
+   * @param key the asset id of the image
+   */
+  public synchronized void remove(MD5Key key) {
+    var entry = entries.remove(key);
+    if (entry != null) {
+      residentBytes -= entry.weight();
+    }
+    softEntries.remove(key);
+  }
+
+  /**
+   * Removes every image. If soft references are enabled the images remain recoverable until the
+   * garbage collector needs the memory. Pinned keys are kept pinned.
+   */
+  public synchronized void clear() {
+    if (useSoftReferences) {
+      entries.forEach((key, entry) -> softEntries.put(key, entry.image()));
+    }
+    entries.clear();
+    residentBytes = 0;
+  }
+
+  /**
+   * Removes every image except those given, as if they had been evicted.
+   *
+   * @param keys the asset ids of the images to keep
+   */
+  public synchronized void retain(Collection<MD5Key> keys) {
+    var iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      var next = iterator.next();
+      if (!keys.contains(next.getKey())) {
+        iterator.remove();
+        residentBytes -= next.getValue().weight();
+        if (useSoftReferences) {
+          softEntries.put(next.getKey(), next.getValue().image());
+        }
+      }
+    }
+  }
+
+  /**
+   * Replaces the set of pinned images and evicts anything left over budget.
+   *
+   * @param keys the asset ids of the images to pin
+   */
+  public synchronized void pin(Collection<MD5Key> keys) {
+    pinned.clear();
+    pinned.addAll(keys);
+    trim();
+  }
+
+  /**
+   * Changes the budget, evicting images if it has shrunk.
+   *
+   * @param budgetBytes the total size of images to keep, which pinned images may exceed
+   */
+  public synchronized void setBudget(long budgetBytes) {
+    this.budgetBytes = budgetBytes;
+    trim();
+  }
+
+  /**
+   * @param useSoftReferences whether to keep evicted images behind soft references
+   */
+  public synchronized void setUseSoftReferences(boolean useSoftReferences) {
+    this.useSoftReferences = useSoftReferences;
+    if (!useSoftReferences) {
+      softEntries.clear();
+    }
+  }
+
+  /**
+   * @return a snapshot of the cache's counters
+   */
+  public synchronized Statistics getStatistics() {
+    return new Statistics(hits, softHits, misses, evictions, residentBytes, budgetBytes);
+  }
+
+  private void trim() {
+    if (residentBytes <= budgetBytes) {
+      return;
+    }
+
+    long unpinnedBytes = 0;
+    for (var entry : entries.entrySet()) {
+      if (!pinned.contains(entry.getKey())) {
+        unpinnedBytes += entry.getValue().weight();
+      }
+    }
+
+    var iterator = entries.entrySet().iterator();
+    while (residentBytes > budgetBytes && unpinnedBytes > 0 && iterator.hasNext()) {
+      var next = iterator.next();
+      var entry = next.getValue();
+      if (entry.weight() == 0 || pinned.contains(next.getKey())) {
+        continue;
+      }
+
+      iterator.remove();
+      residentBytes -= entry.weight();
+      unpinnedBytes -= entry.weight();
+      ++evictions;
+      if (useSoftReferences) {
+        softEntries.put(next.getKey(), entry.image());
+      }
+    }
+  }
+}
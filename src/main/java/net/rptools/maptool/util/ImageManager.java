@@ -24,13 +24,12 @@
 import java.util.concurrent.Executors;
 import net.rptools.lib.MD5Key;
 import net.rptools.lib.image.ImageUtil;
+import net.rptools.maptool.client.AppPreferences;
 import net.rptools.maptool.client.ui.theme.Images;
 import net.rptools.maptool.client.ui.theme.RessourceManager;
 import net.rptools.maptool.model.Asset;
 import net.rptools.maptool.model.AssetAvailableListener;
 import net.rptools.maptool.model.AssetManager;
-import org.apache.commons.collections4.map.AbstractReferenceMap;
-import org.apache.commons.collections4.map.ReferenceMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -47,13 +46,14 @@
 public class ImageManager {
   private static final Logger log = LogManager.getLogger(ImageManager.class);
 
-  /** Cache of images loaded for assets. */
-  private static final Map<MD5Key, BufferedImage> imageMap = new HashMap<MD5Key, BufferedImage>();
-
-  /** Additional Soft-reference Cache of images that allows best . */
-  private static final Map<MD5Key, BufferedImage> backupImageMap =
-      new ReferenceMap(
-          AbstractReferenceMap.ReferenceStrength.HARD, AbstractReferenceMap.ReferenceStrength.SOFT);
+  /**
+   * Cache of images loaded for assets, bounded by {@link AppPreferences#imageCacheSize}. Images
+   * for the current map are pinned by {@link #pinImages(Set)}.
+   */
+  private static final ImageCache imageCache =
+      new ImageCache(
+          imageCacheBudget(AppPreferences.imageCacheSize.get()),
+          AppPreferences.imageCacheSoftReferences.get());
 
   /**
    * The unknown image, a "?" is used for all situations where the image will eventually appear e.g.
@@ -82,6 +82,39 @@ public class ImageManager {
   static {
     TRANSFERING_IMAGE = RessourceManager.getImage(Images.UNKNOWN);
     BROKEN_IMAGE = RessourceManager.getImage(Images.BROKEN);
+
+    AppPreferences.imageCacheSize.onChange(size -> imageCache.setBudget(imageCacheBudget(size)));
+    AppPreferences.imageCacheSoftReferences.onChange(imageCache::setUseSoftReferences);
+  }
+
+  /**
+   * Converts the image cache size preference into a budget.
+   *
+   * @param sizeInMegabytes the preferred size, or 0 to use a quarter of the maximum heap
+   * @return the budget in bytes
+   */
+  private static long imageCacheBudget(int sizeInMegabytes) {
+    if (sizeInMegabytes <= 0) {
+      return Runtime.getRuntime().maxMemory() / 4;
+    }
+    return sizeInMegabytes * 1024L * 1024L;
+  }
+
+  /**
+   * @return the hit, miss and eviction counts and resident size of the image cache
+   */
+  public static ImageCache.Statistics getCacheStatistics() {
+    return imageCache.getStatistics();
+  }
+
+  /**
+   * Pin the images for a set of assets, usually those of the current map, so that they are never
+   * evicted from the cache. Any previously pinned images become eligible for eviction.
+   *
+   * @param assetIds the assets whose images are to be kept
+   */
+  public static void pinImages(Set<MD5Key> assetIds) {
+    imageCache.pin(assetIds);
   }
 
   /**
@@ -90,7 +123,7 @@ public class ImageManager {
    * loading.
    */
   public static void flush() {
-    imageMap.clear();
+    imageCache.clear();
   }
 
   /**
@@ -111,11 +144,7 @@ public static BufferedImage getImageAndWait(MD5Key assetId) {
    */
   public static void flush(Set<MD5Key> exceptionSet) {
     synchronized (imageLoaderMutex) {
-      for (MD5Key id : new HashSet<MD5Key>(imageMap.keySet())) {
-        if (!exceptionSet.contains(id)) {
-          imageMap.remove(id);
-        }
-      }
+      imageCache.retain(exceptionSet);
     }
   }
 
@@ -182,21 +211,12 @@ public static BufferedImage getImage(
       return BROKEN_IMAGE;
     }
     synchronized (imageLoaderMutex) {
-      BufferedImage image = imageMap.get(assetId);
-      if (image != null && image != TRANSFERING_IMAGE) {
-        return image;
-      }
-
-      // check if the soft reference still resolves image
-      image = backupImageMap.get(assetId);
+      // This also recovers the image from a soft reference if it was evicted
+      BufferedImage image = imageCache.get(assetId);
       if (image != null) {
-        imageMap.put(assetId, image);
         return image;
       }
 
-      // Make note that we're currently processing it
-      imageMap.put(assetId, TRANSFERING_IMAGE);
-
       // Make sure we are informed when it's done loading
       addObservers(assetId, observers);
 
@@ -341,7 +361,7 @@ public static void flushImage(Asset asset) {
    */
   public static void flushImage(MD5Key assetId) {
     // LATER: investigate how this effects images that are already in progress
-    imageMap.remove(assetId);
+    imageCache.remove(assetId);
   }
 
   /**
@@ -383,9 +403,9 @@ public BackgroundImageLoader(Asset asset, Map<String, Object> hints) {
     /** Load the asset raw image data and notify observers that the image is loaded. */
     public void run() {
       log.debug("Loading asset: " + asset.getMD5Key());
-      BufferedImage image = imageMap.get(asset.getMD5Key());
+      BufferedImage image;
 
-      if (image != null && image != TRANSFERING_IMAGE) {
+      if (imageCache.contains(asset.getMD5Key())) {
         // We've somehow already loaded this image
         log.debug("Image wasn't in transit: " + asset.getMD5Key());
         return;
@@ -426,9 +446,9 @@ public void run() {
       }
 
       synchronized (imageLoaderMutex) {
-        // Replace placeholder with actual image
-        imageMap.put(asset.getMD5Key(), image);
-        backupImageMap.put(asset.getMD5Key(), image);
+        // The broken image is shared, so it costs nothing to keep
+        imageCache.put(
+            asset.getMD5Key(), image, image == BROKEN_IMAGE ? 0 : ImageCache.weightOf(image));
         notifyObservers(asset, image);
       }
     }
@@ -44,6 +44,8 @@
 import net.rptools.maptool.client.AppUtil;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.swing.MemoryStatusBar;
+import net.rptools.maptool.client.ui.zone.VisionCache;
+import net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer;
 import net.sbbi.upnp.devices.UPNPRootDevice;
 import net.sbbi.upnp.impls.InternetGatewayDevice;
 import net.sbbi.upnp.messages.UPNPResponseException;
@@ -140,9 +142,44 @@ public JsonObject getSysInfoJSON() {
     // p.getProperty("java.library.path")));
     info.add("os", os);
 
+    // caches
+    JsonObject caches = new JsonObject();
+    ImageCache.Statistics images = ImageManager.getCacheStatistics();
+    JsonObject imageCache = new JsonObject();
+    imageCache.addProperty("hits", images.hits());
+    imageCache.addProperty("soft hits", images.softHits());
+    imageCache.addProperty("misses", images.misses());
+    imageCache.addProperty("evictions", images.evictions());
+    imageCache.addProperty("resident bytes", images.residentBytes());
+    imageCache.addProperty("budget bytes", images.budgetBytes());
+    caches.add("images", imageCache);
+    VisionCache.Statistics vision = getVisionCacheStatistics();
+    if (vision != null) {
+      JsonObject visionCache = new JsonObject();
+      visionCache.addProperty("hits", vision.hits());
+      visionCache.addProperty("misses", vision.misses());
+      visionCache.addProperty("hit rate", vision.hitRate());
+      visionCache.addProperty("evictions", vision.evictions());
+      visionCache.addProperty("resident bytes", vision.residentBytes());
+      visionCache.addProperty("budget bytes", vision.budgetBytes());
+      caches.add("vision", visionCache);
+    }
+    info.add("caches", caches);
+
     return info;
   }
 
+  /**
+   * @return the vision cache statistics of the current map, or null if there is no map
+   */
+  private static VisionCache.Statistics getVisionCacheStatistics() {
+    if (MapTool.getFrame() == null) {
+      return null;
+    }
+    ZoneRenderer renderer = MapTool.getFrame().getCurrentZoneRenderer();
+    return renderer == null ? null : renderer.getZoneView().getVisionCacheStatistics();
+  }
+
   private void appendInfo(String s) {
     rows.add(s + "\n");
   }
@@ -282,6 +319,50 @@ private void getDisplayInfo() {
     }
   }
 
+  private void getCacheInfo() {
+    appendInfo("\n==== Cache Information ====");
+    ImageCache.Statistics images = ImageManager.getCacheStatistics();
+    long imageLookups = images.hits() + images.misses();
+    appendInfo(
+        "Image Cache....: "
+            + images.hits()
+            + " hits ("
+            + images.softHits()
+            + " soft), "
+            + images.misses()
+            + " misses, "
+            + format.format(imageLookups == 0 ? 0 : 100.0 * images.hits() / imageLookups)
+            + "% hit rate");
+    appendInfo(
+        "Image Memory...: "
+            + FileUtils.byteCountToDisplaySize(images.residentBytes())
+            + " of "
+            + FileUtils.byteCountToDisplaySize(images.budgetBytes())
+            + ", "
+            + images.evictions()
+            + " evictions");
+
+    VisionCache.Statistics vision = getVisionCacheStatistics();
+    if (vision != null) {
+      appendInfo(
+          "Vision Cache...: "
+              + vision.hits()
+              + " hits, "
+              + vision.misses()
+              + " misses, "
+              + format.format(100.0 * vision.hitRate())
+              + "% hit rate");
+      appendInfo(
+          "Vision Memory..: "
+              + FileUtils.byteCountToDisplaySize(vision.residentBytes())
+              + " of "
+              + FileUtils.byteCountToDisplaySize(vision.budgetBytes())
+              + ", "
+              + vision.evictions()
+              + " evictions");
+    }
+  }
+
   private void getIGDs() {
     int discoveryTimeout = 5000;
     InternetGatewayDevice[] IGDs = null;
@@ -328,6 +409,7 @@ public List<String> getInfo() {
     getLocaleInfo();
     getEncodingInfo();
     getDisplayInfo();
+    getCacheInfo();
     getIGDs();
     return rows;
   }
@@ -14,27 +14,52 @@
  */
 package net.rptools.maptool.util;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.util.JsonFormat;
 import com.thoughtworks.xstream.converters.ConversionException;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import javax.annotation.Nullable;
 import javax.imageio.ImageIO;
 import net.rptools.lib.CodeTimer;
 import net.rptools.lib.FileUtil;
@@ -74,6 +99,10 @@
 import net.rptools.maptool.model.transform.campaign.LabelFontAndBGTransform;
 import net.rptools.maptool.model.transform.campaign.PCVisionTransform;
 import net.rptools.maptool.model.transform.campaign.TokenPropertyMapTransform;
+import net.rptools.maptool.server.proto.CampaignDto;
+import net.rptools.maptool.server.proto.CampaignFileHeaderDto;
+import net.rptools.maptool.server.proto.CampaignViewDto;
+import net.rptools.maptool.server.proto.ZoneDto;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
@@ -124,6 +153,12 @@ public class PersistenceUtil {
   /** Represents the file path of the game data content file within a persisted campaign file. */
   private static final String GAME_DATA_FILE = GAME_DATA_DIR + "game-data.json";
 
+  /**
+   * Represents the file path of the campaign within a persisted campaign file when it is stored as
+   * protobuf rather than in the XML content file.
+   */
+  private static final String CAMPAIGN_DTO_FILE = "campaign.pb";
+
   /**
    * The version number of the campaign.
    *
@@ -142,8 +177,9 @@ public class PersistenceUtil {
    *     libraries will be removed.
    * @since 1.15.0 Labels now have background color and font, will default old lables to a similar
    *     background color to what they had before.
+   * @since 1.16.0 The campaign is stored as protobuf in {@code campaign.pb} unless saved as XML.
    */
-  private static final String CAMPAIGN_VERSION = "1.15.0";
+  private static final String CAMPAIGN_VERSION = "1.16.0";
 
   /**
    * Manager of the versioning of campaign models.
@@ -166,6 +202,40 @@ public class PersistenceUtil {
    */
   private static final ModelVersionManager tokenVersionManager = new ModelVersionManager();
 
+  /** The number of assets read from a packed file at once. */
+  private static final int ASSET_READER_THREADS =
+      Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+
+  /**
+   * Reads assets out of packed files, each worker through its own reader. The workers are daemons
+   * so that assets still loading in the background don't keep MapTool from exiting.
+   */
+  // Package level for testing
+  static final ExecutorService assetReaderThreadPool =
+      Executors.newFixedThreadPool(
+          ASSET_READER_THREADS,
+          new ThreadFactoryBuilder()
+              .setNameFormat("campaign-asset-reader-%d")
+              .setDaemon(true)
+              .build());
+
+  /** The assets of the last campaign loaded that may still be loading in the background. */
+  // Package level for testing
+  static volatile CompletableFuture<Void> pendingCampaignAssets =
+      CompletableFuture.completedFuture(null);
+
+  /**
+   * The paths of the asset data in the last campaign loaded, so that assets deferred by {@link
+   * #deferAssets(Collection, Set, PackedFile)} can be carried over to the next save unread.
+   */
+  private static final Map<MD5Key, String> campaignAssetDataPaths = new ConcurrentHashMap<>();
+
+  /**
+   * Write locked while a save overwrites a campaign file, so that the assets deferred by {@link
+   * #deferAssets(Collection, Set, PackedFile)} aren't read from it half-written.
+   */
+  private static final ReadWriteLock campaignFileLock = new ReentrantReadWriteLock();
+
   static {
     PackedFile.init(AppUtil.getAppHome("tmp")); // $NON-NLS-1$
 
@@ -361,6 +431,62 @@ private static String fixupZoneName(String n) {
     return n;
   }
 
+  /**
+   * A consistent copy of a campaign and the current view, so that the campaign can be saved on a
+   * background thread while play continues.
+   *
+   * @param campaign The campaign, as an immutable protobuf message.
+   * @param assetIds The assets used by the campaign.
+   * @param currentZoneId The id of the zone being viewed, or {@code null} if there is none.
+   * @param currentView The scale of the zone being viewed, or {@code null} if there is none.
+   */
+  public record CampaignSnapshot(
+      CampaignDto campaign,
+      Set<MD5Key> assetIds,
+      @Nullable GUID currentZoneId,
+      @Nullable Scale currentView) {}
+
+  /**
+   * The units of work reported to the progress listener of {@link #saveCampaign(CampaignSnapshot,
+   * File, IntConsumer)}.
+   */
+  public static final int CAMPAIGN_SAVE_STEPS = 5;
+
+  /**
+   * Takes a snapshot of a Campaign to be saved by {@link #saveCampaign(CampaignSnapshot, File,
+   * IntConsumer)}. This must be called on the Event Dispatch Thread, so that the campaign does not
+   * change while it is copied.
+   *
+   * @param campaign The Campaign to copy.
+   * @return The snapshot of the campaign.
+   */
+  public static CampaignSnapshot snapshotCampaign(Campaign campaign) {
+    ZoneRenderer currentZoneRenderer = MapTool.getFrame().getCurrentZoneRenderer();
+    if (currentZoneRenderer == null) {
+      return snapshotCampaign(campaign, null, null);
+    }
+    return snapshotCampaign(
+        campaign, currentZoneRenderer.getZone().getId(), currentZoneRenderer.getZoneScale());
+  }
+
+  /**
+   * Takes a snapshot of a Campaign and the given view, to be saved by {@link
+   * #saveCampaign(CampaignSnapshot, File, IntConsumer)}.
+   *
+   * @param campaign The Campaign to copy.
+   * @param currentZoneId The id of the zone being viewed, or {@code null} if there is none.
+   * @param currentView The scale of the zone being viewed, or {@code null} if there is none.
+   * @return The snapshot of the campaign.
+   */
+  static CampaignSnapshot snapshotCampaign(
+      Campaign campaign, @Nullable GUID currentZoneId, @Nullable Scale currentView) {
+    return new CampaignSnapshot(
+        campaign.toDto(),
+        Collections.unmodifiableSet(campaign.getAllAssetIds()),
+        currentZoneId,
+        currentView == null ? null : new Scale(currentView));
+  }
+
   /**
    * Saves a Campaign to a specified File.
    *
@@ -369,6 +495,21 @@ private static String fixupZoneName(String n) {
    * @throws IOException If an I/O error occurs during the save process.
    */
   public static void saveCampaign(Campaign campaign, File campaignFile) throws IOException {
+    saveCampaign(snapshotCampaign(campaign), campaignFile, work -> {});
+  }
+
+  /**
+   * Saves a snapshot of a Campaign to a specified File. Unlike {@link #saveCampaign(Campaign,
+   * File)} this is safe to call on a background thread while the campaign keeps changing.
+   *
+   * @param snapshot The snapshot of the Campaign to save.
+   * @param campaignFile The File to save the Campaign to.
+   * @param progress Receives the units of work done as each step of the save completes, out of
+   *     {@link #CAMPAIGN_SAVE_STEPS}.
+   * @throws IOException If an I/O error occurs during the save process.
+   */
+  public static void saveCampaign(
+      CampaignSnapshot snapshot, File campaignFile, IntConsumer progress) throws IOException {
     CodeTimer.using(
         "CampaignSave",
         saveTimer -> {
@@ -383,30 +524,19 @@ public static void saveCampaign(Campaign campaign, File campaignFile) throws IOE
           PackedFile pakFile = null;
           try {
             pakFile = new PackedFile(tmpFile);
-            // Configure the meta file (this is for legacy support)
-            PersistedCampaign persistedCampaign = new PersistedCampaign();
-
-            persistedCampaign.campaign = campaign;
-
-            // Keep track of the current view
-            ZoneRenderer currentZoneRenderer = MapTool.getFrame().getCurrentZoneRenderer();
-            if (currentZoneRenderer != null) {
-              persistedCampaign.currentZoneId = currentZoneRenderer.getZone().getId();
-              persistedCampaign.currentView = currentZoneRenderer.getZoneScale();
+            if (AppPreferences.incrementalCampaignSave.get()) {
+              // Carry unchanged entries over from the last save instead of writing them again
+              saveTimer.start("Check previous save");
+              if (isReusable(campaignFile)) {
+                pakFile.setReusableFile(campaignFile);
+              }
+              saveTimer.stop("Check previous save");
             }
             // Save all assets in active use (consolidate duplicates between maps)
-            saveTimer.start("Collect all assets");
-            Set<MD5Key> allAssetIds = campaign.getAllAssetIds();
-            for (MD5Key key : allAssetIds) {
-              // Put in a placeholder; all we really care about is the MD5Key for now...
-              persistedCampaign.assetMap.put(key, null);
-            }
-            saveTimer.stop("Collect all assets");
-
-            // And store the asset elsewhere
             saveTimer.start("Save assets");
-            saveAssets(allAssetIds, pakFile);
+            saveAssets(snapshot.assetIds(), pakFile);
             saveTimer.stop("Save assets");
+            progress.accept(1);
 
             // Store the Drop In Libraries.
             saveTimer.start("Save Drop In Libraries");
@@ -417,11 +547,16 @@ public static void saveCampaign(Campaign campaign, File campaignFile) throws IOE
             saveTimer.start("Save Game Data");
             saveGameData(pakFile);
             saveTimer.stop("Save Game Data");
+            progress.accept(1);
 
             try {
               saveTimer.start("Set content");
 
-              pakFile.setContent(persistedCampaign);
+              if (AppPreferences.saveCampaignAsXml.get()) {
+                pakFile.setContent(toPersistedCampaign(snapshot));
+              } else {
+                saveCampaignDto(snapshot, pakFile);
+              }
               pakFile.setProperty(PROP_CAMPAIGN_VERSION, CAMPAIGN_VERSION);
               pakFile.setProperty(PROP_VERSION, MapTool.getVersion());
 
@@ -429,6 +564,7 @@ public static void saveCampaign(Campaign campaign, File campaignFile) throws IOE
               saveTimer.start("Save");
               pakFile.save();
               saveTimer.stop("Save");
+              progress.accept(1);
             } catch (OutOfMemoryError oom) {
               /*
                * This error is normally because the heap space has been exceeded while trying to save the campaign. Since MapTool caches the images used by the current Zone, and since the
@@ -471,19 +607,53 @@ public static void saveCampaign(Campaign campaign, File campaignFile) throws IOE
           }
 
           saveTimer.start("Backup tmpFile");
-          FileUtil.copyFile(tmpFile, campaignFile);
+          campaignFileLock.writeLock().lock();
+          try {
+            FileUtil.copyFile(tmpFile, campaignFile);
+          } finally {
+            campaignFileLock.writeLock().unlock();
+          }
           tmpFile.delete();
           saveTimer.stop("Backup tmpFile");
+
+          // Make sure the save is on disk before the backup of the previous one goes
+          saveTimer.start("Sync");
+          try (FileChannel channel =
+              FileChannel.open(campaignFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+          }
+          saveTimer.stop("Sync");
           if (bakFile.exists()) bakFile.delete();
           saveTimer.stop("Backup");
+          progress.accept(1);
 
           // Save the campaign thumbnail
           saveTimer.start("Thumbnail");
           saveCampaignThumbnail(campaignFile.getName());
           saveTimer.stop("Thumbnail");
+          progress.accept(1);
         });
   }
 
+  /**
+   * Checks whether the entries of a previously saved campaign file can be carried over into a new
+   * save, which is the case when it was written with the current campaign format.
+   *
+   * @param campaignFile The previously saved campaign file.
+   * @return {@code true} if the file can be reused.
+   */
+  private static boolean isReusable(File campaignFile) {
+    if (!campaignFile.exists()) {
+      return false;
+    }
+    try (PackedFile pakFile = new PackedFile(campaignFile)) {
+      return CAMPAIGN_VERSION.equals(pakFile.getProperty(PROP_CAMPAIGN_VERSION));
+    } catch (IOException | RuntimeException e) {
+      log.warn("Unable to reuse the previous save of {}", campaignFile, e);
+      return false;
+    }
+  }
+
   /**
    * Saves a thumbnail image for a campaign.
    *
@@ -532,6 +702,9 @@ public static File getCampaignThumbnailFile(String fileName) {
   public static PersistedCampaign loadCampaign(File campaignFile) throws IOException {
     PersistedCampaign persistedCampaign = null;
 
+    // The last campaign may still be reading from the file we are about to load
+    waitForCampaignAssets();
+
     // Try the new way first
     try (PackedFile pakFile = new PackedFile(campaignFile)) {
       pakFile.setModelVersionManager(campaignVersionManager);
@@ -544,24 +717,38 @@ public static PersistedCampaign loadCampaign(File campaignFile) throws IOExcepti
       // This is where the campaignVersion was added
       campaignVersion = campaignVersion == null ? "1.3.50" : campaignVersion;
 
-      try {
-        persistedCampaign = (PersistedCampaign) pakFile.getContent(campaignVersion);
-      } catch (ConversionException ce) {
-        // Ignore the exception and check for "campaign == null" below...
-        MapTool.showError("PersistenceUtil.error.campaignVersion", ce);
-      } catch (ClassCastException cce) {
-        // Ignore the exception and check for "campaign == null" below...
-        MapTool.showWarning(
-            I18N.getText(
-                "PersistenceUtil.warn.campaignWrongFileType",
-                pakFile.getContent().getClass().getSimpleName()));
+      if (pakFile.hasFile(CAMPAIGN_DTO_FILE)) {
+        persistedCampaign = loadCampaignDto(pakFile);
+      } else {
+        try {
+          persistedCampaign = (PersistedCampaign) pakFile.getContent(campaignVersion);
+        } catch (ConversionException ce) {
+          // Ignore the exception and check for "campaign == null" below...
+          MapTool.showError("PersistenceUtil.error.campaignVersion", ce);
+        } catch (ClassCastException cce) {
+          // Ignore the exception and check for "campaign == null" below...
+          MapTool.showWarning(
+              I18N.getText(
+                  "PersistenceUtil.warn.campaignWrongFileType",
+                  pakFile.getContent().getClass().getSimpleName()));
+        }
       }
 
       if (persistedCampaign != null) {
         // Now load up any images that we need
         // Note that the values are all placeholders
         Set<MD5Key> allAssetIds = persistedCampaign.assetMap.keySet();
-        loadAssets(allAssetIds, pakFile);
+        // Those of the map that opens first are read first, the rest continue in the background
+        Zone currentZone =
+            persistedCampaign.currentZoneId == null
+                ? null
+                : persistedCampaign.campaign.getZone(persistedCampaign.currentZoneId);
+        Set<MD5Key> priorityIds = currentZone == null ? Set.of() : currentZone.getAllAssetIds();
+        Collection<MD5Key> readNow = allAssetIds;
+        if (AppPreferences.readCampaignAssetsOnDemand.get()) {
+          readNow = deferAssets(allAssetIds, priorityIds, pakFile);
+        }
+        pendingCampaignAssets = loadAssets(readNow, priorityIds, pakFile);
         for (Zone zone : persistedCampaign.campaign.getZones()) {
           zone.optimize();
         }
@@ -599,6 +786,100 @@ public static PersistedCampaign loadCampaign(File campaignFile) throws IOExcepti
     return persistedCampaign;
   }
 
+  /**
+   * Rebuilds the Campaign of a snapshot for the XML content of the legacy format.
+   *
+   * @param snapshot The snapshot of the campaign.
+   * @return The campaign, its assets and the current view, as stored in XML.
+   */
+  private static PersistedCampaign toPersistedCampaign(CampaignSnapshot snapshot) {
+    PersistedCampaign persistedCampaign = new PersistedCampaign();
+    persistedCampaign.campaign = Campaign.fromDto(snapshot.campaign());
+    persistedCampaign.currentZoneId = snapshot.currentZoneId();
+    persistedCampaign.currentView = snapshot.currentView();
+    for (MD5Key key : snapshot.assetIds()) {
+      // Put in a placeholder; all we really care about is the MD5Key for now...
+      persistedCampaign.assetMap.put(key, null);
+    }
+    return persistedCampaign;
+  }
+
+  /**
+   * Stores a campaign in the packed file as protobuf. This is a {@link CampaignFileHeaderDto}
+   * followed by a delimited {@link ZoneDto} for each zone, so that only one zone at a time is held
+   * as a DTO while loading.
+   *
+   * @param snapshot The snapshot of the campaign and current view to store.
+   * @param pakFile The packed file to store the campaign in.
+   * @throws IOException If an I/O error occurs while writing the campaign.
+   */
+  static void saveCampaignDto(CampaignSnapshot snapshot, PackedFile pakFile) throws IOException {
+    CampaignDto campaign = snapshot.campaign();
+    var header =
+        CampaignFileHeaderDto.newBuilder()
+            .setCampaign(campaign.toBuilder().clearZones())
+            .setZoneCount(campaign.getZonesCount());
+    if (snapshot.currentZoneId() != null) {
+      header.setCurrentZoneId(snapshot.currentZoneId().toString());
+    }
+    if (snapshot.currentView() != null) {
+      header.setCurrentView(
+          CampaignViewDto.newBuilder()
+              .setScale(snapshot.currentView().getScale())
+              .setOffsetX(snapshot.currentView().getOffsetX())
+              .setOffsetY(snapshot.currentView().getOffsetY()));
+    }
+
+    try (OutputStream os = new BufferedOutputStream(pakFile.getOutputStream(CAMPAIGN_DTO_FILE))) {
+      header.build().writeDelimitedTo(os);
+      for (ZoneDto zone : campaign.getZonesList()) {
+        zone.writeDelimitedTo(os);
+      }
+    }
+  }
+
+  /**
+   * Reads a campaign stored by {@link #saveCampaignDto(CampaignSnapshot, PackedFile)}.
+   *
+   * @param pakFile The packed file to read the campaign from.
+   * @return The campaign and the view that was current when it was saved.
+   * @throws IOException If an I/O error occurs or the campaign is incomplete.
+   */
+  static PersistedCampaign loadCampaignDto(PackedFile pakFile) throws IOException {
+    try (InputStream is =
+        new BufferedInputStream(pakFile.getFileAsInputStream(CAMPAIGN_DTO_FILE))) {
+      var header = CampaignFileHeaderDto.parseDelimitedFrom(is);
+      if (header == null) {
+        throw new EOFException(CAMPAIGN_DTO_FILE);
+      }
+
+      PersistedCampaign persistedCampaign = new PersistedCampaign();
+      persistedCampaign.campaign = Campaign.fromDto(header.getCampaign());
+      for (int i = 0; i < header.getZoneCount(); i++) {
+        var zoneDto = ZoneDto.parseDelimitedFrom(is);
+        if (zoneDto == null) {
+          throw new EOFException(CAMPAIGN_DTO_FILE);
+        }
+        persistedCampaign.campaign.putZone(Zone.fromDto(zoneDto));
+      }
+
+      if (header.hasCurrentZoneId()) {
+        persistedCampaign.currentZoneId = GUID.valueOf(header.getCurrentZoneId());
+      }
+      if (header.hasCurrentView()) {
+        persistedCampaign.currentView = new Scale();
+        persistedCampaign.currentView.setScale(header.getCurrentView().getScale());
+        persistedCampaign.currentView.setOffset(
+            header.getCurrentView().getOffsetX(), header.getCurrentView().getOffsetY());
+      }
+      // As with the XML content, the values are all placeholders
+      for (MD5Key key : persistedCampaign.campaign.getAllAssetIds()) {
+        persistedCampaign.assetMap.put(key, null);
+      }
+      return persistedCampaign;
+    }
+  }
+
   /**
    * Returns the filename of the thumbnail for the given PackedFile.
    *
@@ -739,72 +1020,258 @@ public static Token loadToken(URL url) throws IOException {
    */
   private static void loadAssets(Collection<MD5Key> assetIds, PackedFile pakFile)
       throws IOException {
+    waitFor(loadAssets(assetIds, Set.of(), pakFile));
+  }
+
+  /**
+   * Loads assets from a packed file and adds them to the asset manager, spread over {@link
+   * #assetReaderThreadPool} with a reader of the packed file for each worker. The priority assets
+   * are read first, and this returns as soon as they are available.
+   *
+   * @param assetIds The collection of MD5 keys representing the assets to be loaded
+   * @param priorityIds The assets needed first, such as those of the map being opened
+   * @param pakFile The packed file containing the assets
+   * @return Completes once the rest of the assets are loaded as well
+   * @throws IOException If an I/O error occurs while loading the priority assets
+   */
+  private static CompletableFuture<Void> loadAssets(
+      Collection<MD5Key> assetIds, Set<MD5Key> priorityIds, PackedFile pakFile)
+      throws IOException {
     // Special handling of assets: XML file to describe the Asset, but binary file for the image
     // data
     pakFile.getXStream().processAnnotations(Asset.class);
 
     String campaignVersion = (String) pakFile.getProperty(PROP_CAMPAIGN_VERSION);
     String progVersion = (String) pakFile.getProperty(PROP_VERSION);
-    List<Asset> addToServer = new ArrayList<Asset>(assetIds.size());
 
     // FJE: Ugly fix for a bug I introduced in b64. :(
     boolean fixRequired = "1.3.b64".equals(progVersion);
 
+    AssetLoad load = new AssetLoad(campaignVersion, fixRequired);
     for (MD5Key key : assetIds) {
-      if (key == null) continue;
-
-      if (!AssetManager.hasAsset(key)) {
-        String pathname = ASSET_DIR + key;
-        Asset asset = null;
-        if (fixRequired) {
-          try (InputStream is = pakFile.getFileAsInputStream(pathname)) {
-            asset =
-                Asset.createAssetDetectType(
-                    key.toString(), IOUtils.toByteArray(is)); // Ugly bug fix :(
-          } catch (FileNotFoundException fnf) {
-            // Doesn't need to be reported, since that's handled below.
-          } catch (Exception e) {
-            log.error("Could not load asset from 1.3.b64 file in compatibility mode", e);
-          }
-        } else {
-          try {
-            asset = pakFile.getAsset(pathname);
-          } catch (Exception e) {
-            // Do nothing. The asset will be 'null' and it'll be handled below.
-            log.info("Exception while handling asset '" + pathname + "'", e);
-          }
-        }
-        if (asset == null) { // Referenced asset not included in PackedFile??
-          log.error("Referenced asset '" + pathname + "' not found while loading?!");
-          continue;
-        }
-        // If the asset was marked as "broken" then ignore it completely. The end
-        // result is that MT will attempt to load it from a repository again, as normal.
-        if ("broken".equals(asset.getName())) {
-          log.warn("Reference to 'broken' asset '" + pathname + "' not restored.");
-          ImageManager.flushImage(asset);
-          continue;
-        }
-        // pre 1.3b52 campaign files stored the image data directly in the asset serialization.
-        // New XStreamConverter creates empty byte[] for image.
-        if (asset.getData() == null || asset.getData().length < 4) {
-          String ext = asset.getExtension();
-          pathname = pathname + "." + (StringUtil.isEmpty(ext) ? "dat" : ext);
-          pathname = assetnameVersionManager.transform(pathname, campaignVersion);
-          try (InputStream is = pakFile.getFileAsInputStream(pathname)) {
-            asset = asset.setData(IOUtils.toByteArray(is), false);
-          } catch (FileNotFoundException fnf) {
-            log.error("Image data for '" + pathname + "' not found?!", fnf);
-            continue;
-          } catch (Exception e) {
-            log.error("While reading image data for '" + pathname + "'", e);
-            continue;
-          }
-        }
-        AssetManager.putAsset(asset);
-        addToServer.add(asset);
+      if (key != null && !AssetManager.hasAsset(key)) {
+        load.add(key, priorityIds.contains(key));
+      }
+    }
+    if (load.priorityRemaining.get() == 0) {
+      load.priorityLoaded.complete(null);
+    }
+
+    CompletableFuture<Void> loaded;
+    if (load.isEmpty()) {
+      loaded = CompletableFuture.completedFuture(null);
+    } else if (pakFile.isDirty() || !pakFile.getPackedFile().exists()) {
+      // Unsaved changes can only be read through this packed file
+      load.readFrom(pakFile);
+      loaded = CompletableFuture.completedFuture(null);
+    } else {
+      int workers = Math.min(load.size(), ASSET_READER_THREADS);
+      CompletableFuture<?>[] readers = new CompletableFuture<?>[workers];
+      for (int i = 0; i < workers; i++) {
+        readers[i] =
+            CompletableFuture.runAsync(
+                () -> {
+                  try (PackedFile reader = new PackedFile(pakFile.getPackedFile())) {
+                    reader.getXStream().processAnnotations(Asset.class);
+                    load.readFrom(reader);
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                },
+                assetReaderThreadPool);
+      }
+      loaded = CompletableFuture.allOf(readers);
+    }
+
+    // Should the readers fail, the error surfaces through the returned future instead
+    loaded.whenComplete((result, e) -> load.priorityLoaded.complete(null));
+    try {
+      load.priorityLoaded.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+    return loaded.thenRun(() -> sendAssetsToServer(load.addToServer));
+  }
+
+  /**
+   * Registers the assets of a packed file with the asset manager without reading their data, which
+   * is read from the packed file once something asks the asset manager for it. Each read opens the
+   * packed file anew, so that no handle on it is held between reads.
+   *
+   * @param assetIds The collection of MD5 keys representing the assets to be deferred
+   * @param readNow The assets that are needed straight away, and so aren't deferred
+   * @param pakFile The packed file containing the assets
+   * @return The assets that weren't deferred and still need to be loaded
+   * @throws IOException If an I/O error occurs while listing the packed file
+   */
+  private static Collection<MD5Key> deferAssets(
+      Collection<MD5Key> assetIds, Set<MD5Key> readNow, PackedFile pakFile) throws IOException {
+    campaignAssetDataPaths.clear();
+    if (pakFile.isDirty() || !pakFile.getPackedFile().exists()) {
+      // Unsaved changes can only be read through this packed file
+      return assetIds;
+    }
+
+    for (String path : pakFile.getPaths()) {
+      int extension = path.lastIndexOf('.');
+      if (path.startsWith(ASSET_DIR) && extension > ASSET_DIR.length()) {
+        campaignAssetDataPaths.put(new MD5Key(path.substring(ASSET_DIR.length(), extension)), path);
+      }
+    }
+
+    String campaignVersion = (String) pakFile.getProperty(PROP_CAMPAIGN_VERSION);
+    String progVersion = (String) pakFile.getProperty(PROP_VERSION);
+    var reader =
+        new DeferredAssetReader(
+            pakFile.getPackedFile(), campaignVersion, "1.3.b64".equals(progVersion));
+
+    List<MD5Key> notDeferred = new ArrayList<>();
+    for (MD5Key key : assetIds) {
+      if (key == null || AssetManager.hasAsset(key)) {
+        continue;
+      }
+      if (readNow.contains(key)) {
+        notDeferred.add(key);
+      } else {
+        AssetManager.putDeferredAsset(key, () -> reader.read(key));
+      }
+    }
+    return notDeferred;
+  }
+
+  /**
+   * Reads the assets deferred by {@link #deferAssets(Collection, Set, PackedFile)}.
+   *
+   * @param campaignFile The packed file containing the assets
+   * @param campaignVersion The campaign version the packed file was written with
+   * @param fixRequired Whether the packed file was written by 1.3.b64
+   */
+  private record DeferredAssetReader(
+      File campaignFile, String campaignVersion, boolean fixRequired) {
+    private @Nullable Asset read(MD5Key key) {
+      campaignFileLock.readLock().lock();
+      try (PackedFile reader = new PackedFile(campaignFile)) {
+        reader.getXStream().processAnnotations(Asset.class);
+        return readAsset(reader, key, campaignVersion, fixRequired);
+      } finally {
+        campaignFileLock.readLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Waits for a load of assets to complete.
+   *
+   * @param loaded The future returned by {@link #loadAssets(Collection, Set, PackedFile)}
+   * @throws IOException If an I/O error occurred while loading the assets
+   */
+  private static void waitFor(CompletableFuture<Void> loaded) throws IOException {
+    try {
+      loaded.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException uioe) {
+        throw uioe.getCause();
       }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Waits for the assets of the last campaign loaded to be available. Only the assets of the
+   * current map are loaded by the time {@link #loadCampaign(File)} returns, so anything that needs
+   * every asset of the campaign, or writes to the campaign file, should call this first.
+   */
+  public static void waitForCampaignAssets() {
+    try {
+      waitFor(pendingCampaignAssets);
+    } catch (IOException e) {
+      log.error("Unable to load the assets of the last campaign", e);
     }
+  }
+
+  /**
+   * Waits for an asset of the last campaign loaded to be available, should it still be loading in
+   * the background. Anything that needs a particular asset straight away, such as the server
+   * sending it to a client, should call this before asking the {@link AssetManager} for it.
+   *
+   * @param key The MD5 key of the asset
+   */
+  public static void waitForCampaignAsset(MD5Key key) {
+    if (!AssetManager.hasAsset(key) && !AssetManager.isAssetDeferred(key)) {
+      waitForCampaignAssets();
+    }
+  }
+
+  /**
+   * Reads a single asset from a packed file.
+   *
+   * @param pakFile The packed file containing the asset
+   * @param key The MD5 key of the asset
+   * @param campaignVersion The campaign version the packed file was written with
+   * @param fixRequired Whether the packed file was written by 1.3.b64
+   * @return The asset, or {@code null} if it couldn't be read or should be ignored
+   */
+  private static @Nullable Asset readAsset(
+      PackedFile pakFile, MD5Key key, String campaignVersion, boolean fixRequired) {
+    String pathname = ASSET_DIR + key;
+    Asset asset = null;
+    if (fixRequired) {
+      try (InputStream is = pakFile.getFileAsInputStream(pathname)) {
+        asset =
+            Asset.createAssetDetectType(
+                key.toString(), IOUtils.toByteArray(is)); // Ugly bug fix :(
+      } catch (FileNotFoundException fnf) {
+        // Doesn't need to be reported, since that's handled below.
+      } catch (Exception e) {
+        log.error("Could not load asset from 1.3.b64 file in compatibility mode", e);
+      }
+    } else {
+      try {
+        asset = pakFile.getAsset(pathname);
+      } catch (Exception e) {
+        // Do nothing. The asset will be 'null' and it'll be handled below.
+        log.info("Exception while handling asset '" + pathname + "'", e);
+      }
+    }
+    if (asset == null) { // Referenced asset not included in PackedFile??
+      log.error("Referenced asset '" + pathname + "' not found while loading?!");
+      return null;
+    }
+    // If the asset was marked as "broken" then ignore it completely. The end
+    // result is that MT will attempt to load it from a repository again, as normal.
+    if ("broken".equals(asset.getName())) {
+      log.warn("Reference to 'broken' asset '" + pathname + "' not restored.");
+      ImageManager.flushImage(asset);
+      return null;
+    }
+    // pre 1.3b52 campaign files stored the image data directly in the asset serialization.
+    // New XStreamConverter creates empty byte[] for image.
+    if (asset.getData() == null || asset.getData().length < 4) {
+      String ext = asset.getExtension();
+      pathname = pathname + "." + (StringUtil.isEmpty(ext) ? "dat" : ext);
+      pathname = assetnameVersionManager.transform(pathname, campaignVersion);
+      try (InputStream is = pakFile.getFileAsInputStream(pathname)) {
+        asset = asset.setData(IOUtils.toByteArray(is), false);
+      } catch (FileNotFoundException fnf) {
+        log.error("Image data for '" + pathname + "' not found?!", fnf);
+        return null;
+      } catch (Exception e) {
+        log.error("While reading image data for '" + pathname + "'", e);
+        return null;
+      }
+    }
+    return asset;
+  }
+
+  /**
+   * Sends loaded assets to the server when we are not the server ourselves.
+   *
+   * @param addToServer The assets that were loaded
+   */
+  private static void sendAssetsToServer(Collection<Asset> addToServer) {
     if (!addToServer.isEmpty()) {
       // Isn't this the same as (MapTool.getServer() == null) ? And won't there always
       // be a server? Even if we don't start one explicitly, MapTool keeps a server
@@ -825,6 +1292,61 @@ private static void loadAssets(Collection<MD5Key> assetIds, PackedFile pakFile)
     }
   }
 
+  /** The assets still to be read by a call to {@link #loadAssets(Collection, Set, PackedFile)}. */
+  private static final class AssetLoad {
+    private final String campaignVersion;
+    private final boolean fixRequired;
+
+    /** The assets to read, with the priority assets at the front. */
+    private final Deque<MD5Key> queue = new ConcurrentLinkedDeque<>();
+
+    private final Set<MD5Key> priorityIds = new HashSet<>();
+    private final AtomicInteger priorityRemaining = new AtomicInteger();
+    private final CompletableFuture<Void> priorityLoaded = new CompletableFuture<>();
+    private final Queue<Asset> addToServer = new ConcurrentLinkedQueue<>();
+
+    private AssetLoad(String campaignVersion, boolean fixRequired) {
+      this.campaignVersion = campaignVersion;
+      this.fixRequired = fixRequired;
+    }
+
+    private void add(MD5Key key, boolean priority) {
+      if (priority) {
+        queue.addFirst(key);
+        priorityIds.add(key);
+        priorityRemaining.incrementAndGet();
+      } else {
+        queue.addLast(key);
+      }
+    }
+
+    private boolean isEmpty() {
+      return queue.isEmpty();
+    }
+
+    private int size() {
+      return queue.size();
+    }
+
+    /**
+     * Reads queued assets until there are none left. Each thread calling this needs its own reader.
+     *
+     * @param reader The packed file to read the assets from
+     */
+    private void readFrom(PackedFile reader) {
+      for (MD5Key key = queue.poll(); key != null; key = queue.poll()) {
+        Asset asset = readAsset(reader, key, campaignVersion, fixRequired);
+        if (asset != null) {
+          AssetManager.putAsset(asset);
+          addToServer.add(asset);
+        }
+        if (priorityIds.contains(key) && priorityRemaining.decrementAndGet() == 0) {
+          priorityLoaded.complete(null);
+        }
+      }
+    }
+  }
+
   /**
    * Loads the add-on libraries from the campaign file.
    *
@@ -881,6 +1403,9 @@ private static void saveAddOnLibraries(PackedFile packedFile) throws IOException
         JsonFormat.printer().print(dto).getBytes(StandardCharsets.UTF_8));
 
     for (var ldto : dto.getLibrariesList()) {
+      if (packedFile.reuseFile(DROP_IN_LIBRARY_ASSET_DIR + ldto.getMd5Hash())) {
+        continue;
+      }
       Asset asset = AssetManager.getAsset(new MD5Key(ldto.getMd5Hash()));
       packedFile.putFile(DROP_IN_LIBRARY_ASSET_DIR + asset.getMD5Key().toString(), asset.getData());
     }
@@ -947,6 +1472,9 @@ private static void saveGameData(PackedFile packedFile) throws IOException {
    */
   private static void saveAssets(Collection<MD5Key> assetIds, PackedFile pakFile)
       throws IOException {
+    // Assets still loading aren't in the asset manager yet
+    waitForCampaignAssets();
+
     // Special handling of assets: XML file to describe the Asset, but binary file for the image
     // data
     pakFile.getXStream().processAnnotations(Asset.class);
@@ -954,6 +1482,14 @@ private static void saveAssets(Collection<MD5Key> assetIds, PackedFile pakFile)
     for (MD5Key assetId : assetIds) {
       if (assetId == null) continue;
 
+      // Assets deferred when the campaign was loaded can be carried over without reading them
+      String dataPath = campaignAssetDataPaths.get(assetId);
+      if (dataPath != null
+          && pakFile.reuseFile(dataPath)
+          && pakFile.reuseFile(ASSET_DIR + assetId)) {
+        continue;
+      }
+
       // And store the asset elsewhere
       // As of 1.3.b64, assets are written in binary to allow them to be readable
       // when a campaign file is unpacked.
@@ -964,6 +1500,11 @@ private static void saveAssets(Collection<MD5Key> assetIds, PackedFile pakFile)
       }
 
       String extension = asset.getExtension();
+      // Assets are keyed by their data, so a copy in the previous save is still current
+      if (pakFile.reuseFile(ASSET_DIR + assetId + "." + extension)
+          && pakFile.reuseFile(ASSET_DIR + assetId)) {
+        continue;
+      }
       byte[] assetData = asset.getData();
       // System.out.println("Saving AssetId " + assetId + "." + extension + " with size of " +
       // assetData.length);
@@ -15,8 +15,16 @@
 package net.rptools.maptool.client;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 
 public class AppStateTest {
@@ -34,4 +42,73 @@ public void getCampaignName_shortName_properExtension() {
 
     assertEquals("c1", AppState.getCampaignName());
   }
+
+  @Test
+  public void runWithBackgroundTaskLock_overlappingSavesRunOneAtATime() throws Exception {
+    var saveStarted = new CountDownLatch(1);
+    var finishSave = new CountDownLatch(1);
+    var running = new AtomicInteger();
+    var overlapped = new AtomicBoolean();
+
+    // A manual save that is still writing the campaign
+    CompletableFuture<Void> save =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                AppState.runWithBackgroundTaskLock(
+                    30,
+                    () -> {
+                      running.incrementAndGet();
+                      saveStarted.countDown();
+                      finishSave.await();
+                      running.decrementAndGet();
+                      return null;
+                    });
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    assertTrue(saveStarted.await(10, TimeUnit.SECONDS));
+    assertTrue(AppState.testBackgroundTaskLock());
+
+    // An autosave doesn't wait, so it is skipped rather than writing alongside the save
+    var autoSaveRan = new AtomicBoolean();
+    assertThrows(
+        AppState.FailedToAcquireLockException.class,
+        () ->
+            AppState.runWithBackgroundTaskLock(
+                0,
+                () -> {
+                  autoSaveRan.set(true);
+                  return null;
+                }));
+    assertFalse(autoSaveRan.get());
+
+    // Another save waits for the first one to finish
+    CompletableFuture<String> secondSave =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return AppState.runWithBackgroundTaskLock(
+                    30,
+                    () -> {
+                      if (running.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                      }
+                      running.decrementAndGet();
+                      return "saved";
+                    });
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    Thread.sleep(100);
+    assertFalse(secondSave.isDone());
+
+    finishSave.countDown();
+    save.get(10, TimeUnit.SECONDS);
+    assertEquals("saved", secondSave.get(10, TimeUnit.SECONDS));
+    assertFalse(overlapped.get());
+    assertFalse(AppState.testBackgroundTaskLock());
+  }
 }
@@ -115,6 +115,21 @@ public void testMacros() throws ParserException {
         "hello world", parseLine("hello [MACRO(\"testMacro@TOKEN\"): \"world\"]", token, null));
   }
 
+  @Test
+  public void testEditedMacroRunsNewBody() throws ParserException {
+    MacroButtonProperties macro = new MacroButtonProperties(0);
+    macro.setLabel("editedMacro");
+    macro.setCommand("[r: \"before\"]");
+
+    Token token = new Token();
+    token.saveMacro(macro);
+    assertEquals("before", parseLine("[MACRO(\"editedMacro@TOKEN\"): \"\"]", token, null));
+
+    macro.setCommand("[r: \"after\"]");
+    token.saveMacro(macro);
+    assertEquals("after", parseLine("[MACRO(\"editedMacro@TOKEN\"): \"\"]", token, null));
+  }
+
   @Test
   public void testMacroChangesTokenProperty() throws ParserException {
     // We need the campaign to have the "Strength" property defined.
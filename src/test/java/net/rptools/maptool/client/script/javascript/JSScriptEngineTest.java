@@ -0,0 +1,71 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.script.javascript;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.rptools.parser.ParserException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class JSScriptEngineTest {
+  private final JSScriptEngine engine = JSScriptEngine.getJSScriptEngine();
+
+  @AfterEach
+  void tearDown() {
+    JSScriptEngine.resetContexts();
+  }
+
+  @Test
+  @DisplayName("Anonymous scripts do not see what earlier ones changed")
+  void testAnonymousScriptsDoNotLeak() {
+    for (boolean trusted : new boolean[] {false, true}) {
+      engine.evalAnonymous(
+          "leaked = 1; MTScript = 'replaced'; Array.prototype.extra = 2; return 0;", trusted);
+
+      var result =
+          engine.evalAnonymous(
+              "return [typeof leaked, typeof MTScript, typeof [].extra].join(',');", trusted);
+      assertEquals("undefined,object,undefined", result.asString());
+    }
+  }
+
+  @Test
+  @DisplayName("Named contexts keep their globals between scripts")
+  void testNamedContextKeepsGlobals() throws Exception {
+    engine.evalScript("test", "var kept = 41;", true);
+    assertEquals(42, engine.evalScript("test", "kept + 1", true).asInt());
+  }
+
+  @Test
+  @DisplayName("Untrusted scripts cannot run in trusted contexts")
+  void testUntrustedScriptInTrustedContext() throws Exception {
+    engine.evalScript("trusted", "1", true);
+    assertThrows(ParserException.class, () -> engine.evalScript("trusted", "1", false));
+  }
+
+  @Test
+  @DisplayName("Scripts with the same text share a source")
+  void testSourcesAreShared() {
+    var source = JSScriptEngine.getSource("[1, 2, 3].length");
+    assertSame(source, JSScriptEngine.getSource("[1, 2, 3].length"));
+    assertNotSame(source, JSScriptEngine.getSource("[1, 2].length"));
+
+    // Each anonymous script runs in a new context, which reuses the source of the last one.
+    assertEquals(3, engine.evalAnonymous("return [1, 2, 3].length;", false).asInt());
+    assertEquals(3, engine.evalAnonymous("return [1, 2, 3].length;", true).asInt());
+  }
+}
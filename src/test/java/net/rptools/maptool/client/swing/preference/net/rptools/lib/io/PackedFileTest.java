@@ -14,12 +14,16 @@
  */
 package net.rptools.maptool.client.swing.preference.net.rptools.lib.io;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import net.rptools.lib.io.PackedFile;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -54,4 +58,57 @@ public void saveWithOneResource(@TempDir File tempDir) throws IOException {
       assertEquals(test_content, s);
     }
   }
+
+  @Test
+  public void storeCompressedImages(@TempDir File tempDir) throws IOException {
+    File f = new File(tempDir, PACKED_TEST_FILE);
+    try (PackedFile pf = new PackedFile(f)) {
+      pf.putFile("image.png", new byte[100]);
+      pf.putFile(A_PATH_TXT, new byte[100]);
+      pf.save();
+    }
+
+    try (ZipFile zf = new ZipFile(f)) {
+      assertEquals(ZipEntry.STORED, zf.getEntry("image.png").getMethod());
+      assertEquals(ZipEntry.DEFLATED, zf.getEntry(A_PATH_TXT).getMethod());
+    }
+  }
+
+  @Test
+  public void saveWithReusedResources(@TempDir File tempDir) throws IOException {
+    File previous = new File(tempDir, PACKED_TEST_FILE);
+    byte[] image = new byte[1000];
+    for (int i = 0; i < image.length; i++) {
+      image[i] = (byte) (i * 31);
+    }
+    try (PackedFile pf = new PackedFile(previous)) {
+      pf.putFile("image.png", image);
+      pf.putFile("stale.png", image);
+      pf.putFile(A_PATH_TXT, "some content".getBytes());
+      pf.save();
+    }
+
+    File f = new File(tempDir, PACKED_TEST_FILE + counter++);
+    try (PackedFile pf = new PackedFile(f)) {
+      pf.setReusableFile(previous);
+      assertTrue(pf.reuseFile("image.png"));
+      assertFalse(pf.reuseFile("missing.png"));
+      assertTrue(pf.hasFile("image.png"));
+      try (InputStream is = pf.getFileAsInputStream("image.png")) {
+        assertArrayEquals(image, is.readAllBytes());
+      }
+      pf.putFile(A_PATH_TXT, "other content".getBytes());
+      pf.save();
+    }
+
+    try (PackedFile loaded = new PackedFile(f)) {
+      assertFalse(loaded.hasFile("stale.png"));
+      try (InputStream is = loaded.getFileAsInputStream("image.png")) {
+        assertArrayEquals(image, is.readAllBytes());
+      }
+      try (InputStream is = loaded.getFileAsInputStream(A_PATH_TXT)) {
+        assertEquals("other content", new String(is.readAllBytes()));
+      }
+    }
+  }
 }
@@ -0,0 +1,83 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import org.junit.jupiter.api.Test;
+
+class VisionCacheTest {
+  private static final Point ORIGIN = new Point(0, 0);
+
+  private static Area square(int size) {
+    return new Area(new Rectangle(-size, -size, 2 * size, 2 * size));
+  }
+
+  private static VisionCache.Key key(Point center, int size) {
+    return new VisionCache.Key(center, square(size));
+  }
+
+  @Test
+  void testSharesEqualSweeps() {
+    var cache = new VisionCache(1 << 20);
+    var visibleArea = square(5);
+    cache.put(key(ORIGIN, 10), 1, visibleArea);
+
+    assertSame(visibleArea, cache.get(key(ORIGIN, 10), 1));
+    assertNull(cache.get(key(ORIGIN, 20), 1));
+    assertNull(cache.get(key(new Point(1, 0), 10), 1));
+
+    var statistics = cache.getStatistics();
+    assertEquals(1, statistics.hits());
+    assertEquals(2, statistics.misses());
+    assertEquals(1 / 3., statistics.hitRate(), 1e-9);
+  }
+
+  @Test
+  void testNewTopologyVersionDropsOlderSweeps() {
+    var cache = new VisionCache(1 << 20);
+    cache.put(key(ORIGIN, 10), 1, square(5));
+
+    assertNull(cache.get(key(ORIGIN, 10), 2));
+    assertEquals(0, cache.getStatistics().residentBytes());
+
+    // Late results for the old topology must not be cached.
+    cache.put(key(ORIGIN, 10), 1, square(5));
+    assertNull(cache.get(key(ORIGIN, 10), 1));
+    assertNull(cache.get(key(ORIGIN, 10), 2));
+  }
+
+  @Test
+  void testEvictsLeastRecentlyUsed() {
+    var a = key(ORIGIN, 1);
+    var b = key(ORIGIN, 2);
+    var c = key(ORIGIN, 3);
+    var entryWeight = a.weight() + VisionCache.weightOf(square(1));
+    var cache = new VisionCache(2 * entryWeight);
+
+    cache.put(a, 1, square(1));
+    cache.put(b, 1, square(1));
+    assertNotNull(cache.get(a, 1));
+    cache.put(c, 1, square(1));
+
+    assertNotNull(cache.get(a, 1));
+    assertNull(cache.get(b, 1));
+    assertNotNull(cache.get(c, 1));
+    assertEquals(1, cache.getStatistics().evictions());
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone.vbl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import net.rptools.lib.GeometryUtil;
+import net.rptools.maptool.model.Zone.TopologyType;
+import net.rptools.maptool.model.topology.MaskTopology;
+import net.rptools.maptool.model.topology.WallTopology;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.LinearRing;
+
+class NodedTopologyTest {
+  private static final int SPACING = 20;
+
+  /**
+   * Builds a lattice of short walls that never touch one another, so that noding leaves them as
+   * they are.
+   */
+  private static WallTopology lattice(int segmentCount) {
+    var walls = new WallTopology();
+    int side = (int) Math.ceil(Math.sqrt(segmentCount));
+    for (int i = 0; i < segmentCount; ++i) {
+      int x = (i % side) * SPACING;
+      int y = (i / side) * SPACING;
+      var horizontal = i % 2 == 0;
+      walls.string(
+          new Point2D.Double(x, y),
+          builder ->
+              builder.push(
+                  horizontal
+                      ? new Point2D.Double(x + SPACING / 2., y)
+                      : new Point2D.Double(x, y + SPACING / 2.)));
+    }
+    return walls;
+  }
+
+  private static WallTopology toWalls(List<Coordinate[]> segments) {
+    var walls = new WallTopology();
+    for (var segment : segments) {
+      walls.string(
+          GeometryUtil.coordinateToPoint2D(segment[0]),
+          builder -> builder.push(GeometryUtil.coordinateToPoint2D(segment[1])));
+    }
+    return walls;
+  }
+
+  private static Coordinate[] randomSegment(Random random) {
+    var p0 = new Coordinate(1_000 * random.nextDouble(), 1_000 * random.nextDouble());
+    var p1 = new Coordinate(p0.x + 1 + 150 * random.nextDouble(), p0.y + 150 * random.nextDouble());
+    return new Coordinate[] {p0, p1};
+  }
+
+  private static MaskTopology randomMask(Random random) {
+    var types = TopologyType.values();
+    double x = 1_000 * random.nextDouble();
+    double y = 1_000 * random.nextDouble();
+    double size = 20 + 200 * random.nextDouble();
+    var holes =
+        random.nextBoolean()
+            ? new LinearRing[] {square(x + size / 4, y + size / 4, size / 2)}
+            : new LinearRing[0];
+    return MaskTopology.create(
+        types[random.nextInt(types.length)],
+        GeometryUtil.getGeometryFactory().createPolygon(square(x, y, size), holes));
+  }
+
+  private static void assertSameResults(NodedTopology expected, NodedTopology actual, Random rng) {
+    for (int i = 0; i < 20; ++i) {
+      var origin = new Coordinate(1_200 * rng.nextDouble() - 100, 1_200 * rng.nextDouble() - 100);
+      var bounds = i == 0 ? new Envelope(-500, 1_500, -500, 1_500) : randomBounds(rng, origin);
+
+      var expectedSegments = new ArrayList<List<Coordinate>>();
+      var expectedResult =
+          expected.getSegments(origin, bounds, s -> expectedSegments.add(Arrays.asList(s)));
+      var actualSegments = new ArrayList<List<Coordinate>>();
+      var actualResult =
+          actual.getSegments(origin, bounds, s -> actualSegments.add(Arrays.asList(s)));
+
+      assertEquals(expectedResult, actualResult);
+      assertEquals(expectedSegments, actualSegments, () -> "at " + origin + " within " + bounds);
+    }
+  }
+
+  private static LinearRing square(double x, double y, double size) {
+    return GeometryUtil.getGeometryFactory()
+        .createLinearRing(
+            new Coordinate[] {
+              new Coordinate(x, y),
+              new Coordinate(x + size, y),
+              new Coordinate(x + size, y + size),
+              new Coordinate(x, y + size),
+              new Coordinate(x, y)
+            });
+  }
+
+  private static Envelope randomBounds(Random random, Coordinate origin) {
+    double radius = 20 + random.nextInt(400);
+    return new Envelope(origin.x - radius, origin.x + radius, origin.y - radius, origin.y + radius);
+  }
+
+  private static List<List<Coordinate>> segments(
+      MaskTopology mask, Coordinate origin, Envelope bounds) {
+    var result = new ArrayList<List<Coordinate>>();
+    mask.addSegments(origin, bounds, string -> result.add(Arrays.asList(string)));
+    return result;
+  }
+
+  @Test
+  @DisplayName("Indexed masks produce the same segments as unindexed ones")
+  void testIndexedMasksMatchUnindexed() {
+    var random = new Random(11);
+    var factory = GeometryUtil.getGeometryFactory();
+    // A large square with a row of square holes.
+    var holes = new LinearRing[8];
+    for (int i = 0; i < holes.length; ++i) {
+      holes[i] = square(100 + 200 * i, 100, 150);
+    }
+    var polygon = factory.createPolygon(square(0, 0, 1_800), holes);
+
+    for (var type : TopologyType.values()) {
+      var mask = MaskTopology.create(type, polygon);
+      var indexed = mask.indexed();
+      for (int i = 0; i < 500; ++i) {
+        var origin = new Coordinate(random.nextInt(2_200) - 200, random.nextInt(600) - 200);
+        var bounds = randomBounds(random, origin);
+        assertEquals(
+            segments(mask, origin, bounds),
+            segments(indexed, origin, bounds),
+            () -> type + " at " + origin + " within " + bounds);
+        assertEquals(
+            mask.addSegments(origin, bounds, s -> {}),
+            indexed.addSegments(origin, bounds, s -> {}));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Only the walls within the bounds are returned")
+  void testWallsWithinBounds() {
+    var random = new Random(7);
+    var walls = lattice(2_000);
+    var noded = NodedTopology.prepare(walls, List.of());
+
+    for (int i = 0; i < 200; ++i) {
+      var origin = new Coordinate(random.nextInt(1_000), random.nextInt(1_000));
+      var bounds = randomBounds(random, origin);
+
+      Set<List<Coordinate>> expected = new HashSet<>();
+      walls.addSegments(origin, bounds, string -> expected.add(Arrays.asList(string)));
+      Set<List<Coordinate>> actual = new HashSet<>();
+      noded.getSegments(origin, bounds, string -> actual.add(Arrays.asList(string)));
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  @DisplayName("Incremental updates match a full prepare")
+  void testUpdateMatchesPrepare() {
+    var random = new Random(5);
+    var segments = new ArrayList<Coordinate[]>();
+    for (int i = 0; i < 300; ++i) {
+      segments.add(randomSegment(random));
+    }
+    var masks = new ArrayList<MaskTopology>();
+    for (int i = 0; i < 10; ++i) {
+      masks.add(randomMask(random));
+    }
+    var noded = NodedTopology.prepare(toWalls(segments), masks);
+
+    for (int round = 0; round < 100; ++round) {
+      // Mostly small edits, with the occasional large one to exercise the fallback.
+      int edits = random.nextInt(10) == 0 ? 200 : 1 + random.nextInt(3);
+      for (int edit = 0; edit < edits; ++edit) {
+        switch (random.nextInt(5)) {
+          case 0 -> {
+            // Drag one end of a wall.
+            var segment = segments.get(random.nextInt(segments.size()));
+            segment[1] =
+                new Coordinate(
+                    segment[0].x + 1 + 150 * random.nextDouble(),
+                    segment[0].y + 150 * random.nextDouble());
+          }
+          case 1 -> segments.add(randomSegment(random));
+          case 2 -> segments.remove(random.nextInt(segments.size()));
+          case 3 -> masks.set(random.nextInt(masks.size()), randomMask(random));
+          case 4 -> {
+            // Duplicate a wall, so that equal inputs have to be matched up one for one.
+            segments.add(segments.get(random.nextInt(segments.size())).clone());
+          }
+        }
+      }
+
+      var walls = toWalls(segments);
+      noded = noded.update(walls, masks);
+      assertSameResults(NodedTopology.prepare(walls, masks), noded, random);
+    }
+  }
+
+  @Test
+  @DisplayName("Moving one wall among many matches a full prepare")
+  void testUpdateOneWallInLattice() {
+    var segments = new ArrayList<Coordinate[]>();
+    lattice(2_000)
+        .getWalls()
+        .forEach(
+            wall -> {
+              var segment = wall.asSegment();
+              segments.add(new Coordinate[] {segment.p0, segment.p1});
+            });
+    var noded = NodedTopology.prepare(toWalls(segments), List.of());
+
+    var random = new Random(3);
+    for (int i = 0; i < 10; ++i) {
+      var segment = segments.get(random.nextInt(segments.size()));
+      segment[1] = new Coordinate(segment[1].x + 3, segment[1].y + 7);
+      var walls = toWalls(segments);
+
+      noded = noded.update(walls, List.of());
+      assertSameResults(NodedTopology.prepare(walls, List.of()), noded, random);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class AStarSearchTest {
+  private static int open(AStarSearch search, int x, int y, double g, double h) {
+    var node = search.add(x, y, false);
+    search.setH(node, h);
+    search.setPath(node, -1, g, g, g);
+    search.open(node);
+    return node;
+  }
+
+  @Test
+  void testFindsNodesByCellAndParity() {
+    var search = new AStarSearch();
+    var a = search.add(-3, 7, false);
+    var b = search.add(-3, 7, true);
+    var c = search.add(7, -3, false);
+
+    assertNotEquals(a, b);
+    assertEquals(a, search.find(-3, 7, false));
+    assertEquals(b, search.find(-3, 7, true));
+    assertEquals(c, search.find(7, -3, false));
+    assertEquals(-1, search.find(7, -3, true));
+    assertEquals(-3, search.x(a));
+    assertEquals(7, search.y(a));
+    assertTrue(search.isOddStepOfOneTwoOneMovement(b));
+  }
+
+  @Test
+  void testPollsLowestFCostFirst() {
+    var search = new AStarSearch();
+    open(search, 0, 0, 3, 1);
+    open(search, 1, 0, 1, 1);
+    open(search, 2, 0, 0, 5);
+    open(search, 3, 0, 2, 0);
+
+    assertEquals(1, search.x(search.pollOpen()));
+    assertEquals(3, search.x(search.pollOpen()));
+    assertEquals(0, search.x(search.pollOpen()));
+    assertEquals(2, search.x(search.pollOpen()));
+    assertFalse(search.hasOpen());
+  }
+
+  @Test
+  void testCheaperPathMovesNodeUp() {
+    var search = new AStarSearch();
+    var parent = open(search, 0, 0, 1, 1);
+    var node = open(search, 1, 0, 10, 1);
+    open(search, 2, 0, 5, 1);
+
+    search.setPath(node, parent, 0, 0, 0);
+
+    assertEquals(node, search.pollOpen());
+    assertEquals(parent, search.parent(node));
+    assertEquals(parent, search.pollOpen());
+  }
+
+  @Test
+  void testGrowsAndResets() {
+    var search = new AStarSearch();
+    for (int x = 0; x < 100; ++x) {
+      for (int y = 0; y < 100; ++y) {
+        open(search, x, y, x + y, 0);
+      }
+    }
+    assertEquals(10_000, search.size());
+    assertEquals(42 * 100 + 17, search.find(42, 17, false));
+
+    var previous = -1.;
+    while (search.hasOpen()) {
+      var node = search.pollOpen();
+      assertTrue(search.fCost(node) >= previous);
+      previous = search.fCost(node);
+      search.close(node);
+    }
+
+    search.reset();
+    assertEquals(0, search.size());
+    assertEquals(-1, search.find(42, 17, false));
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.rptools.maptool.client.AppPreferences;
+import net.rptools.maptool.client.walker.WalkerMetric;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.Zone;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AStarSquareEuclideanWalkerTest {
+  /** A walker that restricts movement, the way token drags do. */
+  private static final class RestrictedWalker extends AStarSquareEuclideanWalker {
+    RestrictedWalker(WalkerMetric metric) {
+      super(new Zone(), metric);
+      restrictMovement = true;
+    }
+  }
+
+  @Test
+  @DisplayName("Long drags are searched for directly unless planning over clusters is enabled")
+  void testPlansOverClustersOnlyWhenEnabled() {
+    var start = new CellPoint(0, 0);
+    var goal = new CellPoint(200, 150);
+    assertTrue(HierarchicalPathfinder.isWorthwhile(start, goal));
+    assertFalse(AppPreferences.pathfindingOverClusters.getDefault());
+
+    var enabled = AppPreferences.pathfindingOverClusters.get();
+    assertEquals(
+        enabled, new RestrictedWalker(WalkerMetric.ONE_ONE_ONE).plansOverClusters(start, goal));
+    assertFalse(new RestrictedWalker(WalkerMetric.ONE_TWO_ONE).plansOverClusters(start, goal));
+    assertFalse(
+        new RestrictedWalker(WalkerMetric.ONE_ONE_ONE)
+            .plansOverClusters(start, new CellPoint(20, 10)));
+  }
+
+  @Test
+  @DisplayName("Jump Point Search is only used when enabled and every step costs the same")
+  void testSearchesByJumpPointsOnlyWhenEnabled() {
+    assertFalse(AppPreferences.pathfindingJumpPoints.getDefault());
+
+    var enabled = AppPreferences.pathfindingJumpPoints.get();
+    assertEquals(enabled, new RestrictedWalker(WalkerMetric.ONE_ONE_ONE).searchesByJumpPoints());
+    assertFalse(new RestrictedWalker(WalkerMetric.ONE_TWO_ONE).searchesByJumpPoints());
+    assertFalse(new RestrictedWalker(WalkerMetric.MANHATTAN).searchesByJumpPoints());
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import javax.annotation.Nullable;
+import net.rptools.maptool.model.CellPoint;
+import org.junit.jupiter.api.Test;
+
+class HierarchicalPathfinderTest {
+  private static final int SIZE = 80;
+  private static final Rectangle BOUNDS = new Rectangle(0, 0, SIZE, SIZE);
+
+  /** A grid where every step costs one, and diagonal steps cannot cut past blocked cells. */
+  private static final class TestGrid implements HierarchicalPathfinder.Grid {
+    private final BitSet blocked;
+    private int searches = 0;
+
+    TestGrid(BitSet blocked) {
+      this.blocked = blocked;
+    }
+
+    static TestGrid create(Random random) {
+      var blocked = new BitSet(SIZE * SIZE);
+      // Scattered obstacles ...
+      for (int i = 0; i < SIZE * SIZE / 8; ++i) {
+        blocked.set(random.nextInt(SIZE * SIZE));
+      }
+      // ... and long walls with a gap somewhere.
+      for (int wall = 0; wall < 6; ++wall) {
+        var isVertical = random.nextBoolean();
+        var at = random.nextInt(SIZE);
+        var gap = random.nextInt(SIZE);
+        for (int i = 0; i < SIZE; ++i) {
+          if (Math.abs(i - gap) > 1) {
+            blocked.set(isVertical ? i * SIZE + at : at * SIZE + i);
+          }
+        }
+      }
+      return new TestGrid(blocked);
+    }
+
+    @Override
+    public boolean canStand(int x, int y) {
+      return x >= 0 && y >= 0 && x < SIZE && y < SIZE && !blocked.get(y * SIZE + x);
+    }
+
+    @Override
+    public boolean isStepBlocked(int x, int y, int dx, int dy) {
+      return !canStand(x + dx, y) || !canStand(x, y + dy);
+    }
+
+    @Override
+    public double[] costsWithin(int x, int y, int minX, int minY, int size) {
+      var search = search(new CellPoint(x, y), null, minX + 1, minY + 1, size - 2);
+      var costs = new double[size * size];
+      Arrays.fill(costs, Double.POSITIVE_INFINITY);
+      for (int row = 0; row < size; ++row) {
+        for (int column = 0; column < size; ++column) {
+          var node = search.find(minX + column, minY + row, false);
+          if (node >= 0) {
+            costs[row * size + column] = search.g(node);
+          }
+        }
+      }
+      return costs;
+    }
+
+    @Override
+    public List<CellPoint> findPath(CellPoint start, CellPoint goal, int minX, int minY, int size) {
+      ++searches;
+      var search = search(start, goal, minX, minY, size);
+      var path = new ArrayList<CellPoint>();
+      for (var node = search.find(goal.x, goal.y, false); node >= 0; node = search.parent(node)) {
+        var distance = start.distanceTraveled + search.g(node);
+        path.add(new CellPoint(search.x(node), search.y(node), distance, distance));
+      }
+      Collections.reverse(path);
+      return path;
+    }
+
+    @Override
+    public double estimate(int x, int y, CellPoint goal) {
+      return Math.max(Math.abs(goal.x - x), Math.abs(goal.y - y));
+    }
+
+    /** Finds the cheapest paths from a cell, expanding only the cells of a square. */
+    private AStarSearch search(
+        CellPoint start, @Nullable CellPoint goal, int minX, int minY, int size) {
+      var search = new AStarSearch();
+      search.open(search.add(start.x, start.y, false));
+      while (search.hasOpen()) {
+        var node = search.pollOpen();
+        search.close(node);
+        var x = search.x(node);
+        var y = search.y(node);
+        if (goal != null && x == goal.x && y == goal.y) {
+          break;
+        }
+        if (x < minX || y < minY || x >= minX + size || y >= minY + size) {
+          continue;
+        }
+        for (var d : JumpPoints.DIRECTIONS) {
+          if (!canStand(x + d[0], y + d[1]) || isStepBlocked(x, y, d[0], d[1])) {
+            continue;
+          }
+          var g = search.g(node) + 1;
+          var next = search.find(x + d[0], y + d[1], false);
+          if (next < 0) {
+            next = search.add(x + d[0], y + d[1], false);
+            search.setPath(next, node, g, g, g);
+            search.open(next);
+          } else if (search.isOpen(next) && g < search.g(next)) {
+            search.setPath(next, node, g, g, g);
+          }
+        }
+      }
+      return search;
+    }
+
+    /**
+     * @return the cost of the shortest path between two cells, or -1 if there is none.
+     */
+    double shortest(CellPoint start, CellPoint goal) {
+      var path = findPath(start, goal, 0, 0, SIZE);
+      return path.isEmpty() ? -1 : path.get(path.size() - 1).distanceTraveled;
+    }
+  }
+
+  private static CellPoint randomOpenCell(TestGrid grid, Random random) {
+    while (true) {
+      var cell = new CellPoint(random.nextInt(SIZE), random.nextInt(SIZE));
+      if (grid.canStand(cell.x, cell.y)) {
+        return cell;
+      }
+    }
+  }
+
+  private static void assertIsPath(
+      TestGrid grid, CellPoint start, CellPoint goal, List<CellPoint> path, String message) {
+    assertEquals(start.x, path.get(0).x, message);
+    assertEquals(start.y, path.get(0).y, message);
+    assertEquals(goal.x, path.get(path.size() - 1).x, message);
+    assertEquals(goal.y, path.get(path.size() - 1).y, message);
+    for (int i = 1; i < path.size(); ++i) {
+      var from = path.get(i - 1);
+      var to = path.get(i);
+      var dx = to.x - from.x;
+      var dy = to.y - from.y;
+      assertEquals(1, Math.max(Math.abs(dx), Math.abs(dy)), message);
+      assertTrue(grid.canStand(to.x, to.y), message);
+      assertFalse(grid.isStepBlocked(from.x, from.y, dx, dy), message);
+      assertEquals(i, to.distanceTraveled, 1e-9, message);
+    }
+  }
+
+  @Test
+  void testFindsPathsCloseToTheShortest() {
+    var random = new Random(42);
+    int planned = 0;
+    for (int map = 0; map < 300; ++map) {
+      var grid = TestGrid.create(random);
+      var start = randomOpenCell(grid, random);
+      var goal = randomOpenCell(grid, random);
+      if (!HierarchicalPathfinder.isWorthwhile(start, goal)) {
+        continue;
+      }
+
+      var shortest = grid.shortest(start, goal);
+      var path = new HierarchicalPathfinder(grid).findPath(start, goal, BOUNDS);
+      if (shortest < 0) {
+        assertNull(path, "Map " + map);
+        continue;
+      }
+      assertNotNull(path, "Map " + map);
+      assertIsPath(grid, start, goal, path, "Map " + map);
+      assertTrue(path.size() - 1 <= 1.3 * shortest, "Map " + map);
+      ++planned;
+    }
+    assertTrue(planned > 50);
+  }
+
+  @Test
+  void testReusesLegsWhenGoalMoves() {
+    var grid = new TestGrid(new BitSet());
+    var pathfinder = new HierarchicalPathfinder(grid);
+    pathfinder.setState(1);
+    var start = new CellPoint(2, 3);
+
+    var path = pathfinder.findPath(start, new CellPoint(70, 60), BOUNDS);
+    assertNotNull(path);
+    var legs = grid.searches;
+    assertTrue(legs > 2);
+
+    grid.searches = 0;
+    path = pathfinder.findPath(start, new CellPoint(70, 61), BOUNDS);
+    assertNotNull(path);
+    assertIsPath(grid, start, new CellPoint(70, 61), path, "Moved goal");
+    assertTrue(grid.searches < legs);
+
+    grid.searches = 0;
+    pathfinder.setState(2);
+    path = pathfinder.findPath(start, new CellPoint(70, 60), BOUNDS);
+    assertNotNull(path);
+    assertEquals(legs, grid.searches);
+  }
+
+  @Test
+  void testGivesUpOnUnreachableGoal() {
+    var blocked = new BitSet(SIZE * SIZE);
+    // Wall off the bottom right corner.
+    for (int i = 40; i < SIZE; ++i) {
+      blocked.set(40 * SIZE + i);
+      blocked.set(i * SIZE + 40);
+    }
+    var pathfinder = new HierarchicalPathfinder(new TestGrid(blocked));
+
+    assertNull(pathfinder.findPath(new CellPoint(2, 3), new CellPoint(70, 60), BOUNDS));
+  }
+}
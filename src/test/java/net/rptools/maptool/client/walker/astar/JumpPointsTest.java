@@ -0,0 +1,197 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class JumpPointsTest {
+  private static final int SIZE = 24;
+
+  /** A grid with blocked cells and blocked steps between open cells, like walls drawn as lines. */
+  private record RandomGrid(BitSet blocked, Set<Long> blockedSteps) implements JumpPoints.Grid {
+    static RandomGrid create(Random random) {
+      var blocked = new BitSet(SIZE * SIZE);
+      for (int i = 0; i < SIZE * SIZE / 6; ++i) {
+        blocked.set(random.nextInt(SIZE * SIZE));
+      }
+      var blockedSteps = new HashSet<Long>();
+      for (int i = 0; i < SIZE * SIZE / 4; ++i) {
+        var direction = JumpPoints.DIRECTIONS[random.nextInt(8)];
+        blockedSteps.add(
+            stepKey(random.nextInt(SIZE), random.nextInt(SIZE), direction[0], direction[1]));
+      }
+      return new RandomGrid(blocked, blockedSteps);
+    }
+
+    private static long stepKey(int x, int y, int dx, int dy) {
+      return AStarSearch.pack(x, y, false) * 9 + (dy + 1) * 3 + (dx + 1);
+    }
+
+    @Override
+    public boolean canEnter(int x, int y) {
+      return x >= 0 && y >= 0 && x < SIZE && y < SIZE && !blocked.get(y * SIZE + x);
+    }
+
+    @Override
+    public boolean isStepBlocked(int x, int y, int dx, int dy) {
+      return blockedSteps.contains(stepKey(x, y, dx, dy));
+    }
+
+    @Override
+    public boolean isOpen(int x, int y) {
+      if (!canEnter(x, y)) {
+        return false;
+      }
+      for (var d : JumpPoints.DIRECTIONS) {
+        if (!canEnter(x + d[0], y + d[1]) || isStepBlocked(x, y, d[0], d[1])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static double h(int x, int y, int goalX, int goalY, double diagonalCost) {
+    var dx = Math.abs(goalX - x);
+    var dy = Math.abs(goalY - y);
+    return diagonalCost * Math.min(dx, dy) + Math.abs(dx - dy);
+  }
+
+  private static double cost(int dx, int dy, double diagonalCost) {
+    return dx != 0 && dy != 0 ? diagonalCost : 1;
+  }
+
+  private static void reach(
+      AStarSearch search, int from, int x, int y, double g, int goalX, int goalY, double diagonal) {
+    var node = search.find(x, y, false);
+    if (node < 0) {
+      node = search.add(x, y, false);
+      search.setH(node, h(x, y, goalX, goalY, diagonal));
+      search.setPath(node, from, g, g, g);
+      search.open(node);
+    } else if (search.isOpen(node) && g < search.g(node)) {
+      search.setPath(node, from, g, g, g);
+    }
+  }
+
+  private static double plainAStar(JumpPoints grid, int goalX, int goalY, double diagonal) {
+    var search = new AStarSearch();
+    var start = search.add(0, 0, false);
+    search.open(start);
+    while (search.hasOpen()) {
+      var node = search.pollOpen();
+      var x = search.x(node);
+      var y = search.y(node);
+      if (x == goalX && y == goalY) {
+        return search.g(node);
+      }
+      for (var d : JumpPoints.DIRECTIONS) {
+        if (grid.canStep(x, y, d[0], d[1])) {
+          var g = search.g(node) + cost(d[0], d[1], diagonal);
+          reach(search, node, x + d[0], y + d[1], g, goalX, goalY, diagonal);
+        }
+      }
+      search.close(node);
+    }
+    return -1;
+  }
+
+  private static double jumpPointSearch(JumpPoints grid, int goalX, int goalY, double diagonal) {
+    var search = new AStarSearch();
+    var start = search.add(0, 0, false);
+    search.open(start);
+    while (search.hasOpen()) {
+      var node = search.pollOpen();
+      var x = search.x(node);
+      var y = search.y(node);
+      if (x == goalX && y == goalY) {
+        return search.g(node);
+      }
+      var parent = search.parent(node);
+      var directions =
+          parent < 0
+              ? JumpPoints.ALL_DIRECTIONS
+              : grid.successors(
+                  x, y, Integer.signum(x - search.x(parent)), Integer.signum(y - search.y(parent)));
+      for (int i = 0; i < JumpPoints.DIRECTIONS.length; ++i) {
+        if ((directions & (1 << i)) == 0) {
+          continue;
+        }
+        var d = JumpPoints.DIRECTIONS[i];
+        var steps = grid.jump(x, y, d[0], d[1], goalX, goalY);
+        if (steps > 0) {
+          var g = search.g(node) + steps * cost(d[0], d[1], diagonal);
+          reach(search, node, x + steps * d[0], y + steps * d[1], g, goalX, goalY, diagonal);
+        }
+      }
+      search.close(node);
+    }
+    return -1;
+  }
+
+  @ParameterizedTest
+  @ValueSource(doubles = {1, 1.5})
+  void testFindsPathsAsCheapAsPlainAStar(double diagonalCost) {
+    var random = new Random(42);
+    for (int map = 0; map < 200; ++map) {
+      var grid = new JumpPoints(RandomGrid.create(random));
+      if (!grid.canEnter(0, 0)) {
+        continue;
+      }
+      var goalX = random.nextInt(SIZE);
+      var goalY = random.nextInt(SIZE);
+      assertEquals(
+          plainAStar(grid, goalX, goalY, diagonalCost),
+          jumpPointSearch(grid, goalX, goalY, diagonalCost),
+          1e-9,
+          "Map " + map);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(doubles = {1, 1.5})
+  void testCrossesOpenRoomInOneJump(double diagonalCost) {
+    var grid =
+        new JumpPoints(
+            new JumpPoints.Grid() {
+              @Override
+              public boolean canEnter(int x, int y) {
+                return x >= 0 && y >= 0 && x < SIZE && y < SIZE;
+              }
+
+              @Override
+              public boolean isStepBlocked(int x, int y, int dx, int dy) {
+                return false;
+              }
+
+              @Override
+              public boolean isOpen(int x, int y) {
+                return x > 0 && y > 0 && x < SIZE - 1 && y < SIZE - 1;
+              }
+            });
+
+    assertEquals(SIZE - 1, grid.jump(0, 0, 1, 1, SIZE - 1, SIZE - 1));
+    assertEquals(0, grid.jump(0, 0, -1, 0, SIZE - 1, SIZE - 1));
+    assertEquals(
+        (SIZE - 1) * diagonalCost, jumpPointSearch(grid, SIZE - 1, SIZE - 1, diagonalCost), 1e-9);
+  }
+}
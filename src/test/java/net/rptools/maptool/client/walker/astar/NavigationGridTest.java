@@ -0,0 +1,222 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import net.rptools.lib.GeometryUtil;
+import net.rptools.maptool.client.ui.zone.vbl.MovementBlockingTopology;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Token.TerrainModifierOperation;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.Zone.TopologyType;
+import net.rptools.maptool.model.topology.WallTopology;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+class NavigationGridTest {
+  private static final int GRID_SIZE = 50;
+  private static final int CELLS = 40;
+  private static final Set<TopologyType> TYPES = EnumSet.of(TopologyType.MBL);
+
+  private static Zone newZone() {
+    var grid = new SquareGrid();
+    grid.setSize(GRID_SIZE);
+    var zone = new Zone();
+    zone.setGrid(grid);
+    return zone;
+  }
+
+  private static WallTopology randomWalls(Random random, int count) {
+    var walls = new WallTopology();
+    for (int i = 0; i < count; ++i) {
+      var x = random.nextDouble() * CELLS * GRID_SIZE;
+      var y = random.nextDouble() * CELLS * GRID_SIZE;
+      walls.string(
+          new Point2D.Double(x, y),
+          builder ->
+              builder.push(
+                  new Point2D.Double(
+                      x + random.nextDouble() * 200 - 100, y + random.nextDouble() * 200 - 100)));
+    }
+    return walls;
+  }
+
+  private static Token terrainToken(Random random, TerrainModifierOperation operation) {
+    var token = new Token();
+    token.setSnapToGrid(true);
+    token.setX(random.nextInt(CELLS) * GRID_SIZE);
+    token.setY(random.nextInt(CELLS) * GRID_SIZE);
+    token.setTerrainModifierOperation(operation);
+    token.setTerrainModifier(1 + random.nextInt(4));
+    return token;
+  }
+
+  private static boolean expectStepBlocked(
+      Zone zone, MovementBlockingTopology topology, int x, int y, int dx, int dy) {
+    var start = zone.getGrid().getBounds(new CellPoint(x, y));
+    var goal = zone.getGrid().getBounds(new CellPoint(x + dx, y + dy));
+    return topology.intersects(
+        GeometryUtil.getGeometryFactory()
+            .createLineString(
+                new Coordinate[] {
+                  new Coordinate(start.getCenterX(), start.getCenterY()),
+                  new Coordinate(goal.getCenterX(), goal.getCenterY())
+                }));
+  }
+
+  private static void assertMatchesTopology(Zone zone, NavigationGrid grid) {
+    var topology = new MovementBlockingTopology(zone.getWalls(), zone.getMasks(TYPES, null));
+    for (int y = -2; y < CELLS + 2; ++y) {
+      for (int x = -2; x < CELLS + 2; ++x) {
+        var center = zone.getGrid().getBounds(new CellPoint(x, y));
+        assertEquals(
+            topology.intersects(
+                GeometryUtil.getGeometryFactory()
+                    .createPoint(new Coordinate(center.getCenterX(), center.getCenterY()))),
+            grid.isCellBlocked(x, y),
+            "cell " + x + "," + y);
+        for (var direction : JumpPoints.DIRECTIONS) {
+          assertEquals(
+              expectStepBlocked(zone, topology, x, y, direction[0], direction[1]),
+              grid.isStepBlocked(x, y, direction[0], direction[1]),
+              "step from " + x + "," + y + " by " + direction[0] + "," + direction[1]);
+        }
+      }
+    }
+  }
+
+  private static void assertSameTerrain(NavigationGrid expected, NavigationGrid actual) {
+    assertEquals(expected.getTerrainOperations(), actual.getTerrainOperations());
+    assertEquals(expected.getTerrainBounds(), actual.getTerrainBounds());
+    for (int y = -2; y < CELLS + 6; ++y) {
+      for (int x = -2; x < CELLS + 6; ++x) {
+        assertEquals(expected.terrainFlags(x, y), actual.terrainFlags(x, y));
+        assertEquals(expected.terrainMultiplier(x, y), actual.terrainMultiplier(x, y), 1e-9);
+        assertEquals(expected.terrainAdder(x, y), actual.terrainAdder(x, y), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  void testMatchesTopologyAfterEdits() {
+    var random = new Random(17);
+    var zone = newZone();
+    zone.replaceWalls(randomWalls(random, 30));
+    zone.updateMaskTopology(new Area(new Rectangle(300, 300, 260, 90)), false, TopologyType.MBL);
+
+    var grid = new NavigationGrid(TYPES, null);
+    grid.update(zone);
+    assertMatchesTopology(zone, grid);
+
+    for (int edit = 0; edit < 5; ++edit) {
+      zone.replaceWalls(randomWalls(random, 30));
+      zone.updateMaskTopology(
+          new Area(new Rectangle(random.nextInt(1500), random.nextInt(1500), 120, 120)),
+          random.nextBoolean(),
+          TopologyType.MBL);
+      grid.invalidateTopology();
+      grid.update(zone);
+      assertMatchesTopology(zone, grid);
+    }
+  }
+
+  @Test
+  void testKeepsVersionWhenNothingChanged() {
+    var zone = newZone();
+    zone.replaceWalls(randomWalls(new Random(3), 10));
+
+    var grid = new NavigationGrid(TYPES, null);
+    grid.update(zone);
+    var version = grid.getVersion();
+
+    grid.invalidateTopology();
+    grid.update(zone);
+    assertEquals(version, grid.getVersion());
+
+    zone.updateMaskTopology(new Area(new Rectangle(0, 0, 100, 100)), false, TopologyType.MBL);
+    grid.invalidateTopology();
+    grid.update(zone);
+    assertTrue(grid.getVersion() > version);
+    assertTrue(grid.isCellBlocked(0, 0));
+  }
+
+  @Test
+  void testUpdatesTerrainTokenByToken() {
+    var random = new Random(5);
+    var operations = TerrainModifierOperation.values();
+    var zone = newZone();
+    var tokens = new ArrayList<Token>();
+    for (int i = 0; i < 40; ++i) {
+      var token = terrainToken(random, operations[random.nextInt(operations.length)]);
+      tokens.add(token);
+      zone.putToken(token);
+    }
+
+    var grid = new NavigationGrid(TYPES, null);
+    grid.update(zone);
+
+    for (int edit = 0; edit < 10; ++edit) {
+      var changed = new ArrayList<Token>();
+      for (int i = 0; i < 5; ++i) {
+        var token = tokens.get(random.nextInt(tokens.size()));
+        token.setX(random.nextInt(CELLS) * GRID_SIZE);
+        token.setY(random.nextInt(CELLS) * GRID_SIZE);
+        token.setTerrainModifierOperation(operations[random.nextInt(operations.length)]);
+        changed.add(token);
+      }
+      var removed = tokens.remove(random.nextInt(tokens.size()));
+      zone.removeToken(removed.getId());
+      changed.add(removed);
+
+      grid.invalidateTerrain(changed);
+      grid.update(zone);
+      var fresh = new NavigationGrid(TYPES, null);
+      fresh.update(zone);
+      assertSameTerrain(fresh, grid);
+    }
+  }
+
+  @Test
+  void testSumsTerrainModifiers() {
+    var zone = newZone();
+    var multipliers = List.of(2.0, 0.5);
+    for (var multiplier : multipliers) {
+      var token = new Token();
+      token.setSnapToGrid(true);
+      token.setTerrainModifierOperation(TerrainModifierOperation.MULTIPLY);
+      token.setTerrainModifier(multiplier);
+      zone.putToken(token);
+    }
+
+    var grid = new NavigationGrid(TYPES, null);
+    grid.update(zone);
+
+    assertEquals(NavigationGrid.TERRAIN_MULTIPLY, grid.terrainFlags(0, 0));
+    assertEquals(2.5, grid.terrainMultiplier(0, 0), 1e-9);
+    assertEquals(0, grid.terrainFlags(1, 1));
+    assertEquals(Set.of(TerrainModifierOperation.MULTIPLY), grid.getTerrainOperations());
+  }
+}
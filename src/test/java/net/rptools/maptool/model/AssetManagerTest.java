@@ -0,0 +1,123 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.rptools.lib.MD5Key;
+import net.rptools.maptool.server.proto.AssetChunkDto;
+import net.rptools.maptool.transfer.AssetProducer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AssetManagerTest {
+  private final Asset asset =
+      Asset.createTextAsset(
+          "deferred", ("deferred " + System.nanoTime()).getBytes(StandardCharsets.UTF_8));
+  private final MD5Key key = asset.getMD5Key();
+  private final AtomicInteger reads = new AtomicInteger();
+
+  private void putDeferredAsset() {
+    AssetManager.putDeferredAsset(
+        key,
+        () -> {
+          reads.incrementAndGet();
+          return asset;
+        });
+  }
+
+  @AfterEach
+  void tearDown() {
+    AssetManager.setUsePersistentCache(true);
+    AssetManager.removeAsset(key);
+    File cacheFile = AssetManager.getAssetCacheFile(key);
+    cacheFile.delete();
+    new File(cacheFile.getPath() + ".info").delete();
+  }
+
+  @Test
+  @DisplayName("Deferred assets are only read once asked for")
+  void testDeferredRead() {
+    AssetManager.setUsePersistentCache(false);
+    putDeferredAsset();
+
+    assertTrue(AssetManager.isAssetDeferred(key));
+    assertFalse(AssetManager.hasAsset(key));
+    assertEquals(0, reads.get());
+
+    assertSame(asset, AssetManager.getAsset(key));
+    assertTrue(AssetManager.hasAsset(key));
+    assertTrue(AssetManager.hasAssetInMemory(key));
+    assertSame(asset, AssetManager.getAsset(key));
+    assertEquals(1, reads.get());
+  }
+
+  @Test
+  @DisplayName("Released deferred assets are read again")
+  void testReleaseAndReread() {
+    AssetManager.setUsePersistentCache(false);
+    putDeferredAsset();
+    assertSame(asset, AssetManager.getAsset(key));
+
+    AssetManager.releaseAssets();
+    assertFalse(AssetManager.hasAssetInMemory(key));
+    assertFalse(AssetManager.hasAsset(key));
+    assertTrue(AssetManager.isAssetDeferred(key));
+
+    assertSame(asset, AssetManager.getAsset(key));
+    assertEquals(2, reads.get());
+  }
+
+  @Test
+  @DisplayName("Deferred assets can be sent from the persistent cache")
+  void testServeDeferredAsset() throws IOException {
+    putDeferredAsset();
+    assertFalse(AssetManager.getAssetCacheFile(key).exists());
+
+    File assetFile = AssetManager.getAssetCacheFileAndWait(key);
+    assertEquals(1, reads.get());
+    assertArrayEquals(asset.getData(), Files.readAllBytes(assetFile.toPath()));
+    assertEquals("deferred", AssetManager.getAssetInfo(key).getProperty(AssetManager.NAME));
+
+    try (var producer = new AssetProducer(key, "deferred", assetFile)) {
+      AssetChunkDto chunk = producer.nextChunk(asset.getData().length);
+      assertArrayEquals(asset.getData(), chunk.getData().toByteArray());
+      assertTrue(producer.isComplete());
+    }
+
+    // Once in the persistent cache the asset isn't read from the campaign file again
+    AssetManager.releaseAssets();
+    assertArrayEquals(asset.getData(), AssetManager.getAsset(key).getData());
+    assertEquals(1, reads.get());
+  }
+
+  @Test
+  @DisplayName("Looking for assets outside of repositories doesn't read deferred assets")
+  void testFindDeferredAssetNotInRepositories() {
+    AssetManager.setUsePersistentCache(false);
+    putDeferredAsset();
+
+    assertTrue(AssetManager.findAllAssetsNotInRepositories(List.of()).contains(key));
+    assertEquals(0, reads.get());
+    assertFalse(AssetManager.hasAssetInMemory(key));
+  }
+}
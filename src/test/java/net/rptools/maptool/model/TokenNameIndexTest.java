@@ -0,0 +1,119 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TokenNameIndexTest {
+  private static Zone newZone() {
+    Zone zone = new Zone();
+    Grid grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+    return zone;
+  }
+
+  private static Token newToken(String name, String gmName, int z) {
+    Token token = new Token();
+    token.setName(name);
+    token.setGMName(gmName);
+    token.setZOrder(z);
+    return token;
+  }
+
+  /** The lookup as it was done before the index. */
+  private static Token scanByName(Zone zone, String name) {
+    for (Token token : zone.getAllTokens()) {
+      if (name.equalsIgnoreCase(token.getName())) {
+        return token;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  @DisplayName("Names are matched ignoring case, and the lowest z-order wins")
+  void testFirstInZOrderWins() {
+    var zone = newZone();
+    var top = newToken("Goblin", "", 5);
+    var bottom = newToken("GOBLIN", "Boss", 1);
+    zone.putToken(top);
+    zone.putToken(bottom);
+
+    assertSame(bottom, zone.getTokenByName("goblin"));
+    assertSame(bottom, zone.resolveToken("Goblin"));
+    assertSame(bottom, zone.getTokenByGMName("boss"));
+    assertNull(zone.getTokenByGMName(""));
+
+    bottom.setZOrder(10);
+    zone.putToken(bottom);
+    assertSame(top, zone.getTokenByName("goblin"));
+  }
+
+  @Test
+  @DisplayName("Renamed and removed tokens are found under their new names only")
+  void testRenameAndRemove() {
+    var zone = newZone();
+    var token = newToken("Orc", "", 0);
+    zone.putToken(token);
+    assertSame(token, zone.getTokenByName("orc"));
+
+    token.setName("Troll");
+    token.setGMName("Secret");
+    zone.putToken(token);
+    assertNull(zone.getTokenByName("orc"));
+    assertSame(token, zone.getTokenByName("troll"));
+    assertSame(token, zone.resolveToken("SECRET"));
+    assertSame(token, zone.resolveToken(token.getId().toString()));
+
+    zone.removeToken(token.getId());
+    assertNull(zone.getTokenByName("troll"));
+    assertNull(zone.getTokenByGMName("secret"));
+  }
+
+  @Test
+  @DisplayName("Case folding agrees with equalsIgnoreCase")
+  void testFold() {
+    String[][] equal = {
+      {"straße", "STRAßE"}, {"ı", "I"}, {"ÿ", "Ÿ"}, {"Σ", "ς"}, {"𐐨", "𐐀"},
+    };
+    for (String[] pair : equal) {
+      assertTrue(pair[0].equalsIgnoreCase(pair[1]));
+      assertEquals(TokenNameIndex.fold(pair[0]), TokenNameIndex.fold(pair[1]));
+    }
+    assertNotEquals(TokenNameIndex.fold("straße"), TokenNameIndex.fold("STRASSE"));
+  }
+
+  @Test
+  @DisplayName("Indexed lookups agree with a full scan over a 5,000 token zone")
+  void testMatchesScan() {
+    final int tokenCount = 5_000;
+    var zone = newZone();
+    for (int i = 0; i < tokenCount; ++i) {
+      zone.putToken(newToken("Token " + i, "GM " + i, i));
+    }
+
+    for (int i = 0; i < tokenCount; ++i) {
+      String name = "TOKEN " + (i * 7919 % tokenCount);
+      Token expected = scanByName(zone, name);
+      assertNotNull(expected);
+      assertSame(expected, zone.getTokenByName(name));
+      assertSame(expected, zone.resolveToken(name));
+    }
+  }
+}
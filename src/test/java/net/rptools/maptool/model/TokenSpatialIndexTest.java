@@ -0,0 +1,160 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.rptools.maptool.model.Zone.Layer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TokenSpatialIndexTest {
+  private static final Layer[] LAYERS = {Layer.TOKEN, Layer.GM, Layer.OBJECT, Layer.BACKGROUND};
+
+  private static Grid newGrid(int size) {
+    Grid grid = new SquareGrid();
+    grid.setSize(size);
+    return grid;
+  }
+
+  private static Zone newZone(int gridSize) {
+    Zone zone = new Zone();
+    zone.setGrid(newGrid(gridSize));
+    return zone;
+  }
+
+  private static Token randomToken(Random random) {
+    Token token = new Token();
+    moveRandomly(random, token);
+    return token;
+  }
+
+  private static void moveRandomly(Random random, Token token) {
+    token.setLayer(LAYERS[random.nextInt(LAYERS.length)]);
+    token.setSnapToGrid(random.nextBoolean());
+    token.setSnapToScale(random.nextInt(4) != 0);
+    token.setWidth(1 + random.nextInt(300));
+    token.setHeight(1 + random.nextInt(300));
+    // Now and then, something big enough to cover the whole map
+    token.setScaleX(random.nextInt(50) == 0 ? 100 : 1);
+    token.setX(random.nextInt(10_000) - 5_000);
+    token.setY(random.nextInt(10_000) - 5_000);
+  }
+
+  private static List<Token> scan(Zone zone, Layer layer, Rectangle bounds) {
+    var expected = new ArrayList<Token>();
+    for (Token token : zone.getAllTokens()) {
+      if (token.getLayer() == layer && token.getBounds(zone).intersects(bounds)) {
+        expected.add(token);
+      }
+    }
+    return expected;
+  }
+
+  private static void assertMatchesScan(Zone zone, Random random) {
+    for (int i = 0; i < 20; ++i) {
+      int size = random.nextBoolean() ? 500 : 20_000;
+      var bounds =
+          new Rectangle(
+              random.nextInt(12_000) - 6_000,
+              random.nextInt(12_000) - 6_000,
+              random.nextInt(size),
+              random.nextInt(size));
+      for (Layer layer : LAYERS) {
+        assertEquals(scan(zone, layer, bounds), zone.getTokensInBounds(l -> l == layer, bounds));
+        assertEquals(
+            zone.getTokensFiltered(t -> t.getLayer() == layer), zone.getTokensOnLayer(layer));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Index queries match a full scan as tokens are added, moved and removed")
+  void testMatchesFullScan() {
+    var random = new Random(42);
+    var zone = newZone(50);
+    var tokens = new ArrayList<Token>();
+    for (int i = 0; i < 500; ++i) {
+      var token = randomToken(random);
+      tokens.add(token);
+      zone.putToken(token);
+    }
+    assertMatchesScan(zone, random);
+
+    for (int round = 0; round < 5; ++round) {
+      for (int i = 0; i < 100; ++i) {
+        var token = tokens.get(random.nextInt(tokens.size()));
+        moveRandomly(random, token);
+        zone.putToken(token);
+      }
+      for (int i = 0; i < 20; ++i) {
+        zone.removeToken(tokens.remove(random.nextInt(tokens.size())).getId());
+      }
+      for (int i = 0; i < 20; ++i) {
+        var token = randomToken(random);
+        tokens.add(token);
+        zone.putToken(token);
+      }
+      assertMatchesScan(zone, random);
+    }
+  }
+
+  @Test
+  @DisplayName("Index is rebuilt when the grid changes")
+  void testGridChange() {
+    var zone = newZone(50);
+    var token = new Token();
+    token.setSnapToGrid(true);
+    token.setX(1_000);
+    token.setY(1_000);
+    zone.putToken(token);
+
+    var oldBounds = token.getBounds(zone);
+    assertEquals(List.of(token), zone.getTokensInBounds(oldBounds));
+
+    zone.setGrid(newGrid(500));
+    var newBounds = token.getBounds(zone);
+    var corner = new Rectangle(newBounds.x + newBounds.width - 2, newBounds.y, 1, 1);
+    assertFalse(oldBounds.intersects(corner));
+    assertEquals(List.of(token), zone.getTokensInBounds(corner));
+  }
+
+  @Test
+  @DisplayName("Index is rebuilt when the grid is resized in place")
+  void testGridResize() {
+    var zone = newZone(50);
+    var token = new Token();
+    token.setSnapToGrid(true);
+    token.setX(1_000);
+    token.setY(1_000);
+    zone.putToken(token);
+
+    var oldBounds = token.getBounds(zone);
+    assertEquals(List.of(token), zone.getTokensInBounds(oldBounds));
+
+    zone.getGrid().setSize(500);
+    var newBounds = token.getBounds(zone);
+    var corner = new Rectangle(newBounds.x + newBounds.width - 2, newBounds.y, 1, 1);
+    assertFalse(oldBounds.intersects(corner));
+    assertEquals(List.of(token), zone.getTokensInBounds(corner));
+
+    zone.getGrid().setOffset(25, 25);
+    assertMatchesScan(zone, new Random(7));
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.rptools.maptool.model.Zone.Layer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ZoneTokenSnapshotTest {
+  private static Zone newZone(int tokenCount) {
+    Zone zone = new Zone();
+    Grid grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+    for (int i = 0; i < tokenCount; ++i) {
+      Token token = new Token();
+      token.setZOrder(i);
+      token.setLayer(i % 4 == 0 ? Layer.OBJECT : Layer.TOKEN);
+      zone.putToken(token);
+    }
+    return zone;
+  }
+
+  @Test
+  @DisplayName("Snapshots are shared until the tokens change")
+  void testSnapshotIsShared() {
+    var zone = newZone(10);
+    var first = zone.getAllTokens();
+    assertSame(first, zone.getAllTokens());
+    assertSame(zone.getTokensOnLayer(Layer.TOKEN), zone.getTokensOnLayer(Layer.TOKEN));
+    assertThrows(UnsupportedOperationException.class, () -> first.remove(0));
+
+    var token = first.get(3);
+    token.setLayer(Layer.GM);
+    zone.putToken(token);
+    var second = zone.getAllTokens();
+    assertNotSame(first, second);
+    assertEquals(first, second);
+    assertEquals(List.of(token), zone.getTokensOnLayer(Layer.GM));
+
+    zone.removeToken(token.getId());
+    assertEquals(10, first.size());
+    assertEquals(9, zone.getAllTokens().size());
+    assertTrue(zone.getTokensOnLayer(Layer.GM).isEmpty());
+  }
+
+  @Test
+  @DisplayName("forEachToken visits matching tokens in Z order")
+  void testForEachToken() {
+    var zone = newZone(20);
+    var visited = new ArrayList<Token>();
+    zone.forEachToken(Layer.OBJECT, t -> t.getZOrder() > 4, visited::add);
+    assertEquals(
+        zone.getTokensFiltered(t -> t.getLayer() == Layer.OBJECT && t.getZOrder() > 4), visited);
+
+    visited.clear();
+    zone.forEachToken(visited::add);
+    assertEquals(zone.getAllTokens(), visited);
+  }
+}
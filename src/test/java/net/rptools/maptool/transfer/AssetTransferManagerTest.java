@@ -16,14 +16,20 @@
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.google.protobuf.ByteString;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
 import net.rptools.lib.MD5Key;
 import net.rptools.maptool.server.proto.AssetChunkDto;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class AssetTransferManagerTest {
 
@@ -78,6 +84,100 @@ void testBasicTransfer() throws Exception {
     consumer.getFilename().delete();
   }
 
+  @Test
+  @DisplayName("Adaptive Chunk Size Test")
+  void testAdaptiveChunkSize() {
+    AdaptiveChunkSize chunkSize = new AdaptiveChunkSize();
+    assertEquals(AdaptiveChunkSize.MIN_CHUNK_SIZE, chunkSize.get());
+
+    // Link keeps up: grow until the maximum.
+    for (int i = 0; i < 10; i++) {
+      assertTrue(chunkSize.update(0));
+    }
+    assertEquals(AdaptiveChunkSize.MAX_CHUNK_SIZE, chunkSize.get());
+
+    // Some chunks in flight: keep producing at the same size.
+    assertTrue(chunkSize.update(1));
+    assertEquals(AdaptiveChunkSize.MAX_CHUNK_SIZE, chunkSize.get());
+
+    // Link backed up: stop producing and halve once per backlog.
+    assertFalse(chunkSize.update(AdaptiveChunkSize.MAX_PENDING_CHUNKS));
+    assertFalse(chunkSize.update(AdaptiveChunkSize.MAX_PENDING_CHUNKS));
+    assertEquals(AdaptiveChunkSize.MAX_CHUNK_SIZE / 2, chunkSize.get());
+  }
+
+  @Test
+  @DisplayName("Shared Asset Read Test")
+  void testConcurrentProducersShareData(@TempDir File tempDir) throws Exception {
+    byte[] data = new byte[3000];
+    new Random(99).nextBytes(data);
+    File source = new File(tempDir, "shared.dat");
+    Files.write(source.toPath(), data);
+    MD5Key id = new MD5Key("shared");
+
+    AssetProducer first = new AssetProducer(id, "shared", source);
+    AssetProducer second = new AssetProducer(id, "shared", source);
+    AssetChunkDto firstChunk = first.nextChunk(1000);
+    AssetChunkDto secondChunk = second.nextChunk(1000);
+
+    assertEquals(2, SharedAssetFiles.referenceCount(id));
+    assertEquals(firstChunk.getData(), secondChunk.getData());
+
+    while (!first.isComplete()) {
+      first.nextChunk(1000);
+    }
+    assertEquals(1, SharedAssetFiles.referenceCount(id));
+    second.close();
+    assertEquals(0, SharedAssetFiles.referenceCount(id));
+  }
+
+  @Test
+  @DisplayName("Shared Chunk Test")
+  void testConcurrentProducersShareChunks(@TempDir File tempDir) throws Exception {
+    byte[] data = new byte[3000];
+    new Random(11).nextBytes(data);
+    File source = new File(tempDir, "chunks.dat");
+    Files.write(source.toPath(), data);
+    MD5Key id = new MD5Key("chunks");
+
+    AssetProducer first = new AssetProducer(id, "chunks", source);
+    AssetProducer second = new AssetProducer(id, "chunks", source);
+    first.nextChunk(1000);
+    second.nextChunk(1000);
+    ByteString firstChunk = first.nextChunk(1000).getData();
+    assertEquals(1, SharedAssetFiles.sharedChunkCount(id));
+
+    // The second producer gets the chunk the first one read, not what is on the disk now
+    byte[] changed = data.clone();
+    Arrays.fill(changed, 1000, 2000, (byte) 0);
+    Files.write(source.toPath(), changed);
+    assertEquals(firstChunk, second.nextChunk(1000).getData());
+    assertEquals(ByteString.copyFrom(data, 1000, 1000), firstChunk);
+    assertEquals(0, SharedAssetFiles.sharedChunkCount(id));
+
+    first.close();
+    second.close();
+    assertEquals(0, SharedAssetFiles.referenceCount(id));
+  }
+
+  @Test
+  @DisplayName("Truncated Asset Test")
+  void testTruncatedFile(@TempDir File tempDir) throws Exception {
+    byte[] data = new byte[3000];
+    new Random(7).nextBytes(data);
+    File source = new File(tempDir, "truncated.dat");
+    Files.write(source.toPath(), data);
+    MD5Key id = new MD5Key("truncated");
+
+    AssetProducer producer = new AssetProducer(id, "truncated", source);
+    assertEquals(
+        ByteString.copyFrom(data, 0, 1000), producer.nextChunk(1000).getData(), "First chunk");
+    Files.write(source.toPath(), Arrays.copyOf(data, 1500));
+
+    assertThrows(EOFException.class, () -> producer.nextChunk(1000));
+    assertEquals(0, SharedAssetFiles.referenceCount(id));
+  }
+
   @Test
   @DisplayName("Test Create Temporary File.")
   File createTempFile(byte[] data) throws IOException {
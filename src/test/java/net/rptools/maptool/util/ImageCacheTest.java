@@ -0,0 +1,156 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Set;
+import net.rptools.lib.MD5Key;
+import org.junit.jupiter.api.Test;
+
+class ImageCacheTest {
+  private static final MD5Key A = new MD5Key("a");
+  private static final MD5Key B = new MD5Key("b");
+  private static final MD5Key C = new MD5Key("c");
+
+  /** 10x10 ARGB, so 400 bytes. */
+  private static BufferedImage image() {
+    return new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+  }
+
+  private static void put(ImageCache cache, MD5Key key) {
+    var image = image();
+    cache.put(key, image, ImageCache.weightOf(image));
+  }
+
+  @Test
+  void testWeight() {
+    assertEquals(400, ImageCache.weightOf(image()));
+    assertEquals(300, ImageCache.weightOf(new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR)));
+    assertEquals(100, ImageCache.weightOf(new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY)));
+  }
+
+  @Test
+  void testEvictsLeastRecentlyUsed() {
+    var cache = new ImageCache(800, false);
+    put(cache, A);
+    put(cache, B);
+    assertNotNull(cache.get(A));
+    put(cache, C);
+
+    assertTrue(cache.contains(A));
+    assertFalse(cache.contains(B));
+    assertTrue(cache.contains(C));
+
+    var statistics = cache.getStatistics();
+    assertEquals(1, statistics.hits());
+    assertEquals(1, statistics.evictions());
+    assertEquals(800, statistics.residentBytes());
+  }
+
+  @Test
+  void testPinnedImagesAreNotEvicted() {
+    var cache = new ImageCache(400, false);
+    cache.pin(Set.of(A, B));
+    put(cache, A);
+    put(cache, B);
+    put(cache, C);
+
+    assertTrue(cache.contains(A));
+    assertTrue(cache.contains(B));
+    assertFalse(cache.contains(C));
+    assertEquals(800, cache.getStatistics().residentBytes());
+
+    // Unpinning makes the old images eligible again
+    cache.pin(List.of(C));
+    put(cache, C);
+    assertFalse(cache.contains(A));
+    assertFalse(cache.contains(B));
+    assertTrue(cache.contains(C));
+    assertEquals(400, cache.getStatistics().residentBytes());
+  }
+
+  @Test
+  void testSharedImagesAreFree() {
+    var cache = new ImageCache(400, false);
+    var broken = image();
+    cache.put(A, broken, 0);
+    cache.put(B, broken, 0);
+    put(cache, C);
+
+    assertTrue(cache.contains(A));
+    assertTrue(cache.contains(B));
+    assertTrue(cache.contains(C));
+    assertEquals(400, cache.getStatistics().residentBytes());
+  }
+
+  @Test
+  void testSoftReferenceFallback() {
+    var cache = new ImageCache(400, true);
+    var image = image();
+    cache.put(A, image, ImageCache.weightOf(image));
+    put(cache, B);
+    assertFalse(cache.contains(A));
+
+    // Nothing else references the image strongly, but the heap is nowhere near full
+    assertSame(image, cache.get(A));
+    assertTrue(cache.contains(A));
+    assertEquals(1, cache.getStatistics().softHits());
+  }
+
+  @Test
+  void testMisses() {
+    var cache = new ImageCache(400, false);
+    put(cache, A);
+    put(cache, B);
+
+    assertNull(cache.get(A));
+    assertNull(cache.get(C));
+    assertEquals(2, cache.getStatistics().misses());
+  }
+
+  @Test
+  void testRetainAndRemove() {
+    var cache = new ImageCache(10_000, true);
+    put(cache, A);
+    put(cache, B);
+    put(cache, C);
+
+    cache.retain(Set.of(A, B));
+    assertFalse(cache.contains(C));
+    assertEquals(800, cache.getStatistics().residentBytes());
+
+    cache.remove(A);
+    assertFalse(cache.contains(A));
+    assertNull(cache.get(A));
+    assertEquals(400, cache.getStatistics().residentBytes());
+  }
+
+  @Test
+  void testShrinkingBudgetEvicts() {
+    var cache = new ImageCache(10_000, false);
+    put(cache, A);
+    put(cache, B);
+    put(cache, C);
+
+    cache.setBudget(400);
+    assertFalse(cache.contains(A));
+    assertFalse(cache.contains(B));
+    assertTrue(cache.contains(C));
+    assertEquals(2, cache.getStatistics().evictions());
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.rptools.lib.io.PackedFile;
+import net.rptools.maptool.client.ui.Scale;
+import net.rptools.maptool.model.Asset;
+import net.rptools.maptool.model.AssetManager;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.LookupTable;
+import net.rptools.maptool.model.MacroButtonProperties;
+import net.rptools.maptool.model.ShapeType;
+import net.rptools.maptool.model.SightType;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.TokenProperty;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.util.PersistenceUtil.PersistedCampaign;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PersistenceUtilTest {
+
+  @Test
+  @DisplayName("Test Campaign Round Trip Through Protobuf")
+  void testCampaignDtoRoundTrip(@TempDir File tempDir) throws IOException {
+    var campaign = new Campaign();
+    for (int z = 0; z < 3; z++) {
+      var zone = new Zone();
+      zone.setName("Zone " + z);
+      for (int t = 0; t < 5; t++) {
+        var token = new Token();
+        token.setName("Token " + z + "-" + t);
+        token.setX(t * 50);
+        zone.putToken(token);
+      }
+      campaign.putZone(zone);
+    }
+
+    var view = new Scale();
+    view.setScale(2);
+    view.setOffset(10, -20);
+    var saved =
+        PersistenceUtil.snapshotCampaign(campaign, campaign.getZones().get(1).getId(), view);
+
+    File file = new File(tempDir, "campaign.cmpgn");
+    try (PackedFile pakFile = new PackedFile(file)) {
+      PersistenceUtil.saveCampaignDto(saved, pakFile);
+      pakFile.save();
+    }
+
+    PersistedCampaign loaded;
+    try (PackedFile pakFile = new PackedFile(file)) {
+      loaded = PersistenceUtil.loadCampaignDto(pakFile);
+    }
+
+    assertEquals(campaign.getId(), loaded.campaign.getId());
+    List<Zone> zones = loaded.campaign.getZones();
+    assertEquals(3, zones.size());
+    for (int z = 0; z < 3; z++) {
+      assertEquals(campaign.getZones().get(z).getId(), zones.get(z).getId());
+      assertEquals("Zone " + z, zones.get(z).getName());
+      assertEquals(5, zones.get(z).getAllTokens().size());
+    }
+    assertEquals("Token 2-4", zones.get(2).getTokenByName("Token 2-4").getName());
+    assertEquals(saved.currentZoneId(), loaded.currentZoneId);
+    assertEquals(2, loaded.currentView.getScale());
+    assertEquals(10, loaded.currentView.getOffsetX());
+    assertEquals(-20, loaded.currentView.getOffsetY());
+  }
+
+  @Test
+  @DisplayName("Test Campaign Macros, Properties and Tables Round Trip Through Protobuf")
+  void testCampaignSettingsRoundTrip(@TempDir File tempDir) throws IOException {
+    var campaign = new Campaign();
+    var zone = new Zone();
+    campaign.putZone(zone);
+
+    var macro = new MacroButtonProperties(0);
+    macro.setLabel("Attack");
+    macro.setGroup("Combat");
+    macro.setCommand("[r: 1d20 + 5]");
+    campaign.setMacroButtonPropertiesArray(List.of(macro));
+    var gmMacro = new MacroButtonProperties(0);
+    gmMacro.setLabel("Reveal");
+    campaign.setGmMacroButtonPropertiesArray(List.of(gmMacro));
+
+    campaign.putTokenType(
+        "Hero", List.of(new TokenProperty("Strength", "Str"), new TokenProperty("Dexterity")));
+    campaign
+        .getSightTypeMap()
+        .put(
+            "Darkvision",
+            new SightType("Darkvision", 60, 1, ShapeType.CIRCLE, 0, 0, 0, false, null));
+
+    var table = new LookupTable();
+    table.setName("Treasure");
+    table.addEntry(1, 3, "Copper", null);
+    table.addEntry(4, 6, "Gold", null);
+    campaign.getLookupTableMap().put(table.getName(), table);
+
+    var view = new Scale();
+    view.setScale(0.5);
+    view.setOffset(-300, 150);
+    var saved = PersistenceUtil.snapshotCampaign(campaign, zone.getId(), view);
+
+    // Changes after the snapshot mustn't make it into the save
+    macro.setCommand("changed");
+    table.addEntry(7, 9, "Platinum", null);
+    view.setScale(4);
+
+    File file = new File(tempDir, "campaign.cmpgn");
+    try (PackedFile pakFile = new PackedFile(file)) {
+      PersistenceUtil.saveCampaignDto(saved, pakFile);
+      pakFile.save();
+    }
+
+    PersistedCampaign loaded;
+    try (PackedFile pakFile = new PackedFile(file)) {
+      loaded = PersistenceUtil.loadCampaignDto(pakFile);
+    }
+
+    List<MacroButtonProperties> macros = loaded.campaign.getMacroButtonPropertiesArray();
+    assertEquals(1, macros.size());
+    assertEquals("Attack", macros.get(0).getLabel());
+    assertEquals("Combat", macros.get(0).getGroup());
+    assertEquals("[r: 1d20 + 5]", macros.get(0).getCommand());
+    assertEquals("Reveal", loaded.campaign.getGmMacroButtonPropertiesArray().get(0).getLabel());
+
+    List<TokenProperty> heroProperties = loaded.campaign.getTokenPropertyList("Hero");
+    assertEquals(2, heroProperties.size());
+    assertEquals("Strength", heroProperties.get(0).getName());
+    assertEquals("Str", heroProperties.get(0).getShortName());
+    assertEquals("Dexterity", heroProperties.get(1).getName());
+    SightType darkvision = loaded.campaign.getSightTypeMap().get("Darkvision");
+    assertNotNull(darkvision);
+    assertEquals(60, darkvision.getDistance());
+
+    LookupTable loadedTable = loaded.campaign.getLookupTableMap().get("Treasure");
+    assertNotNull(loadedTable);
+    List<LookupTable.LookupEntry> entries = loadedTable.getEntryList();
+    assertEquals(2, entries.size());
+    assertEquals("Copper", entries.get(0).getValue());
+    assertEquals(4, entries.get(1).getMin());
+    assertEquals("Gold", entries.get(1).getValue());
+
+    assertEquals(zone.getId(), loaded.currentZoneId);
+    assertEquals(0.5, loaded.currentView.getScale());
+    assertEquals(-300, loaded.currentView.getOffsetX());
+    assertEquals(150, loaded.currentView.getOffsetY());
+  }
+
+  @Test
+  @DisplayName("Test Asset Readers Don't Keep MapTool Running")
+  void testAssetReaderThreads() throws Exception {
+    Thread reader =
+        CompletableFuture.supplyAsync(Thread::currentThread, PersistenceUtil.assetReaderThreadPool)
+            .get(10, TimeUnit.SECONDS);
+
+    assertTrue(reader.isDaemon());
+    assertTrue(reader.getName().startsWith("campaign-asset-reader-"));
+  }
+
+  @Test
+  @DisplayName("Test Waiting For An Asset Still Loading In The Background")
+  void testWaitForCampaignAsset() throws Exception {
+    var asset =
+        Asset.createTextAsset(
+            "loading", ("loading " + System.nanoTime()).getBytes(StandardCharsets.UTF_8));
+    var loading = new CompletableFuture<Void>();
+    var previous = PersistenceUtil.pendingCampaignAssets;
+    PersistenceUtil.pendingCampaignAssets = loading;
+    AssetManager.setUsePersistentCache(false);
+    try {
+      var waiting =
+          CompletableFuture.runAsync(() -> PersistenceUtil.waitForCampaignAsset(asset.getMD5Key()));
+      Thread.sleep(100);
+      assertFalse(waiting.isDone());
+
+      AssetManager.putAsset(asset);
+      loading.complete(null);
+      waiting.get(10, TimeUnit.SECONDS);
+      assertSame(asset, AssetManager.getAsset(asset.getMD5Key()));
+
+      // Assets that are already available don't wait for the rest
+      PersistenceUtil.pendingCampaignAssets = new CompletableFuture<>();
+      CompletableFuture.runAsync(() -> PersistenceUtil.waitForCampaignAsset(asset.getMD5Key()))
+          .get(10, TimeUnit.SECONDS);
+    } finally {
+      PersistenceUtil.pendingCampaignAssets = previous;
+      AssetManager.setUsePersistentCache(true);
+      AssetManager.removeAsset(asset.getMD5Key());
+    }
+  }
+}